@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 /**
  * Implements the Action class 4.2.6.2 of RFC4765
  * 
@@ -43,14 +45,16 @@ Contact: jim@cr-labs.com
  * 
  * @author jim
  */
-public class Action {
+public class Action
+implements Fingerprinted, Formatted {
 
 	private Category category;
+	private volatile long fingerprint;
 	
 	/** 
 	 * The type of action taken.
 	 */
-	public static enum Category {
+	public static enum Category implements CodedEnum {
 		BLOCK_INSTALLED (0), NOTIFICATION_SENT (1), TAKEN_OFFLINE (2), OTHER (3),
 		X_INFO (10000),
 		X_BLOCK_REMOVED (10001), 
@@ -82,7 +86,7 @@ public class Action {
 	 * @return an RFC4765-compatible category (extension X_* categories are returned as OTHER)
 	 */
 	public Category getRFCCategory() {
-		if (category.getValue() >= Category.X_BLOCK_REMOVED.getValue())
+		if (category.getValue() >= Category.X_INFO.getValue())
 			return Category.OTHER;
 		else
 			return category;
@@ -111,8 +115,46 @@ public class Action {
 	}
 	
 	
+	/**
+	 * @return a 64 bit hash of the content of the Action, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, category);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Actions are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Action x = (Action) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(category, x.category);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Action", compact);
+		Formats.field(out, compact, "category", category);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		return "\n\r[Action] category="+category;
+		return Formats.toString(this, false);
 	}
 
 }
@@ -20,15 +20,37 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 import org.joda.time.DateTime;
 
 
-public class AdditionalData {
+/**
+ * Implements the AdditionalData class 4.2.4.6 of RFC4765
+ * 
+ * Values of the BOOLEAN, BYTE, CHARACTER, INTEGER and REAL types are held unboxed, and
+ * BYTE_STRING values as a byte[]; read them with getBoolean(), getByte(), getChar(), getInt(),
+ * getDouble() and getBytes(). An NTPSTAMP is checked and held as the 64 bit stamp, read with
+ * getNtpStamp() (see NtpStamp). The other types are held as objects: getString(), getDateTime(),
+ * and getPortSet() for a PORTLIST. getData() still returns every type as an Object, boxing on
+ * each call.
+ */
+public class AdditionalData
+implements Fingerprinted, Formatted {
 	private Type adType;
+	/**
+	 * The value of a BOOLEAN (0 or 1), BYTE, CHARACTER, INTEGER or NTPSTAMP, or the bits of a REAL
+	 */
+	private long value;
+	/**
+	 * The value of any other type: String, DateTime, PortSet or byte[]
+	 */
 	private Object data;
 	private String meaning;
+	private volatile long fingerprint;
 
-	public static enum Type {
+	public static enum Type implements CodedEnum {
 		BOOLEAN(0), BYTE(1), CHARACTER(2), DATE_TIME(3), INTEGER(4), NTPSTAMP(5), 
 		PORTLIST(6), REAL(7), STRING(8), BYTE_STRING(9), XMLTEXT(10);
 
@@ -53,14 +75,15 @@ public class AdditionalData {
 	 * <li>CHARACTER: a java Character object
 	 * <li>DATE_TIME: a JodaTime DateTime object
 	 * <li>INTEGER: a java Integer object
-	 * <li>NTPSTAMP: a String (in this release, this is not tested for NTP
-	 * compliance)
-	 * <li>PORTLIST: an array of Integer objects
+	 * <li>NTPSTAMP: a String in the form "0xbc71f4f5.0xef449129"
+	 * <li>PORTLIST: a PortSet, or an array of Integer objects
 	 * <li>REAL: a java Double object
 	 * <li>STRING: a java String object
-	 * <li>BYTE_STRING: an array of Byte objects
+	 * <li>BYTE_STRING: a byte[] (not copied), or an array of Byte objects
 	 * <li>XMLTEXT: a java String object
 	 * 
+	 * The primitive types are unboxed here; the typed constructors below take them unboxed.
+	 * 
 	 * @param adType
 	 *            REQUIRED data type
 	 * @param data
@@ -82,46 +105,183 @@ public class AdditionalData {
 			throw new IllegalArgumentException(
 					"Cannot instantiate AdditionalData: both adType and data are required");
 
-		// test data types for consistency
-		if ((adType == Type.BOOLEAN) && (!(data instanceof Boolean)))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: BOOLEAN adType requires Boolean data object");
-		else if ((adType == Type.BYTE) && (!(data instanceof Byte)))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: BYTE adType requires Byte data object");
-		else if ((adType == Type.CHARACTER) && (!(data instanceof Character)))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: CHARACTER adType requires Character data object");
-		else if ((adType == Type.DATE_TIME) && (!(data instanceof DateTime)))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: DATE_TIME adType requires Joda DateTime data object");
-		else if ((adType == Type.INTEGER) && (!(data instanceof Integer)))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: INTEGER adType requires Integer data object");
-		else if ((adType == Type.NTPSTAMP) && (!(data instanceof String)))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: NTPSTAMP adType requires String data object (NTP formatting is not checked");
-		else if ((adType == Type.PORTLIST) && (!(data instanceof Integer[])))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: PORTLIST adType requires Integer[] data object");
-		else if ((adType == Type.REAL) && (!(data instanceof Double)))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: REAL adType requires Double data object");
-		else if ((adType == Type.STRING) && (!(data instanceof String)))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: STRING adType requires String data object");
-		else if ((adType == Type.BYTE_STRING) && (!(data instanceof Byte[])))
-			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: BYTE_STRING adType requires Byte[] data object");
-		else if ((adType == Type.XMLTEXT) && (!(data instanceof String)))
+		// test data types for consistency, and unbox the primitive ones
+		boolean ok;
+		switch (adType) {
+		case BOOLEAN:
+			if (ok = (data instanceof Boolean))
+				this.value = ((Boolean) data).booleanValue() ? 1 : 0;
+			break;
+		case BYTE:
+			if (ok = (data instanceof Byte))
+				this.value = ((Byte) data).byteValue();
+			break;
+		case CHARACTER:
+			if (ok = (data instanceof Character))
+				this.value = ((Character) data).charValue();
+			break;
+		case INTEGER:
+			if (ok = (data instanceof Integer))
+				this.value = ((Integer) data).intValue();
+			break;
+		case REAL:
+			if (ok = (data instanceof Double))
+				this.value = Double.doubleToRawLongBits(((Double) data).doubleValue());
+			break;
+		case DATE_TIME:
+			ok = (data instanceof DateTime);
+			this.data = data;
+			break;
+		case NTPSTAMP:
+			if (ok = (data instanceof String))
+				try {
+					this.value = NtpStamp.parse((String) data);
+				}
+				catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(
+							"Cannot instantiate AdditionalData: "+e.getMessage());
+				}
+			break;
+		case PORTLIST:
+			if (data instanceof Integer[]) {
+				Integer[] boxed = (Integer[]) data;
+				int[] ports = new int[boxed.length];
+				for (int i = 0; i < ports.length; i++)
+					ports[i] = boxed[i].intValue();
+				data = new PortSet(ports);
+			}
+			ok = (data instanceof PortSet);
+			this.data = data;
+			break;
+		case BYTE_STRING:
+			if (data instanceof Byte[]) {
+				Byte[] boxed = (Byte[]) data;
+				byte[] bytes = new byte[boxed.length];
+				for (int i = 0; i < bytes.length; i++)
+					bytes[i] = boxed[i].byteValue();
+				data = bytes;
+			}
+			ok = (data instanceof byte[]);
+			this.data = data;
+			break;
+		default:
+			// STRING, XMLTEXT
+			ok = (data instanceof String);
+			this.data = data;
+		}
+		if (! ok)
 			throw new IllegalArgumentException(
-					"Cannot instantiate AdditionalData: XMLTEXT adType requires String data object");
+					"Cannot instantiate AdditionalData: "+adType+" adType requires "+typeName(adType)+" data object");
 
 		this.adType = adType;
+		this.meaning = meaning;
+	}
+
+	/**
+	 * A BOOLEAN AdditionalData
+	 */
+	public AdditionalData(boolean data, String meaning) {
+		this(Type.BOOLEAN, data ? 1 : 0, meaning);
+	}
+
+	/**
+	 * A BYTE AdditionalData
+	 */
+	public AdditionalData(byte data, String meaning) {
+		this(Type.BYTE, data, meaning);
+	}
+
+	/**
+	 * A CHARACTER AdditionalData
+	 */
+	public AdditionalData(char data, String meaning) {
+		this(Type.CHARACTER, data, meaning);
+	}
+
+	/**
+	 * An INTEGER AdditionalData
+	 */
+	public AdditionalData(int data, String meaning) {
+		this(Type.INTEGER, data, meaning);
+	}
+
+	/**
+	 * A REAL AdditionalData
+	 */
+	public AdditionalData(double data, String meaning) {
+		this(Type.REAL, Double.doubleToRawLongBits(data), meaning);
+	}
+
+	/**
+	 * A BYTE_STRING AdditionalData
+	 * 
+	 * @param data REQUIRED the bytes, which are not copied
+	 * @throws IllegalArgumentException if data is null
+	 */
+	public AdditionalData(byte[] data, String meaning)
+	throws IllegalArgumentException {
+		if (data == null)
+			throw new IllegalArgumentException(
+					"Cannot instantiate AdditionalData: both adType and data are required");
+		this.adType = Type.BYTE_STRING;
 		this.data = data;
 		this.meaning = meaning;
 	}
 
+	/**
+	 * A PORTLIST AdditionalData
+	 * 
+	 * @param data REQUIRED the ports
+	 * @throws IllegalArgumentException if data is null
+	 */
+	public AdditionalData(PortSet data, String meaning)
+	throws IllegalArgumentException {
+		this(Type.PORTLIST, (Object) data, meaning);
+	}
+
+	/**
+	 * A copy of an AdditionalData with another meaning
+	 * 
+	 * @param ad REQUIRED the AdditionalData whose type and data are copied
+	 * @param meaning optional meaning of the copy
+	 */
+	public AdditionalData(AdditionalData ad, String meaning) {
+		this.adType = ad.adType;
+		this.value = ad.value;
+		this.data = ad.data;
+		this.meaning = meaning;
+	}
+
+	/**
+	 * An NTPSTAMP AdditionalData
+	 * 
+	 * @param stamp the 64 bit NTP timestamp, as made by NtpStamp
+	 * @param meaning optional meaning of the element content
+	 */
+	public static AdditionalData ntpStamp(long stamp, String meaning) {
+		return new AdditionalData(Type.NTPSTAMP, stamp, meaning);
+	}
+
+	private AdditionalData(Type adType, long value, String meaning) {
+		this.adType = adType;
+		this.value = value;
+		this.meaning = meaning;
+	}
+
+	private static String typeName(Type adType) {
+		switch (adType) {
+		case BOOLEAN:		return "Boolean";
+		case BYTE:			return "Byte";
+		case CHARACTER:		return "Character";
+		case DATE_TIME:		return "Joda DateTime";
+		case INTEGER:		return "Integer";
+		case PORTLIST:		return "PortSet or Integer[]";
+		case REAL:			return "Double";
+		case BYTE_STRING:	return "byte[] or Byte[]";
+		default:			return "String";
+		}
+	}
+
 	/**
 	 * @return the adType
 	 */
@@ -137,10 +297,158 @@ public class AdditionalData {
 	}
 
 	/**
-	 * @return the data
+	 * @return the data, as the type of object the adType requires in the constructor (boxed
+	 * afresh on each call for the primitive types, a Byte[] for BYTE_STRING, an Integer[]
+	 * for PORTLIST and a String formatted on each call for NTPSTAMP)
 	 */
 	public Object getData() {
-		return data;
+		switch (adType) {
+		case BOOLEAN:
+			return Boolean.valueOf(value != 0);
+		case BYTE:
+			return Byte.valueOf((byte) value);
+		case CHARACTER:
+			return Character.valueOf((char) value);
+		case INTEGER:
+			return Integer.valueOf((int) value);
+		case REAL:
+			return Double.valueOf(Double.longBitsToDouble(value));
+		case BYTE_STRING:
+			byte[] bytes = (byte[]) data;
+			Byte[] boxed = new Byte[bytes.length];
+			for (int i = 0; i < bytes.length; i++)
+				boxed[i] = Byte.valueOf(bytes[i]);
+			return boxed;
+		case PORTLIST:
+			int[] ports = ((PortSet) data).toArray();
+			Integer[] boxedPorts = new Integer[ports.length];
+			for (int i = 0; i < ports.length; i++)
+				boxedPorts[i] = Integer.valueOf(ports[i]);
+			return boxedPorts;
+		case NTPSTAMP:
+			return NtpStamp.toString(value);
+		default:
+			return data;
+		}
+	}
+
+	/**
+	 * @return the value of a BOOLEAN
+	 * @throws IllegalStateException if the adType is not BOOLEAN
+	 */
+	public boolean getBoolean()
+	throws IllegalStateException {
+		check(Type.BOOLEAN);
+		return value != 0;
+	}
+
+	/**
+	 * @return the value of a BYTE
+	 * @throws IllegalStateException if the adType is not BYTE
+	 */
+	public byte getByte()
+	throws IllegalStateException {
+		check(Type.BYTE);
+		return (byte) value;
+	}
+
+	/**
+	 * @return the value of a CHARACTER
+	 * @throws IllegalStateException if the adType is not CHARACTER
+	 */
+	public char getChar()
+	throws IllegalStateException {
+		check(Type.CHARACTER);
+		return (char) value;
+	}
+
+	/**
+	 * @return the value of an INTEGER
+	 * @throws IllegalStateException if the adType is not INTEGER
+	 */
+	public int getInt()
+	throws IllegalStateException {
+		check(Type.INTEGER);
+		return (int) value;
+	}
+
+	/**
+	 * @return the value of a REAL
+	 * @throws IllegalStateException if the adType is not REAL
+	 */
+	public double getDouble()
+	throws IllegalStateException {
+		check(Type.REAL);
+		return Double.longBitsToDouble(value);
+	}
+
+	/**
+	 * @return the value of a BYTE_STRING: the array itself, not a copy
+	 * @throws IllegalStateException if the adType is not BYTE_STRING
+	 */
+	public byte[] getBytes()
+	throws IllegalStateException {
+		check(Type.BYTE_STRING);
+		return (byte[]) data;
+	}
+
+	/**
+	 * @return the value of a BYTE_STRING, as a read-only buffer over the array
+	 * @throws IllegalStateException if the adType is not BYTE_STRING
+	 */
+	public ByteBuffer getByteBuffer()
+	throws IllegalStateException {
+		return ByteBuffer.wrap(getBytes()).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return the value of an NTPSTAMP
+	 * @throws IllegalStateException if the adType is not NTPSTAMP
+	 */
+	public long getNtpStamp()
+	throws IllegalStateException {
+		check(Type.NTPSTAMP);
+		return value;
+	}
+
+	/**
+	 * @return the value of a STRING or XMLTEXT, or the text form of an NTPSTAMP, formatted on
+	 * each call
+	 * @throws IllegalStateException if the adType is not one of those
+	 */
+	public String getString()
+	throws IllegalStateException {
+		if (adType == Type.NTPSTAMP)
+			return NtpStamp.toString(value);
+		if (! (data instanceof String))
+			throw new IllegalStateException("AdditionalData of type "+adType+" is not a string");
+		return (String) data;
+	}
+
+	/**
+	 * @return the value of a PORTLIST
+	 * @throws IllegalStateException if the adType is not PORTLIST
+	 */
+	public PortSet getPortSet()
+	throws IllegalStateException {
+		check(Type.PORTLIST);
+		return (PortSet) data;
+	}
+
+	/**
+	 * @return the value of a DATE_TIME
+	 * @throws IllegalStateException if the adType is not DATE_TIME
+	 */
+	public DateTime getDateTime()
+	throws IllegalStateException {
+		check(Type.DATE_TIME);
+		return (DateTime) data;
+	}
+
+	private void check(Type expected)
+	throws IllegalStateException {
+		if (adType != expected)
+			throw new IllegalStateException("AdditionalData of type "+adType+" is not "+expected);
 	}
 
 	/**
@@ -152,41 +460,89 @@ public class AdditionalData {
 
 	
 	
-	public String toString() {
-		String result ="\n\r[AdditionalData] adType="+adType+" meaning="+meaning+" data=";
-		
-		if (data == null)
-			result += "null";
-		else if (adType == Type.BOOLEAN)
-			result += (Boolean) data;	
-		else if (adType == Type.BYTE)
-			result += (Byte) data;	
-		else if (adType == Type.CHARACTER)
-			result += (Character) data;	
-		else if (adType == Type.DATE_TIME)
-			result += (DateTime) data;	
-		else if (adType == Type.INTEGER)
-			result += (Integer) data;	
-		else if (adType == Type.NTPSTAMP)
-			result += (String) data;
-		else if (adType == Type.PORTLIST) {
-			Integer[] ia = (Integer[]) data;
-			for (int i = 0; i< ia.length; i++)
-				result += i+":"+ia[i]+" ";
+	/**
+	 * @return a 64 bit hash of the content of the AdditionalData, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, adType);
+			h = Fingerprints.mix(h, value);
+			h = Fingerprints.mix(h, data);
+			h = Fingerprints.mix(h, meaning);
+			fingerprint = f = Fingerprints.finish(h);
 		}
-		else if (adType == Type.REAL)
-			result += (Double) data;
-		else if (adType == Type.STRING)
-			result += (String) data;	
-		else if (adType == Type.BYTE_STRING) {
-			Byte[] ba = (Byte[]) data;
-			for (int i = 0; i< ba.length; i++)
-				result += i+":"+ba[i]+" ";
+		return f;
+	}
+
+	/**
+	 * AdditionalDatas are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		AdditionalData x = (AdditionalData) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(adType, x.adType) && (value == x.value) && Fingerprints.eq(data, x.data)
+			&& Fingerprints.eq(meaning, x.meaning);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "AdditionalData", compact);
+		Formats.field(out, compact, "adType", adType);
+		Formats.field(out, compact, "meaning", meaning);
+		out.append(" data=");
+		switch (adType) {
+		case BOOLEAN:
+			out.append((value != 0) ? "true" : "false");
+			break;
+		case BYTE:
+		case INTEGER:
+			Formats.appendLong(out, value);
+			break;
+		case CHARACTER:
+			out.append((char) value);
+			break;
+		case REAL:
+			out.append(Double.toString(Double.longBitsToDouble(value)));
+			break;
+		case BYTE_STRING:
+			byte[] ba = (byte[]) data;
+			for (int i = 0; i < ba.length; i++) {
+				if (i > 0)
+					out.append(' ');
+				Formats.appendLong(out, i);
+				out.append(':');
+				Formats.appendLong(out, ba[i]);
+			}
+			break;
+		case NTPSTAMP:
+			NtpStamp.append(out, value);
+			break;
+		case DATE_TIME:
+			DateTime dt = (DateTime) data;
+			Formats.appendDateTime(out, dt.getMillis(), dt.getZone().getOffset(dt.getMillis()));
+			break;
+		case PORTLIST:
+			((PortSet) data).formatTo(out, compact);
+			break;
+		default:
+			out.append((String) data);
 		}
-		else if (adType == Type.XMLTEXT)
-			result += (String) data;
+		Formats.close(out, compact);
+	}
 
-		return result;
+	public String toString() {
+		return Formats.toString(this, false);
 	}
 
 }
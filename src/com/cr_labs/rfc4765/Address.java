@@ -21,28 +21,32 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.net.NetworkInterface;
 import java.net.UnknownHostException;
 
 /**
  * Implements 4.2.7.2.1 of RFC4765, the address class, with some local
  * interpretation to overcome ambiguities in the spec. In particular, the
- * passed-in address may be any of the valid types and may also be a host name
- * that this class will attempt to resolve via DNS and then the numeric address
- * will be stored in the class in addition to the originally provided 'address'
- * value (the host name)
+ * passed-in address may be any of the valid types and may also be a host name.
  * <p>
- * Valid args that resolve to an IP address include:<br />
- * <li>host.name.tlc
+ * Valid args for the IPV4_* and IPV6_* categories include:<br />
  * <li>www.xxx.yyy.zzz
  * <li>www.xxx.yyy.zzz/netmask
  * <li>ipv6 address
  * <li>ipv6 address/netmask
+ * <li>ipv6 address%zone, with an RFC4007 zone ID (interface name or number), kept as text
+ * <li>0x followed by 8 (IPV4_ADDR_HEX) or 32 (IPV6_ADDR_HEX) hex digits
  * <li>per the RFC, the netmask may be in either /xx or /aaa.bbb.ccc.eee format
+ * <li>host.name.tlc
  * 
  * <p>
- * NB: The netmask is not presently tested for valid form, it is merely captured
- * and stored as presented.
+ * Literal addresses and netmasks are parsed in memory, and never touch the resolver. A host
+ * name is looked up via DNS (blocking the caller) if the Address is constructed with
+ * resolveNames set, as it is by default; otherwise it is kept as it is, unresolved, and can be
+ * resolved later and off the caller's thread with RFC4765Resolver.
  * 
  * <p>
  * <strong>Non-RFC extensions to the class:</strong><br />
@@ -66,17 +70,46 @@ import java.net.UnknownHostException;
  * @author jim
  * 
  */
-public class Address {
+public class Address
+implements Fingerprinted, Formatted {
 
 	private String		ident;
 	private Category	category;
 	private String 		vlanName;
 	private String		vlanNum;
+	/**
+	 * The address text; null for a literal IP address, which is kept in high and low instead
+	 */
 	private String		address;
+	/**
+	 * The netmask text; null if there is none, or if it is kept in prefix instead
+	 */
 	private String		netmask;
+	/**
+	 * What a host name resolved to; null for a literal IP address, whose InetAddress is made on demand
+	 */
 	private InetAddress	inetAddress;
+	/**
+	 * A literal IPv6 address as two 64 bit halves, or a literal IPv4 address in the low 32 bits of low
+	 */
+	private long		high;
+	private long		low;
+	/**
+	 * FAMILY_IPV4 or FAMILY_IPV6 for a literal IP address, otherwise FAMILY_NONE
+	 */
+	private byte		family;
+	/**
+	 * The netmask as a prefix length, or -1
+	 */
+	private short		prefix = -1;
+	private boolean		hostName;
+	private volatile long	fingerprint;
+
+	private static final byte FAMILY_NONE = 0;
+	private static final byte FAMILY_IPV4 = 4;
+	private static final byte FAMILY_IPV6 = 6;
 
-	public static enum Category {
+	public static enum Category implements CodedEnum {
 		UNKNOWN (0),
 		ATM (1),
 		EMAIL (2),
@@ -106,20 +139,38 @@ public class Address {
 
 	/**
 	 * Instantiate an address object and set its values.
-	 * If the value passed in is a host name and the category indicates and IPV4 or IPV6 address, the name or number
-	 * will be resolved to an address and the value stored in the object. If a host name cannot be resolved,
-	 * an IllegalArgumentException is thrown. Note that the netmask part is NOT CHECKED for validity in this release
-	 * in the case of an address/netmask.
+	 * If the value passed in is a host name and the category indicates an IPV4 or IPV6 address, the name
+	 * will be resolved to an address (blocking on DNS) and the value stored in the object. If a host name cannot be resolved,
+	 * an IllegalArgumentException is thrown. Literal addresses are parsed without the resolver.
 	 * 
 	 * @param ident optional:. if null, the ident will be set to the RFC-default of "0"
 	 * @param address required per the RFC (and EXPANDING on it), this may be a host name, an IP address, IP address/netmask, or other permitted type. If category is an ipv4 or v6 address, it is looked up and saved in the object
 	 * @param category optional type of address represented. if null, this will be set to the RFC-defined default UNKNOWN
 	 * @param vlanName optional name of the Virtual LAN to which the address belongs or null if not reporting this
 	 * @param vlanNum optional number of the Virtual LAN to which the address belongs or null if not reporting this
-x	 * 
+	 * 
 	 * @throws IllegalArgumentException if 'address' is not provided, or if 'category' indicates an ipv4 or ipv6 address, but 'address' is not a valid address or if an address/netmask combo cannot be parsed as expected
 	 */
 	public Address(String ident, String address, Category category, String vlanName, String vlanNum)
+	throws IllegalArgumentException {
+		this(ident, address, category, vlanName, vlanNum, true);
+	}
+
+	/**
+	 * Instantiate an address object and set its values, choosing whether host names are resolved.
+	 * 
+	 * @param ident optional:. if null, the ident will be set to the RFC-default of "0"
+	 * @param address required per the RFC (and EXPANDING on it), this may be a host name, an IP address, IP address/netmask, or other permitted type
+	 * @param category optional type of address represented. if null, this will be set to the RFC-defined default UNKNOWN
+	 * @param vlanName optional name of the Virtual LAN to which the address belongs or null if not reporting this
+	 * @param vlanNum optional number of the Virtual LAN to which the address belongs or null if not reporting this
+	 * @param resolveNames true to look up a host name given for an IPV4 or IPV6 category, blocking on DNS;
+	 * false to keep it unresolved, so that getInetAddress() returns null until it is resolved with RFC4765Resolver
+	 * 
+	 * @throws IllegalArgumentException if 'address' is not provided, or if 'category' indicates an ipv4 or ipv6 address, but 'address' is
+	 * neither a valid literal nor a host name (or, with resolveNames set, a host name that cannot be resolved), or if the netmask is malformed
+	 */
+	public Address(String ident, String address, Category category, String vlanName, String vlanNum, boolean resolveNames)
 	throws IllegalArgumentException {
 		if (address == null)
 			throw new IllegalArgumentException("Cannot instantiate Address: 'address' is required by the RFC");
@@ -140,43 +191,245 @@ x	 *
 		// init address to default value ( then overwrite below in the case of an address/netmask ), and set netmask and inetAddress to null as they are only filled if appropriate
 		this.address = address.trim();
 		this.netmask = null;
-		this.inetAddress = null; // is only set if _address is a host name or ip address, null otherwise
+		this.inetAddress = null; // is only set if _address is a host name, null otherwise
 
-		// if this is an address or host name, try to look it up via Java's java.net.getByName() method, which accepts either string-versions of addresses, or host names
-		// if the presented address cannot be encoded, then an exception will be thrown and we can reject the proffered address through our own exception
-		switch (category) {
+		switch (this.category) {
 		// if it's an address + netmask (separated by a slash), parse them apart
 		case IPV4_NET:
 		case IPV4_NET_MASK:
 		case IPV6_NET:
 		case IPV6_NET_MASK:
-			String[] splitAddress = address.split("/");
-			if (splitAddress.length != 2)
-				throw new IllegalArgumentException("Address+netmask "+address+" could not be converted to "+category);
-			this.address = splitAddress[0];
-			this.netmask = splitAddress[1];
-			// if an address+mask were processed, fall through to convert the address into the inetAddress field
+			int slash = this.address.indexOf('/');
+			if ((slash < 0) || (this.address.indexOf('/', slash + 1) >= 0) || ! parseNetmask(this.address.substring(slash + 1)))
+				throw new IllegalArgumentException("Address+netmask "+address+" could not be converted to "+this.category);
+			this.address = this.address.substring(0, slash);
+			// if an address+mask were processed, fall through to convert the address
 			// if it's an address without a mask, then we switch in at this point and just convert the string address/name to an address
 		case IPV4_ADDR:
 		case IPV4_ADDR_HEX:
 		case IPV6_ADDR:
 		case IPV6_ADDR_HEX:
-			try {
-				this.inetAddress = InetAddress.getByName(this.address);
+			if (parseLiteral(this.address))
+				this.address = null; // rebuilt from high and low on demand
+			else if (! isHexCategory(this.category) && ((this.inetAddress = scopedIPv6(this.address)) != null)) {
+				// kept as text: the numeric form has no room for the zone
 			}
-			catch (UnknownHostException uhe) {
-				throw new IllegalArgumentException("Address "+address+" could not be converted to "+category+" "+uhe.getMessage());
+			else if (resolveNames && ! isHexCategory(this.category)) {
+				// may be a host name, or a literal form that only the JDK knows
+				try {
+					this.inetAddress = InetAddress.getByName(this.address);
+				}
+				catch (UnknownHostException uhe) {
+					throw new IllegalArgumentException("Address "+address+" could not be converted to "+this.category+" "+uhe.getMessage());
+				}
+				this.hostName = isHostName(this.address);
 			}
+			else if (! isHexCategory(this.category) && isHostName(this.address))
+				this.hostName = true;
+			else
+				throw new IllegalArgumentException("Address "+address+" could not be converted to "+this.category);
+			break;
+		default:
+		}
+	}
+
+	private Address() {
+	}
+
+	/**
+	 * An address of an IPV4_* or IPV6_* category holding a literal IPv4 address, made from its
+	 * numeric form (as RFC4765BinaryReader reads it) without parsing or building any text.
+	 *
+	 * @param ident optional: if null, the ident will be set to the RFC-default of "0"
+	 * @param category REQUIRED one of the IPV4_* and IPV6_* categories, other than IPV6_ADDR_HEX
+	 * @param ipv4 the address, most significant byte first, as getIPv4() returns it
+	 * @param prefixLength the netmask as a prefix length, or -1, as getPrefixLength() returns it
+	 * @param netmask a netmask that is not a prefix length, as getNetmask() returns it, or null
+	 * @param vlanName optional name of the Virtual LAN to which the address belongs
+	 * @param vlanNum optional number of the Virtual LAN to which the address belongs
+	 * @throws IllegalArgumentException if the category is not one of those, or the netmask does not fit it
+	 */
+	public static Address fromIPv4(String ident, Category category, int ipv4, int prefixLength, String netmask,
+			String vlanName, String vlanNum)
+	throws IllegalArgumentException {
+		if (category == Category.IPV6_ADDR_HEX)
+			throw new IllegalArgumentException("Cannot instantiate Address: an IPv4 address is not of category "+category);
+		return numeric(ident, category, FAMILY_IPV4, 0, ipv4 & 0xffffffffL, prefixLength, netmask, vlanName, vlanNum);
+	}
+
+	/**
+	 * An address of an IPV4_* or IPV6_* category holding a literal IPv6 address, made from its
+	 * numeric form (as RFC4765BinaryReader reads it) without parsing or building any text.
+	 *
+	 * @param ident optional: if null, the ident will be set to the RFC-default of "0"
+	 * @param category REQUIRED one of the IPV4_* and IPV6_* categories, other than IPV4_ADDR_HEX
+	 * @param high the first 64 bits of the address, as getIPv6High() returns them
+	 * @param low the last 64 bits of the address, as getIPv6Low() returns them
+	 * @param prefixLength the netmask as a prefix length, or -1, as getPrefixLength() returns it
+	 * @param netmask a netmask that is not a prefix length, as getNetmask() returns it, or null
+	 * @param vlanName optional name of the Virtual LAN to which the address belongs
+	 * @param vlanNum optional number of the Virtual LAN to which the address belongs
+	 * @throws IllegalArgumentException if the category is not one of those, or the netmask does not fit it
+	 */
+	public static Address fromIPv6(String ident, Category category, long high, long low, int prefixLength, String netmask,
+			String vlanName, String vlanNum)
+	throws IllegalArgumentException {
+		if (category == Category.IPV4_ADDR_HEX)
+			throw new IllegalArgumentException("Cannot instantiate Address: an IPv6 address is not of category "+category);
+		return numeric(ident, category, FAMILY_IPV6, high, low, prefixLength, netmask, vlanName, vlanNum);
+	}
+
+	private static Address numeric(String ident, Category category, byte family, long high, long low, int prefixLength,
+			String netmask, String vlanName, String vlanNum)
+	throws IllegalArgumentException {
+		if (category == null)
+			throw new IllegalArgumentException("Cannot instantiate Address: 'category' is required for a numeric address");
+		boolean net;
+		int max;
+		switch (category) {
+		case IPV4_ADDR:
+		case IPV4_ADDR_HEX:
+		case IPV6_ADDR:
+		case IPV6_ADDR_HEX:
+			net = false;
+			max = -1;
+			break;
+		case IPV4_NET:
+		case IPV4_NET_MASK:
+			net = true;
+			max = 32;
+			break;
+		case IPV6_NET:
+		case IPV6_NET_MASK:
+			net = true;
+			max = 128;
 			break;
 		default:
+			throw new IllegalArgumentException("Cannot instantiate Address: a numeric address is not of category "+category);
 		}
+		Address a = new Address();
+		a.ident = (ident == null) ? "0" : ident;
+		a.category = category;
+		a.vlanName = vlanName;
+		a.vlanNum = vlanNum;
+		a.family = family;
+		a.high = high;
+		a.low = low;
+		if ((prefixLength < -1) || (prefixLength > max) || (net && (prefixLength < 0) && ((netmask == null) || ! a.parseNetmask(netmask)))
+				|| ((prefixLength >= 0) && (netmask != null)) || (! net && (netmask != null)))
+			throw new IllegalArgumentException("Cannot instantiate Address: netmask "+((netmask == null) ? prefixLength : netmask)
+					+" does not fit category "+category);
+		if (prefixLength >= 0)
+			a.prefix = (short) prefixLength;
+		return a;
+	}
+
+	/**
+	 * A copy of an Address whose host name has been resolved elsewhere (see RFC4765Resolver)
+	 * 
+	 * @param address REQUIRED the Address holding the host name
+	 * @param inetAddress REQUIRED what the name resolved to
+	 * @throws IllegalArgumentException if either argument is null
+	 */
+	public Address(Address address, InetAddress inetAddress)
+	throws IllegalArgumentException {
+		if ((address == null) || (inetAddress == null))
+			throw new IllegalArgumentException("Cannot instantiate Address: 'address' and 'inetAddress' are required");
+		this.ident = address.ident;
+		this.category = address.category;
+		this.vlanName = address.vlanName;
+		this.vlanNum = address.vlanNum;
+		this.address = address.address;
+		this.netmask = address.netmask;
+		this.inetAddress = inetAddress;
+		this.high = address.high;
+		this.low = address.low;
+		this.family = address.family;
+		this.prefix = address.prefix;
+		this.hostName = address.hostName;
 	}
 
 	/**
-	 * @return the string version of the address (could be an IP address or something else) or null if none was set
+	 * @return the string version of the address (could be an IP address or something else) or null if none was set.
+	 * A literal IP address is written out afresh on each call, in the form of the category (dotted quad,
+	 * RFC5952 IPv6 text, or 0x and upper case hex digits).
 	 */
 	public String getAddress() {
-		return address;
+		if (family == FAMILY_NONE)
+			return address;
+		StringBuilder sb = new StringBuilder(isHexCategory(category) ? 34 : 39);
+		try {
+			appendAddress(sb);
+		}
+		catch (IOException e) {
+			// StringBuilder doesn't throw it
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Append the address as getAddress() returns it, without making a String for a literal address
+	 *
+	 * @throws IOException if out does
+	 */
+	public void appendAddress(Appendable out)
+	throws IOException {
+		if (family == FAMILY_NONE) {
+			out.append(address);
+			return;
+		}
+		if (category == Category.IPV4_ADDR_HEX)
+			appendHex(out.append("0x"), low, 8);
+		else if (category == Category.IPV6_ADDR_HEX) {
+			appendHex(out.append("0x"), high, 16);
+			appendHex(out, low, 16);
+		}
+		else if (family == FAMILY_IPV4)
+			appendIPv4(out, (int) low);
+		else
+			appendIPv6(out, high, low);
+	}
+
+	/**
+	 * @return true if the address is a literal IPv4 address, held as getIPv4()
+	 */
+	public boolean isIPv4() {
+		return family == FAMILY_IPV4;
+	}
+
+	/**
+	 * @return true if the address is a literal IPv6 address, held as getIPv6High() and getIPv6Low()
+	 */
+	public boolean isIPv6() {
+		return family == FAMILY_IPV6;
+	}
+
+	/**
+	 * @return the literal IPv4 address, most significant byte first, or 0 if isIPv4() is false
+	 */
+	public int getIPv4() {
+		return (family == FAMILY_IPV4) ? (int) low : 0;
+	}
+
+	/**
+	 * @return the first 64 bits of the literal IPv6 address, or 0 if isIPv6() is false
+	 */
+	public long getIPv6High() {
+		return (family == FAMILY_IPV6) ? high : 0;
+	}
+
+	/**
+	 * @return the last 64 bits of the literal IPv6 address, or 0 if isIPv6() is false
+	 */
+	public long getIPv6Low() {
+		return (family == FAMILY_IPV6) ? low : 0;
+	}
+
+	/**
+	 * @return the netmask as a prefix length, or -1 if there is no netmask or it is not a contiguous mask
+	 */
+	public int getPrefixLength() {
+		return prefix;
 	}
 
 	/**
@@ -220,17 +473,76 @@ x	 *
 	}
 
 	/**
-	 * @return the inetAddress if the address is an IPV4 or IPV6 address, otherwise return null
+	 * @return the inetAddress if the address is an IPV4 or IPV6 address, otherwise return null. Also null
+	 * for a host name that has not been resolved. For a literal address, a new InetAddress is made
+	 * (without the resolver) on each call.
 	 */
 	public InetAddress getInetAddress() {
-		return inetAddress;
+		if (family == FAMILY_NONE)
+			return inetAddress;
+		byte[] b;
+		if (family == FAMILY_IPV4)
+			b = new byte[] { (byte) (low >>> 24), (byte) (low >>> 16), (byte) (low >>> 8), (byte) low };
+		else {
+			b = new byte[16];
+			for (int i = 0; i < 8; i++) {
+				b[i] = (byte) (high >>> (56 - i * 8));
+				b[i + 8] = (byte) (low >>> (56 - i * 8));
+			}
+		}
+		try {
+			return InetAddress.getByAddress(b);
+		}
+		catch (UnknownHostException uhe) {
+			// not reached: getByAddress only rejects arrays that are not 4 or 16 bytes long
+			throw new IllegalStateException(uhe.getMessage());
+		}
 	}
 
 	/**
-	 * @return the netmask if one was set, or null if none was set
+	 * @return true if the address of an IPV4 or IPV6 category is a host name rather than a literal
+	 * address, whether or not it has been resolved
+	 */
+	public boolean isHostName() {
+		return hostName;
+	}
+
+	/**
+	 * @return the netmask if one was set, or null if none was set. A netmask held as a prefix length
+	 * is written out afresh on each call, as a number (IPV4_NET, IPV6_NET) or a mask address.
 	 */
 	public String getNetmask() {
-		return netmask;
+		if (prefix < 0)
+			return netmask;
+		if ((category == Category.IPV4_NET) || (category == Category.IPV6_NET))
+			return Integer.toString(prefix);
+		StringBuilder sb = new StringBuilder(39);
+		try {
+			appendNetmask(sb);
+		}
+		catch (IOException e) {
+			// StringBuilder doesn't throw it
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Append the netmask as getNetmask() returns it; nothing if there is none
+	 *
+	 * @throws IOException if out does
+	 */
+	public void appendNetmask(Appendable out)
+	throws IOException {
+		if (prefix < 0) {
+			if (netmask != null)
+				out.append(netmask);
+		}
+		else if ((category == Category.IPV4_NET) || (category == Category.IPV6_NET))
+			Formats.appendLong(out, prefix);
+		else if (category == Category.IPV4_NET_MASK)
+			appendIPv4(out, (int) maskHigh(prefix + 32));
+		else
+			appendIPv6(out, maskHigh(prefix), maskHigh(prefix - 64));
 	}
 
 	/**
@@ -248,18 +560,464 @@ x	 *
 	}
 
 
+	/**
+	 * Parse a literal address in memory, without the resolver, into high, low and family.
+	 * IPV4_ADDR_HEX and IPV6_ADDR_HEX take "0x" and 8 or 32 hex digits; the other IP categories
+	 * take dotted-quad IPv4 or RFC4291 IPv6 text (either, as InetAddress.getByName() did).
+	 * 
+	 * @return false if text is not a literal of that form
+	 */
+	private boolean parseLiteral(String text) {
+		if (category == Category.IPV4_ADDR_HEX) {
+			if (! isHex(text, 8))
+				return false;
+			low = parseHex(text, 2, 10);
+			family = FAMILY_IPV4;
+			return true;
+		}
+		if (category == Category.IPV6_ADDR_HEX) {
+			if (! isHex(text, 32))
+				return false;
+			high = parseHex(text, 2, 18);
+			low = parseHex(text, 18, 34);
+			family = FAMILY_IPV6;
+			return true;
+		}
+		long v4 = parseIPv4(text, 0, text.length());
+		if (v4 >= 0) {
+			low = v4;
+			family = FAMILY_IPV4;
+			return true;
+		}
+		byte[] v6 = parseIPv6(text);
+		if (v6 == null)
+			return false;
+		for (int i = 0; i < 8; i++) {
+			high = (high << 8) | (v6[i] & 0xff);
+			low = (low << 8) | (v6[i + 8] & 0xff);
+		}
+		family = FAMILY_IPV6;
+		return true;
+	}
+
+	/**
+	 * Make the InetAddress of an IPv6 literal with an RFC4007 zone ID, "fe80::1%eth0" or
+	 * "fe80::1%4", without the resolver. A numeric zone is the scope id. A zone naming an
+	 * interface of this host is scoped to it; any other name is most likely an interface of the
+	 * host that sent the address, so the InetAddress has no scope.
+	 *
+	 * @return the address, or null if text is not an IPv6 literal with a zone
+	 */
+	private static InetAddress scopedIPv6(String text) {
+		int percent = text.indexOf('%');
+		if ((percent < 0) || (percent == text.length() - 1))
+			return null;
+		String zone = text.substring(percent + 1);
+		boolean numeric = true;
+		for (int i = 0; i < zone.length(); i++) {
+			char c = zone.charAt(i);
+			if ((c <= ' ') || (c == '%'))
+				return null;
+			numeric &= (c >= '0') && (c <= '9');
+		}
+		byte[] b = parseIPv6(text.substring(0, percent));
+		if (b == null)
+			return null;
+		try {
+			if (numeric)
+				return Inet6Address.getByAddress(null, b, Integer.parseInt(zone));
+			NetworkInterface nif = NetworkInterface.getByName(zone);
+			if (nif != null)
+				return Inet6Address.getByAddress(null, b, nif);
+		}
+		catch (NumberFormatException nfe) {
+			return null;
+		}
+		catch (IOException e) {
+			// the interface has no IPv6 scope here: keep the address unscoped
+		}
+		try {
+			return InetAddress.getByAddress(b);
+		}
+		catch (UnknownHostException uhe) {
+			// not reached: getByAddress only rejects arrays that are not 4 or 16 bytes long
+			return null;
+		}
+	}
+
+	private static boolean isHexCategory(Category category) {
+		return (category == Category.IPV4_ADDR_HEX) || (category == Category.IPV6_ADDR_HEX);
+	}
+
+	/**
+	 * Parse a netmask of the category: a prefix length (IPV4_NET, IPV6_NET) or a mask address
+	 * (IPV4_NET_MASK, IPV6_NET_MASK). A contiguous mask is kept as a prefix length, any other
+	 * as its text.
+	 * 
+	 * @return false if text is not a netmask of the category
+	 */
+	private boolean parseNetmask(String text) {
+		int length;
+		switch (category) {
+		case IPV4_NET:
+			length = parsePrefix(text, 32);
+			break;
+		case IPV6_NET:
+			length = parsePrefix(text, 128);
+			break;
+		case IPV4_NET_MASK:
+			long v4 = parseIPv4(text, 0, text.length());
+			if (v4 < 0)
+				return false;
+			length = prefixOf(v4 << 32, 0);
+			if (length > 32)
+				length = -1;
+			break;
+		default:
+			byte[] v6 = parseIPv6(text);
+			if (v6 == null)
+				return false;
+			long h = 0;
+			long l = 0;
+			for (int i = 0; i < 8; i++) {
+				h = (h << 8) | (v6[i] & 0xff);
+				l = (l << 8) | (v6[i + 8] & 0xff);
+			}
+			length = prefixOf(h, l);
+		}
+		if (length >= 0)
+			prefix = (short) length;
+		else if ((category == Category.IPV4_NET) || (category == Category.IPV6_NET))
+			return false;
+		else
+			netmask = text;
+		return true;
+	}
+
+	/**
+	 * @return the prefix length of a 128 bit mask, or -1 if its one bits are not contiguous from the top
+	 */
+	private static int prefixOf(long high, long low) {
+		int ones = Long.numberOfLeadingZeros(~high);
+		if (ones < 64)
+			return ((high == maskHigh(ones)) && (low == 0)) ? ones : -1;
+		ones = Long.numberOfLeadingZeros(~low);
+		return (low == maskHigh(ones)) ? 64 + ones : -1;
+	}
+
+	/**
+	 * @return a 64 bit mask with the top n bits set (none if n <= 0, all if n >= 64)
+	 */
+	private static long maskHigh(int n) {
+		if (n <= 0)
+			return 0;
+		if (n >= 64)
+			return -1L;
+		return -1L << (64 - n);
+	}
+
+	/**
+	 * @return the decimal prefix length, or -1 if s is not one between 0 and max
+	 */
+	private static int parsePrefix(String s, int max) {
+		if ((s.length() == 0) || (s.length() > 3))
+			return -1;
+		int v = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if ((c < '0') || (c > '9'))
+				return -1;
+			v = v * 10 + (c - '0');
+		}
+		return (v <= max) ? v : -1;
+	}
+
+	/**
+	 * @return the dotted-quad IPv4 address in s[start, end) as an unsigned 32 bit value, or -1 if it is not one
+	 */
+	private static long parseIPv4(String s, int start, int end) {
+		long v = 0;
+		int parts = 0;
+		int value = 0;
+		int digits = 0;
+		for (int i = start; i <= end; i++) {
+			char c = (i < end) ? s.charAt(i) : '.';
+			if ((c >= '0') && (c <= '9')) {
+				value = value * 10 + (c - '0');
+				if ((++digits > 3) || (value > 255))
+					return -1;
+			}
+			else if ((c == '.') && (digits > 0) && (parts < 4)) {
+				v = (v << 8) | value;
+				parts++;
+				value = 0;
+				digits = 0;
+			}
+			else
+				return -1;
+		}
+		return (parts == 4) ? v : -1;
+	}
+
+	/**
+	 * @return the 16 bytes of the IPv6 address in s, in the text forms of RFC4291 section 2.2 (hex
+	 * groups, "::", and a dotted-quad IPv4 tail), or null if it is not one
+	 */
+	private static byte[] parseIPv6(String s) {
+		int len = s.length();
+		if (len < 2)
+			return null;
+		byte[] b = new byte[16];
+		int groups = 0;
+		int gap = -1;
+		int i = 0;
+		if (s.startsWith("::")) {
+			gap = 0;
+			i = 2;
+		}
+		while (i < len) {
+			if (groups == 8)
+				return null;
+			int start = i;
+			int value = 0;
+			int d;
+			while ((i < len) && (i - start < 4) && ((d = Character.digit(s.charAt(i), 16)) >= 0)) {
+				value = (value << 4) | d;
+				i++;
+			}
+			if ((i < len) && (s.charAt(i) == '.')) {
+				// an IPv4 tail stands for the last two groups
+				long v4 = parseIPv4(s, start, len);
+				if ((v4 < 0) || (groups > 6))
+					return null;
+				b[groups * 2] = (byte) (v4 >>> 24);
+				b[groups * 2 + 1] = (byte) (v4 >>> 16);
+				b[groups * 2 + 2] = (byte) (v4 >>> 8);
+				b[groups * 2 + 3] = (byte) v4;
+				groups += 2;
+				break;
+			}
+			if (i == start)
+				return null;
+			b[groups * 2] = (byte) (value >>> 8);
+			b[groups * 2 + 1] = (byte) value;
+			groups++;
+			if (i == len)
+				break;
+			if (s.charAt(i) != ':')
+				return null;
+			i++;
+			if ((i < len) && (s.charAt(i) == ':')) {
+				if (gap >= 0)
+					return null;
+				gap = groups;
+				i++;
+			}
+			else if (i == len)
+				return null;
+		}
+		if (gap < 0)
+			return (groups == 8) ? b : null;
+		if (groups == 8)
+			return null;
+		// move the groups after the "::" to the end, leaving zeros in the gap
+		int tail = (groups - gap) * 2;
+		System.arraycopy(b, gap * 2, b, 16 - tail, tail);
+		for (int j = gap * 2; j < 16 - tail; j++)
+			b[j] = 0;
+		return b;
+	}
+
+	/**
+	 * @return true if s is "0x" followed by the given number of hex digits
+	 */
+	private static boolean isHex(String s, int digits) {
+		if ((s.length() != 2 + digits) || (s.charAt(0) != '0') || ((s.charAt(1) != 'x') && (s.charAt(1) != 'X')))
+			return false;
+		for (int i = 2; i < s.length(); i++)
+			if (Character.digit(s.charAt(i), 16) < 0)
+				return false;
+		return true;
+	}
+
+	/**
+	 * @return the value of the hex digits s[start, end), at most 16 of them
+	 */
+	private static long parseHex(String s, int start, int end) {
+		long v = 0;
+		for (int i = start; i < end; i++)
+			v = (v << 4) | Character.digit(s.charAt(i), 16);
+		return v;
+	}
+
+	private static void appendHex(Appendable out, long v, int digits)
+	throws IOException {
+		for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4)
+			out.append(Character.toUpperCase(Character.forDigit((int) (v >>> shift) & 0xf, 16)));
+	}
+
+	private static void appendIPv4(Appendable out, int v)
+	throws IOException {
+		Formats.appendLong(out, v >>> 24);
+		out.append('.');
+		Formats.appendLong(out, (v >>> 16) & 0xff);
+		out.append('.');
+		Formats.appendLong(out, (v >>> 8) & 0xff);
+		out.append('.');
+		Formats.appendLong(out, v & 0xff);
+	}
+
+	/**
+	 * Append an IPv6 address in the canonical text of RFC5952: lower case hex groups without leading
+	 * zeros, the first longest run of two or more zero groups as "::", and IPv4-mapped addresses
+	 * with a dotted-quad tail
+	 */
+	private static void appendIPv6(Appendable out, long high, long low)
+	throws IOException {
+		if ((high == 0) && ((low >>> 32) == 0xffffL)) {
+			out.append("::ffff:");
+			appendIPv4(out, (int) low);
+			return;
+		}
+		int bestStart = -1;
+		int bestLength = 1;
+		int start = -1;
+		for (int i = 0; i <= 8; i++) {
+			if ((i < 8) && (group(high, low, i) == 0)) {
+				if (start < 0)
+					start = i;
+			}
+			else if (start >= 0) {
+				if (i - start > bestLength) {
+					bestStart = start;
+					bestLength = i - start;
+				}
+				start = -1;
+			}
+		}
+		for (int i = 0; i < 8; i++) {
+			if (i == bestStart) {
+				out.append("::");
+				i += bestLength - 1;
+				continue;
+			}
+			if ((i > 0) && (i != bestStart + bestLength))
+				out.append(':');
+			int g = group(high, low, i);
+			// lower case hex without leading zeros
+			for (int shift = 12; shift >= 0; shift -= 4)
+				if ((g >>> shift != 0) || (shift == 0))
+					out.append(Character.forDigit((g >>> shift) & 0xf, 16));
+		}
+	}
+
+	private static int group(long high, long low, int i) {
+		return (int) (((i < 4) ? high : low) >>> (48 - (i & 3) * 16)) & 0xffff;
+	}
+
+	/**
+	 * @return true if s has the syntax of a DNS host name (RFC1123 labels, allowing '_'), and is
+	 * not all digits and dots, which is taken to be a mistyped IPv4 address
+	 */
+	private static boolean isHostName(String s) {
+		int len = s.length();
+		if ((len == 0) || (len > 254))
+			return false;
+		boolean letter = false;
+		int label = 0;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c == '.') {
+				if ((label == 0) || (s.charAt(i - 1) == '-'))
+					return false;
+				label = 0;
+			}
+			else if (((c >= 'a') && (c <= 'z')) || ((c >= 'A') && (c <= 'Z')) || (c == '_')) {
+				letter = true;
+				label++;
+			}
+			else if (((c >= '0') && (c <= '9')) || ((c == '-') && (label > 0)))
+				label++;
+			else
+				return false;
+			if (label > 63)
+				return false;
+		}
+		return letter;
+	}
+
+
+	/**
+	 * @return a 64 bit hash of the content of the Address, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, category);
+			h = Fingerprints.mix(h, vlanName);
+			h = Fingerprints.mix(h, vlanNum);
+			h = Fingerprints.mix(h, address);
+			h = Fingerprints.mix(h, netmask);
+			h = Fingerprints.mix(h, high);
+			h = Fingerprints.mix(h, low);
+			h = Fingerprints.mix(h, family);
+			h = Fingerprints.mix(h, prefix);
+			h = Fingerprints.mix(h, hostName);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Addresses are equal if all their fields are. What a host name resolved to is not compared,
+	 * so a resolved copy equals the original.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Address x = (Address) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(category, x.category) && Fingerprints.eq(vlanName, x.vlanName)
+			&& Fingerprints.eq(vlanNum, x.vlanNum) && Fingerprints.eq(address, x.address) && Fingerprints.eq(netmask, x.netmask)
+			&& (high == x.high) && (low == x.low) && (family == x.family)
+			&& (prefix == x.prefix) && (hostName == x.hostName);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Address", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "category", category);
+		Formats.field(out, compact, "vlanName", vlanName);
+		Formats.field(out, compact, "vlanNum", vlanNum);
+		if ((family == FAMILY_NONE) && (address == null))
+			Formats.field(out, compact, "address", (CharSequence) null);
+		else {
+			out.append(" address=");
+			appendAddress(out);
+		}
+		if ((prefix < 0) && (netmask == null))
+			Formats.field(out, compact, "netmask", (CharSequence) null);
+		else {
+			out.append(" netmask=");
+			appendNetmask(out);
+		}
+		// a literal address is its own InetAddress; only a resolved host name adds one
+		if (family == FAMILY_NONE)
+			Formats.field(out, compact, "inetAddress", inetAddress);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder result = new StringBuilder();
-
-		result.append("\n\r[Address] ");
-		result.append("ident="+ident);
-		result.append(" category="+category);
-		result.append(" vlanName="+vlanName);
-		result.append(" vlandNum="+vlanNum);
-		result.append(" address="+address);
-		result.append(" netmask="+netmask);
-		result.append(" inetAddress="+inetAddress);
-
-		return result.toString();
+		return Formats.toString(this, false);
 	}
 }
@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 
 
 /**
@@ -28,7 +30,8 @@ Contact: jim@cr-labs.com
  * @version 0.1
  */
 
-public class Analyzer {
+public class Analyzer
+implements Fingerprinted, Formatted {
 	private String analyzerID;
 	private String name;
 	private String manufacturer;
@@ -41,6 +44,7 @@ public class Analyzer {
 	private com.cr_labs.rfc4765.Node node;
 	private com.cr_labs.rfc4765.Process process;
 	private Analyzer originalAnalyzer;
+	private volatile long fingerprint;
 	
 	
 	/**
@@ -155,23 +159,166 @@ public class Analyzer {
 	}
 
 	
+	/**
+	 * @return a 64 bit hash of the content of the Analyzer, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, analyzerID);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, manufacturer);
+			h = Fingerprints.mix(h, model);
+			h = Fingerprints.mix(h, version);
+			h = Fingerprints.mix(h, aclass);
+			h = Fingerprints.mix(h, ostype);
+			h = Fingerprints.mix(h, osversion);
+			h = Fingerprints.mix(h, node);
+			h = Fingerprints.mix(h, process);
+			h = Fingerprints.mix(h, originalAnalyzer);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Analyzers are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Analyzer x = (Analyzer) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(analyzerID, x.analyzerID) && Fingerprints.eq(name, x.name) && Fingerprints.eq(manufacturer, x.manufacturer)
+			&& Fingerprints.eq(model, x.model) && Fingerprints.eq(version, x.version) && Fingerprints.eq(aclass, x.aclass)
+			&& Fingerprints.eq(ostype, x.ostype) && Fingerprints.eq(osversion, x.osversion) && Fingerprints.eq(node, x.node)
+			&& Fingerprints.eq(process, x.process) && Fingerprints.eq(originalAnalyzer, x.originalAnalyzer);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Analyzer", compact);
+		Formats.field(out, compact, "analyzerID", analyzerID);
+		Formats.field(out, compact, "name", name);
+		Formats.field(out, compact, "manufacturer", manufacturer);
+		Formats.field(out, compact, "model", model);
+		Formats.field(out, compact, "version", version);
+		Formats.field(out, compact, "aclass", aclass);
+		Formats.field(out, compact, "ostype", ostype);
+		Formats.field(out, compact, "osversion", osversion);
+		Formats.field(out, compact, "node", node);
+		Formats.field(out, compact, "process", process);
+		Formats.field(out, compact, "originalAnalyzer", originalAnalyzer);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		
-		sb.append("\n\r[Analyzer] ");
-		sb.append("analyzerID="+analyzerID);
-		sb.append(" name="+name);
-		sb.append(" manufacturer="+manufacturer);
-		sb.append(" model="+model);
-		sb.append(" version="+version);
-		sb.append(" aclass="+aclass);
-		sb.append(" ostype="+ostype);
-		sb.append(" osversion="+osversion);
-		sb.append(" node="+node);
-		sb.append(" process="+process);
-		sb.append("original analyzer="+originalAnalyzer);
-		return sb.toString();
+		return Formats.toString(this, false);
+	}
+
+
+	/**
+	 * Builds Analyzers; see IDMEFMessage_Alert.Builder.
+	 */
+	public static class Builder {
+
+		private String analyzerID;
+		private String name;
+		private String manufacturer;
+		private String model;
+		private String version;
+		private String aclass;
+		private String ostype;
+		private String osversion;
+		private Node node;
+		private Process process;
+		private Analyzer originalAnalyzer;
+
+		public Builder analyzerID(String analyzerID) {
+			this.analyzerID = analyzerID;
+			return this;
+		}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder manufacturer(String manufacturer) {
+			this.manufacturer = manufacturer;
+			return this;
+		}
+
+		public Builder model(String model) {
+			this.model = model;
+			return this;
+		}
+
+		public Builder version(String version) {
+			this.version = version;
+			return this;
+		}
+
+		public Builder aclass(String aclass) {
+			this.aclass = aclass;
+			return this;
+		}
+
+		public Builder ostype(String ostype) {
+			this.ostype = ostype;
+			return this;
+		}
+
+		public Builder osversion(String osversion) {
+			this.osversion = osversion;
+			return this;
+		}
+
+		public Builder node(Node node) {
+			this.node = node;
+			return this;
+		}
+
+		public Builder process(Process process) {
+			this.process = process;
+			return this;
+		}
+
+		public Builder originalAnalyzer(Analyzer originalAnalyzer) {
+			this.originalAnalyzer = originalAnalyzer;
+			return this;
+		}
+
+		public Analyzer build() {
+			return new Analyzer(analyzerID, name, manufacturer, model, version, aclass, ostype, osversion, node, process, originalAnalyzer);
+		}
+
+		/**
+		 * Set every field back to null, so the builder can make an unrelated Analyzer
+		 */
+		public Builder reset() {
+			analyzerID = null;
+			name = null;
+			manufacturer = null;
+			model = null;
+			version = null;
+			aclass = null;
+			ostype = null;
+			osversion = null;
+			node = null;
+			process = null;
+			originalAnalyzer = null;
+			return this;
+		}
+
 	}
-	
 
 }
@@ -20,6 +20,8 @@ package com.cr_labs.rfc4765;
  Contact: jim@cr-labs.com
  */
 
+import java.io.IOException;
+
 /**
  * Implements 4.2.4.5.  The Assessment Class of RFC4765
  * The Assessment class is used to provide the analyzer's assessment of an event -- its impact, actions taken in response, and confidence.
@@ -27,10 +29,12 @@ package com.cr_labs.rfc4765;
  * @author jim
  */
 
-public class Assessment {
+public class Assessment
+implements Fingerprinted, Formatted {
 	private Impact 		impact;
 	private Action 		action;
 	private Confidence	confidence;
+	private volatile long	fingerprint;
 
 
 	/**
@@ -69,13 +73,50 @@ public class Assessment {
 		return impact;
 	}
 
+	/**
+	 * @return a 64 bit hash of the content of the Assessment, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, impact);
+			h = Fingerprints.mix(h, action);
+			h = Fingerprints.mix(h, confidence);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Assessments are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Assessment x = (Assessment) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(impact, x.impact) && Fingerprints.eq(action, x.action) && Fingerprints.eq(confidence, x.confidence);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Assessment", compact);
+		Formats.field(out, compact, "impact", impact);
+		Formats.field(out, compact, "action", action);
+		Formats.field(out, compact, "confidence", confidence);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Assessment] ");
-		sb.append("Impact="+impact);
-		sb.append(" Action="+action);
-		sb.append(" Confidence="+confidence);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 
 
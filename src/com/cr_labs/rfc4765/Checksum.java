@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 /**
  * Implements 4.2.7.6.4 the Checksum Class of RFC4765
  * 
@@ -27,13 +29,15 @@ Contact: jim@cr-labs.com
  *
  */
 
-public class Checksum {
+public class Checksum
+implements Fingerprinted, Formatted {
 
 	private Algorithm algorithm;
 	private String value;
 	private String key;
+	private volatile long fingerprint;
 		
-	public static enum Algorithm {
+	public static enum Algorithm implements CodedEnum {
 		MD4 (0), MD5 (1), SHA1 (2), SHA2_256 (3), SHA2_384 (4),
 		SHA2_512 (5), CRC_32 (6), HAVAL (7), TIGER (8), GOST (9);
 		private final int algorithmCode;
@@ -95,13 +99,50 @@ public class Checksum {
 	}
 	
 	
+	/**
+	 * @return a 64 bit hash of the content of the Checksum, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, algorithm);
+			h = Fingerprints.mix(h, value);
+			h = Fingerprints.mix(h, key);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Checksums are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Checksum x = (Checksum) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(algorithm, x.algorithm) && Fingerprints.eq(value, x.value) && Fingerprints.eq(key, x.key);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Checksum", compact);
+		Formats.field(out, compact, "algorithm", algorithm);
+		Formats.field(out, compact, "value", value);
+		Formats.field(out, compact, "key", key);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Checksum] ");
-		sb.append("algorithm="+algorithm);
-		sb.append(" value="+value);
-		sb.append(" key="+key);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 	
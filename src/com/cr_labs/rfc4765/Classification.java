@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 /**
  * Implements 4.2.4.2 the Classification class of RFC4765.
  * 
@@ -30,11 +32,15 @@ Contact: jim@cr-labs.com
  * @author jim
  * 
  */
-public class Classification {
+public class Classification
+implements Fingerprinted, Formatted {
 	private String ident;
 	private String text; 
 	
 	private Reference[] reference;
+	private volatile long fingerprint;
+	// shared by all instances with none, as an empty array cannot change
+	private static final Reference[] NO_REFERENCES = new Reference[0];
 	
 	
 	/**
@@ -54,10 +60,9 @@ public class Classification {
 			this.ident = "0";
 		else
 			this.ident = ident;
-		this.ident = ident;
 		this.text = text;
 		if (reference == null)
-			this.reference = new Reference[0];
+			this.reference = NO_REFERENCES;
 		else
 			this.reference = reference;
 	}
@@ -84,14 +89,50 @@ public class Classification {
 	}
 	
 	
+	/**
+	 * @return a 64 bit hash of the content of the Classification, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, text);
+			h = Fingerprints.mix(h, reference);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Classifications are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Classification x = (Classification) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(text, x.text) && Fingerprints.eq(reference, x.reference);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Classification", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "text", text);
+		Formats.array(out, compact, "reference", reference);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Classification] ");
-		sb.append("ident="+ident+" text="+text);
-		if (reference != null)
-			for (int i = 0; i < reference.length; i++) 
-				sb.append(" reference["+i+"]="+reference[i]);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 	
@@ -0,0 +1,36 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+/**
+ * Implemented by all the enums of this package. Each enum value carries the integer
+ * "rank" that the RFC assigns it (or, for the X_* extensions, the value assigned here),
+ * which is stable across releases and suitable for compact encodings.
+ */
+public interface CodedEnum {
+
+	/**
+	 * @return the integer value of this enum constant, per the RFC or our extensions
+	 */
+	public int getValue();
+	
+}
@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 
 /**
  * Implements 4.2.6.3. of RFC4765, the Confidence class.
@@ -34,17 +36,20 @@ Contact: jim@cr-labs.com
  * their needs (RFC-compliant ratings of < 0.00 are reported as 0.00, indicating no confidence).
  * <P>Additionally the confidence Ranks X_NEG_LOW(10000), X_NEG_MEDIUM(10001), X_NEG_HIGH(10002) are provided for non-numeric negative assertions
  * of low, medium, and high confidence that the asserted statement is NOT true.
+ * <P>A Confidence does not change once made, as the Assessment holding it caches a fingerprint over it.
  * 
  * @author jim
  *
  */
 
-public class Confidence {
+public class Confidence
+implements Fingerprinted, Formatted {
 
-	private Rank	rating;
-	private double 	numericRating;
+	private final Rank		rating;
+	private final double	numericRating;
+	private volatile long	fingerprint;
 	
-	public static enum Rank {
+	public static enum Rank implements CodedEnum {
 		LOW (0), MEDIUM (1), HIGH (2), NUMERIC (3),
 		X_NEG_LOW (10000), X_NEG_MEDIUM (10001), X_NEG_HIGH (10002);
 		private final int rankCode;
@@ -67,21 +72,25 @@ public class Confidence {
 		numericRating = 0.0d;
 	}
 	
-	public Confidence(double numericRating) {
-		rating = Rank.NUMERIC;
-		this.numericRating = numericRating;
+	/**
+	 * @param numericRating the value, in the range -1.0 .. 1.0
+	 */
+	public Confidence(double numericRating)
+	throws IllegalArgumentException {
+		this(Rank.NUMERIC, numericRating);
 	}
-	
+
 	/**
-	 * Sets the numeric confidence rating to the provided value, and also sets the rating type to RANK_NUMERIC.
-	 * @param nv The value
+	 * A Confidence with both a rating and a numeric value, as the readers and converters find them
+	 * @param rating the rating, which need not be NUMERIC
+	 * @param numericRating the value, in the range -1.0 .. 1.0
 	 */
-	public void setNumericRating(double nv)
+	public Confidence(Rank rating, double numericRating)
 	throws IllegalArgumentException {
-		if ((nv < -1.0d) || (nv > 1.0d))
+		if ((numericRating < -1.0d) || (numericRating > 1.0d))
 			throw new IllegalArgumentException("Cannot instantiate Confidence: Value out of range. Legal values: -1.0 .. 1.0");
-		numericRating = nv;
-		rating = Rank.NUMERIC;
+		this.rating = rating;
+		this.numericRating = numericRating;
 	}
 	
 	/**
@@ -100,10 +109,6 @@ public class Confidence {
 		return numericRating;
 	}
 	
-	public void setRating(Rank newRating) {
-		rating = newRating;
-	}
-	
 	/**
 	 * @return the rating as one of the enum Rank values
 	 */
@@ -137,13 +142,49 @@ public class Confidence {
 	}
 
 	
-	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Confidence] ");
-		sb.append("rank="+rating);
+	/**
+	 * @return a 64 bit hash of the content of the Confidence, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, rating);
+			h = Fingerprints.mix(h, numericRating);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Confidences are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Confidence x = (Confidence) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(rating, x.rating) && (Double.compare(numericRating, x.numericRating) == 0);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Confidence", compact);
+		Formats.field(out, compact, "rating", rating);
 		if (rating == Rank.NUMERIC)
-			sb.append(" value="+numericRating);
-		return sb.toString();
+			Formats.field(out, compact, "value", numericRating);
+		Formats.close(out, compact);
+	}
+
+	public String toString() {
+		return Formats.toString(this, false);
 	}
 	
 }
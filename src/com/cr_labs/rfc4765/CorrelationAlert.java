@@ -20,12 +20,16 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
 
-public class CorrelationAlert {
+
+public class CorrelationAlert
+implements Fingerprinted, Formatted {
 
 	private String 		name;
 	private String[] 	alertIdent;
 	private String[] 	analyzerID;
+	private volatile long	fingerprint;
 
 	/**
 	 * 
@@ -75,17 +79,50 @@ public class CorrelationAlert {
 		return name;
 	}
 
+	/**
+	 * @return a 64 bit hash of the content of the CorrelationAlert, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, alertIdent);
+			h = Fingerprints.mix(h, analyzerID);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * CorrelationAlerts are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		CorrelationAlert x = (CorrelationAlert) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(name, x.name) && Fingerprints.eq(alertIdent, x.alertIdent) && Fingerprints.eq(analyzerID, x.analyzerID);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "CorrelationAlert", compact);
+		Formats.field(out, compact, "name", name);
+		Formats.array(out, compact, "alertIdent", alertIdent);
+		Formats.array(out, compact, "analyzerID", analyzerID);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[CorrelationAlert] ");
-		sb.append("name="+name);
-		if (alertIdent != null)
-			for (int i = 0; i < alertIdent.length; i++)
-				sb.append("alertIdent["+i+"]="+alertIdent[i]);
-		if (analyzerID != null)
-			for (int i = 0; i < analyzerID.length; i++)
-				sb.append("analyzerID["+i+"]="+analyzerID[i]);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 	
@@ -21,6 +21,9 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import org.joda.time.DateTime;
 
 /**
@@ -28,7 +31,8 @@ import org.joda.time.DateTime;
  * @author jim
  *
  */
-public class File {
+public class File
+implements Fingerprinted, Formatted {
 	
 	private String 			ident;
 	private Category 		category;
@@ -47,9 +51,14 @@ public class File {
 	private Linkage[]		linkage;
 	private Inode			inode;
 	private Checksum[]		checksum;
+	private volatile long	fingerprint;
+	// shared by all instances with none, as an empty array cannot change
+	private static final FileAccess[] NO_FILE_ACCESS = new FileAccess[0];
+	private static final Linkage[] NO_LINKAGE = new Linkage[0];
+	private static final Checksum[] NO_CHECKSUMS = new Checksum[0];
 	
 	
-	public static enum Category {
+	public static enum Category implements CodedEnum {
 		CURRENT (0), ORIGINAL (1);
 		private final int categoryCode;
 		Category(int c) {
@@ -60,7 +69,7 @@ public class File {
 		}
 	}
 
-	public static enum FSType {
+	public static enum FSType implements CodedEnum {
 		UFS (0), EFS (1), NFS (2), AFS (3), NTFS (4),
 		FAT16 (5), FAT32 (6), PCFS (7), JOLIET (8), ISO9660 (9);
 		private final int fstypeCode;
@@ -126,16 +135,16 @@ public class File {
 		this.dataSize = dataSize;
 		this.diskSize = diskSize;
 		if (fileAccess == null)
-			this.fileAccess = new FileAccess[0];
+			this.fileAccess = NO_FILE_ACCESS;
 		else
 			this.fileAccess = fileAccess;
 		if (linkage == null)
-			this.linkage = new Linkage[0];
+			this.linkage = NO_LINKAGE;
 		else
 			this.linkage = linkage;
 		this.inode = inode;
 		if (checksum == null)
-			this.checksum = new Checksum[0];
+			this.checksum = NO_CHECKSUMS;
 		else
 			this.checksum = checksum;
 	
@@ -263,27 +272,221 @@ public class File {
 		return path;
 	}
 	
+	/**
+	 * @return a 64 bit hash of the content of the File, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, category);
+			h = Fingerprints.mix(h, fsType);
+			h = Fingerprints.mix(h, fileType);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, path);
+			h = Fingerprints.mix(h, createTime);
+			h = Fingerprints.mix(h, modifyTime);
+			h = Fingerprints.mix(h, accessTime);
+			h = Fingerprints.mix(h, dataSize);
+			h = Fingerprints.mix(h, diskSize);
+			h = Fingerprints.mix(h, fileAccess);
+			h = Fingerprints.mix(h, linkage);
+			h = Fingerprints.mix(h, inode);
+			h = Fingerprints.mix(h, checksum);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Files are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		File x = (File) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(category, x.category) && Fingerprints.eq(fsType, x.fsType)
+			&& Fingerprints.eq(fileType, x.fileType) && Fingerprints.eq(name, x.name) && Fingerprints.eq(path, x.path)
+			&& Fingerprints.eq(createTime, x.createTime) && Fingerprints.eq(modifyTime, x.modifyTime) && Fingerprints.eq(accessTime, x.accessTime)
+			&& (dataSize == x.dataSize) && (diskSize == x.diskSize) && Fingerprints.eq(fileAccess, x.fileAccess)
+			&& Fingerprints.eq(linkage, x.linkage) && Fingerprints.eq(inode, x.inode) && Fingerprints.eq(checksum, x.checksum);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "File", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "category", category);
+		Formats.field(out, compact, "fsType", fsType);
+		Formats.field(out, compact, "fileType", fileType);
+		Formats.field(out, compact, "name", name);
+		Formats.field(out, compact, "path", path);
+		Formats.field(out, compact, "createTime", createTime);
+		Formats.field(out, compact, "modifyTime", modifyTime);
+		Formats.field(out, compact, "accessTime", accessTime);
+		Formats.field(out, compact, "dataSize", dataSize);
+		Formats.field(out, compact, "diskSize", diskSize);
+		Formats.array(out, compact, "fileAccess", fileAccess);
+		Formats.array(out, compact, "linkage", linkage);
+		Formats.field(out, compact, "inode", inode);
+		Formats.array(out, compact, "checksum", checksum);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[File] ");
-		sb.append("ident="+ident);
-		sb.append(" category="+category);
-		sb.append(" fsType="+fsType);
-		sb.append(" fileType="+fileType);
-		sb.append(" name="+name);
-		sb.append(" path="+path);
-		sb.append(" createTime="+createTime);
-		sb.append(" modifyTime="+modifyTime);
-		sb.append(" accessTime="+accessTime);
-		sb.append(" dataSize="+dataSize);
-		sb.append(" diskSize="+diskSize);
-		sb.append(" fileAccess="+fileAccess);
-		sb.append(" linkage="+linkage);
-		sb.append(" inode="+inode);
-		sb.append(" checksum="+checksum);
-		return sb.toString();
+		return Formats.toString(this, false);
+	}
+
+
+	/**
+	 * Builds Files, collecting their FileAccesses, Linkages and Checksums without intermediate
+	 * arrays; see IDMEFMessage_Alert.Builder.
+	 */
+	public static class Builder {
+
+		private String ident;
+		private Category category;
+		private FSType fsType;
+		private String fileType;
+		private String name;
+		private String path;
+		private DateTime createTime;
+		private DateTime modifyTime;
+		private DateTime accessTime;
+		private int dataSize = -1;
+		private int diskSize = -1;
+		private Inode inode;
+		private FileAccess[] fileAccess = new FileAccess[4];
+		private int fileAccessCount;
+		private Linkage[] linkage = new Linkage[4];
+		private int linkageCount;
+		private Checksum[] checksum = new Checksum[4];
+		private int checksumCount;
+
+		public Builder ident(String ident) {
+			this.ident = ident;
+			return this;
+		}
+
+		public Builder category(Category category) {
+			this.category = category;
+			return this;
+		}
+
+		public Builder fsType(FSType fsType) {
+			this.fsType = fsType;
+			return this;
+		}
+
+		public Builder fileType(String fileType) {
+			this.fileType = fileType;
+			return this;
+		}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder path(String path) {
+			this.path = path;
+			return this;
+		}
+
+		public Builder createTime(DateTime createTime) {
+			this.createTime = createTime;
+			return this;
+		}
+
+		public Builder modifyTime(DateTime modifyTime) {
+			this.modifyTime = modifyTime;
+			return this;
+		}
+
+		public Builder accessTime(DateTime accessTime) {
+			this.accessTime = accessTime;
+			return this;
+		}
+
+		public Builder dataSize(int dataSize) {
+			this.dataSize = dataSize;
+			return this;
+		}
+
+		public Builder diskSize(int diskSize) {
+			this.diskSize = diskSize;
+			return this;
+		}
+
+		public Builder inode(Inode inode) {
+			this.inode = inode;
+			return this;
+		}
+
+		public Builder addFileAccess(FileAccess fileAccess) {
+			if (fileAccessCount == this.fileAccess.length)
+				this.fileAccess = Arrays.copyOf(this.fileAccess, fileAccessCount * 2);
+			this.fileAccess[fileAccessCount++] = fileAccess;
+			return this;
+		}
+
+		public Builder addLinkage(Linkage linkage) {
+			if (linkageCount == this.linkage.length)
+				this.linkage = Arrays.copyOf(this.linkage, linkageCount * 2);
+			this.linkage[linkageCount++] = linkage;
+			return this;
+		}
+
+		public Builder addChecksum(Checksum checksum) {
+			if (checksumCount == this.checksum.length)
+				this.checksum = Arrays.copyOf(this.checksum, checksumCount * 2);
+			this.checksum[checksumCount++] = checksum;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException if name, path or category is missing
+		 */
+		public File build()
+		throws IllegalArgumentException {
+			return new File(ident, category, fsType, fileType, name, path, createTime, modifyTime, accessTime, dataSize, diskSize,
+					(fileAccessCount == 0) ? null : Arrays.copyOf(fileAccess, fileAccessCount), (linkageCount == 0) ? null : Arrays.copyOf(linkage, linkageCount), inode, (checksumCount == 0) ? null : Arrays.copyOf(checksum, checksumCount));
+		}
+
+		/**
+		 * Clear every field, keeping the arrays for the next File
+		 */
+		public Builder reset() {
+			ident = null;
+			category = null;
+			fsType = null;
+			fileType = null;
+			name = null;
+			path = null;
+			createTime = null;
+			modifyTime = null;
+			accessTime = null;
+			dataSize = -1;
+			diskSize = -1;
+			inode = null;
+			Arrays.fill(fileAccess, 0, fileAccessCount, null);
+			fileAccessCount = 0;
+			Arrays.fill(linkage, 0, linkageCount, null);
+			linkageCount = 0;
+			Arrays.fill(checksum, 0, checksumCount, null);
+			checksumCount = 0;
+			return this;
+		}
+
 	}
 
-	
-	
 }
@@ -20,14 +20,18 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
 
-public class FileAccess {
+
+public class FileAccess
+implements Fingerprinted, Formatted {
 	
 	private UserId userid;
 	private Permission[] permission;
+	private volatile long fingerprint;
 	
 	
-	public static enum Permission {
+	public static enum Permission implements CodedEnum {
 		NOACCESS (0), READ (1), WRITE (2), EXECUTE (3), SEARCH (4),
 		DELETE (5), EXECUTEAS (6), CHANGEPERMISSIONS (7), TAKEOWNERSHIP (8);
 		private final int permissionCode;
@@ -74,14 +78,48 @@ public class FileAccess {
 	}
 	
 	
+	/**
+	 * @return a 64 bit hash of the content of the FileAccess, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, userid);
+			h = Fingerprints.mix(h, permission);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * FileAccesses are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		FileAccess x = (FileAccess) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(userid, x.userid) && Fingerprints.eq(permission, x.permission);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "FileAccess", compact);
+		Formats.field(out, compact, "userid", userid);
+		Formats.array(out, compact, "permission", permission);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[FileAccess] ");
-		sb.append("userid="+userid);
-		if (permission != null)
-			for (int i = 0; i < permission.length; i++)
-				sb.append(" permission["+i+"]="+permission[i]);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 	
@@ -0,0 +1,42 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+/**
+ * Implemented by the model classes, whose equals() compares their content rather than
+ * their identity. The fingerprint is a 64 bit hash of that content: equal objects have equal
+ * fingerprints, and objects with equal fingerprints are very likely equal, so the fingerprint
+ * can stand for the object in dedupe tables and caches. hashCode() is taken from it.
+ *
+ * <p>An object computes its fingerprint on the first call and keeps it in a volatile field, so
+ * threads sharing the object never see half of one; the objects must not change afterwards.
+ * Fingerprints depend only on content, not on the JVM, but may change between releases and
+ * should not be stored.
+ */
+public interface Fingerprinted {
+
+	/**
+	 * @return the 64 bit hash of the content of this object, never 0
+	 */
+	public long getFingerprint();
+
+}
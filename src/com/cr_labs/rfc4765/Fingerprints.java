@@ -0,0 +1,208 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+/**
+ * The mixing function behind the fingerprints of the model classes (see Fingerprinted), and
+ * the null-safe comparisons behind their equals()
+ */
+final class Fingerprints {
+
+	private static final long SEED = 0x5bd1e9955bd1e995L;
+	/**
+	 * Mixed in for a null field, so that (null, "a") and ("a", null) differ
+	 */
+	private static final long NULL = 0x2545f4914f6cdd1dL;
+
+	private Fingerprints() {
+	}
+
+
+	/**
+	 * @return the start of the fingerprint of o, which depends on its class
+	 */
+	static long start(Object o) {
+		return mix(SEED, o.getClass().getName());
+	}
+
+	/**
+	 * @return the finished fingerprint, never 0
+	 */
+	static long finish(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (h == 0) ? 1 : h;
+	}
+
+	/**
+	 * @return the hashCode() of an object with the given fingerprint
+	 */
+	static int hashCode(long fingerprint) {
+		return (int) (fingerprint ^ (fingerprint >>> 32));
+	}
+
+	static long mix(long h, long v) {
+		h ^= v * 0x9e3779b97f4a7c15L;
+		return Long.rotateLeft(h, 31) * 0xbf58476d1ce4e5b9L;
+	}
+
+	static long mix(long h, boolean v) {
+		return mix(h, v ? 1L : 2L);
+	}
+
+	static long mix(long h, double v) {
+		return mix(h, Double.doubleToLongBits(v));
+	}
+
+	static long mix(long h, String s) {
+		if (s == null)
+			return mix(h, NULL);
+		int len = s.length();
+		h = mix(h, len);
+		// four chars to a word
+		int i = 0;
+		for (; i + 4 <= len; i += 4)
+			h = mix(h, ((long) s.charAt(i) << 48) | ((long) s.charAt(i + 1) << 32) | ((long) s.charAt(i + 2) << 16) | s.charAt(i + 3));
+		long w = 0;
+		for (; i < len; i++)
+			w = (w << 16) | s.charAt(i);
+		return mix(h, w);
+	}
+
+	static long mix(long h, Enum<?> e) {
+		// by name, which unlike the ordinal is the same across releases
+		return (e == null) ? mix(h, NULL) : mix(h, e.name());
+	}
+
+	static long mix(long h, DateTime t) {
+		// the instant, as equals() compares it
+		return (t == null) ? mix(h, NULL) : mix(h, t.getMillis());
+	}
+
+	static long mix(long h, Fingerprinted f) {
+		return mix(h, (f == null) ? NULL : f.getFingerprint());
+	}
+
+	static long mix(long h, Fingerprinted[] a) {
+		if (a == null)
+			return mix(h, NULL);
+		h = mix(h, a.length);
+		for (int i = 0; i < a.length; i++)
+			h = mix(h, a[i]);
+		return h;
+	}
+
+	static long mix(long h, List<? extends Fingerprinted> a) {
+		if (a == null)
+			return mix(h, NULL);
+		h = mix(h, a.size());
+		for (int i = 0; i < a.size(); i++)
+			h = mix(h, a.get(i));
+		return h;
+	}
+
+	static long mix(long h, String[] a) {
+		if (a == null)
+			return mix(h, NULL);
+		h = mix(h, a.length);
+		for (int i = 0; i < a.length; i++)
+			h = mix(h, a[i]);
+		return h;
+	}
+
+	static long mix(long h, Enum<?>[] a) {
+		if (a == null)
+			return mix(h, NULL);
+		h = mix(h, a.length);
+		for (int i = 0; i < a.length; i++)
+			h = mix(h, a[i]);
+		return h;
+	}
+
+	static long mix(long h, byte[] a) {
+		if (a == null)
+			return mix(h, NULL);
+		h = mix(h, a.length);
+		// eight bytes to a word
+		int i = 0;
+		for (; i + 8 <= a.length; i += 8) {
+			long w = 0;
+			for (int j = 0; j < 8; j++)
+				w = (w << 8) | (a[i + j] & 0xff);
+			h = mix(h, w);
+		}
+		long w = 0;
+		for (; i < a.length; i++)
+			w = (w << 8) | (a[i] & 0xff);
+		return mix(h, w);
+	}
+
+	/**
+	 * Mix in a value of any of the types above
+	 */
+	static long mix(long h, Object o) {
+		if (o == null)
+			return mix(h, NULL);
+		if (o instanceof String)
+			return mix(h, (String) o);
+		if (o instanceof Fingerprinted)
+			return mix(h, (Fingerprinted) o);
+		if (o instanceof DateTime)
+			return mix(h, (DateTime) o);
+		if (o instanceof byte[])
+			return mix(h, (byte[]) o);
+		if (o instanceof Enum)
+			return mix(h, (Enum<?>) o);
+		return mix(h, o.toString());
+	}
+
+	/**
+	 * @return true if a and b are both null or equal, comparing DateTimes as instants and byte[]s by content
+	 */
+	static boolean eq(Object a, Object b) {
+		if (a == b)
+			return true;
+		if ((a == null) || (b == null))
+			return false;
+		if ((a instanceof DateTime) && (b instanceof DateTime))
+			return ((DateTime) a).getMillis() == ((DateTime) b).getMillis();
+		if ((a instanceof byte[]) && (b instanceof byte[]))
+			return Arrays.equals((byte[]) a, (byte[]) b);
+		return a.equals(b);
+	}
+
+	/**
+	 * @return true if a and b are both null or hold equal elements
+	 */
+	static boolean eq(Object[] a, Object[] b) {
+		return Arrays.equals(a, b);
+	}
+
+}
@@ -0,0 +1,297 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+
+import org.joda.time.DateTime;
+
+/**
+ * The pieces the formatTo() methods of the model classes (see Formatted) are written with, and
+ * the allocation-free decimal and DATETIME text that they, and RFC4765DataTypes, write.
+ *
+ * <p>A formatTo() is open(), a field() for each field, then close(). A field of a Formatted type
+ * is written by its own formatTo(); arrays are written one element at a time as "name[i]=",
+ * and are left out when null.
+ */
+public final class Formats {
+
+	private Formats() {
+	}
+
+
+	/**
+	 * @return the text form of f, full or compact
+	 */
+	public static String toString(Formatted f, boolean compact) {
+		StringBuilder sb = new StringBuilder(compact ? 128 : 256);
+		try {
+			f.formatTo(sb, compact);
+		}
+		catch (IOException e) {
+			// StringBuilder doesn't throw it
+			throw new IllegalStateException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Start an object: "\n\r[type]" in full, "[type" compact
+	 */
+	public static void open(Appendable out, String type, boolean compact)
+	throws IOException {
+		if (! compact)
+			out.append("\n\r");
+		out.append('[').append(type);
+		if (! compact)
+			out.append(']');
+	}
+
+	/**
+	 * End an object: "]" compact, nothing in full
+	 */
+	public static void close(Appendable out, boolean compact)
+	throws IOException {
+		if (compact)
+			out.append(']');
+	}
+
+	public static void field(Appendable out, boolean compact, String name, CharSequence value)
+	throws IOException {
+		if (present(out, compact, name, value))
+			out.append(value);
+	}
+
+	public static void field(Appendable out, boolean compact, String name, Formatted value)
+	throws IOException {
+		if (present(out, compact, name, value))
+			value.formatTo(out, compact);
+	}
+
+	/**
+	 * A field of any other type: an enum, a URL, a boxed number...
+	 */
+	public static void field(Appendable out, boolean compact, String name, Object value)
+	throws IOException {
+		if (present(out, compact, name, value))
+			value(out, compact, value);
+	}
+
+	public static void field(Appendable out, boolean compact, String name, DateTime value)
+	throws IOException {
+		if (present(out, compact, name, value)) {
+			long millis = value.getMillis();
+			appendDateTime(out, millis, value.getZone().getOffset(millis));
+		}
+	}
+
+	public static void field(Appendable out, boolean compact, String name, long value)
+	throws IOException {
+		name(out, name);
+		appendLong(out, value);
+	}
+
+	public static void field(Appendable out, boolean compact, String name, double value)
+	throws IOException {
+		name(out, name);
+		out.append(Double.toString(value));
+	}
+
+	/**
+	 * A time held as epoch milliseconds and an offset, or IDMEFMessage.NO_TIME if absent
+	 */
+	public static void time(Appendable out, boolean compact, String name, long millis, int offsetMillis)
+	throws IOException {
+		if (millis == IDMEFMessage.NO_TIME)
+			present(out, compact, name, null);
+		else {
+			name(out, name);
+			appendDateTime(out, millis, offsetMillis);
+		}
+	}
+
+	/**
+	 * The elements of an array as " name[0]=... name[1]=...", or nothing if the array is null
+	 */
+	public static void array(Appendable out, boolean compact, String name, Object[] values)
+	throws IOException {
+		if (values == null)
+			return;
+		for (int i = 0; i < values.length; i++) {
+			if (compact && (values[i] == null))
+				continue;
+			out.append(' ').append(name).append('[');
+			appendLong(out, i);
+			out.append("]=");
+			value(out, compact, values[i]);
+		}
+	}
+
+
+	/**
+	 * The strings of a list as " name[0]=... name[1]=...", or nothing if the list is null
+	 */
+	public static void array(Appendable out, boolean compact, String name, StringList values)
+	throws IOException {
+		if (values == null)
+			return;
+		for (int i = 0; i < values.size(); i++) {
+			out.append(' ').append(name).append('[');
+			appendLong(out, i);
+			out.append("]=");
+			values.appendTo(out, i);
+		}
+	}
+
+
+	/**
+	 * Append the decimal form of v
+	 */
+	public static void appendLong(Appendable out, long v)
+	throws IOException {
+		if (v == Long.MIN_VALUE) {
+			out.append("-9223372036854775808");
+			return;
+		}
+		if (v < 0) {
+			out.append('-');
+			v = -v;
+		}
+		long div = 1;
+		while (v / div >= 10)
+			div *= 10;
+		while (div > 0) {
+			out.append((char) ('0' + (v / div) % 10));
+			div /= 10;
+		}
+	}
+
+	/**
+	 * Append a DATETIME (RFC4765 Section 3.2.6) in the ISO 8601 extended format with milliseconds.
+	 *
+	 * @param millis milliseconds since the Unix epoch, UTC
+	 * @param offsetMillis offset of the local time from UTC; a zero offset is written as "Z"
+	 */
+	public static void appendDateTime(Appendable out, long millis, int offsetMillis)
+	throws IOException {
+		long local = millis + offsetMillis;
+		long days = floorDiv(local, 86400000L);
+		int msOfDay = (int) (local - days * 86400000L);
+
+		// proleptic Gregorian civil date from a day count, after H. Hinnant's days_from_civil inverse
+		long z = days + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		long doe = z - era * 146097;
+		long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+		long year = yoe + era * 400;
+		long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+		long mp = (5 * doy + 2) / 153;
+		int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+		int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+		if (month <= 2)
+			year++;
+
+		appendPadded(out, (int) year, 4);
+		out.append('-');
+		appendPadded(out, month, 2);
+		out.append('-');
+		appendPadded(out, day, 2);
+		out.append('T');
+		appendPadded(out, msOfDay / 3600000, 2);
+		out.append(':');
+		appendPadded(out, (msOfDay / 60000) % 60, 2);
+		out.append(':');
+		appendPadded(out, (msOfDay / 1000) % 60, 2);
+		out.append('.');
+		appendPadded(out, msOfDay % 1000, 3);
+		if (offsetMillis == 0)
+			out.append('Z');
+		else {
+			int offsetMinutes = offsetMillis / 60000;
+			if (offsetMinutes < 0) {
+				out.append('-');
+				offsetMinutes = -offsetMinutes;
+			}
+			else
+				out.append('+');
+			appendPadded(out, offsetMinutes / 60, 2);
+			out.append(':');
+			appendPadded(out, offsetMinutes % 60, 2);
+		}
+	}
+
+
+	/**
+	 * Write " name=" unless the field is null in the compact form; a null in the full form is written as "null"
+	 *
+	 * @return true if the value is to be written
+	 */
+	private static boolean present(Appendable out, boolean compact, String name, Object value)
+	throws IOException {
+		if (value == null) {
+			if (! compact)
+				out.append(' ').append(name).append("=null");
+			return false;
+		}
+		name(out, name);
+		return true;
+	}
+
+	private static void name(Appendable out, String name)
+	throws IOException {
+		out.append(' ').append(name).append('=');
+	}
+
+	private static void value(Appendable out, boolean compact, Object value)
+	throws IOException {
+		if (value instanceof Formatted)
+			((Formatted) value).formatTo(out, compact);
+		else if (value instanceof CharSequence)
+			out.append((CharSequence) value);
+		else if (value instanceof DateTime) {
+			long millis = ((DateTime) value).getMillis();
+			appendDateTime(out, millis, ((DateTime) value).getZone().getOffset(millis));
+		}
+		else
+			out.append(String.valueOf(value));
+	}
+
+	private static void appendPadded(Appendable out, int v, int width)
+	throws IOException {
+		int div = 1;
+		for (int i = 1; i < width; i++)
+			div *= 10;
+		while (div > 1 && v < div) {
+			out.append('0');
+			div /= 10;
+		}
+		appendLong(out, v);
+	}
+
+	private static long floorDiv(long a, long b) {
+		long q = a / b;
+		if ((a % b != 0) && ((a ^ b) < 0))
+			q--;
+		return q;
+	}
+
+}
@@ -0,0 +1,46 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+
+/**
+ * Implemented by the model classes, which write their text form into a caller's Appendable
+ * (a StringBuilder, a Writer, a logger's buffer) rather than building a String of their own
+ * and of each object they hold. toString() is formatTo(sb, false) on a new StringBuilder.
+ *
+ * <p>The full form starts each object on a new line with "\n\r[Class]" and lists all its fields,
+ * null ones included, as toString() always has. The compact form is one line for logs:
+ * "[Class field=value ...]", with nested objects in brackets and null fields left out.
+ */
+public interface Formatted {
+
+	/**
+	 * Append the text form of this object
+	 *
+	 * @param compact true for the single line form, false for the full form of toString()
+	 * @throws IOException if out does
+	 */
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException;
+
+}
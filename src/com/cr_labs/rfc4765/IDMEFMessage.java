@@ -21,6 +21,11 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
 /**
  * Implements the IDMEF-Message base class, 4.2.1 of RFC4765, having only the
  * attribute "version"
@@ -42,7 +47,8 @@ Contact: jim@cr-labs.com
  * @version 0.11
  */
 
-public abstract class IDMEFMessage {
+public abstract class IDMEFMessage
+implements Fingerprinted, Formatted {
 
 	/**
 	 * As of this writing, the RFC specifies that applications providing a
@@ -51,7 +57,14 @@ public abstract class IDMEFMessage {
 	 */
 	public static final String VERSION = "1.0";
 
+	/**
+	 * The epoch milliseconds of an absent time. Messages hold their times as epoch milliseconds
+	 * and the offset from UTC they were given with, and make DateTimes only when asked for them.
+	 */
+	public static final long NO_TIME = Long.MIN_VALUE;
+
 	private String version;
+	private volatile long fingerprint;
 
 	public IDMEFMessage() {
 		this.version = VERSION;
@@ -61,9 +74,95 @@ public abstract class IDMEFMessage {
 		return this.version;
 	}
 
-	
+
+	/**
+	 * @return millis as a DateTime in a fixed zone offsetMillis from UTC, or null for NO_TIME
+	 */
+	static DateTime toDateTime(long millis, int offsetMillis) {
+		if (millis == NO_TIME)
+			return null;
+		return new DateTime(millis, (offsetMillis == 0) ? DateTimeZone.UTC : DateTimeZone.forOffsetMillis(offsetMillis));
+	}
+
+	/**
+	 * @return the epoch milliseconds of t, or NO_TIME if t is null
+	 */
+	static long millisOf(DateTime t) {
+		return (t == null) ? NO_TIME : t.getMillis();
+	}
+
+	/**
+	 * @return the offset from UTC of t, in milliseconds, or 0 if t is null
+	 */
+	static int offsetOf(DateTime t) {
+		return (t == null) ? 0 : t.getZone().getOffset(t.getMillis());
+	}
+
+
+	/**
+	 * @return a 64 bit hash of the content of the message, computed on the first call
+	 */
+	public final long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0)
+			fingerprint = f = Fingerprints.finish(fingerprint(Fingerprints.start(this)));
+		return f;
+	}
+
+	/**
+	 * Subclasses mix in their own fields, then call this
+	 * @return h with the fields of the message mixed in
+	 */
+	protected long fingerprint(long h) {
+		return Fingerprints.mix(h, version);
+	}
+
+	/**
+	 * Subclasses compare their own fields, then call this
+	 * @param m a message of the same class
+	 * @return true if the fields of m are equal to those of this message
+	 */
+	protected boolean contentEquals(IDMEFMessage m) {
+		return version.equals(m.version);
+	}
+
+	/**
+	 * Messages are equal if they are of the same class and all their fields are equal
+	 */
+	public final boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		IDMEFMessage m = (IDMEFMessage) o;
+		return (getFingerprint() == m.getFingerprint()) && contentEquals(m);
+	}
+
+	public final int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	/**
+	 * Write the class of the message, then its fields (see formatFields())
+	 */
+	public final void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, getClass().getSimpleName(), compact);
+		formatFields(out, compact);
+		Formats.close(out, compact);
+	}
+
+	/**
+	 * Subclasses write their own fields, then call this
+	 */
+	protected void formatFields(Appendable out, boolean compact)
+	throws IOException {
+		Formats.field(out, compact, "version", version);
+	}
+
 	public String toString() {
-		return "\n\r[IDMEFMessage] version="+version;
+		return Formats.toString(this, false);
 	}
 	
 }
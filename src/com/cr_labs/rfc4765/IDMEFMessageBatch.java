@@ -0,0 +1,119 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * Several Alerts and Heartbeats carried in one IDMEF-Message. Section 4.2.1 of RFC4765 lets
+ * an IDMEF-Message hold any number of them; the IDMEFMessage subclasses each hold one, and
+ * this class groups them so that a writer can send them as one document (or one frame),
+ * with one version attribute.
+ *
+ * <p>The messages keep their order. As with IDMEFMessage, the version is always "1.0".
+ */
+public class IDMEFMessageBatch
+implements Iterable<IDMEFMessage>, Formatted {
+
+	private final String version;
+	private final IDMEFMessage[] messages;
+
+
+	/**
+	 * @param messages REQUIRED the alerts and heartbeats, in the order they are to be sent. The array is not copied.
+	 * @throws IllegalArgumentException if messages is null or holds a null
+	 */
+	public IDMEFMessageBatch(IDMEFMessage[] messages)
+	throws IllegalArgumentException {
+		if (messages == null)
+			throw new IllegalArgumentException("Required parameter 'messages' was null");
+		for (int i = 0; i < messages.length; i++)
+			if (messages[i] == null)
+				throw new IllegalArgumentException("Message "+i+" of the batch is null");
+		this.version = IDMEFMessage.VERSION;
+		this.messages = messages;
+	}
+
+	/**
+	 * @param messages REQUIRED the alerts and heartbeats, in the collection's iteration order
+	 * @throws IllegalArgumentException if messages is null or holds a null
+	 */
+	public IDMEFMessageBatch(Collection<? extends IDMEFMessage> messages)
+	throws IllegalArgumentException {
+		this((messages == null) ? null : messages.toArray(new IDMEFMessage[messages.size()]));
+	}
+
+
+	public String getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the messages of the batch, in order
+	 */
+	public IDMEFMessage[] getMessages() {
+		return messages;
+	}
+
+	/**
+	 * @return the number of messages in the batch
+	 */
+	public int size() {
+		return messages.length;
+	}
+
+	/**
+	 * @return the i'th message of the batch
+	 */
+	public IDMEFMessage get(int i) {
+		return messages[i];
+	}
+
+	public Iterator<IDMEFMessage> iterator() {
+		return Arrays.asList(messages).iterator();
+	}
+
+
+	/**
+	 * Write the version and the number of messages, then each message
+	 */
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "IDMEFMessageBatch", compact);
+		Formats.field(out, compact, "version", version);
+		Formats.field(out, compact, "messages", messages.length);
+		for (int i = 0; i < messages.length; i++) {
+			if (compact)
+				out.append(' ');
+			messages[i].formatTo(out, compact);
+		}
+		Formats.close(out, compact);
+	}
+
+	public String toString() {
+		return Formats.toString(this, false);
+	}
+
+}
@@ -21,6 +21,9 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import org.joda.time.DateTime;
 
 /**
@@ -34,9 +37,15 @@ extends IDMEFMessage {
 
 	private String 			messageID;
 	private Analyzer 		analyzer;
-	private DateTime 		createTime;
-	private DateTime 		detectTime;
-	private DateTime 		analyzerTime;
+	private long 			createTime;
+	private long 			detectTime;
+	private long 			analyzerTime;
+	/**
+	 * The offsets from UTC the times were given with, in milliseconds
+	 */
+	private int				createOffset;
+	private int				detectOffset;
+	private int				analyzerOffset;
 	private Source[] 		source;
 	private Target[] 		target;
 	private Classification 	classification;
@@ -81,9 +90,12 @@ extends IDMEFMessage {
 
 		this.messageID = messageID;
 		this.analyzer = analyzer;
-		this.createTime = createTime;
-		this.detectTime = detectTime;
-		this.analyzerTime = analyzerTime;
+		this.createTime = millisOf(createTime);
+		this.createOffset = offsetOf(createTime);
+		this.detectTime = millisOf(detectTime);
+		this.detectOffset = offsetOf(detectTime);
+		this.analyzerTime = millisOf(analyzerTime);
+		this.analyzerOffset = offsetOf(analyzerTime);
 		this.source = source;
 		this.target = target;
 		this.classification = classification;
@@ -136,9 +148,12 @@ extends IDMEFMessage {
 
 		this.messageID = messageID;
 		this.analyzer = analyzer;
-		this.createTime = createTime;
-		this.detectTime = detectTime;
-		this.analyzerTime = analyzerTime;
+		this.createTime = millisOf(createTime);
+		this.createOffset = offsetOf(createTime);
+		this.detectTime = millisOf(detectTime);
+		this.detectOffset = offsetOf(detectTime);
+		this.analyzerTime = millisOf(analyzerTime);
+		this.analyzerOffset = offsetOf(analyzerTime);
 		this.source = s;
 		this.target = t;
 		this.classification = classification;
@@ -148,6 +163,33 @@ extends IDMEFMessage {
 
 
 
+	/**
+	 * The constructor behind Builder.build(), which copies the builder's fields
+	 */
+	IDMEFMessage_Alert(Builder b)
+	throws IllegalArgumentException {
+		super();
+
+		if ((b.analyzer == null) || (b.createTime == NO_TIME) || (b.classification == null))
+			throw new IllegalArgumentException("Cannot instantiate IDMEFMessage_Alert: 'analyzer', 'createTime', and 'classification' are required by the RFC.");
+
+		this.messageID = b.messageID;
+		this.analyzer = b.analyzer;
+		this.createTime = b.createTime;
+		this.createOffset = b.createOffset;
+		this.detectTime = b.detectTime;
+		this.detectOffset = b.detectOffset;
+		this.analyzerTime = b.analyzerTime;
+		this.analyzerOffset = b.analyzerOffset;
+		this.source = (b.sourceCount == 0) ? null : Arrays.copyOf(b.source, b.sourceCount);
+		this.target = (b.targetCount == 0) ? null : Arrays.copyOf(b.target, b.targetCount);
+		this.classification = b.classification;
+		this.assessment = b.assessment;
+		this.additionalData = (b.additionalDataCount == 0) ? null : Arrays.copyOf(b.additionalData, b.additionalDataCount);
+	}
+
+
+
 	/**
 	 * @return the additionalData
 	 */
@@ -163,12 +205,33 @@ extends IDMEFMessage {
 	}
 
 	/**
-	 * @return the analyzerTime
+	 * @return the analyzerTime, made on each call, or null if none was provided
 	 */
 	public DateTime getAnalyzerTime() {
+		return toDateTime(analyzerTime, analyzerOffset);
+	}
+
+	/**
+	 * @return the analyzerTime in milliseconds since 1970-01-01T00:00:00Z, or NO_TIME if none was provided
+	 */
+	public long getAnalyzerTimeMillis() {
 		return analyzerTime;
 	}
 
+	/**
+	 * @return the offset from UTC the analyzerTime was given with, in milliseconds
+	 */
+	public int getAnalyzerTimeOffset() {
+		return analyzerOffset;
+	}
+
+	/**
+	 * @return the analyzerTime as an NTP timestamp (see NtpStamp), or 0 if none was provided
+	 */
+	public long getAnalyzerTimeNtp() {
+		return (analyzerTime == NO_TIME) ? 0 : NtpStamp.fromMillis(analyzerTime);
+	}
+
 	/**
 	 * @return the assessment
 	 */
@@ -184,19 +247,61 @@ extends IDMEFMessage {
 	}
 
 	/**
-	 * @return the createTime
+	 * @return the createTime, made on each call, or null if none was provided
 	 */
 	public DateTime getCreateTime() {
+		return toDateTime(createTime, createOffset);
+	}
+
+	/**
+	 * @return the createTime in milliseconds since 1970-01-01T00:00:00Z, or NO_TIME if none was provided
+	 */
+	public long getCreateTimeMillis() {
 		return createTime;
 	}
 
 	/**
-	 * @return the detectTime
+	 * @return the offset from UTC the createTime was given with, in milliseconds
+	 */
+	public int getCreateTimeOffset() {
+		return createOffset;
+	}
+
+	/**
+	 * @return the createTime as an NTP timestamp (see NtpStamp)
+	 */
+	public long getCreateTimeNtp() {
+		return NtpStamp.fromMillis(createTime);
+	}
+
+	/**
+	 * @return the detectTime, made on each call, or null if none was provided
 	 */
 	public DateTime getDetectTime() {
+		return toDateTime(detectTime, detectOffset);
+	}
+
+	/**
+	 * @return the detectTime in milliseconds since 1970-01-01T00:00:00Z, or NO_TIME if none was provided
+	 */
+	public long getDetectTimeMillis() {
 		return detectTime;
 	}
 
+	/**
+	 * @return the offset from UTC the detectTime was given with, in milliseconds
+	 */
+	public int getDetectTimeOffset() {
+		return detectOffset;
+	}
+
+	/**
+	 * @return the detectTime as an NTP timestamp (see NtpStamp), or 0 if none was provided
+	 */
+	public long getDetectTimeNtp() {
+		return (detectTime == NO_TIME) ? 0 : NtpStamp.fromMillis(detectTime);
+	}
+
 	/**
 	 * @return the messageID
 	 */
@@ -219,28 +324,274 @@ extends IDMEFMessage {
 	}
 
 
-	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[IDMEFMessage_Alert] ");
-		sb.append("messageID="+messageID);
-		sb.append(" analyzer="+analyzer);
-		sb.append(" createTime="+createTime);
-		sb.append(" detectTime="+detectTime);
-		sb.append(" analyzerTime="+analyzerTime);
-		if (source != null)
-			for (int i = 0; i < source.length; i++)
-				sb.append(" source["+i+"]="+source[i]);
-		if (target != null)
-			for (int i = 0; i < target.length; i++)
-				sb.append(" target["+i+"]="+target[i]);
-		sb.append(" classification="+classification);
-		sb.append(" assessment="+assessment);
-		if (additionalData != null)
-			for (int i = 0; i < additionalData.length; i++) 
-				sb.append(" additionalData["+i+"]="+additionalData[i]);
-		sb.append(super.toString());
-		return sb.toString();
+	protected long fingerprint(long h) {
+		h = Fingerprints.mix(h, messageID);
+		h = Fingerprints.mix(h, analyzer);
+		h = Fingerprints.mix(h, createTime);
+		h = Fingerprints.mix(h, detectTime);
+		h = Fingerprints.mix(h, analyzerTime);
+		h = Fingerprints.mix(h, source);
+		h = Fingerprints.mix(h, target);
+		h = Fingerprints.mix(h, classification);
+		h = Fingerprints.mix(h, assessment);
+		h = Fingerprints.mix(h, additionalData);
+		return super.fingerprint(h);
+	}
+
+	protected boolean contentEquals(IDMEFMessage m) {
+		IDMEFMessage_Alert a = (IDMEFMessage_Alert) m;
+		return Fingerprints.eq(messageID, a.messageID) && Fingerprints.eq(analyzer, a.analyzer)
+			&& (createTime == a.createTime) && (detectTime == a.detectTime)
+			&& (analyzerTime == a.analyzerTime) && Fingerprints.eq(source, a.source)
+			&& Fingerprints.eq(target, a.target) && Fingerprints.eq(classification, a.classification)
+			&& Fingerprints.eq(assessment, a.assessment) && Fingerprints.eq(additionalData, a.additionalData)
+			&& super.contentEquals(m);
 	}
 
 
+	protected void formatFields(Appendable out, boolean compact)
+	throws IOException {
+		Formats.field(out, compact, "messageID", messageID);
+		Formats.field(out, compact, "analyzer", analyzer);
+		Formats.time(out, compact, "createTime", createTime, createOffset);
+		Formats.time(out, compact, "detectTime", detectTime, detectOffset);
+		Formats.time(out, compact, "analyzerTime", analyzerTime, analyzerOffset);
+		Formats.array(out, compact, "source", source);
+		Formats.array(out, compact, "target", target);
+		Formats.field(out, compact, "classification", classification);
+		Formats.field(out, compact, "assessment", assessment);
+		Formats.array(out, compact, "additionalData", additionalData);
+		super.formatFields(out, compact);
+	}
+
+
+	/**
+	 * Builds alerts one after another without the long argument lists of the constructors.
+	 * Set the fields, build(), then reset() (or change a few fields) and build the next one. The
+	 * Source, Target and AdditionalData added are collected in arrays the builder keeps from alert
+	 * to alert, so each alert costs only the arrays it holds; keep one builder per thread, as a
+	 * builder is not thread safe. The constructor checks the required fields when build() calls it.
+	 *
+	 * <pre>
+	 * IDMEFMessage_Alert.Builder b = new IDMEFMessage_Alert.Builder();
+	 * IDMEFMessage_Alert alert = b.analyzer(analyzer).createTime(now).classification(classification)
+	 *     .addSource(source).addTarget(target).build();
+	 * b.reset();
+	 * </pre>
+	 */
+	public static class Builder {
+
+		private String messageID;
+		private Analyzer analyzer;
+		private long createTime = NO_TIME;
+		private int createOffset;
+		private Classification classification;
+		private long detectTime = NO_TIME;
+		private int detectOffset;
+		private long analyzerTime = NO_TIME;
+		private int analyzerOffset;
+		private Assessment assessment;
+		private ToolAlert toolAlert;
+		private OverflowAlert overflowAlert;
+		private CorrelationAlert correlationAlert;
+		private Source[] source = new Source[4];
+		private int sourceCount;
+		private Target[] target = new Target[4];
+		private int targetCount;
+		private AdditionalData[] additionalData = new AdditionalData[4];
+		private int additionalDataCount;
+
+		public Builder messageID(String messageID) {
+			this.messageID = messageID;
+			return this;
+		}
+
+		public Builder analyzer(Analyzer analyzer) {
+			this.analyzer = analyzer;
+			return this;
+		}
+
+		public Builder createTime(DateTime createTime) {
+			this.createTime = millisOf(createTime);
+			this.createOffset = offsetOf(createTime);
+			return this;
+		}
+
+		/**
+		 * @param millis the createTime in milliseconds since 1970-01-01T00:00:00Z, in UTC
+		 */
+		public Builder createTime(long millis) {
+			return createTime(millis, 0);
+		}
+
+		/**
+		 * @param millis the createTime in milliseconds since 1970-01-01T00:00:00Z
+		 * @param offsetMillis the offset from UTC of the zone the createTime was given in
+		 */
+		public Builder createTime(long millis, int offsetMillis) {
+			this.createTime = millis;
+			this.createOffset = offsetMillis;
+			return this;
+		}
+
+		/**
+		 * @param stamp the createTime as an NTP timestamp (see NtpStamp), in UTC
+		 */
+		public Builder createTimeNtp(long stamp) {
+			return createTime(NtpStamp.toMillis(stamp));
+		}
+
+		public Builder classification(Classification classification) {
+			this.classification = classification;
+			return this;
+		}
+
+		public Builder detectTime(DateTime detectTime) {
+			this.detectTime = millisOf(detectTime);
+			this.detectOffset = offsetOf(detectTime);
+			return this;
+		}
+
+		/**
+		 * @param millis the detectTime in milliseconds since 1970-01-01T00:00:00Z, in UTC
+		 */
+		public Builder detectTime(long millis) {
+			return detectTime(millis, 0);
+		}
+
+		/**
+		 * @param millis the detectTime in milliseconds since 1970-01-01T00:00:00Z
+		 * @param offsetMillis the offset from UTC of the zone the detectTime was given in
+		 */
+		public Builder detectTime(long millis, int offsetMillis) {
+			this.detectTime = millis;
+			this.detectOffset = offsetMillis;
+			return this;
+		}
+
+		/**
+		 * @param stamp the detectTime as an NTP timestamp (see NtpStamp), in UTC
+		 */
+		public Builder detectTimeNtp(long stamp) {
+			return detectTime(NtpStamp.toMillis(stamp));
+		}
+
+		public Builder analyzerTime(DateTime analyzerTime) {
+			this.analyzerTime = millisOf(analyzerTime);
+			this.analyzerOffset = offsetOf(analyzerTime);
+			return this;
+		}
+
+		/**
+		 * @param millis the analyzerTime in milliseconds since 1970-01-01T00:00:00Z, in UTC
+		 */
+		public Builder analyzerTime(long millis) {
+			return analyzerTime(millis, 0);
+		}
+
+		/**
+		 * @param millis the analyzerTime in milliseconds since 1970-01-01T00:00:00Z
+		 * @param offsetMillis the offset from UTC of the zone the analyzerTime was given in
+		 */
+		public Builder analyzerTime(long millis, int offsetMillis) {
+			this.analyzerTime = millis;
+			this.analyzerOffset = offsetMillis;
+			return this;
+		}
+
+		/**
+		 * @param stamp the analyzerTime as an NTP timestamp (see NtpStamp), in UTC
+		 */
+		public Builder analyzerTimeNtp(long stamp) {
+			return analyzerTime(NtpStamp.toMillis(stamp));
+		}
+
+		public Builder assessment(Assessment assessment) {
+			this.assessment = assessment;
+			return this;
+		}
+
+		public Builder toolAlert(ToolAlert toolAlert) {
+			this.toolAlert = toolAlert;
+			return this;
+		}
+
+		public Builder overflowAlert(OverflowAlert overflowAlert) {
+			this.overflowAlert = overflowAlert;
+			return this;
+		}
+
+		public Builder correlationAlert(CorrelationAlert correlationAlert) {
+			this.correlationAlert = correlationAlert;
+			return this;
+		}
+
+		public Builder addSource(Source source) {
+			if (sourceCount == this.source.length)
+				this.source = Arrays.copyOf(this.source, sourceCount * 2);
+			this.source[sourceCount++] = source;
+			return this;
+		}
+
+		public Builder addTarget(Target target) {
+			if (targetCount == this.target.length)
+				this.target = Arrays.copyOf(this.target, targetCount * 2);
+			this.target[targetCount++] = target;
+			return this;
+		}
+
+		public Builder addAdditionalData(AdditionalData additionalData) {
+			if (additionalDataCount == this.additionalData.length)
+				this.additionalData = Arrays.copyOf(this.additionalData, additionalDataCount * 2);
+			this.additionalData[additionalDataCount++] = additionalData;
+			return this;
+		}
+
+		/**
+		 * @return a new alert holding the fields set so far: an IDMEFMessage_ToolAlert,
+		 * IDMEFMessage_OverflowAlert or IDMEFMessage_CorrelationAlert if one of those was given
+		 * @throws IllegalArgumentException if a required field is missing, or more than one of
+		 * toolAlert, overflowAlert and correlationAlert was given
+		 */
+		public IDMEFMessage_Alert build()
+		throws IllegalArgumentException {
+			if (((toolAlert != null) ? 1 : 0) + ((overflowAlert != null) ? 1 : 0) + ((correlationAlert != null) ? 1 : 0) > 1)
+				throw new IllegalArgumentException("Cannot build IDMEFMessage_Alert: only one of 'toolAlert', 'overflowAlert' and 'correlationAlert' may be given");
+			if (toolAlert != null)
+				return new IDMEFMessage_ToolAlert(toolAlert, this);
+			if (overflowAlert != null)
+				return new IDMEFMessage_OverflowAlert(overflowAlert, this);
+			if (correlationAlert != null)
+				return new IDMEFMessage_CorrelationAlert(correlationAlert, this);
+			return new IDMEFMessage_Alert(this);
+		}
+
+		/**
+		 * Clear every field, keeping the arrays for the next alert
+		 */
+		public Builder reset() {
+			messageID = null;
+			analyzer = null;
+			createTime = NO_TIME;
+			createOffset = 0;
+			classification = null;
+			detectTime = NO_TIME;
+			detectOffset = 0;
+			analyzerTime = NO_TIME;
+			analyzerOffset = 0;
+			assessment = null;
+			toolAlert = null;
+			overflowAlert = null;
+			correlationAlert = null;
+			Arrays.fill(source, 0, sourceCount, null);
+			sourceCount = 0;
+			Arrays.fill(target, 0, targetCount, null);
+			targetCount = 0;
+			Arrays.fill(additionalData, 0, additionalDataCount, null);
+			additionalDataCount = 0;
+			return this;
+		}
+
+	}
+
 }
@@ -21,6 +21,8 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+
 import org.joda.time.DateTime;
 
 /**
@@ -95,12 +97,65 @@ public class IDMEFMessage_CorrelationAlert extends IDMEFMessage_Alert {
 		this.correlationAlert = correlationAlert;
 	}
 
+	/**
+	 * Same as the constructor above, but accepting any number of sources and targets.
+	 * 
+	 * @param correlationAlert
+	 *            REQUIRED CorrelationAlert object
+	 * @param source
+	 *            optional sources of the event(s) leading up to the alert, or null
+	 * @param target
+	 *            optional targets of the event(s) leading up to the alert, or null
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a required argument is not present.
+	 */
+	public IDMEFMessage_CorrelationAlert(CorrelationAlert correlationAlert,
+			String messageID, Analyzer analyzer, DateTime createTime,
+			Classification classification, DateTime detectTime,
+			DateTime analyzerTime, Source[] source, Target[] target,
+			Assessment assessment, AdditionalData[] additionalData)
+			throws IllegalArgumentException {
+		super(messageID, analyzer, createTime, classification, detectTime,
+				analyzerTime, source, target, assessment, additionalData);
+
+		if (correlationAlert == null)
+			throw new IllegalArgumentException(
+					"Cannot instantiate IDMEFMessage_CorrelationAlert: 'correlationAlert' is required by the RFC");
+
+		this.correlationAlert = correlationAlert;
+	}
+
+	/**
+	 * The constructor behind IDMEFMessage_Alert.Builder.build()
+	 */
+	IDMEFMessage_CorrelationAlert(CorrelationAlert correlationAlert, IDMEFMessage_Alert.Builder b)
+	throws IllegalArgumentException {
+		super(b);
+
+		if (correlationAlert == null)
+			throw new IllegalArgumentException(
+					"Cannot instantiate IDMEFMessage_CorrelationAlert: 'correlationAlert' is required by the RFC");
+
+		this.correlationAlert = correlationAlert;
+	}
+
 	public CorrelationAlert getCorrelationAlert() {
 		return this.correlationAlert;
 	}
 
-	public String toString() {
-		return "\n\r[IDMEFMessage_CorrelationAlert] correlationAlert="+correlationAlert+" "+super.toString();
+	protected long fingerprint(long h) {
+		return super.fingerprint(Fingerprints.mix(h, correlationAlert));
+	}
+
+	protected boolean contentEquals(IDMEFMessage m) {
+		return Fingerprints.eq(correlationAlert, ((IDMEFMessage_CorrelationAlert) m).correlationAlert) && super.contentEquals(m);
+	}
+
+	protected void formatFields(Appendable out, boolean compact)
+	throws IOException {
+		Formats.field(out, compact, "correlationAlert", correlationAlert);
+		super.formatFields(out, compact);
 	}
 	
 }
@@ -21,6 +21,9 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+import java.util.Arrays;
+
 import org.joda.time.DateTime;
 
 
@@ -48,9 +51,14 @@ extends IDMEFMessage {
 
 		private String 				messageID;
 		private Analyzer 			analyzer;
-		private DateTime 			createTime;
+		private long 				createTime;
 		private int					heartbeatInterval;
-		private DateTime 			analyzerTime;
+		private long 				analyzerTime;
+		/**
+		 * The offsets from UTC the times were given with, in milliseconds
+		 */
+		private int					createOffset;
+		private int					analyzerOffset;
 		private AdditionalData[] 	additionalData;
 		
 		
@@ -75,16 +83,47 @@ extends IDMEFMessage {
 				AdditionalData[] additionalData
 				)
 		throws IllegalArgumentException {
+			this(messageID, analyzer, millisOf(createTime), offsetOf(createTime), millisOf(analyzerTime), offsetOf(analyzerTime),
+					heartbeatInterval, additionalData);
+		}
+
+		/**
+		 * A constructor taking times in milliseconds since 1970-01-01T00:00:00Z, in UTC, so that a
+		 * sensor can stamp heartbeats with System.currentTimeMillis() without making DateTimes.
+		 * 
+		 * @param createTime REQUIRED time the heartbeat was created.
+		 * @param analyzerTime optional current time on the analyzer, or NO_TIME
+		 * 
+		 * @throws IllegalArgumentException if a required parameter is not present.
+		 * @see #IDMEFMessage_Heartbeat(String, Analyzer, DateTime, DateTime, int, AdditionalData[])
+		 */
+		public IDMEFMessage_Heartbeat(
+				String messageID,
+				Analyzer analyzer,
+				long createTime,
+				long analyzerTime,
+				int heartbeatInterval,
+				AdditionalData[] additionalData
+				)
+		throws IllegalArgumentException {
+			this(messageID, analyzer, createTime, 0, analyzerTime, 0, heartbeatInterval, additionalData);
+		}
+
+		private IDMEFMessage_Heartbeat(String messageID, Analyzer analyzer, long createTime, int createOffset,
+				long analyzerTime, int analyzerOffset, int heartbeatInterval, AdditionalData[] additionalData)
+		throws IllegalArgumentException {
 		
 			// check for presence of required objects
-			if ( (analyzer == null) || (createTime == null) )
+			if ( (analyzer == null) || (createTime == NO_TIME) )
 				throw new IllegalArgumentException("Cannot instantiate IDMEFMessage_Heartbeat: 'analyzer' and 'createTime' are required by the RFC.");
 
 			// bind all objects, instance <- args
 			this.messageID = messageID;
 			this.analyzer = analyzer;
 			this.createTime = createTime;
+			this.createOffset = createOffset;
 			this.analyzerTime = analyzerTime;
+			this.analyzerOffset = analyzerOffset;
 			this.heartbeatInterval = heartbeatInterval;
 			this.additionalData = additionalData;
 		}
@@ -106,19 +145,61 @@ extends IDMEFMessage {
 		}
 
 		/**
-		 * @return the createTime
+		 * @return the createTime, made on each call
 		 */
 		public DateTime getCreateTime() {
+			return toDateTime(createTime, createOffset);
+		}
+
+		/**
+		 * @return the createTime in milliseconds since 1970-01-01T00:00:00Z
+		 */
+		public long getCreateTimeMillis() {
 			return createTime;
 		}
 
 		/**
-		 * @return the analyzerTimeor null if none was provided
+		 * @return the offset from UTC the createTime was given with, in milliseconds
+		 */
+		public int getCreateTimeOffset() {
+			return createOffset;
+		}
+
+		/**
+		 * @return the createTime as an NTP timestamp (see NtpStamp)
+		 */
+		public long getCreateTimeNtp() {
+			return NtpStamp.fromMillis(createTime);
+		}
+
+		/**
+		 * @return the analyzerTime, made on each call, or null if none was provided
 		 */
 		public DateTime getAnalyzerTime() {
+			return toDateTime(analyzerTime, analyzerOffset);
+		}
+
+		/**
+		 * @return the analyzerTime in milliseconds since 1970-01-01T00:00:00Z, or NO_TIME if none was provided
+		 */
+		public long getAnalyzerTimeMillis() {
 			return analyzerTime;
 		}
 
+		/**
+		 * @return the offset from UTC the analyzerTime was given with, in milliseconds
+		 */
+		public int getAnalyzerTimeOffset() {
+			return analyzerOffset;
+		}
+
+		/**
+		 * @return the analyzerTime as an NTP timestamp (see NtpStamp), or 0 if none was provided
+		 */
+		public long getAnalyzerTimeNtp() {
+			return (analyzerTime == NO_TIME) ? 0 : NtpStamp.fromMillis(analyzerTime);
+		}
+
 		/**
 		 * @return the heartbeat interval in seconds, or -1 if no heartbeat interval is set
 		 */
@@ -134,20 +215,160 @@ extends IDMEFMessage {
 		}
 
 		
-		public String toString() {
-			StringBuilder sb = new StringBuilder();
-			sb.append("\n\r[IDMEFMessage_Heartbeat] ");
-			sb.append(" messageID="+messageID);
-			sb.append(" analyzer="+analyzer);
-			sb.append(" createTime="+createTime);
-			sb.append(" heartbeatInterval="+heartbeatInterval);
-			sb.append(" analyzerTime="+analyzerTime);
-			if (additionalData != null)
-				for (int i = 0; i < additionalData.length; i++) 
-					sb.append(" additionalData["+i+"]="+additionalData[i]);
-			sb.append(super.toString());
-			return sb.toString();
+		protected long fingerprint(long h) {
+			h = Fingerprints.mix(h, messageID);
+			h = Fingerprints.mix(h, analyzer);
+			h = Fingerprints.mix(h, createTime);
+			h = Fingerprints.mix(h, heartbeatInterval);
+			h = Fingerprints.mix(h, analyzerTime);
+			h = Fingerprints.mix(h, additionalData);
+			return super.fingerprint(h);
 		}
+
+		protected boolean contentEquals(IDMEFMessage m) {
+			IDMEFMessage_Heartbeat hb = (IDMEFMessage_Heartbeat) m;
+			return Fingerprints.eq(messageID, hb.messageID) && Fingerprints.eq(analyzer, hb.analyzer)
+				&& (createTime == hb.createTime) && (heartbeatInterval == hb.heartbeatInterval)
+				&& (analyzerTime == hb.analyzerTime) && Fingerprints.eq(additionalData, hb.additionalData)
+				&& super.contentEquals(m);
+		}
+
 		
-		
+		protected void formatFields(Appendable out, boolean compact)
+		throws IOException {
+			Formats.field(out, compact, "messageID", messageID);
+			Formats.field(out, compact, "analyzer", analyzer);
+			Formats.time(out, compact, "createTime", createTime, createOffset);
+			Formats.field(out, compact, "heartbeatInterval", heartbeatInterval);
+			Formats.time(out, compact, "analyzerTime", analyzerTime, analyzerOffset);
+			Formats.array(out, compact, "additionalData", additionalData);
+			super.formatFields(out, compact);
+		}
+
+
+		/**
+		 * Builds heartbeats one after another; see IDMEFMessage_Alert.Builder.
+		 */
+		public static class Builder {
+
+			private String messageID;
+			private Analyzer analyzer;
+			private long createTime = NO_TIME;
+			private int createOffset;
+			private long analyzerTime = NO_TIME;
+			private int analyzerOffset;
+			private int heartbeatInterval = -1;
+			private AdditionalData[] additionalData = new AdditionalData[4];
+			private int additionalDataCount;
+
+			public Builder messageID(String messageID) {
+				this.messageID = messageID;
+				return this;
+			}
+
+			public Builder analyzer(Analyzer analyzer) {
+				this.analyzer = analyzer;
+				return this;
+			}
+
+			public Builder createTime(DateTime createTime) {
+				this.createTime = millisOf(createTime);
+				this.createOffset = offsetOf(createTime);
+				return this;
+			}
+
+			/**
+			 * @param millis the createTime in milliseconds since 1970-01-01T00:00:00Z, in UTC
+			 */
+			public Builder createTime(long millis) {
+				return createTime(millis, 0);
+			}
+
+			/**
+			 * @param millis the createTime in milliseconds since 1970-01-01T00:00:00Z
+			 * @param offsetMillis the offset from UTC of the zone the createTime was given in
+			 */
+			public Builder createTime(long millis, int offsetMillis) {
+				this.createTime = millis;
+				this.createOffset = offsetMillis;
+				return this;
+			}
+
+			/**
+			 * @param stamp the createTime as an NTP timestamp (see NtpStamp), in UTC
+			 */
+			public Builder createTimeNtp(long stamp) {
+				return createTime(NtpStamp.toMillis(stamp));
+			}
+
+			public Builder analyzerTime(DateTime analyzerTime) {
+				this.analyzerTime = millisOf(analyzerTime);
+				this.analyzerOffset = offsetOf(analyzerTime);
+				return this;
+			}
+
+			/**
+			 * @param millis the analyzerTime in milliseconds since 1970-01-01T00:00:00Z, in UTC
+			 */
+			public Builder analyzerTime(long millis) {
+				return analyzerTime(millis, 0);
+			}
+
+			/**
+			 * @param millis the analyzerTime in milliseconds since 1970-01-01T00:00:00Z
+			 * @param offsetMillis the offset from UTC of the zone the analyzerTime was given in
+			 */
+			public Builder analyzerTime(long millis, int offsetMillis) {
+				this.analyzerTime = millis;
+				this.analyzerOffset = offsetMillis;
+				return this;
+			}
+
+			/**
+			 * @param stamp the analyzerTime as an NTP timestamp (see NtpStamp), in UTC
+			 */
+			public Builder analyzerTimeNtp(long stamp) {
+				return analyzerTime(NtpStamp.toMillis(stamp));
+			}
+
+			public Builder heartbeatInterval(int heartbeatInterval) {
+				this.heartbeatInterval = heartbeatInterval;
+				return this;
+			}
+
+			public Builder addAdditionalData(AdditionalData additionalData) {
+				if (additionalDataCount == this.additionalData.length)
+					this.additionalData = Arrays.copyOf(this.additionalData, additionalDataCount * 2);
+				this.additionalData[additionalDataCount++] = additionalData;
+				return this;
+			}
+
+			/**
+			 * @return a new heartbeat holding the fields set so far
+			 * @throws IllegalArgumentException if analyzer or createTime is missing
+			 */
+			public IDMEFMessage_Heartbeat build()
+			throws IllegalArgumentException {
+				AdditionalData[] ad = (additionalDataCount == 0) ? null : Arrays.copyOf(additionalData, additionalDataCount);
+				return new IDMEFMessage_Heartbeat(messageID, analyzer, createTime, createOffset, analyzerTime, analyzerOffset, heartbeatInterval, ad);
+			}
+
+			/**
+			 * Clear every field, keeping the arrays for the next heartbeat
+			 */
+			public Builder reset() {
+				messageID = null;
+				analyzer = null;
+				createTime = NO_TIME;
+				createOffset = 0;
+				analyzerTime = NO_TIME;
+				analyzerOffset = 0;
+				heartbeatInterval = -1;
+				Arrays.fill(additionalData, 0, additionalDataCount, null);
+				additionalDataCount = 0;
+				return this;
+			}
+
+		}
+
 	}
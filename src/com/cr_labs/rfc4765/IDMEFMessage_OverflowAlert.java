@@ -21,6 +21,8 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+
 import org.joda.time.DateTime;
 
 /**
@@ -90,12 +92,65 @@ public class IDMEFMessage_OverflowAlert extends IDMEFMessage_Alert {
 		this.overflowAlert = overflowAlert;
 	}
 
+	/**
+	 * Same as the constructor above, but accepting any number of sources and targets.
+	 * 
+	 * @param overflowAlert
+	 *            REQUIRED OverflowAlert object
+	 * @param source
+	 *            optional sources of the event(s) leading up to the alert, or null
+	 * @param target
+	 *            optional targets of the event(s) leading up to the alert, or null
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a required argument is not present.
+	 */
+	public IDMEFMessage_OverflowAlert(OverflowAlert overflowAlert,
+			String messageID, Analyzer analyzer, DateTime createTime,
+			Classification classification, DateTime detectTime,
+			DateTime analyzerTime, Source[] source, Target[] target,
+			Assessment assessment, AdditionalData[] additionalData)
+			throws IllegalArgumentException {
+		super(messageID, analyzer, createTime, classification, detectTime,
+				analyzerTime, source, target, assessment, additionalData);
+
+		if (overflowAlert == null)
+			throw new IllegalArgumentException(
+					"Cannot instantiate IDMEFMessage_OverflowAlert: 'overflowAlert' is required by the RFC");
+
+		this.overflowAlert = overflowAlert;
+	}
+
+	/**
+	 * The constructor behind IDMEFMessage_Alert.Builder.build()
+	 */
+	IDMEFMessage_OverflowAlert(OverflowAlert overflowAlert, IDMEFMessage_Alert.Builder b)
+	throws IllegalArgumentException {
+		super(b);
+
+		if (overflowAlert == null)
+			throw new IllegalArgumentException(
+					"Cannot instantiate IDMEFMessage_OverflowAlert: 'overflowAlert' is required by the RFC");
+
+		this.overflowAlert = overflowAlert;
+	}
+
 	public OverflowAlert getOverflowAlert() {
 		return this.overflowAlert;
 	}
 	
-	public String toString() {
-		return "\n\r[IDMEFMessage_OverflowAlert] overflowAlert="+overflowAlert+" "+super.toString();
+	protected long fingerprint(long h) {
+		return super.fingerprint(Fingerprints.mix(h, overflowAlert));
+	}
+
+	protected boolean contentEquals(IDMEFMessage m) {
+		return Fingerprints.eq(overflowAlert, ((IDMEFMessage_OverflowAlert) m).overflowAlert) && super.contentEquals(m);
+	}
+
+	protected void formatFields(Appendable out, boolean compact)
+	throws IOException {
+		Formats.field(out, compact, "overflowAlert", overflowAlert);
+		super.formatFields(out, compact);
 	}
 
 
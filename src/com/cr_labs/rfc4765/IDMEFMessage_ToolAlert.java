@@ -21,6 +21,8 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+
 import org.joda.time.DateTime;
 
 /**
@@ -90,12 +92,65 @@ public class IDMEFMessage_ToolAlert extends IDMEFMessage_Alert {
 		this.toolAlert = toolAlert;
 	}
 
+	/**
+	 * Same as the constructor above, but accepting any number of sources and targets.
+	 * 
+	 * @param toolAlert
+	 *            REQUIRED ToolAlert object
+	 * @param source
+	 *            optional sources of the event(s) leading up to the alert, or null
+	 * @param target
+	 *            optional targets of the event(s) leading up to the alert, or null
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if a required argument is not present.
+	 */
+	public IDMEFMessage_ToolAlert(ToolAlert toolAlert,
+			String messageID, Analyzer analyzer, DateTime createTime,
+			Classification classification, DateTime detectTime,
+			DateTime analyzerTime, Source[] source, Target[] target,
+			Assessment assessment, AdditionalData[] additionalData)
+			throws IllegalArgumentException {
+		super(messageID, analyzer, createTime, classification, detectTime,
+				analyzerTime, source, target, assessment, additionalData);
+
+		if (toolAlert == null)
+			throw new IllegalArgumentException(
+					"Cannot instantiate IDMEFMessage_ToolAlert: 'toolAlert' is required by the RFC");
+
+		this.toolAlert = toolAlert;
+	}
+
+	/**
+	 * The constructor behind IDMEFMessage_Alert.Builder.build()
+	 */
+	IDMEFMessage_ToolAlert(ToolAlert toolAlert, IDMEFMessage_Alert.Builder b)
+	throws IllegalArgumentException {
+		super(b);
+
+		if (toolAlert == null)
+			throw new IllegalArgumentException(
+					"Cannot instantiate IDMEFMessage_ToolAlert: 'toolAlert' is required by the RFC");
+
+		this.toolAlert = toolAlert;
+	}
+
 	public ToolAlert getToolAlert() {
 		return this.toolAlert;
 	}
 
-	public String toString() {
-		return "\n\r[IDMEFMessage_ToolAlert] toolAlert="+toolAlert+" "+super.toString();
+	protected long fingerprint(long h) {
+		return super.fingerprint(Fingerprints.mix(h, toolAlert));
+	}
+
+	protected boolean contentEquals(IDMEFMessage m) {
+		return Fingerprints.eq(toolAlert, ((IDMEFMessage_ToolAlert) m).toolAlert) && super.contentEquals(m);
+	}
+
+	protected void formatFields(Appendable out, boolean compact)
+	throws IOException {
+		Formats.field(out, compact, "toolAlert", toolAlert);
+		super.formatFields(out, compact);
 	}
 
 }
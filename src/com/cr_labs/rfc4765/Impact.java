@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 
 /**
  * Implements the Impact class 4.2.6.1 of RFC4765
@@ -27,17 +29,19 @@ Contact: jim@cr-labs.com
  * @author jim
  *
  */
-public class Impact {
+public class Impact
+implements Fingerprinted, Formatted {
 
 	private Severity severity;
 	private Completion completion;
 	private Type type;
+	private volatile long fingerprint;
 	
 	
 	/** 
 	 * An estimate of the relative severity of the event.  The permitted values are shown below.  There is no default value.
 	 */
-	public static enum Severity {
+	public static enum Severity implements CodedEnum {
 		INFO (0), LOW (1), MEDIUM (2), HIGH (3);
 		private final int severityCode;
 		Severity(int s) {
@@ -52,7 +56,7 @@ public class Impact {
 	/** 
 	 * An indication of whether the analyzer believes the attempt that the event describes was successful or not.  The permitted values are shown below.  There is no default value.
 	 */
-	public static enum Completion {
+	public static enum Completion implements CodedEnum {
 		FAILED (0), SUCCEEDED (1);
 		private final int completionCode;
 		Completion(int c) {
@@ -84,7 +88,7 @@ public class Impact {
    	 *	+------+---------+--------------------------------------------------+
 	 * </pre>
 	 */
-	public static enum Type {
+	public static enum Type implements CodedEnum {
 		ADMIN (0), DOS (1), FILE (2), RECON (3), USER (4), OTHER (5);
 		private final int typeCode;
 		Type(int t) {
@@ -154,13 +158,50 @@ public class Impact {
 		return type.getValue();
 	}
 
+	/**
+	 * @return a 64 bit hash of the content of the Impact, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, severity);
+			h = Fingerprints.mix(h, completion);
+			h = Fingerprints.mix(h, type);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Impacts are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Impact x = (Impact) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(severity, x.severity) && Fingerprints.eq(completion, x.completion) && Fingerprints.eq(type, x.type);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Impact", compact);
+		Formats.field(out, compact, "severity", severity);
+		Formats.field(out, compact, "completion", completion);
+		Formats.field(out, compact, "type", type);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Impact] ");
-		sb.append("severity="+severity);
-		sb.append(" completion="+completion);
-		sb.append(" type="+type);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 	
@@ -21,6 +21,8 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+
 import org.joda.time.DateTime;
 
 
@@ -33,7 +35,8 @@ import org.joda.time.DateTime;
  *
  */
 
-public class Inode {
+public class Inode
+implements Fingerprinted, Formatted {
 
 	private DateTime	changeTime;
 	private int			number;
@@ -41,6 +44,7 @@ public class Inode {
 	private int			minorDevice;
 	private int			cMajorDevice;
 	private int			cMinorDevice;
+	private volatile long	fingerprint;
 	
 	
 	/**
@@ -125,16 +129,57 @@ public class Inode {
 	}
 	
 	
+	/**
+	 * @return a 64 bit hash of the content of the Inode, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, changeTime);
+			h = Fingerprints.mix(h, number);
+			h = Fingerprints.mix(h, majorDevice);
+			h = Fingerprints.mix(h, minorDevice);
+			h = Fingerprints.mix(h, cMajorDevice);
+			h = Fingerprints.mix(h, cMinorDevice);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Inodes are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Inode x = (Inode) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(changeTime, x.changeTime) && (number == x.number) && (majorDevice == x.majorDevice)
+			&& (minorDevice == x.minorDevice) && (cMajorDevice == x.cMajorDevice) && (cMinorDevice == x.cMinorDevice);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Inode", compact);
+		Formats.field(out, compact, "changeTime", changeTime);
+		Formats.field(out, compact, "number", number);
+		Formats.field(out, compact, "majorDevice", majorDevice);
+		Formats.field(out, compact, "minorDevice", minorDevice);
+		Formats.field(out, compact, "cMajorDevice", cMajorDevice);
+		Formats.field(out, compact, "cMinorDevice", cMinorDevice);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Inode] ");
-		sb.append(" changeTime="+changeTime);
-		sb.append(" number="+number);
-		sb.append(" majorDevice="+majorDevice);
-		sb.append(" minorDevice="+minorDevice);
-		sb.append(" cMajorDevice="+cMajorDevice);
-		sb.append(" cMinorDevice="+cMinorDevice);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 	
@@ -20,21 +20,25 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 /**
  * Implements 4.2.7.6.2 Linkage Class of RFC4765
  * @author jim
  *
  */
 
-public class Linkage {
+public class Linkage
+implements Fingerprinted, Formatted {
 
 	private String name;
 	private String path;
 	private com.cr_labs.rfc4765.File file;
 	private Category category;
+	private volatile long fingerprint;
 	
 	
-	public static enum Category {
+	public static enum Category implements CodedEnum {
 		HARD_LINK (0), MOUNT_POINT (1), REPARSE_POINT (2), SHORTCUT (3), STREAM (4), SYMBOLIC_LINK (5);
 		private final int categoryCode;
 		Category(int c) {
@@ -109,14 +113,53 @@ public class Linkage {
 	}
 
 	
+	/**
+	 * @return a 64 bit hash of the content of the Linkage, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, path);
+			h = Fingerprints.mix(h, file);
+			h = Fingerprints.mix(h, category);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Linkages are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Linkage x = (Linkage) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(name, x.name) && Fingerprints.eq(path, x.path) && Fingerprints.eq(file, x.file)
+			&& Fingerprints.eq(category, x.category);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Linkage", compact);
+		Formats.field(out, compact, "name", name);
+		Formats.field(out, compact, "path", path);
+		Formats.field(out, compact, "file", file);
+		Formats.field(out, compact, "category", category);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Linkage] ");
-		sb.append("name="+name);
-		sb.append(" path="+path);
-		sb.append(" file="+file);
-		sb.append(" category="+category);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 }
@@ -20,6 +20,9 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+import java.util.Arrays;
+
 
 /**
  * Implements Section 4.2.7.2. The Node Class of RFC4765
@@ -28,15 +31,19 @@ Contact: jim@cr-labs.com
  * @version 0.1
  */
 
-public class Node {
+public class Node
+implements Fingerprinted, Formatted {
 	
 	private String 		ident;
 	private Category 	category;
 	private String 		location;
 	private String 		name;
 	private Address[] 	address;
+	private volatile long	fingerprint;
+	// shared by all instances with none, as an empty array cannot change
+	private static final Address[] NO_ADDRESSES = new Address[0];
 
-	public static enum Category {
+	public static enum Category implements CodedEnum {
 		UNKNOWN (0),
 		ADS (1),
 		AFS (2),
@@ -85,9 +92,10 @@ public class Node {
 			this.category = Category.UNKNOWN;
 		else
 			this.category = category;
+		this.location = location;
 		this.name = name;
 		if (address == null)
-			this.address = new Address[0];
+			this.address = NO_ADDRESSES;
 		else
 			this.address = address;
 	}
@@ -140,17 +148,118 @@ public class Node {
 	}
 
 	
+	/**
+	 * @return a 64 bit hash of the content of the Node, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, category);
+			h = Fingerprints.mix(h, location);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, address);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Nodes are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Node x = (Node) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(category, x.category) && Fingerprints.eq(location, x.location)
+			&& Fingerprints.eq(name, x.name) && Fingerprints.eq(address, x.address);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Node", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "category", category);
+		Formats.field(out, compact, "location", location);
+		Formats.field(out, compact, "name", name);
+		Formats.array(out, compact, "address", address);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Node] ");
-		sb.append("ident="+ident);
-		sb.append(" category="+category);
-		sb.append(" location="+location);
-		sb.append(" name="+name);
-		if (address != null)
-			for (int i = 0; i < address.length; i++)
-				sb.append(" address["+i+"]="+address[i]);
-		return sb.toString();
+		return Formats.toString(this, false);
+	}
+
+
+	/**
+	 * Builds Nodes, collecting their Addresses without intermediate arrays; see IDMEFMessage_Alert.Builder.
+	 */
+	public static class Builder {
+
+		private String ident;
+		private Category category;
+		private String location;
+		private String name;
+		private Address[] address = new Address[4];
+		private int addressCount;
+
+		public Builder ident(String ident) {
+			this.ident = ident;
+			return this;
+		}
+
+		public Builder category(Category category) {
+			this.category = category;
+			return this;
+		}
+
+		public Builder location(String location) {
+			this.location = location;
+			return this;
+		}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder addAddress(Address address) {
+			if (addressCount == this.address.length)
+				this.address = Arrays.copyOf(this.address, addressCount * 2);
+			this.address[addressCount++] = address;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException if neither name nor an Address was given
+		 */
+		public Node build()
+		throws IllegalArgumentException {
+			return new Node(ident, category, location, name, (addressCount == 0) ? null : Arrays.copyOf(address, addressCount));
+		}
+
+		/**
+		 * Clear every field, keeping the arrays for the next Node
+		 */
+		public Builder reset() {
+			ident = null;
+			category = null;
+			location = null;
+			name = null;
+			Arrays.fill(address, 0, addressCount, null);
+			addressCount = 0;
+			return this;
+		}
+
 	}
 
 }
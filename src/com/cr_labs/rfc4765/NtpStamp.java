@@ -0,0 +1,209 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Conversions of the NTPSTAMP data type (RFC4765 Section 3.2.7): a 64 bit NTP timestamp of
+ * 32 bits of seconds since 1900-01-01T00:00:00Z and 32 bits of binary fraction of a second,
+ * held in a long, to and from epoch milliseconds, epoch nanoseconds, DateTimes and the text
+ * form "0xbc71f4f5.0xef449129". None of the conversions to or from a long allocates.
+ *
+ * <p>The 32 bits of seconds wrap in 2036. As in RFC4330, a stamp with the top bit of its
+ * seconds clear is taken to be after the wrap, so stamps cover 1968-01-20 to 2104-02-26;
+ * times outside that range wrap. Fractions convert to milliseconds and nanoseconds rounded
+ * to the nearest, so a time converted to a stamp and back is unchanged.
+ */
+public final class NtpStamp {
+
+	/**
+	 * Seconds from the NTP epoch (1900-01-01) to the Unix epoch (1970-01-01)
+	 */
+	public static final long EPOCH_OFFSET_SECONDS = 2208988800L;
+
+	/**
+	 * Length of the text form
+	 */
+	public static final int TEXT_LENGTH = 21;
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private NtpStamp() {
+	}
+
+
+	/**
+	 * @param millis milliseconds since 1970-01-01T00:00:00Z
+	 * @return the NTP stamp of that time
+	 */
+	public static long fromMillis(long millis) {
+		long seconds = floorDiv(millis, 1000L);
+		long fraction = ((millis - seconds * 1000L) << 32) / 1000L;
+		return ((seconds + EPOCH_OFFSET_SECONDS) << 32) | fraction;
+	}
+
+	/**
+	 * @param nanos nanoseconds since 1970-01-01T00:00:00Z
+	 * @return the NTP stamp of that time
+	 */
+	public static long fromNanos(long nanos) {
+		long seconds = floorDiv(nanos, 1000000000L);
+		long fraction = ((nanos - seconds * 1000000000L) << 32) / 1000000000L;
+		return ((seconds + EPOCH_OFFSET_SECONDS) << 32) | fraction;
+	}
+
+	/**
+	 * @return the NTP stamp of t
+	 */
+	public static long fromDateTime(DateTime t) {
+		return fromMillis(t.getMillis());
+	}
+
+	/**
+	 * @return the seconds of stamp since 1970-01-01T00:00:00Z
+	 */
+	public static long toSeconds(long stamp) {
+		long seconds = stamp >>> 32;
+		// RFC4330: with the top bit clear, the stamp is of the era starting 2036-02-07
+		if ((seconds & 0x80000000L) == 0)
+			seconds += 1L << 32;
+		return seconds - EPOCH_OFFSET_SECONDS;
+	}
+
+	/**
+	 * @return stamp in milliseconds since 1970-01-01T00:00:00Z, rounded to the nearest
+	 */
+	public static long toMillis(long stamp) {
+		return toSeconds(stamp) * 1000L + (((stamp & 0xffffffffL) * 1000L + 0x80000000L) >>> 32);
+	}
+
+	/**
+	 * @return stamp in nanoseconds since 1970-01-01T00:00:00Z, rounded to the nearest
+	 */
+	public static long toNanos(long stamp) {
+		return toSeconds(stamp) * 1000000000L + (((stamp & 0xffffffffL) * 1000000000L + 0x80000000L) >>> 32);
+	}
+
+	/**
+	 * @return stamp as a DateTime in UTC
+	 */
+	public static DateTime toDateTime(long stamp) {
+		return new DateTime(toMillis(stamp), DateTimeZone.UTC);
+	}
+
+
+	/**
+	 * Append the text form of stamp, "0x" and eight lower case hex digits of seconds, then
+	 * ".0x" and eight of fraction
+	 */
+	public static void append(Appendable out, long stamp)
+	throws IOException {
+		out.append('0').append('x');
+		appendHex32(out, stamp >>> 32);
+		out.append('.').append('0').append('x');
+		appendHex32(out, stamp);
+	}
+
+	/**
+	 * Append the text form of stamp to a StringBuilder, which cannot throw an IOException
+	 */
+	public static StringBuilder append(StringBuilder sb, long stamp) {
+		try {
+			append((Appendable) sb, stamp);
+		}
+		catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return sb;
+	}
+
+	/**
+	 * @return the text form of stamp
+	 */
+	public static String toString(long stamp) {
+		return append(new StringBuilder(TEXT_LENGTH), stamp).toString();
+	}
+
+	/**
+	 * Parse the text form: "0x", one to eight hex digits of seconds, ".0x" and one to eight hex
+	 * digits of fraction, in either case, with no spaces
+	 *
+	 * @throws IllegalArgumentException if s is not in that form
+	 */
+	public static long parse(CharSequence s)
+	throws IllegalArgumentException {
+		return parse(s, 0, s.length());
+	}
+
+	/**
+	 * Parse the text form from s[start, end)
+	 *
+	 * @throws IllegalArgumentException if that part of s is not an NTPSTAMP
+	 */
+	public static long parse(CharSequence s, int start, int end)
+	throws IllegalArgumentException {
+		int dot = start;
+		while ((dot < end) && (s.charAt(dot) != '.'))
+			dot++;
+		long seconds = parseHex32(s, start, dot);
+		long fraction = parseHex32(s, dot + 1, end);
+		if ((seconds < 0) || (fraction < 0))
+			throw new IllegalArgumentException("Not an RFC4765 NTPSTAMP: "+s.subSequence(start, end));
+		return (seconds << 32) | fraction;
+	}
+
+
+	/**
+	 * @return the value of "0x" and one to eight hex digits in s[start, end), or -1 if there are none
+	 */
+	private static long parseHex32(CharSequence s, int start, int end) {
+		if ((end - start < 3) || (end - start > 10) || (s.charAt(start) != '0')
+				|| ((s.charAt(start + 1) != 'x') && (s.charAt(start + 1) != 'X')))
+			return -1;
+		long v = 0;
+		for (int i = start + 2; i < end; i++) {
+			int d = Character.digit(s.charAt(i), 16);
+			if (d < 0)
+				return -1;
+			v = (v << 4) | d;
+		}
+		return v;
+	}
+
+	private static void appendHex32(Appendable out, long v)
+	throws IOException {
+		for (int shift = 28; shift >= 0; shift -= 4)
+			out.append(HEX[(int) ((v >>> shift) & 0xf)]);
+	}
+
+	private static long floorDiv(long a, long b) {
+		long q = a / b;
+		if ((a % b != 0) && ((a ^ b) < 0))
+			q--;
+		return q;
+	}
+
+}
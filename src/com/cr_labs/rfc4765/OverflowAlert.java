@@ -20,14 +20,18 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
 
-public class OverflowAlert {
+
+public class OverflowAlert
+implements Fingerprinted, Formatted {
 
 	private String program;
 
 	private int size;
 
 	private byte[] buffer;
+	private volatile long fingerprint;
 
 	/**
 	 * 
@@ -81,16 +85,54 @@ public class OverflowAlert {
 	}
 
 	
-	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[OverflowAlert] ");
-		sb.append("program="+program);
-		sb.append(" size="+size);
-		sb.append(" buffer=");
-		if (buffer != null)
+	/**
+	 * @return a 64 bit hash of the content of the OverflowAlert, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, program);
+			h = Fingerprints.mix(h, size);
+			h = Fingerprints.mix(h, buffer);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * OverflowAlerts are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		OverflowAlert x = (OverflowAlert) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(program, x.program) && (size == x.size) && Fingerprints.eq(buffer, x.buffer);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "OverflowAlert", compact);
+		Formats.field(out, compact, "program", program);
+		Formats.field(out, compact, "size", size);
+		if (buffer != null) {
+			out.append(" buffer=");
 			for (int i = 0; i < buffer.length; i++)
-				sb.append(buffer[i]);
-		return sb.toString();
+				Formats.appendLong(out, buffer[i]);
+		}
+		Formats.close(out, compact);
+	}
+
+	public String toString() {
+		return Formats.toString(this, false);
 	}
 	
 	
@@ -0,0 +1,513 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An immutable set of ports (0-65535), such as a Service portlist or a PORTLIST AdditionalData.
+ *
+ * The set is held as an ascending list of port ranges, or as a bitmap of all 65536 ports when
+ * that is smaller (beyond MAX_RANGES ranges), so contains() is a binary search or a bit test.
+ * The RFC4765 portlist syntax ("1-3,5,7") is parsed once by the constructor, and toString()
+ * writes it back in its shortest form.
+ */
+public final class PortSet
+implements Fingerprinted, Formatted {
+
+	public static final int MAX_PORT = 65535;
+	/**
+	 * Sets of more ranges than this are held as a bitmap, which takes 8 KB whatever the set
+	 */
+	public static final int MAX_RANGES = 1024;
+
+	public static final PortSet EMPTY = new PortSet(new int[0], 0);
+
+	/**
+	 * low0, high0, low1, high1...: ascending, disjoint and not adjacent; null if the set is a bitmap
+	 */
+	private final int[] ranges;
+	/**
+	 * One bit per port, port p in bit (p & 63) of word p >>> 6; null if the set is a range list
+	 */
+	private final long[] bitmap;
+	private final int size;
+	private volatile long fingerprint;
+
+
+	/**
+	 * @param portlist REQUIRED ports and low-high ranges of ports, separated by commas (RFC4765 section 4.2.7.5)
+	 * @throws IllegalArgumentException if portlist is null or not a portlist of ports 0-65535
+	 */
+	public PortSet(String portlist)
+	throws IllegalArgumentException {
+		this(normalize(parse(portlist)), -1);
+	}
+
+	/**
+	 * @param ports REQUIRED the ports, in any order and with any repeats. The array is not kept.
+	 * @throws IllegalArgumentException if ports is null or holds a port outside 0-65535
+	 */
+	public PortSet(int[] ports)
+	throws IllegalArgumentException {
+		this(fromPorts(ports), -1);
+	}
+
+	/**
+	 * @param low the first port of the range
+	 * @param high the last port of the range
+	 * @throws IllegalArgumentException if the range is not within 0-65535 or low is above high
+	 */
+	public PortSet(int low, int high)
+	throws IllegalArgumentException {
+		this(new int[] { check(low), check(high) }, 2);
+		if (low > high)
+			throw new IllegalArgumentException("Invalid port range: "+low+"-"+high);
+	}
+
+	/**
+	 * @param ranges normalized ranges
+	 * @param n the length of ranges in use, or -1 for all of it
+	 */
+	private PortSet(int[] ranges, int n) {
+		if (n >= 0)
+			ranges = trim(ranges, n);
+		int size = 0;
+		for (int i = 0; i < ranges.length; i += 2)
+			size += ranges[i + 1] - ranges[i] + 1;
+		this.size = size;
+		if (ranges.length / 2 > MAX_RANGES) {
+			this.ranges = null;
+			this.bitmap = new long[(MAX_PORT + 1) / 64];
+			for (int i = 0; i < ranges.length; i += 2)
+				setBits(bitmap, ranges[i], ranges[i + 1]);
+		}
+		else {
+			this.ranges = ranges;
+			this.bitmap = null;
+		}
+	}
+
+	/**
+	 * @param bitmap a bitmap of all ports, which is kept if the set stays one
+	 */
+	private PortSet(long[] bitmap) {
+		int size = 0;
+		for (int i = 0; i < bitmap.length; i++)
+			size += Long.bitCount(bitmap[i]);
+		this.size = size;
+		int[] ranges = toRanges(bitmap);
+		if (ranges.length / 2 > MAX_RANGES) {
+			this.ranges = null;
+			this.bitmap = bitmap;
+		}
+		else {
+			this.ranges = ranges;
+			this.bitmap = null;
+		}
+	}
+
+
+	/**
+	 * @return true if port is in the set
+	 */
+	public boolean contains(int port) {
+		if ((port < 0) || (port > MAX_PORT))
+			return false;
+		if (bitmap != null)
+			return (bitmap[port >>> 6] & (1L << port)) != 0;
+		int i = rangeAtOrBefore(ranges, port);
+		return (i >= 0) && (port <= ranges[i + 1]);
+	}
+
+	/**
+	 * @return the smallest port of the set that is at least from, or -1 if there is none. With it
+	 * the ports can be visited without allocating:
+	 * <code>for (int p = set.nextPort(0); p &gt;= 0; p = set.nextPort(p + 1))</code>
+	 */
+	public int nextPort(int from) {
+		if (from < 0)
+			from = 0;
+		if (from > MAX_PORT)
+			return -1;
+		if (bitmap != null) {
+			int w = from >>> 6;
+			long word = bitmap[w] & (-1L << from);
+			while (word == 0) {
+				if (++w == bitmap.length)
+					return -1;
+				word = bitmap[w];
+			}
+			return (w << 6) + Long.numberOfTrailingZeros(word);
+		}
+		int i = rangeAtOrBefore(ranges, from);
+		if ((i >= 0) && (from <= ranges[i + 1]))
+			return from;
+		i += 2;
+		return (i < ranges.length) ? ranges[i] : -1;
+	}
+
+	/**
+	 * @return the number of ports in the set
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @return the number of runs of consecutive ports in the set
+	 */
+	public int getRangeCount() {
+		return ranges().length / 2;
+	}
+
+	/**
+	 * @return the ports of the set, ascending
+	 */
+	public int[] toArray() {
+		int[] ports = new int[size];
+		int n = 0;
+		int[] r = ranges();
+		for (int i = 0; i < r.length; i += 2)
+			for (int p = r[i]; p <= r[i + 1]; p++)
+				ports[n++] = p;
+		return ports;
+	}
+
+	/**
+	 * @return the ports in either set
+	 */
+	public PortSet union(PortSet other) {
+		if ((bitmap != null) || (other.bitmap != null)) {
+			long[] a = bitmap();
+			long[] b = other.bitmap();
+			for (int i = 0; i < a.length; i++)
+				a[i] |= b[i];
+			return new PortSet(a);
+		}
+		int[] merged = new int[ranges.length + other.ranges.length];
+		int i = 0;
+		int j = 0;
+		int n = 0;
+		while ((i < ranges.length) || (j < other.ranges.length)) {
+			int[] from;
+			int k;
+			if ((j == other.ranges.length) || ((i < ranges.length) && (ranges[i] <= other.ranges[j]))) {
+				from = ranges;
+				k = i;
+				i += 2;
+			}
+			else {
+				from = other.ranges;
+				k = j;
+				j += 2;
+			}
+			if ((n > 0) && (from[k] <= merged[n - 1] + 1))
+				merged[n - 1] = Math.max(merged[n - 1], from[k + 1]);
+			else {
+				merged[n++] = from[k];
+				merged[n++] = from[k + 1];
+			}
+		}
+		return new PortSet(merged, n);
+	}
+
+	/**
+	 * @return the ports in both sets
+	 */
+	public PortSet intersection(PortSet other) {
+		if ((bitmap != null) || (other.bitmap != null)) {
+			long[] a = bitmap();
+			long[] b = other.bitmap();
+			for (int i = 0; i < a.length; i++)
+				a[i] &= b[i];
+			return new PortSet(a);
+		}
+		int[] common = new int[ranges.length + other.ranges.length];
+		int i = 0;
+		int j = 0;
+		int n = 0;
+		while ((i < ranges.length) && (j < other.ranges.length)) {
+			int low = Math.max(ranges[i], other.ranges[j]);
+			int high = Math.min(ranges[i + 1], other.ranges[j + 1]);
+			if (low <= high) {
+				common[n++] = low;
+				common[n++] = high;
+			}
+			if (ranges[i + 1] < other.ranges[j + 1])
+				i += 2;
+			else
+				j += 2;
+		}
+		return new PortSet(common, n);
+	}
+
+
+	/**
+	 * @return a 64 bit hash of the ports in the set, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, size);
+			if (bitmap != null)
+				for (int i = 0; i < bitmap.length; i++)
+					h = Fingerprints.mix(h, bitmap[i]);
+			else
+				for (int i = 0; i < ranges.length; i++)
+					h = Fingerprints.mix(h, ranges[i]);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (! (o instanceof PortSet))
+			return false;
+		PortSet s = (PortSet) o;
+		if ((size != s.size) || (getFingerprint() != s.getFingerprint()))
+			return false;
+		if ((bitmap != null) && (s.bitmap != null))
+			return Arrays.equals(bitmap, s.bitmap);
+		// a set is a bitmap only when it has more than MAX_RANGES ranges, so the forms of equal sets agree
+		return (bitmap == null) && (s.bitmap == null) && Arrays.equals(ranges, s.ranges);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+	/**
+	 * Append the set in the RFC4765 portlist syntax, the same in both forms
+	 */
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		int[] r = ranges();
+		for (int i = 0; i < r.length; i += 2) {
+			if (i > 0)
+				out.append(',');
+			Formats.appendLong(out, r[i]);
+			if (r[i + 1] != r[i]) {
+				out.append('-');
+				Formats.appendLong(out, r[i + 1]);
+			}
+		}
+	}
+
+	/**
+	 * @return the set in the RFC4765 portlist syntax, with a low-high range for each run of
+	 * more than one port
+	 */
+	public String toString() {
+		return Formats.toString(this, false);
+	}
+
+
+	private int[] ranges() {
+		return (ranges != null) ? ranges : toRanges(bitmap);
+	}
+
+	/**
+	 * @return a bitmap of the set, which the caller may change
+	 */
+	private long[] bitmap() {
+		if (bitmap != null)
+			return bitmap.clone();
+		long[] b = new long[(MAX_PORT + 1) / 64];
+		for (int i = 0; i < ranges.length; i += 2)
+			setBits(b, ranges[i], ranges[i + 1]);
+		return b;
+	}
+
+	/**
+	 * @return the index of the last range whose low port is at most port, or -2 if there is none
+	 */
+	private static int rangeAtOrBefore(int[] ranges, int port) {
+		int lo = 0;
+		int hi = ranges.length / 2 - 1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (ranges[mid * 2] <= port)
+				lo = mid + 1;
+			else
+				hi = mid - 1;
+		}
+		return hi * 2;
+	}
+
+	private static void setBits(long[] bitmap, int low, int high) {
+		for (int w = low >>> 6; w <= high >>> 6; w++) {
+			long mask = -1L;
+			if (w == low >>> 6)
+				mask &= -1L << low;
+			if (w == high >>> 6)
+				mask &= -1L >>> (63 - (high & 63));
+			bitmap[w] |= mask;
+		}
+	}
+
+	private static int[] toRanges(long[] bitmap) {
+		int[] r = new int[16];
+		int n = 0;
+		int p = 0;
+		while (p <= MAX_PORT) {
+			// the next set bit, then the next clear bit after it
+			int w = p >>> 6;
+			long word = bitmap[w] & (-1L << p);
+			while ((word == 0) && (++w < bitmap.length))
+				word = bitmap[w];
+			if (word == 0)
+				break;
+			int low = (w << 6) + Long.numberOfTrailingZeros(word);
+			word = ~bitmap[w] & (-1L << low);
+			while ((word == 0) && (++w < bitmap.length))
+				word = ~bitmap[w];
+			int high = (word == 0) ? MAX_PORT : (w << 6) + Long.numberOfTrailingZeros(word) - 1;
+			if (n == r.length)
+				r = Arrays.copyOf(r, n * 2);
+			r[n++] = low;
+			r[n++] = high;
+			p = high + 1;
+		}
+		return trim(r, n);
+	}
+
+	private static int[] trim(int[] a, int n) {
+		return (n == a.length) ? a : Arrays.copyOf(a, n);
+	}
+
+	private static int check(int port)
+	throws IllegalArgumentException {
+		if ((port < 0) || (port > MAX_PORT))
+			throw new IllegalArgumentException("Port out of range 0-65535: "+port);
+		return port;
+	}
+
+	/**
+	 * @return the ranges of a sorted copy of ports
+	 */
+	private static int[] fromPorts(int[] ports)
+	throws IllegalArgumentException {
+		if (ports == null)
+			throw new IllegalArgumentException("Required parameter 'ports' was null");
+		int[] sorted = ports.clone();
+		Arrays.sort(sorted);
+		int[] r = new int[16];
+		int n = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			int p = check(sorted[i]);
+			if ((n > 0) && (p <= r[n - 1] + 1))
+				r[n - 1] = p;
+			else {
+				if (n == r.length)
+					r = Arrays.copyOf(r, n * 2);
+				r[n++] = p;
+				r[n++] = p;
+			}
+		}
+		return trim(r, n);
+	}
+
+	/**
+	 * @return the ranges of a portlist, as written, each packed as low << 16 | high
+	 */
+	private static long[] parse(String portlist)
+	throws IllegalArgumentException {
+		if (portlist == null)
+			throw new IllegalArgumentException("Required parameter 'portlist' was null");
+		long[] r = new long[8];
+		int n = 0;
+		int start = 0;
+		int len = portlist.length();
+		while (start < len) {
+			int comma = portlist.indexOf(',', start);
+			if (comma < 0)
+				comma = len;
+			int dash = portlist.indexOf('-', start);
+			int low;
+			int high;
+			if ((dash < 0) || (dash > comma))
+				low = high = parsePort(portlist, start, comma);
+			else {
+				low = parsePort(portlist, start, dash);
+				high = parsePort(portlist, dash + 1, comma);
+				if (low > high)
+					throw new IllegalArgumentException("Invalid portlist range: "+portlist.substring(start, comma).trim());
+			}
+			if (n == r.length)
+				r = Arrays.copyOf(r, n * 2);
+			r[n++] = ((long) low << 16) | high;
+			start = comma + 1;
+		}
+		return Arrays.copyOf(r, n);
+	}
+
+	/**
+	 * @return the port written in portlist[start, end), with spaces around it
+	 */
+	private static int parsePort(String portlist, int start, int end)
+	throws IllegalArgumentException {
+		while ((start < end) && (portlist.charAt(start) == ' '))
+			start++;
+		while ((end > start) && (portlist.charAt(end - 1) == ' '))
+			end--;
+		if ((start == end) || (end - start > 5))
+			throw new IllegalArgumentException("Not an RFC4765 portlist entry: "+portlist.substring(start, end));
+		int v = 0;
+		for (int i = start; i < end; i++) {
+			char c = portlist.charAt(i);
+			if ((c < '0') || (c > '9'))
+				throw new IllegalArgumentException("Not an RFC4765 portlist entry: "+portlist.substring(start, end));
+			v = v * 10 + (c - '0');
+		}
+		return check(v);
+	}
+
+	/**
+	 * @return the packed ranges sorted, merged and unpacked
+	 */
+	private static int[] normalize(long[] packed) {
+		Arrays.sort(packed);
+		int[] r = new int[packed.length * 2];
+		int n = 0;
+		for (int i = 0; i < packed.length; i++) {
+			int low = (int) (packed[i] >>> 16);
+			int high = (int) (packed[i] & 0xffff);
+			if ((n > 0) && (low <= r[n - 1] + 1))
+				r[n - 1] = Math.max(r[n - 1], high);
+			else {
+				r[n++] = low;
+				r[n++] = high;
+			}
+		}
+		return trim(r, n);
+	}
+
+}
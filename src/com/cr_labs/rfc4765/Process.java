@@ -20,21 +20,27 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 
 /**
  * Implements 4.2.7.4 the Process Class of RFC4765.
+ * The arg and env entries are held as StringLists, which an RFC4765Interner can share
+ * between the Processes of one program and keep as UTF-8 bytes.
  * 
  * @author jim
  *
  */
-public class Process {
+public class Process
+implements Fingerprinted, Formatted {
 
 	private String 		ident;
 	private String 		name;
 	private int 		pid;
 	private String 		path;
-	private String[] 	arg;
-	private String[] 	env;
+	private StringList 	arg;
+	private StringList 	env;
+	private volatile long	fingerprint;
 
 	
 	/**
@@ -58,31 +64,63 @@ public class Process {
 		this.name = name;
 		this.pid = pid;
 		this.path = path;
-		if (this.arg == null)
-			this.arg = new String[0];
-		else
-			this.arg = arg;
-		if (this.env == null)
-			this.env = new String[0];
-		else
-			this.env = env;
+		this.arg = list(arg);
+		this.env = list(env);
+	}
+
+	/**
+	 * A copy of a Process with other arg and env lists, such as the shared UTF-8 lists of an
+	 * RFC4765Interner
+	 *
+	 * @param process REQUIRED the Process whose other fields are copied
+	 * @param arg the arg entries, or null if there are none
+	 * @param env the env entries, or null if there are none
+	 */
+	public Process(Process process, StringList arg, StringList env) {
+		this.ident = process.ident;
+		this.name = process.name;
+		this.pid = process.pid;
+		this.path = process.path;
+		this.arg = (arg == null) ? StringList.EMPTY : arg;
+		this.env = (env == null) ? StringList.EMPTY : env;
+	}
+
+	private static StringList list(String[] strings) {
+		// shared by all instances with none, as an empty list cannot change
+		return ((strings == null) || (strings.length == 0)) ? StringList.EMPTY : new StringList(strings);
 	}
 
 
 
 	/**
-	 * @return the arg entries or an empty array if there are none
+	 * @return a copy of the arg entries, or an empty array if there are none (the list may be
+	 * shared with other Processes by an RFC4765Interner); getArgList() reads them without copying
 	 */
 	public String[] getArg() {
+		return arg.isUtf8() ? arg.toArray() : arg.toArray().clone();
+	}
+
+	/**
+	 * @return the arg entries as a StringList, empty if there are none
+	 */
+	public StringList getArgList() {
 		return arg;
 	}
 
 
 
 	/**
-	 * @return the env entries or an empty array if there are none
+	 * @return a copy of the env entries, or an empty array if there are none (the list may be
+	 * shared with other Processes by an RFC4765Interner); getEnvList() reads them without copying
 	 */
 	public String[] getEnv() {
+		return env.isUtf8() ? env.toArray() : env.toArray().clone();
+	}
+
+	/**
+	 * @return the env entries as a StringList, empty if there are none
+	 */
+	public StringList getEnvList() {
 		return env;
 	}
 
@@ -115,20 +153,57 @@ public class Process {
 	}
 	
 	
+	/**
+	 * @return a 64 bit hash of the content of the Process, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, pid);
+			h = Fingerprints.mix(h, path);
+			h = Fingerprints.mix(h, arg);
+			h = Fingerprints.mix(h, env);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Processes are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Process x = (Process) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(name, x.name) && (pid == x.pid)
+			&& Fingerprints.eq(path, x.path) && arg.equals(x.arg) && env.equals(x.env);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Process", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "name", name);
+		Formats.field(out, compact, "pid", pid);
+		Formats.field(out, compact, "path", path);
+		Formats.array(out, compact, "arg", arg);
+		Formats.array(out, compact, "env", env);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Process] ");
-		sb.append("ident="+ident);
-		sb.append(" name="+name);
-		sb.append(" pid="+pid);
-		sb.append(" path="+path);
-		if (arg != null)
-			for (int i = 0; i < arg.length; i++)
-				sb.append(" arg["+i+"]="+arg[i]);
-		if (env != null)
-			for (int i = 0; i < env.length; i++)
-				sb.append(" env["+i+"]="+env[i]);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 }
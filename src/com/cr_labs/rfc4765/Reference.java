@@ -21,22 +21,33 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
 
 /**
  * Implements the Reference Class 4.2.7.1 of RFC4765
  * 
+ * The url is held as a java.net.URI, which (unlike java.net.URL) compares and hashes by its text
+ * without resolving the host name, so References can be kept in sets and used as map keys.
+ * References are equal if their origin, meaning, name and URI are. The same CVE and vendor
+ * references come with many alerts; a reader given an RFC4765Interner shares one instance of each.
+ * 
  * @author jim
  *
  */
-public class Reference {
+public class Reference
+implements Fingerprinted, Formatted {
 	private Origin origin;
 	private String meaning;
 	private String name;
-	private URL url;
-	
+	private URI uri;
+	private volatile long fingerprint;
+
 	
-	public static enum Origin {
+	public static enum Origin implements CodedEnum {
 		UNKNOWN (0), VENDOR_SPECIFIC (1), USER_SPECIFIC (2), BUGTRAQID (3), CVE (4), OSVDB (5);
 		private final int originCode;
 		Origin(int o) {
@@ -60,13 +71,50 @@ public class Reference {
 	 */
 	public Reference(Origin origin, String meaning, String name, URL url)
 	throws IllegalArgumentException {
-		if ( (origin == null) || (meaning == null) || (url == null))
+		this(origin, meaning, name, toURI(url));
+	}
+
+	/**
+	 * Instantiate and populate a Reference object.
+	 * 
+	 * @param origin REQUIRED source from which the name of the alert originates.
+	 * @param meaning optional meaning of the reference, as understood by the alert provider
+	 * @param name REQUIRED  name of the alert, from one of the origins listed below.
+	 * @param uri REQUIRED URL at which the manager (or the human operator of the manager) can find additional information about the alert.
+	 * 
+	 * @throws IllegalArgumentException if the required name, origin or URL are not provided
+	 */
+	public Reference(Origin origin, String meaning, String name, URI uri)
+	throws IllegalArgumentException {
+		if ( (origin == null) || (meaning == null) || (uri == null))
 			throw new IllegalArgumentException("Cannot instantiate Reference: 'origin', 'meaning' and 'url' are required by the RFC");
 		
 		this.origin = origin;
 		this.meaning = meaning;
 		this.name = name;
-		this.url = url;
+		this.uri = uri;
+	}
+
+	/**
+	 * @return the URI form of url, or null if url is null
+	 * @throws IllegalArgumentException if url has no URI form
+	 */
+	private static URI toURI(URL url)
+	throws IllegalArgumentException {
+		if (url == null)
+			return null;
+		try {
+			return url.toURI();
+		}
+		catch (URISyntaxException use) {
+			// e.g. unquoted spaces, which URL allows: quote them
+			try {
+				return new URI(url.getProtocol(), url.getUserInfo(), url.getHost(), url.getPort(), url.getPath(), url.getQuery(), url.getRef());
+			}
+			catch (URISyntaxException use2) {
+				throw new IllegalArgumentException("Reference url "+url+" is not a valid URI: "+use2.getMessage());
+			}
+		}
 	}
 
 
@@ -99,21 +147,72 @@ public class Reference {
 	}
 
 	/**
-	 * @return the _url
+	 * @return the url
+	 */
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * @return the url as a java.net.URL, made on each call, or null if it has no URL form (a relative
+	 * URI, or a scheme the JDK has no handler for). The equals() and hashCode() of a URL resolve its
+	 * host name; use getUri() to compare urls.
 	 */
 	public URL getUrl() {
-		return url;
+		try {
+			return uri.toURL();
+		}
+		catch (MalformedURLException mue) {
+			return null;
+		}
+		catch (IllegalArgumentException iae) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return a 64 bit hash of the content of the Reference, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, origin);
+			h = Fingerprints.mix(h, meaning);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, uri.toString());
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (! (o instanceof Reference))
+			return false;
+		Reference r = (Reference) o;
+		return (getFingerprint() == r.getFingerprint()) && (origin == r.origin) && meaning.equals(r.meaning)
+			&& ((name == null) ? (r.name == null) : name.equals(r.name)) && uri.equals(r.uri);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
 	}
 
 
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Reference", compact);
+		Formats.field(out, compact, "origin", origin);
+		Formats.field(out, compact, "meaning", meaning);
+		Formats.field(out, compact, "name", name);
+		Formats.field(out, compact, "url", uri);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Reference] ");
-		sb.append("origin="+origin);
-		sb.append(" meaning="+meaning);
-		sb.append(" name="+name);
-		sb.append(" url="+url);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 	
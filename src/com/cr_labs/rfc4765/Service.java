@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 
 /**
  * Implements the Service class 4.2.7.5 of RFC4765
@@ -27,7 +29,8 @@ Contact: jim@cr-labs.com
  * @author jim
  *
  */
-public class Service {
+public class Service
+implements Fingerprinted, Formatted {
 	
 	private String 	ident;
 	private int 	ipVersion;
@@ -36,8 +39,12 @@ public class Service {
 	
 	private String 	name;
 	private int 	port;
-	private String 	portlist;
+	/**
+	 * The portlist, parsed by the constructor, or null
+	 */
+	private PortSet	portSet;
 	private String 	protocol;
+	private volatile long	fingerprint;
 	
 	
 	/**
@@ -48,12 +55,25 @@ public class Service {
 	 * @param ianaProtocolName
 	 * @param name
 	 * @param port
-	 * @param portlist
+	 * @param portlist parsed here into a PortSet
 	 * @param protocol
+	 * @throws IllegalArgumentException if the portlist is not in the RFC4765 portlist syntax
 	 */
 	
 	public Service(String ident, int ipVersion, int ianaProtocolNumber, String ianaProtocolName,
-			String name, int port, String portlist, String protocol) {
+			String name, int port, String portlist, String protocol)
+	throws IllegalArgumentException {
+		this(ident, ipVersion, ianaProtocolNumber, ianaProtocolName, name, port,
+				(portlist == null) ? null : new PortSet(portlist), protocol);
+	}
+
+	/**
+	 * With the portlist already parsed, as Builder has it
+	 *
+	 * @param portSet the portlist, or null for none
+	 */
+	private Service(String ident, int ipVersion, int ianaProtocolNumber, String ianaProtocolName,
+			String name, int port, PortSet portSet, String protocol) {
 		
 		if (ident == null)
 			this.ident = "0";
@@ -64,7 +84,7 @@ public class Service {
 		this.ianaProtocolName = ianaProtocolName;
 		this.name = name;
 		this.port = port;
-		this.portlist = portlist;
+		this.portSet = portSet;
 		this.protocol = protocol;
 	}
 
@@ -115,10 +135,27 @@ public class Service {
 
 
 	/**
-	 * @return the portlist
+	 * @return the portlist in its shortest form (see PortSet.toString()), or null if there is none
 	 */
 	public String getPortlist() {
-		return portlist;
+		return (portSet == null) ? null : portSet.toString();
+	}
+
+
+	/**
+	 * @return the portlist as a PortSet, or null if there is no portlist
+	 */
+	public PortSet getPortSet() {
+		return portSet;
+	}
+
+	/**
+	 * @return true if port is the port of the service or in its portlist
+	 */
+	public boolean containsPort(int port) {
+		if ((this.port > 0) && (port == this.port))
+			return true;
+		return (portSet != null) && portSet.contains(port);
 	}
 
 
@@ -130,20 +167,148 @@ public class Service {
 	}
 	
 	
+	/**
+	 * @return a 64 bit hash of the content of the Service, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, ipVersion);
+			h = Fingerprints.mix(h, ianaProtocolNumber);
+			h = Fingerprints.mix(h, ianaProtocolName);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, port);
+			h = Fingerprints.mix(h, portSet);
+			h = Fingerprints.mix(h, protocol);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Services are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Service x = (Service) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && (ipVersion == x.ipVersion) && (ianaProtocolNumber == x.ianaProtocolNumber)
+			&& Fingerprints.eq(ianaProtocolName, x.ianaProtocolName) && Fingerprints.eq(name, x.name) && (port == x.port)
+			&& Fingerprints.eq(portSet, x.portSet) && Fingerprints.eq(protocol, x.protocol);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Service", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "ipVersion", ipVersion);
+		Formats.field(out, compact, "ianaProtocolNumber", ianaProtocolNumber);
+		Formats.field(out, compact, "ianaProtocolName", ianaProtocolName);
+		Formats.field(out, compact, "name", name);
+		Formats.field(out, compact, "port", port);
+		Formats.field(out, compact, "portlist", getPortlist());
+		Formats.field(out, compact, "protocol", protocol);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Service] ");
-		sb.append("ident="+ident);
-		sb.append(" ipVersion="+ipVersion);
-		sb.append(" ianaProtocolNumber="+ianaProtocolNumber);
-		sb.append(" ianaProtocolName="+ianaProtocolName);
-		sb.append(" name="+name);
-		sb.append(" port="+port);
-		sb.append(" portlist="+portlist);
-		sb.append(" protocol="+protocol);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
-	
 
 
+	/**
+	 * Builds Services; see IDMEFMessage_Alert.Builder.
+	 */
+	public static class Builder {
+
+		private String ident;
+		private int ipVersion = 0;
+		private int ianaProtocolNumber = 0;
+		private String ianaProtocolName;
+		private String name;
+		private int port = 0;
+		private PortSet portSet;
+		private String protocol;
+
+		public Builder ident(String ident) {
+			this.ident = ident;
+			return this;
+		}
+
+		public Builder ipVersion(int ipVersion) {
+			this.ipVersion = ipVersion;
+			return this;
+		}
+
+		public Builder ianaProtocolNumber(int ianaProtocolNumber) {
+			this.ianaProtocolNumber = ianaProtocolNumber;
+			return this;
+		}
+
+		public Builder ianaProtocolName(String ianaProtocolName) {
+			this.ianaProtocolName = ianaProtocolName;
+			return this;
+		}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		public Builder port(int port) {
+			this.port = port;
+			return this;
+		}
+
+		/**
+		 * @throws IllegalArgumentException if the portlist is not in the RFC4765 portlist syntax
+		 */
+		public Builder portlist(String portlist)
+		throws IllegalArgumentException {
+			this.portSet = (portlist == null) ? null : new PortSet(portlist);
+			return this;
+		}
+
+		public Builder portSet(PortSet portSet) {
+			this.portSet = portSet;
+			return this;
+		}
+
+		public Builder protocol(String protocol) {
+			this.protocol = protocol;
+			return this;
+		}
+
+		public Service build() {
+			return new Service(ident, ipVersion, ianaProtocolNumber, ianaProtocolName, name, port, portSet, protocol);
+		}
+
+		/**
+		 * Set the strings back to null and the numbers back to 0 (absent), so the builder can
+		 * make an unrelated Service
+		 */
+		public Builder reset() {
+			ident = null;
+			ipVersion = 0;
+			ianaProtocolNumber = 0;
+			ianaProtocolName = null;
+			name = null;
+			port = 0;
+			portSet = null;
+			protocol = null;
+			return this;
+		}
+
+	}
+
 }
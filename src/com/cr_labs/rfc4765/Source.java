@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 
 /**
  * Implements RFC4765 Section 4.2.4.3 Source class
@@ -32,7 +34,8 @@ Contact: jim@cr-labs.com
  * @author jim
  *
  */
-public class Source {
+public class Source
+implements Fingerprinted, Formatted {
 	
 	private String 		ident;
 	private SpoofedRank spoofed;
@@ -42,9 +45,10 @@ public class Source {
 	private User 		user;
 	private Process 	process;
 	private Service 	service;
+	private volatile long	fingerprint;
 	
 	
-	public static enum SpoofedRank {
+	public static enum SpoofedRank implements CodedEnum {
 		UNKNOWN (0), YES (1), NO (2);
 		private final int spoofedCode;
 		SpoofedRank(int sr) {
@@ -142,19 +146,129 @@ public class Source {
 	}
 
 	
+	/**
+	 * @return a 64 bit hash of the content of the Source, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, spoofed);
+			h = Fingerprints.mix(h, iface);
+			h = Fingerprints.mix(h, node);
+			h = Fingerprints.mix(h, user);
+			h = Fingerprints.mix(h, process);
+			h = Fingerprints.mix(h, service);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Sources are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Source x = (Source) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(spoofed, x.spoofed) && Fingerprints.eq(iface, x.iface)
+			&& Fingerprints.eq(node, x.node) && Fingerprints.eq(user, x.user) && Fingerprints.eq(process, x.process)
+			&& Fingerprints.eq(service, x.service);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Source", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "spoofed", spoofed);
+		Formats.field(out, compact, "iface", iface);
+		Formats.field(out, compact, "node", node);
+		Formats.field(out, compact, "user", user);
+		Formats.field(out, compact, "process", process);
+		Formats.field(out, compact, "service", service);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Source] ");
-		sb.append("ident="+ident);
-		sb.append(" spoofed="+spoofed);
-		sb.append(" iface="+iface);
-		sb.append(" node="+node);
-		sb.append(" user="+user);
-		sb.append(" process="+process);
-		sb.append(" service="+service);
-		return sb.toString();
+		return Formats.toString(this, false);
+	}
+
+
+	/**
+	 * Builds Sources; see IDMEFMessage_Alert.Builder.
+	 */
+	public static class Builder {
+
+		private String ident;
+		private SpoofedRank spoofed;
+		private String iface;
+		private Node node;
+		private User user;
+		private Process process;
+		private Service service;
+
+		public Builder ident(String ident) {
+			this.ident = ident;
+			return this;
+		}
+
+		public Builder spoofed(SpoofedRank spoofed) {
+			this.spoofed = spoofed;
+			return this;
+		}
+
+		public Builder iface(String iface) {
+			this.iface = iface;
+			return this;
+		}
+
+		public Builder node(Node node) {
+			this.node = node;
+			return this;
+		}
+
+		public Builder user(User user) {
+			this.user = user;
+			return this;
+		}
+
+		public Builder process(Process process) {
+			this.process = process;
+			return this;
+		}
+
+		public Builder service(Service service) {
+			this.service = service;
+			return this;
+		}
+
+		public Source build() {
+			return new Source(ident, spoofed, iface, node, user, process, service);
+		}
+
+		/**
+		 * Set every field back to null, so the builder can make an unrelated Source
+		 */
+		public Builder reset() {
+			ident = null;
+			spoofed = null;
+			iface = null;
+			node = null;
+			user = null;
+			process = null;
+			service = null;
+			return this;
+		}
+
 	}
-	
-	
 
 }
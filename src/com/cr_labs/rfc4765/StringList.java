@@ -0,0 +1,213 @@
+package com.cr_labs.rfc4765;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * An immutable list of strings, such as the arg and env of a Process, compared by content.
+ * It is held either as the String[] it was made from, or, after toUtf8(), as the UTF-8 bytes of
+ * all the strings in one array and the offset where each ends; environment blocks of mostly
+ * ASCII text take about half the memory that way, in two objects rather than one per string.
+ * In the UTF-8 form get() and toArray() decode on each call.
+ *
+ * <p>Both forms of the same strings are equal and have the same fingerprint, so an
+ * RFC4765Interner can pool them and let every Process of a daemon share one list.
+ */
+public final class StringList
+implements Fingerprinted {
+
+	public static final StringList EMPTY = new StringList(new String[0]);
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * The strings, or null in the UTF-8 form
+	 */
+	private final String[] strings;
+	/**
+	 * The UTF-8 bytes of all the strings, and the end of each in them; null in the String form
+	 */
+	private final byte[] utf8;
+	private final int[] ends;
+	private volatile long fingerprint;
+
+
+	/**
+	 * @param strings REQUIRED the strings, which are not copied
+	 * @throws IllegalArgumentException if strings is null
+	 */
+	public StringList(String[] strings)
+	throws IllegalArgumentException {
+		if (strings == null)
+			throw new IllegalArgumentException("Cannot instantiate StringList: 'strings' is required");
+		this.strings = strings;
+		this.utf8 = null;
+		this.ends = null;
+	}
+
+	private StringList(byte[] utf8, int[] ends) {
+		this.strings = null;
+		this.utf8 = utf8;
+		this.ends = ends;
+	}
+
+
+	/**
+	 * @return the list in the UTF-8 form: this list if it is already, or if it holds a null,
+	 * which the UTF-8 form cannot
+	 */
+	public StringList toUtf8() {
+		if (strings == null)
+			return this;
+		byte[][] encoded = new byte[strings.length][];
+		int length = 0;
+		for (int i = 0; i < strings.length; i++) {
+			if (strings[i] == null)
+				return this;
+			encoded[i] = strings[i].getBytes(UTF8);
+			length += encoded[i].length;
+		}
+		byte[] b = new byte[length];
+		int[] e = new int[strings.length];
+		int end = 0;
+		for (int i = 0; i < encoded.length; i++) {
+			System.arraycopy(encoded[i], 0, b, end, encoded[i].length);
+			end += encoded[i].length;
+			e[i] = end;
+		}
+		return new StringList(b, e);
+	}
+
+	/**
+	 * @return true if the list is held as UTF-8 bytes
+	 */
+	public boolean isUtf8() {
+		return strings == null;
+	}
+
+	/**
+	 * @return the number of strings
+	 */
+	public int size() {
+		return (strings != null) ? strings.length : ends.length;
+	}
+
+	/**
+	 * @return string i, decoded afresh on each call in the UTF-8 form
+	 */
+	public String get(int i) {
+		if (strings != null)
+			return strings[i];
+		int start = (i == 0) ? 0 : ends[i - 1];
+		return new String(utf8, start, ends[i] - start, UTF8);
+	}
+
+	/**
+	 * @return the strings: the array the list was made from, which must not be changed, or a
+	 * new array decoded from the UTF-8 form
+	 */
+	public String[] toArray() {
+		if (strings != null)
+			return strings;
+		String[] a = new String[ends.length];
+		for (int i = 0; i < a.length; i++)
+			a[i] = get(i);
+		return a;
+	}
+
+	/**
+	 * Append string i, without decoding it to a String if it is ASCII
+	 *
+	 * @throws IOException if out does
+	 */
+	public void appendTo(Appendable out, int i)
+	throws IOException {
+		if (strings != null) {
+			out.append(strings[i]);
+			return;
+		}
+		int start = (i == 0) ? 0 : ends[i - 1];
+		for (int j = start; j < ends[i]; j++)
+			if (utf8[j] < 0) {
+				out.append(get(i));
+				return;
+			}
+		for (int j = start; j < ends[i]; j++)
+			out.append((char) utf8[j]);
+	}
+
+
+	/**
+	 * @return a 64 bit hash of the strings, the same in both forms, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, size());
+			for (int i = 0; i < size(); i++)
+				h = Fingerprints.mix(h, get(i));
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * StringLists are equal if they hold equal strings in the same order, in either form.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		StringList x = (StringList) o;
+		if ((getFingerprint() != x.getFingerprint()) || (size() != x.size()))
+			return false;
+		if ((utf8 != null) && (x.utf8 != null))
+			return Arrays.equals(ends, x.ends) && Arrays.equals(utf8, x.utf8);
+		for (int i = 0; i < size(); i++)
+			if (! Fingerprints.eq(get(i), x.get(i)))
+				return false;
+		return true;
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+	/**
+	 * @return the strings, comma separated
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size(); i++) {
+			if (i > 0)
+				sb.append(',');
+			sb.append(get(i));
+		}
+		return sb.toString();
+	}
+
+}
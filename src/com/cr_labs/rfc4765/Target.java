@@ -20,6 +20,8 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 
 /**
  * Implements the Target class of RFC 4765 section 4.2.4.4
@@ -34,7 +36,8 @@ Contact: jim@cr-labs.com
  * @author jim
  *
  */
-public class Target {
+public class Target
+implements Fingerprinted, Formatted {
 	
 	private String ident;
 	private DecoyRank decoy;
@@ -45,6 +48,7 @@ public class Target {
 	private Process process;
 	private Service service;
 	private com.cr_labs.rfc4765.File file;
+	private volatile long fingerprint;
 	
 	
 	/**
@@ -54,7 +58,7 @@ public class Target {
 	 * 
 	 * @author jim
 	 */
-	public static enum DecoyRank {
+	public static enum DecoyRank implements CodedEnum {
 		UNKNOWN (0), YES (1), NO (2);
 		private final int decoyCode;
 		DecoyRank(int dr) {
@@ -158,20 +162,138 @@ public class Target {
 	}
 
 
+	/**
+	 * @return a 64 bit hash of the content of the Target, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, decoy);
+			h = Fingerprints.mix(h, iface);
+			h = Fingerprints.mix(h, node);
+			h = Fingerprints.mix(h, user);
+			h = Fingerprints.mix(h, process);
+			h = Fingerprints.mix(h, service);
+			h = Fingerprints.mix(h, file);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Targets are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		Target x = (Target) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(decoy, x.decoy) && Fingerprints.eq(iface, x.iface)
+			&& Fingerprints.eq(node, x.node) && Fingerprints.eq(user, x.user) && Fingerprints.eq(process, x.process)
+			&& Fingerprints.eq(service, x.service) && Fingerprints.eq(file, x.file);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "Target", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "decoy", decoy);
+		Formats.field(out, compact, "iface", iface);
+		Formats.field(out, compact, "node", node);
+		Formats.field(out, compact, "user", user);
+		Formats.field(out, compact, "process", process);
+		Formats.field(out, compact, "service", service);
+		Formats.field(out, compact, "file", file);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[Target] ");
-		sb.append("ident="+ident);
-		sb.append(" decoy="+decoy);
-		sb.append(" iface="+iface);
-		sb.append(" node="+node);
-		sb.append(" user="+user);
-		sb.append(" process="+process);
-		sb.append(" service="+service);
-		sb.append(" file="+file);
-		return sb.toString();
+		return Formats.toString(this, false);
+	}
+
+
+	/**
+	 * Builds Targets; see IDMEFMessage_Alert.Builder.
+	 */
+	public static class Builder {
+
+		private String ident;
+		private DecoyRank decoy;
+		private String iface;
+		private Node node;
+		private User user;
+		private Process process;
+		private Service service;
+		private com.cr_labs.rfc4765.File file;
+
+		public Builder ident(String ident) {
+			this.ident = ident;
+			return this;
+		}
+
+		public Builder decoy(DecoyRank decoy) {
+			this.decoy = decoy;
+			return this;
+		}
+
+		public Builder iface(String iface) {
+			this.iface = iface;
+			return this;
+		}
+
+		public Builder node(Node node) {
+			this.node = node;
+			return this;
+		}
+
+		public Builder user(User user) {
+			this.user = user;
+			return this;
+		}
+
+		public Builder process(Process process) {
+			this.process = process;
+			return this;
+		}
+
+		public Builder service(Service service) {
+			this.service = service;
+			return this;
+		}
+
+		public Builder file(com.cr_labs.rfc4765.File file) {
+			this.file = file;
+			return this;
+		}
+
+		public Target build() {
+			return new Target(ident, decoy, iface, node, user, process, service, file);
+		}
+
+		/**
+		 * Set every field back to null, so the builder can make an unrelated Target
+		 */
+		public Builder reset() {
+			ident = null;
+			decoy = null;
+			iface = null;
+			node = null;
+			user = null;
+			process = null;
+			service = null;
+			file = null;
+			return this;
+		}
+
 	}
-	
-	
 
 }
@@ -20,8 +20,11 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
 
-public class ToolAlert {
+
+public class ToolAlert
+implements Fingerprinted, Formatted {
 
 	private String name;
 
@@ -30,6 +33,7 @@ public class ToolAlert {
 	private String[] alertIdent;
 
 	private String[] analyzerID;
+	private volatile long fingerprint;
 
 	/**
 	 * 
@@ -93,18 +97,53 @@ public class ToolAlert {
 	}
 
 	
+	/**
+	 * @return a 64 bit hash of the content of the ToolAlert, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, command);
+			h = Fingerprints.mix(h, alertIdent);
+			h = Fingerprints.mix(h, analyzerID);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * ToolAlerts are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		ToolAlert x = (ToolAlert) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(name, x.name) && Fingerprints.eq(command, x.command) && Fingerprints.eq(alertIdent, x.alertIdent)
+			&& Fingerprints.eq(analyzerID, x.analyzerID);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "ToolAlert", compact);
+		Formats.field(out, compact, "name", name);
+		Formats.field(out, compact, "command", command);
+		Formats.array(out, compact, "alertIdent", alertIdent);
+		Formats.array(out, compact, "analyzerID", analyzerID);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[ToolAlert] ");
-		sb.append("name="+name);
-		sb.append(" command="+command);
-		if (alertIdent != null)
-			for (int i = 0; i < alertIdent.length; i++)
-				sb.append(" alertIdent["+i+"]="+alertIdent[i]);
-		if (analyzerID != null)
-			for (int i = 0; i < analyzerID.length; i++)
-				sb.append(" analyzerID["+i+"]="+analyzerID[i]);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 	
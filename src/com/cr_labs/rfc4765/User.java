@@ -21,19 +21,31 @@ Contact: jim@cr-labs.com
 */
 
 
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
 import java.util.Vector;
 
 /**
  * Implements the User class per RFC4765 Section 4.2.7.3:<br />
  * The User class is used to describe users.  It is primarily used as a "container" class for the UserId aggregate class
+ * <p>
+ * A User cannot change once made, so it may be read from many threads without locking. Almost every
+ * User has exactly one UserId, which is held in a field of its own rather than in an array.
  * 
  * @author jim
  */
-public class User {
+public class User
+implements Fingerprinted, Formatted {
 	
 	private String 		ident;
 	private Category 	category;
-	private Vector <UserId> userid;
+	// the only UserId, when there is exactly one; userids is then null
+	private UserId		userid;
+	// the UserIds when there are none or several, never changed once set
+	private UserId[]	userids;
+	private volatile long fingerprint;
 
 	/**
 	 * Categories per RFC:<br />
@@ -43,7 +55,7 @@ public class User {
 	 * 
 	 * @author jim
 	 */
-	public static enum Category {
+	public static enum Category implements CodedEnum {
 		UNKNOWN (0), APPLICATION (1), OS_DEVICE (2);
 		private final int categoryCode;
 		Category(int c) {
@@ -57,15 +69,43 @@ public class User {
 	/**
 	 * @param ident the ident for this, or null to set the value to the RFC-specified default of "0"
 	 * @param category
-	 * @param userid a Vector of UserIDs. Check the other constructor for use with single user IDs.
+	 * @param userid a Vector of UserIDs, which is copied. Check the other constructors for use with an array or a single user ID.
 	 * @throws IllegalArgumentException if the required UsedId is not provided
 	 */
 	public User(String ident, Category category, Vector<UserId> userid)
+	throws IllegalArgumentException {
+		this(ident, category, (userid == null) ? null : userid.toArray(new UserId[0]));
+	}
+
+	/**
+	 * @param ident the ident for this, or null to set the value to the RFC-specified default of "0"
+	 * @param category
+	 * @param userid an array of UserIDs, which is copied
+	 * @throws IllegalArgumentException if the required UsedId is not provided
+	 */
+	public User(String ident, Category category, UserId[] userid)
 	throws IllegalArgumentException {
 		if (userid == null)
 			throw new IllegalArgumentException("Cannot instantiate User: 'userid' is required by the RFC");
+		if (userid.length == 1)
+			this.userid = userid[0];
+		else
+			this.userids = userid.clone();
+		setIdentAndCategory(ident, category);
+	}
+
+	/**
+	 * Convenience constructor for cases where there's just a single userid in a User record.
+	 * @param ident the ident for this, or null to set the value to the RFC-specified default of "0"
+	 * @param category
+	 * @param userid a single userId
+	 */
+	public User(String ident, Category category, UserId userid) {
 		this.userid = userid;
+		setIdentAndCategory(ident, category);
+	}
 
+	private void setIdentAndCategory(String ident, Category category) {
 		if (ident == null)
 			this.ident = "0";
 		else
@@ -75,19 +115,6 @@ public class User {
 		else
 			this.category = category;
 	}
-
-	/**
-	 * Convenience constructor for cases where there's just a single userid in a User record.
-	 * @param ident the ident for this, or null to set the value to the RFC-specified default of "0"
-	 * @param category
-	 * @param userid a single userId. This constructor builds the requisite vector and adds this userId to it.
-	 * @throws IllegalArgumentException if the required UsedId is not provided
-	 */
-	public User(String ident, Category category, UserId userid)
-	throws IllegalArgumentException {
-		this(ident,category, new Vector<UserId>());
-		this.userid.add(userid);
-	}
 	
 	
 	/**
@@ -111,21 +138,101 @@ public class User {
 	}
 
 	/**
-	 * @return the userid
+	 * @return a new Vector holding the UserIds; changing it does not change this User
+	 * @deprecated use getUseridCount() and getUserid(), or getUseridList(), which do not copy
 	 */
+	@Deprecated
 	public Vector<UserId> getUserids() {
+		return new Vector<UserId>(getUseridList());
+	}
+
+	/**
+	 * @return the number of UserIds
+	 */
+	public int getUseridCount() {
+		return (userids == null) ? 1 : userids.length;
+	}
+
+	/**
+	 * @return UserId i
+	 * @throws IndexOutOfBoundsException if there is no UserId i
+	 */
+	public UserId getUserid(int i) {
+		if (userids != null)
+			return userids[i];
+		if (i != 0)
+			throw new IndexOutOfBoundsException("User has one UserId: "+i);
 		return userid;
 	}
+
+	/**
+	 * @return a read only List of the UserIds, backed by this User
+	 */
+	public List<UserId> getUseridList() {
+		return new UseridList();
+	}
+
+	private final class UseridList
+	extends AbstractList<UserId>
+	implements RandomAccess {
+
+		public UserId get(int i) {
+			return getUserid(i);
+		}
+
+		public int size() {
+			return getUseridCount();
+		}
+	}
 	
+	/**
+	 * @return a 64 bit hash of the content of the User, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, category);
+			h = Fingerprints.mix(h, getUseridCount());
+			for (int i = 0; i < getUseridCount(); i++)
+				h = Fingerprints.mix(h, getUserid(i));
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * Users are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		User x = (User) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(category, x.category)
+			&& Fingerprints.eq(userid, x.userid) && Fingerprints.eq(userids, x.userids);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "User", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "category", category);
+		for (int i = 0; i < getUseridCount(); i++)
+			Formats.field(out, compact, "userid", getUserid(i));
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[User] ");
-		sb.append("ident="+ident);
-		sb.append(" category="+category);
-		if (userid != null)
-			for (UserId u : userid) 
-				sb.append(" userid="+u);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 
 	
@@ -20,22 +20,26 @@ along with this program.  If not, see <http://www.gnu.org/licenses/>.
 Contact: jim@cr-labs.com
 */
 
+import java.io.IOException;
+
 
 /**
  * Implements 7.3.1 the UserId class of RFC4765
  * @author jim
  *
  */
-public class UserId {
+public class UserId
+implements Fingerprinted, Formatted {
 	
 	private String 	ident;
 	private Type 	type;
 	private String 	tty;
 	private String 	name;
 	private String 	number;
+	private volatile long	fingerprint;
 
 	
-	public static enum Type {
+	public static enum Type implements CodedEnum {
 		CURRENT_USER (0), ORIGINAL_USER (1), TARGET_USER (2), USER_PRIVS (3),
 		CURRENT_GROUP(4), GROUP_PRIVS (5), OTHER_PRIVS (6);
 		private final int typeCode;
@@ -111,15 +115,55 @@ public class UserId {
 		return type.getValue();
 	}	
 	
+	/**
+	 * @return a 64 bit hash of the content of the UserId, computed on the first call
+	 */
+	public long getFingerprint() {
+		long f = fingerprint;
+		if (f == 0) {
+			long h = Fingerprints.start(this);
+			h = Fingerprints.mix(h, ident);
+			h = Fingerprints.mix(h, type);
+			h = Fingerprints.mix(h, tty);
+			h = Fingerprints.mix(h, name);
+			h = Fingerprints.mix(h, number);
+			fingerprint = f = Fingerprints.finish(h);
+		}
+		return f;
+	}
+
+	/**
+	 * UserIds are equal if all their fields are.
+	 */
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if ((o == null) || (o.getClass() != getClass()))
+			return false;
+		UserId x = (UserId) o;
+		return (getFingerprint() == x.getFingerprint())
+			&& Fingerprints.eq(ident, x.ident) && Fingerprints.eq(type, x.type) && Fingerprints.eq(tty, x.tty)
+			&& Fingerprints.eq(name, x.name) && Fingerprints.eq(number, x.number);
+	}
+
+	public int hashCode() {
+		return Fingerprints.hashCode(getFingerprint());
+	}
+
+
+	public void formatTo(Appendable out, boolean compact)
+	throws IOException {
+		Formats.open(out, "UserId", compact);
+		Formats.field(out, compact, "ident", ident);
+		Formats.field(out, compact, "type", type);
+		Formats.field(out, compact, "tty", tty);
+		Formats.field(out, compact, "name", name);
+		Formats.field(out, compact, "number", number);
+		Formats.close(out, compact);
+	}
+
 	public String toString() {
-		StringBuilder sb = new StringBuilder();
-		sb.append("\n\r[UserId] ");
-		sb.append("ident="+ident);
-		sb.append(" type="+type);
-		sb.append(" tty="+tty);
-		sb.append(" name="+name);
-		sb.append(" number="+number);
-		return sb.toString();
+		return Formats.toString(this, false);
 	}
 	
 
@@ -0,0 +1,546 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+
+/**
+ * The fields of many alerts that analytics aggregate over, held column by column in direct
+ * (off-heap) buffers rather than as a graph of objects per alert: one row per alert, with
+ * <ul>
+ * <li>createTime and detectTime in epoch milliseconds (IDMEFMessage.NO_TIME if absent), and the
+ * offset from UTC of the createTime
+ * <li>the Impact severity code (Impact.Severity.getValue()), or -1 if the alert has none
+ * <li>the IPv4 address of the first Source and of the first Target, most significant byte first,
+ * or 0 if there is none (the first IPv4 address of the Node of the first Source or Target)
+ * <li>the Classification and the Analyzer, as ids into dictionaries of the distinct ones seen
+ * </ul>
+ * The dictionaries are the only objects held per distinct value rather than per alert;
+ * Classifications and Analyzers are matched by content, as equals() does, so alerts read
+ * through an RFC4765Interner or not encode the same way.
+ *
+ * <p>The scans (count, select, histograms) are plain loops over the columns with no object
+ * access, which the JIT can unroll. toAlert() makes an alert again from a row; it holds only
+ * what the columns hold, so messageID, Node names, AdditionalData and the rest are not kept.
+ * The columns grow by doubling as alerts are added; their memory is released when the
+ * RFC4765AlertColumns is collected. Not thread safe.
+ *
+ * <pre>
+ * RFC4765AlertColumns columns = new RFC4765AlertColumns(1 &lt;&lt; 20);
+ * RFC4765BinaryReader r = new RFC4765BinaryReader(in);
+ * for (IDMEFMessage m = r.next(); m != null; m = r.next())
+ *     columns.add(m);
+ * int[] perHour = columns.histogram(dayStart, 3600000L, 24);
+ * </pre>
+ */
+public class RFC4765AlertColumns {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+	/**
+	 * The most rows the columns can hold, as a direct buffer holds at most 2^31 - 1 bytes
+	 */
+	public static final int MAX_CAPACITY = Integer.MAX_VALUE / 8;
+
+	/**
+	 * The severity column of an alert with no Impact severity
+	 */
+	public static final int NO_SEVERITY = -1;
+
+	private static final int BYTES_PER_ROW = 8 + 4 + 8 + 1 + 4 + 4 + 4 + 4;
+
+	private int size;
+	private int capacity;
+
+	private LongBuffer createTimes;
+	private IntBuffer createOffsets;
+	private LongBuffer detectTimes;
+	private ByteBuffer severities;
+	private IntBuffer sources;
+	private IntBuffer targets;
+	private IntBuffer classifications;
+	private IntBuffer analyzers;
+
+	private final ArrayList<Classification> classificationDictionary = new ArrayList<Classification>();
+	private final HashMap<Classification, Integer> classificationIds = new HashMap<Classification, Integer>();
+	private final ArrayList<Analyzer> analyzerDictionary = new ArrayList<Analyzer>();
+	private final HashMap<Analyzer, Integer> analyzerIds = new HashMap<Analyzer, Integer>();
+
+
+	public RFC4765AlertColumns() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity the number of alerts to make room for at first
+	 * @throws IllegalArgumentException if capacity is less than 1 or more than MAX_CAPACITY
+	 */
+	public RFC4765AlertColumns(int capacity)
+	throws IllegalArgumentException {
+		if ((capacity < 1) || (capacity > MAX_CAPACITY))
+			throw new IllegalArgumentException("Capacity must be 1 to "+MAX_CAPACITY+": "+capacity);
+		allocate(capacity);
+	}
+
+
+	/**
+	 * Add a row for an alert
+	 *
+	 * @return the row of the alert
+	 * @throws IllegalArgumentException if alert is null
+	 * @throws IllegalStateException if the columns already hold MAX_CAPACITY rows
+	 */
+	public int add(IDMEFMessage_Alert alert)
+	throws IllegalArgumentException, IllegalStateException {
+		if (alert == null)
+			throw new IllegalArgumentException("Required parameter 'alert' was null");
+		if (size == capacity) {
+			if (capacity == MAX_CAPACITY)
+				throw new IllegalStateException("The columns are full at "+MAX_CAPACITY+" rows");
+			allocate((int) Math.min(2L * capacity, MAX_CAPACITY));
+		}
+		int row = size++;
+		createTimes.put(row, alert.getCreateTimeMillis());
+		createOffsets.put(row, alert.getCreateTimeOffset());
+		detectTimes.put(row, alert.getDetectTimeMillis());
+		Assessment assessment = alert.getAssessment();
+		Impact impact = (assessment == null) ? null : assessment.getImpact();
+		severities.put(row, (byte) (((impact == null) || (impact.getSeverity() == null)) ? NO_SEVERITY : impact.getSeverityValue()));
+		Source[] s = alert.getSource();
+		sources.put(row, ((s == null) || (s.length == 0)) ? 0 : firstIPv4(s[0].getNode()));
+		Target[] t = alert.getTarget();
+		targets.put(row, ((t == null) || (t.length == 0)) ? 0 : firstIPv4(t[0].getNode()));
+		classifications.put(row, id(alert.getClassification(), classificationDictionary, classificationIds));
+		analyzers.put(row, id(alert.getAnalyzer(), analyzerDictionary, analyzerIds));
+		return row;
+	}
+
+	/**
+	 * Add a row for a message if it is an alert
+	 *
+	 * @return the row of the alert, or -1 if the message is a heartbeat
+	 */
+	public int add(IDMEFMessage message) {
+		return (message instanceof IDMEFMessage_Alert) ? add((IDMEFMessage_Alert) message) : -1;
+	}
+
+	/**
+	 * Add a row for each alert of a batch, skipping its heartbeats
+	 */
+	public void addAll(IDMEFMessageBatch batch) {
+		for (IDMEFMessage m : batch)
+			add(m);
+	}
+
+	/**
+	 * Make an alert from a row: its Analyzer, Classification, createTime and detectTime, an Assessment
+	 * with the severity if it has one, and a Source and a Target whose Nodes hold the addresses
+	 * if it has them
+	 */
+	public IDMEFMessage_Alert toAlert(int row) {
+		check(row);
+		IDMEFMessage_Alert.Builder b = new IDMEFMessage_Alert.Builder()
+			.analyzer(getAnalyzer(row)).classification(getClassification(row)).createTime(getCreateTime(row));
+		if (detectTimes.get(row) != IDMEFMessage.NO_TIME)
+			b.detectTime(detectTimes.get(row));
+		int severity = severities.get(row);
+		if (severity != NO_SEVERITY)
+			b.assessment(new Assessment(new Impact(RFC4765EnumCodes.fromValue(Impact.Severity.class, severity), null, null), null, null));
+		if (sources.get(row) != 0)
+			b.addSource(new Source(null, null, null, node(sources.get(row)), null, null, null));
+		if (targets.get(row) != 0)
+			b.addTarget(new Target(null, null, null, node(targets.get(row)), null, null, null, null));
+		return b.build();
+	}
+
+	/**
+	 * Remove every row, and empty the dictionaries. The columns keep their capacity.
+	 */
+	public void clear() {
+		size = 0;
+		classificationDictionary.clear();
+		classificationIds.clear();
+		analyzerDictionary.clear();
+		analyzerIds.clear();
+	}
+
+
+	/**
+	 * @return the number of rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the number of rows there is room for before the columns grow
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the bytes of direct memory the columns take
+	 */
+	public long getColumnBytes() {
+		return (long) capacity * BYTES_PER_ROW;
+	}
+
+	public long getCreateTimeMillis(int row) {
+		check(row);
+		return createTimes.get(row);
+	}
+
+	/**
+	 * @return the createTime of a row, in the offset from UTC it was given with
+	 */
+	public DateTime getCreateTime(int row) {
+		check(row);
+		return new DateTime(createTimes.get(row), DateTimeZone.forOffsetMillis(createOffsets.get(row)));
+	}
+
+	/**
+	 * @return the detectTime of a row, or IDMEFMessage.NO_TIME if it has none
+	 */
+	public long getDetectTimeMillis(int row) {
+		check(row);
+		return detectTimes.get(row);
+	}
+
+	/**
+	 * @return the severity code of a row, or NO_SEVERITY
+	 */
+	public int getSeverity(int row) {
+		check(row);
+		return severities.get(row);
+	}
+
+	/**
+	 * @return the IPv4 address of the first Source of a row, or 0 if it has none
+	 */
+	public int getSourceIPv4(int row) {
+		check(row);
+		return sources.get(row);
+	}
+
+	/**
+	 * @return the IPv4 address of the first Target of a row, or 0 if it has none
+	 */
+	public int getTargetIPv4(int row) {
+		check(row);
+		return targets.get(row);
+	}
+
+	/**
+	 * @return the id of the Classification of a row in the Classification dictionary
+	 */
+	public int getClassificationId(int row) {
+		check(row);
+		return classifications.get(row);
+	}
+
+	public Classification getClassification(int row) {
+		return classificationDictionary.get(getClassificationId(row));
+	}
+
+	/**
+	 * @return the id of a Classification in the dictionary, or -1 if no row has it
+	 */
+	public int getClassificationId(Classification classification) {
+		Integer id = classificationIds.get(classification);
+		return (id == null) ? -1 : id.intValue();
+	}
+
+	/**
+	 * @return the number of distinct Classifications, and so of their ids
+	 */
+	public int getClassificationCount() {
+		return classificationDictionary.size();
+	}
+
+	/**
+	 * @return the Classification of a dictionary id
+	 */
+	public Classification getClassificationById(int id) {
+		return classificationDictionary.get(id);
+	}
+
+	/**
+	 * @return the id of the Analyzer of a row in the Analyzer dictionary
+	 */
+	public int getAnalyzerId(int row) {
+		check(row);
+		return analyzers.get(row);
+	}
+
+	public Analyzer getAnalyzer(int row) {
+		return analyzerDictionary.get(getAnalyzerId(row));
+	}
+
+	/**
+	 * @return the number of distinct Analyzers, and so of their ids
+	 */
+	public int getAnalyzerCount() {
+		return analyzerDictionary.size();
+	}
+
+	/**
+	 * @return the Analyzer of a dictionary id
+	 */
+	public Analyzer getAnalyzerById(int id) {
+		return analyzerDictionary.get(id);
+	}
+
+
+	/**
+	 * @return the number of rows created at or after fromMillis and before toMillis
+	 */
+	public int countCreated(long fromMillis, long toMillis) {
+		LongBuffer times = createTimes;
+		int n = 0;
+		for (int row = 0; row < size; row++) {
+			long t = times.get(row);
+			n += ((t >= fromMillis) & (t < toMillis)) ? 1 : 0;
+		}
+		return n;
+	}
+
+	/**
+	 * @return the number of rows whose severity is at least that of severity
+	 */
+	public int countSeverityAtLeast(Impact.Severity severity) {
+		ByteBuffer column = severities;
+		int min = severity.getValue();
+		int n = 0;
+		for (int row = 0; row < size; row++)
+			n += (column.get(row) >= min) ? 1 : 0;
+		return n;
+	}
+
+	/**
+	 * @return the number of rows whose first Source address is in the network of the given prefix length
+	 */
+	public int countSourcesIn(int network, int prefixLength) {
+		return countIn(sources, network, prefixLength);
+	}
+
+	/**
+	 * @return the number of rows whose first Target address is in the network of the given prefix length
+	 */
+	public int countTargetsIn(int network, int prefixLength) {
+		return countIn(targets, network, prefixLength);
+	}
+
+	/**
+	 * @return the number of rows of each Classification, indexed by Classification id
+	 */
+	public int[] countByClassification() {
+		IntBuffer column = classifications;
+		int[] counts = new int[classificationDictionary.size()];
+		for (int row = 0; row < size; row++)
+			counts[column.get(row)]++;
+		return counts;
+	}
+
+	/**
+	 * @return the number of rows of each severity, indexed by severity code, with the rows
+	 * with no severity last
+	 */
+	public int[] countBySeverity() {
+		ByteBuffer column = severities;
+		int none = Impact.Severity.values().length;
+		int[] counts = new int[none + 1];
+		for (int row = 0; row < size; row++) {
+			int s = column.get(row);
+			counts[(s < 0) ? none : s]++;
+		}
+		return counts;
+	}
+
+	/**
+	 * Count rows by createTime in consecutive buckets of equal width
+	 *
+	 * @param startMillis the start of the first bucket
+	 * @param bucketMillis the width of each bucket
+	 * @param buckets the number of buckets
+	 * @return the number of rows in each bucket; rows before the first or after the last are not counted
+	 * @throws IllegalArgumentException if bucketMillis or buckets is less than 1
+	 */
+	public int[] histogram(long startMillis, long bucketMillis, int buckets)
+	throws IllegalArgumentException {
+		if ((bucketMillis < 1) || (buckets < 1))
+			throw new IllegalArgumentException("Histogram needs at least one bucket of at least 1 ms");
+		LongBuffer times = createTimes;
+		int[] counts = new int[buckets];
+		for (int row = 0; row < size; row++) {
+			long t = times.get(row) - startMillis;
+			if (t >= 0) {
+				long bucket = t / bucketMillis;
+				if (bucket < buckets)
+					counts[(int) bucket]++;
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Find the rows created at or after fromMillis and before toMillis, with a severity of at
+	 * least minSeverity (NO_SEVERITY for any) and of the given Classification id (-1 for any)
+	 *
+	 * @param rows where the numbers of the rows found are put, in order; when it is full the search stops
+	 * @return the number of rows put in rows
+	 */
+	public int select(long fromMillis, long toMillis, int minSeverity, int classificationId, int[] rows) {
+		LongBuffer times = createTimes;
+		ByteBuffer severity = severities;
+		IntBuffer classification = classifications;
+		int n = 0;
+		for (int row = 0; (row < size) && (n < rows.length); row++) {
+			long t = times.get(row);
+			if ((t >= fromMillis) & (t < toMillis) & (severity.get(row) >= minSeverity)
+					& ((classificationId < 0) | (classification.get(row) == classificationId)))
+				rows[n++] = row;
+		}
+		return n;
+	}
+
+
+	private int countIn(IntBuffer column, int network, int prefixLength) {
+		if ((prefixLength < 0) || (prefixLength > 32))
+			throw new IllegalArgumentException("IPv4 prefix length must be 0 to 32: "+prefixLength);
+		int mask = (prefixLength == 0) ? 0 : -1 << (32 - prefixLength);
+		int net = network & mask;
+		int n = 0;
+		for (int row = 0; row < size; row++) {
+			int a = column.get(row);
+			n += ((a != 0) & ((a & mask) == net)) ? 1 : 0;
+		}
+		return n;
+	}
+
+	private static int firstIPv4(Node node) {
+		if (node == null)
+			return 0;
+		Address[] addresses = node.getAddress();
+		if (addresses != null)
+			for (Address a : addresses)
+				if (a.isIPv4())
+					return a.getIPv4();
+		return 0;
+	}
+
+	private static Node node(int ipv4) {
+		StringBuilder sb = new StringBuilder(15);
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			sb.append((ipv4 >>> shift) & 0xff);
+			if (shift > 0)
+				sb.append('.');
+		}
+		return new Node(null, null, null, null, new Address(null, sb.toString(), Address.Category.IPV4_ADDR, null, null));
+	}
+
+	private static <T> int id(T value, ArrayList<T> dictionary, HashMap<T, Integer> ids) {
+		Integer id = ids.get(value);
+		if (id == null) {
+			id = Integer.valueOf(dictionary.size());
+			dictionary.add(value);
+			ids.put(value, id);
+		}
+		return id.intValue();
+	}
+
+	private void check(int row) {
+		if ((row < 0) || (row >= size))
+			throw new IndexOutOfBoundsException("Row "+row+" of "+size);
+	}
+
+	/**
+	 * Allocate columns of a new capacity, and copy the rows into them
+	 */
+	private void allocate(int newCapacity) {
+		LongBuffer newCreateTimes = direct(newCapacity * 8).asLongBuffer();
+		IntBuffer newCreateOffsets = direct(newCapacity * 4).asIntBuffer();
+		LongBuffer newDetectTimes = direct(newCapacity * 8).asLongBuffer();
+		ByteBuffer newSeverities = direct(newCapacity);
+		IntBuffer newSources = direct(newCapacity * 4).asIntBuffer();
+		IntBuffer newTargets = direct(newCapacity * 4).asIntBuffer();
+		IntBuffer newClassifications = direct(newCapacity * 4).asIntBuffer();
+		IntBuffer newAnalyzers = direct(newCapacity * 4).asIntBuffer();
+		if (size > 0) {
+			copy(createTimes, newCreateTimes);
+			copy(createOffsets, newCreateOffsets);
+			copy(detectTimes, newDetectTimes);
+			ByteBuffer b = severities.duplicate();
+			b.position(0).limit(size);
+			newSeverities.put(b).clear();
+			copy(sources, newSources);
+			copy(targets, newTargets);
+			copy(classifications, newClassifications);
+			copy(analyzers, newAnalyzers);
+		}
+		createTimes = newCreateTimes;
+		createOffsets = newCreateOffsets;
+		detectTimes = newDetectTimes;
+		severities = newSeverities;
+		sources = newSources;
+		targets = newTargets;
+		classifications = newClassifications;
+		analyzers = newAnalyzers;
+		capacity = newCapacity;
+	}
+
+	private void copy(LongBuffer from, LongBuffer to) {
+		LongBuffer b = from.duplicate();
+		b.position(0).limit(size);
+		to.put(b).clear();
+	}
+
+	private void copy(IntBuffer from, IntBuffer to) {
+		IntBuffer b = from.duplicate();
+		b.position(0).limit(size);
+		to.put(b).clear();
+	}
+
+	private static ByteBuffer direct(int bytes) {
+		return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+	}
+
+}
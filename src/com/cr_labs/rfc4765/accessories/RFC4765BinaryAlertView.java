@@ -0,0 +1,1438 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.nio.charset.Charset;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * A read-only view of one binary-encoded message (see RFC4765BinaryFormat) in a ByteBuffer,
+ * which may be a heap, direct or memory-mapped buffer. It has the getters of IDMEFMessage_Alert
+ * and of the classes below it, and decodes a field only when its getter is called, so a router
+ * that looks at a classification and an address never builds the rest of the alert.
+ *
+ * <p>The view and the views it hands out (getAnalyzer(), getSource(i)...) are reused: each
+ * one is created the first time it is asked for and is then moved to the next message, or
+ * the next item of a list, in place. A view is only valid until the next call that moves it,
+ * and until the buffer's content changes. Strings and DateTimes are still built when their
+ * getters are called; the *Equals methods and getCreateTimeMillis() compare and read in place.
+ *
+ * <p>Strings are read from the frame itself, so the stream must have been written without a
+ * dictionary or compression (new RFC4765BinaryWriter(os, false), or (os, false, true) to keep
+ * Analyzer handles); pass the header's flags to setStreamFlags() and such streams are refused up
+ * front. With Analyzer handles, the view keeps the position of each Analyzer defined in a table,
+ * so the frames must be viewed in stream order, in one buffer, through next(). The view covers
+ * the Analyzer, Classification, Source, Target and Assessment parts of an alert and the Analyzer
+ * of a heartbeat; Files, References, AdditionalData and the ToolAlert/OverflowAlert/CorrelationAlert
+ * parts are only read by RFC4765BinaryReader, as are batch frames (RFC4765BinaryWriter.writeBatch()),
+ * which next() and wrap() refuse with an IllegalArgumentException. Numbers are read big-endian
+ * whatever the order of the buffer given.
+ *
+ * <p>A view is not thread safe. Malformed content throws IllegalArgumentException.
+ *
+ * <pre>
+ * ByteBuffer b = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+ * RFC4765BinaryAlertView v = new RFC4765BinaryAlertView();
+ * v.setStreamFlags(RFC4765BinaryFormat.readHeader(b));
+ * while (v.next(b))
+ *     if (v.isAlert() &amp;&amp; v.getClassification().textEquals("port scan"))
+ *         route(v);
+ * </pre>
+ */
+public class RFC4765BinaryAlertView {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// field slots of an alert or heartbeat
+	private static final int MESSAGE_ID = 0;
+	private static final int ANALYZER = 1;
+	private static final int CREATE_TIME = 2;
+	private static final int DETECT_TIME = 3;
+	private static final int ANALYZER_TIME = 4;
+	private static final int CLASSIFICATION = 5;
+	private static final int SOURCES = 6;
+	private static final int TARGETS = 7;
+	private static final int ASSESSMENT = 8;
+	private static final int HEARTBEAT_INTERVAL = 9;
+
+	/**
+	 * The buffer last given to next() or wrap(), and buf, a big-endian duplicate of it
+	 */
+	private ByteBuffer viewed;
+	private ByteBuffer buf;
+	private int frameEnd;
+	private int kind;
+	private int message;
+	private int generation;
+
+	/**
+	 * The read position of the decoding primitives below
+	 */
+	private int p;
+	private byte[] scratch;
+
+	private final int[] at = new int[10];
+	private boolean indexed;
+
+	private boolean useAnalyzerHandles;
+	/**
+	 * The positions of the Analyzers defined so far, by handle
+	 */
+	private int[] handles = new int[16];
+	private int handleCount;
+
+	private AnalyzerView analyzer;
+	private ClassificationView classification;
+	private SourceView source;
+	private TargetView target;
+	private AssessmentView assessment;
+
+
+	public RFC4765BinaryAlertView() {
+	}
+
+
+	/**
+	 * Say how the stream was written, and forget the Analyzer handles of any earlier stream
+	 *
+	 * @param flags the RFC4765BinaryFormat.FLAG_* of the stream header, as readHeader() returns them
+	 * @throws IllegalArgumentException if the stream was written with a dictionary or compression,
+	 * which the view cannot read
+	 */
+	public void setStreamFlags(int flags)
+	throws IllegalArgumentException {
+		if ((flags & RFC4765BinaryFormat.FLAG_DICTIONARY) != 0)
+			throw new IllegalArgumentException("RFC4765BinaryAlertView cannot read a stream written with a string dictionary");
+		if ((flags & RFC4765BinaryFormat.FLAG_COMPRESSED) != 0)
+			throw new IllegalArgumentException("RFC4765BinaryAlertView cannot read a compressed stream");
+		useAnalyzerHandles = (flags & RFC4765BinaryFormat.FLAG_ANALYZER_HANDLES) != 0;
+		handleCount = 0;
+	}
+
+	/**
+	 * View the frame at the position of a stream buffer, and move the buffer's position past it.
+	 * The buffer must be past the stream header, whose flags were given to setStreamFlags().
+	 *
+	 * @return true if a frame is now in view, false if the buffer has no bytes remaining
+	 * @throws IllegalArgumentException if the frame is malformed or runs past the buffer's limit
+	 */
+	public boolean next(ByteBuffer stream)
+	throws IllegalArgumentException {
+		if (! stream.hasRemaining())
+			return false;
+		view(stream);
+		frameEnd = stream.limit();
+		p = stream.position();
+		int length = length();
+		int start = p;
+		wrap(stream, start, length);
+		stream.position(start + length);
+		return true;
+	}
+
+	/**
+	 * View the frame content (the kind byte and the message block, without the frame's length)
+	 * at offset in the buffer. The buffer's position and limit are not used or changed.
+	 *
+	 * @throws IllegalArgumentException if the frame is not an alert or heartbeat
+	 */
+	public void wrap(ByteBuffer buffer, int offset, int length)
+	throws IllegalArgumentException {
+		if ((offset < 0) || (length < 1) || (offset + length > buffer.limit()))
+			throw new IllegalArgumentException("Frame is outside the buffer");
+		view(buffer);
+		frameEnd = offset + length;
+		kind = buffer.get(offset) & 0xff;
+		if (kind == RFC4765BinaryFormat.KIND_BATCH)
+			throw new IllegalArgumentException("RFC4765BinaryAlertView cannot read batch frames");
+		if ((kind < RFC4765BinaryFormat.KIND_ALERT) || (kind > RFC4765BinaryFormat.KIND_CORRELATION_ALERT))
+			throw new IllegalArgumentException("Unknown RFC4765 binary message kind "+kind);
+		message = offset + 1;
+		indexed = false;
+		generation++;
+		if (useAnalyzerHandles)
+			defineHandle();
+	}
+
+	/**
+	 * Point buf at buffer. The numbers of the format are big-endian whatever the order of the
+	 * caller's buffer, so buf is a duplicate in that order, made once per buffer.
+	 */
+	private void view(ByteBuffer buffer) {
+		if (buffer != viewed) {
+			buf = buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+			viewed = buffer;
+		}
+		buf.limit(buffer.limit());
+	}
+
+	/**
+	 * Note the position of the Analyzer the frame in view defines, if it defines one, so that
+	 * later frames can refer to it. A frame seen again (its Analyzer is not past the last one
+	 * noted) defines nothing.
+	 */
+	private void defineHandle() {
+		p = message;
+		blockEnd();
+		long bits = varint();
+		if (has(bits, 0))
+			markString();
+		if ((varint() != RFC4765BinaryFormat.ANALYZER_DEFINE) || (handleCount == RFC4765BinaryFormat.MAX_ANALYZER_HANDLES)
+				|| ((handleCount > 0) && (p <= handles[handleCount - 1])))
+			return;
+		if (handleCount == handles.length)
+			handles = Arrays.copyOf(handles, handleCount * 2);
+		handles[handleCount++] = p;
+	}
+
+
+	/**
+	 * @return the RFC4765BinaryFormat.KIND_* of the message in view
+	 */
+	public int getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return true for an alert of any kind (including tool, overflow and correlation alerts),
+	 * false for a heartbeat
+	 */
+	public boolean isAlert() {
+		return kind != RFC4765BinaryFormat.KIND_HEARTBEAT;
+	}
+
+	public String getMessageID() {
+		index();
+		return stringAt(at[MESSAGE_ID]);
+	}
+
+	public AnalyzerView getAnalyzer() {
+		index();
+		if (analyzer == null)
+			analyzer = new AnalyzerView(this);
+		analyzer.wrap(at[ANALYZER]);
+		return analyzer;
+	}
+
+	public DateTime getCreateTime() {
+		index();
+		return timeAt(at[CREATE_TIME]);
+	}
+
+	/**
+	 * @return the create time in milliseconds since the epoch, without building a DateTime
+	 */
+	public long getCreateTimeMillis() {
+		index();
+		p = at[CREATE_TIME];
+		return zigZag();
+	}
+
+	/**
+	 * @return the detect time, or null if there is none or the message is a heartbeat
+	 */
+	public DateTime getDetectTime() {
+		index();
+		return timeAt(at[DETECT_TIME]);
+	}
+
+	public DateTime getAnalyzerTime() {
+		index();
+		return timeAt(at[ANALYZER_TIME]);
+	}
+
+	/**
+	 * @return the classification, or null if the message is a heartbeat
+	 */
+	public ClassificationView getClassification() {
+		index();
+		if (at[CLASSIFICATION] < 0)
+			return null;
+		if (classification == null)
+			classification = new ClassificationView(this);
+		classification.wrap(at[CLASSIFICATION]);
+		return classification;
+	}
+
+	public int getSourceCount() {
+		index();
+		return countAt(at[SOURCES]);
+	}
+
+	/**
+	 * @return the i'th source. The same view is moved to each source asked for.
+	 */
+	public SourceView getSource(int i) {
+		index();
+		if (source == null)
+			source = new SourceView(this);
+		source.wrap(itemAt(at[SOURCES], i));
+		return source;
+	}
+
+	public int getTargetCount() {
+		index();
+		return countAt(at[TARGETS]);
+	}
+
+	/**
+	 * @return the i'th target. The same view is moved to each target asked for.
+	 */
+	public TargetView getTarget(int i) {
+		index();
+		if (target == null)
+			target = new TargetView(this);
+		target.wrap(itemAt(at[TARGETS], i));
+		return target;
+	}
+
+	/**
+	 * @return the assessment, or null if there is none
+	 */
+	public AssessmentView getAssessment() {
+		index();
+		if (at[ASSESSMENT] < 0)
+			return null;
+		if (assessment == null)
+			assessment = new AssessmentView(this);
+		assessment.wrap(at[ASSESSMENT]);
+		return assessment;
+	}
+
+	/**
+	 * @return the heartbeat interval in seconds, or -1 if there is none or the message is an alert
+	 */
+	public int getHeartbeatInterval() {
+		index();
+		if (at[HEARTBEAT_INTERVAL] < 0)
+			return -1;
+		p = at[HEARTBEAT_INTERVAL];
+		return (int) zigZag();
+	}
+
+
+	/**
+	 * Find where each field of the message starts, in one pass over the message block
+	 */
+	private void index() {
+		if (indexed)
+			return;
+		if (buf == null)
+			throw new IllegalStateException("No message in view");
+		for (int i = 0; i < at.length; i++)
+			at[i] = -1;
+		p = message;
+		int end = blockEnd();
+		long bits = varint();
+		if (isAlert()) {
+			at[MESSAGE_ID] = has(bits, 0) ? markString() : -1;
+			at[ANALYZER] = markMessageAnalyzer();
+			at[CREATE_TIME] = markTime();
+			at[DETECT_TIME] = has(bits, 1) ? markTime() : -1;
+			at[ANALYZER_TIME] = has(bits, 2) ? markTime() : -1;
+			at[CLASSIFICATION] = markBlock();
+			at[SOURCES] = has(bits, 3) ? markBlocks() : -1;
+			at[TARGETS] = has(bits, 4) ? markBlocks() : -1;
+			at[ASSESSMENT] = has(bits, 5) ? markBlock() : -1;
+		}
+		else {
+			at[MESSAGE_ID] = has(bits, 0) ? markString() : -1;
+			at[ANALYZER] = markMessageAnalyzer();
+			at[CREATE_TIME] = markTime();
+			at[ANALYZER_TIME] = has(bits, 1) ? markTime() : -1;
+			at[HEARTBEAT_INTERVAL] = has(bits, 2) ? markVarint() : -1;
+		}
+		if (p > end)
+			throw new IllegalArgumentException("RFC4765 binary block overrun");
+		indexed = true;
+	}
+
+
+	/**
+	 * The fields of one block, found the first time one of them is asked for
+	 */
+	private abstract static class BlockView {
+		final RFC4765BinaryAlertView v;
+		final int[] at;
+		private int block = -1;
+		private int generation;
+		private boolean indexed;
+
+		BlockView(RFC4765BinaryAlertView v, int fields) {
+			this.v = v;
+			this.at = new int[fields];
+		}
+
+		/**
+		 * Move the view to the block at position, unless it is already there
+		 */
+		final void wrap(int position) {
+			if ((position != block) || (generation != v.generation)) {
+				block = position;
+				generation = v.generation;
+				indexed = false;
+			}
+		}
+
+		/**
+		 * @return the position of a field, -1 if it is absent
+		 */
+		final int at(int field) {
+			if (! indexed) {
+				v.p = block;
+				int end = v.blockEnd();
+				long bits = v.varint();
+				layout(bits);
+				if (v.p > end)
+					throw new IllegalArgumentException("RFC4765 binary block overrun");
+				indexed = true;
+			}
+			return at[field];
+		}
+
+		/**
+		 * Fill at[] with the positions of the fields, v.p being just after the presence bitmap
+		 */
+		abstract void layout(long bits);
+
+		final String string(int field) {
+			return v.stringAt(at(field));
+		}
+
+		final int zigZag(int field, int absent) {
+			int position = at(field);
+			if (position < 0)
+				return absent;
+			v.p = position;
+			return (int) v.zigZag();
+		}
+
+		final <E extends Enum<E>> E enumValue(int field, Class<E> type) {
+			int position = at(field);
+			if (position < 0)
+				return null;
+			v.p = position;
+			long value = v.varint();
+			return RFC4765EnumCodes.fromValue(type, (value > Integer.MAX_VALUE) ? -1 : (int) value);
+		}
+	}
+
+
+	public static final class AnalyzerView extends BlockView {
+		private static final int ANALYZER_ID = 0;
+		private static final int NAME = 1;
+		private static final int OSVERSION = 7;
+		private static final int NODE = 8;
+		private static final int PROCESS = 9;
+		private static final int ORIGINAL = 10;
+
+		private NodeView node;
+		private ProcessView process;
+		private AnalyzerView original;
+
+		AnalyzerView(RFC4765BinaryAlertView v) {
+			super(v, 11);
+		}
+
+		void layout(long bits) {
+			at[ANALYZER_ID] = v.markString();
+			for (int i = NAME; i <= OSVERSION; i++)
+				at[i] = has(bits, i - NAME) ? v.markString() : -1;
+			at[NODE] = has(bits, 7) ? v.markBlock() : -1;
+			at[PROCESS] = has(bits, 8) ? v.markBlock() : -1;
+			at[ORIGINAL] = has(bits, 9) ? v.markBlock() : -1;
+		}
+
+		public String getAnalyzerID() {
+			return string(ANALYZER_ID);
+		}
+
+		public boolean analyzerIDEquals(String s) {
+			return v.stringEquals(at(ANALYZER_ID), s);
+		}
+
+		public String getName() {
+			return string(NAME);
+		}
+
+		public String getManufacturer() {
+			return string(NAME + 1);
+		}
+
+		public String getModel() {
+			return string(NAME + 2);
+		}
+
+		public String getVersion() {
+			return string(NAME + 3);
+		}
+
+		public String getAclass() {
+			return string(NAME + 4);
+		}
+
+		public String getOstype() {
+			return string(NAME + 5);
+		}
+
+		public String getOsversion() {
+			return string(OSVERSION);
+		}
+
+		public NodeView getNode() {
+			if (at(NODE) < 0)
+				return null;
+			if (node == null)
+				node = new NodeView(v);
+			node.wrap(at(NODE));
+			return node;
+		}
+
+		public ProcessView getProcess() {
+			if (at(PROCESS) < 0)
+				return null;
+			if (process == null)
+				process = new ProcessView(v);
+			process.wrap(at(PROCESS));
+			return process;
+		}
+
+		public AnalyzerView getOriginalAnalyzer() {
+			if (at(ORIGINAL) < 0)
+				return null;
+			if (original == null)
+				original = new AnalyzerView(v);
+			original.wrap(at(ORIGINAL));
+			return original;
+		}
+	}
+
+
+	public static final class ClassificationView extends BlockView {
+		private static final int IDENT = 0;
+		private static final int TEXT = 1;
+		private static final int REFERENCES = 2;
+
+		ClassificationView(RFC4765BinaryAlertView v) {
+			super(v, 3);
+		}
+
+		void layout(long bits) {
+			at[IDENT] = has(bits, 0) ? v.markString() : -1;
+			at[TEXT] = v.markString();
+			at[REFERENCES] = has(bits, 1) ? v.markBlocks() : -1;
+		}
+
+		public String getIdent() {
+			return string(IDENT);
+		}
+
+		public String getText() {
+			return string(TEXT);
+		}
+
+		public boolean textEquals(String s) {
+			return v.stringEquals(at(TEXT), s);
+		}
+
+		public int getReferenceCount() {
+			return v.countAt(at(REFERENCES));
+		}
+	}
+
+
+	/**
+	 * The fields that Source and Target share
+	 */
+	abstract static class EndpointView extends BlockView {
+		static final int IDENT = 0;
+		static final int RANK = 1;
+		static final int IFACE = 2;
+		static final int NODE = 3;
+		static final int USER = 4;
+		static final int PROCESS = 5;
+		static final int SERVICE = 6;
+
+		private NodeView node;
+		private UserView user;
+		private ProcessView process;
+		private ServiceView service;
+
+		EndpointView(RFC4765BinaryAlertView v) {
+			super(v, 7);
+		}
+
+		void layout(long bits) {
+			at[IDENT] = has(bits, 0) ? v.markString() : -1;
+			at[RANK] = v.markVarint();
+			at[IFACE] = has(bits, 1) ? v.markString() : -1;
+			at[NODE] = has(bits, 2) ? v.markBlock() : -1;
+			at[USER] = has(bits, 3) ? v.markBlock() : -1;
+			at[PROCESS] = has(bits, 4) ? v.markBlock() : -1;
+			at[SERVICE] = has(bits, 5) ? v.markBlock() : -1;
+		}
+
+		public String getIdent() {
+			return string(IDENT);
+		}
+
+		public String getInterface() {
+			return string(IFACE);
+		}
+
+		public NodeView getNode() {
+			if (at(NODE) < 0)
+				return null;
+			if (node == null)
+				node = new NodeView(v);
+			node.wrap(at(NODE));
+			return node;
+		}
+
+		public UserView getUser() {
+			if (at(USER) < 0)
+				return null;
+			if (user == null)
+				user = new UserView(v);
+			user.wrap(at(USER));
+			return user;
+		}
+
+		public ProcessView getProcess() {
+			if (at(PROCESS) < 0)
+				return null;
+			if (process == null)
+				process = new ProcessView(v);
+			process.wrap(at(PROCESS));
+			return process;
+		}
+
+		public ServiceView getService() {
+			if (at(SERVICE) < 0)
+				return null;
+			if (service == null)
+				service = new ServiceView(v);
+			service.wrap(at(SERVICE));
+			return service;
+		}
+	}
+
+	public static final class SourceView extends EndpointView {
+		SourceView(RFC4765BinaryAlertView v) {
+			super(v);
+		}
+
+		public Source.SpoofedRank getSpoofed() {
+			return enumValue(RANK, Source.SpoofedRank.class);
+		}
+	}
+
+	public static final class TargetView extends EndpointView {
+		TargetView(RFC4765BinaryAlertView v) {
+			super(v);
+		}
+
+		public Target.DecoyRank getDecoy() {
+			return enumValue(RANK, Target.DecoyRank.class);
+		}
+	}
+
+
+	public static final class NodeView extends BlockView {
+		private static final int IDENT = 0;
+		private static final int CATEGORY = 1;
+		private static final int LOCATION = 2;
+		private static final int NAME = 3;
+		private static final int ADDRESSES = 4;
+
+		private AddressView address;
+
+		NodeView(RFC4765BinaryAlertView v) {
+			super(v, 5);
+		}
+
+		void layout(long bits) {
+			at[IDENT] = has(bits, 0) ? v.markString() : -1;
+			at[CATEGORY] = v.markVarint();
+			at[LOCATION] = has(bits, 1) ? v.markString() : -1;
+			at[NAME] = has(bits, 2) ? v.markString() : -1;
+			at[ADDRESSES] = has(bits, 3) ? v.markBlocks() : -1;
+		}
+
+		public String getIdent() {
+			return string(IDENT);
+		}
+
+		public Node.Category getCategory() {
+			return enumValue(CATEGORY, Node.Category.class);
+		}
+
+		public String getLocation() {
+			return string(LOCATION);
+		}
+
+		public String getName() {
+			return string(NAME);
+		}
+
+		public int getAddressCount() {
+			return v.countAt(at(ADDRESSES));
+		}
+
+		/**
+		 * @return the i'th address. The same view is moved to each address asked for.
+		 */
+		public AddressView getAddress(int i) {
+			if (address == null)
+				address = new AddressView(v);
+			address.wrap(v.itemAt(at(ADDRESSES), i));
+			return address;
+		}
+	}
+
+
+	public static final class AddressView extends BlockView {
+		private static final int IDENT = 0;
+		private static final int CATEGORY = 1;
+		private static final int ADDRESS = 2;
+		private static final int VLAN_NAME = 3;
+		private static final int VLAN_NUM = 4;
+		private static final int NETMASK = 5;
+		private static final int IPV4 = 6;
+		private static final int IPV6 = 7;
+		private static final int PREFIX = 8;
+
+		AddressView(RFC4765BinaryAlertView v) {
+			super(v, 9);
+		}
+
+		void layout(long bits) {
+			at[IDENT] = has(bits, 0) ? v.markString() : -1;
+			at[CATEGORY] = v.markVarint();
+			at[IPV4] = has(bits, 4) ? v.markFixed(4) : -1;
+			at[IPV6] = (! has(bits, 4) && has(bits, 5)) ? v.markFixed(16) : -1;
+			at[ADDRESS] = (has(bits, 4) || has(bits, 5)) ? -1 : v.markString();
+			at[VLAN_NAME] = has(bits, 1) ? v.markString() : -1;
+			at[VLAN_NUM] = has(bits, 2) ? v.markString() : -1;
+			at[NETMASK] = has(bits, 3) ? v.markString() : -1;
+			at[PREFIX] = has(bits, 6) ? v.markVarint() : -1;
+		}
+
+		/**
+		 * @return the Address of a literal IP address, which the text forms are written from
+		 */
+		private Address numeric() {
+			String netmask = string(NETMASK);
+			if (isIPv4())
+				return Address.fromIPv4(null, getSKCategory(), getIPv4(), getPrefixLength(), netmask, null, null);
+			return Address.fromIPv6(null, getSKCategory(), getIPv6High(), getIPv6Low(), getPrefixLength(), netmask, null, null);
+		}
+
+		/**
+		 * @return true if the address is a literal IPv4 address, held as getIPv4()
+		 */
+		public boolean isIPv4() {
+			return at(IPV4) >= 0;
+		}
+
+		/**
+		 * @return true if the address is a literal IPv6 address, held as getIPv6High() and getIPv6Low()
+		 */
+		public boolean isIPv6() {
+			return at(IPV6) >= 0;
+		}
+
+		/**
+		 * @return the literal IPv4 address, most significant byte first, or 0 if isIPv4() is false
+		 */
+		public int getIPv4() {
+			return isIPv4() ? v.buf.getInt(at(IPV4)) : 0;
+		}
+
+		/**
+		 * @return the first 64 bits of the literal IPv6 address, or 0 if isIPv6() is false
+		 */
+		public long getIPv6High() {
+			return isIPv6() ? v.buf.getLong(at(IPV6)) : 0;
+		}
+
+		/**
+		 * @return the last 64 bits of the literal IPv6 address, or 0 if isIPv6() is false
+		 */
+		public long getIPv6Low() {
+			return isIPv6() ? v.buf.getLong(at(IPV6) + 8) : 0;
+		}
+
+		/**
+		 * @return the netmask of a literal IP address as a prefix length, or -1 if there is no
+		 * netmask or it is not a contiguous mask
+		 */
+		public int getPrefixLength() {
+			int position = at(PREFIX);
+			if (position < 0)
+				return -1;
+			v.p = position;
+			return (int) v.varint();
+		}
+
+		public String getIdent() {
+			return string(IDENT);
+		}
+
+		public Address.Category getSKCategory() {
+			return enumValue(CATEGORY, Address.Category.class);
+		}
+
+		public Address.Category getRFCCategory() {
+			Address.Category category = getSKCategory();
+			if ((category == null) || (category.getValue() >= Address.Category.X_YOU.getValue()))
+				return Address.Category.UNKNOWN;
+			return category;
+		}
+
+		/**
+		 * @return the address as Address.getAddress() returns it; a literal IP address is written
+		 * out afresh on each call
+		 */
+		public String getAddress() {
+			if (isIPv4() || isIPv6())
+				return numeric().getAddress();
+			return string(ADDRESS);
+		}
+
+		public boolean addressEquals(String s) {
+			if (isIPv4() || isIPv6())
+				return getAddress().equals(s);
+			return v.stringEquals(at(ADDRESS), s);
+		}
+
+		/**
+		 * @return the netmask as Address.getNetmask() returns it, or null
+		 */
+		public String getNetmask() {
+			if (at(PREFIX) >= 0)
+				return numeric().getNetmask();
+			return string(NETMASK);
+		}
+
+		public String getVlanName() {
+			return string(VLAN_NAME);
+		}
+
+		public String getVlanNum() {
+			return string(VLAN_NUM);
+		}
+	}
+
+
+	public static final class UserView extends BlockView {
+		private static final int IDENT = 0;
+		private static final int CATEGORY = 1;
+		private static final int USERIDS = 2;
+
+		private UserIdView userid;
+
+		UserView(RFC4765BinaryAlertView v) {
+			super(v, 3);
+		}
+
+		void layout(long bits) {
+			at[IDENT] = has(bits, 0) ? v.markString() : -1;
+			at[CATEGORY] = v.markVarint();
+			at[USERIDS] = has(bits, 1) ? v.markBlocks() : -1;
+		}
+
+		public String getIdent() {
+			return string(IDENT);
+		}
+
+		public User.Category getCategory() {
+			return enumValue(CATEGORY, User.Category.class);
+		}
+
+		public int getUseridCount() {
+			return v.countAt(at(USERIDS));
+		}
+
+		/**
+		 * @return the i'th UserId. The same view is moved to each UserId asked for.
+		 */
+		public UserIdView getUserid(int i) {
+			if (userid == null)
+				userid = new UserIdView(v);
+			userid.wrap(v.itemAt(at(USERIDS), i));
+			return userid;
+		}
+	}
+
+
+	public static final class UserIdView extends BlockView {
+		private static final int IDENT = 0;
+		private static final int TYPE = 1;
+		private static final int TTY = 2;
+		private static final int NAME = 3;
+		private static final int NUMBER = 4;
+
+		UserIdView(RFC4765BinaryAlertView v) {
+			super(v, 5);
+		}
+
+		void layout(long bits) {
+			at[IDENT] = has(bits, 0) ? v.markString() : -1;
+			at[TYPE] = v.markVarint();
+			at[TTY] = has(bits, 1) ? v.markString() : -1;
+			at[NAME] = has(bits, 2) ? v.markString() : -1;
+			at[NUMBER] = has(bits, 3) ? v.markString() : -1;
+		}
+
+		public String getIdent() {
+			return string(IDENT);
+		}
+
+		public UserId.Type getType() {
+			return enumValue(TYPE, UserId.Type.class);
+		}
+
+		public String getTty() {
+			return string(TTY);
+		}
+
+		public String getName() {
+			return string(NAME);
+		}
+
+		public String getNumber() {
+			return string(NUMBER);
+		}
+	}
+
+
+	public static final class ProcessView extends BlockView {
+		private static final int IDENT = 0;
+		private static final int NAME = 1;
+		private static final int PID = 2;
+		private static final int PATH = 3;
+		private static final int ARG = 4;
+		private static final int ENV = 5;
+
+		ProcessView(RFC4765BinaryAlertView v) {
+			super(v, 6);
+		}
+
+		void layout(long bits) {
+			at[IDENT] = has(bits, 0) ? v.markString() : -1;
+			at[NAME] = has(bits, 1) ? v.markString() : -1;
+			at[PID] = has(bits, 2) ? v.markVarint() : -1;
+			at[PATH] = has(bits, 3) ? v.markString() : -1;
+			at[ARG] = has(bits, 4) ? v.markStrings() : -1;
+			at[ENV] = has(bits, 5) ? v.markStrings() : -1;
+		}
+
+		public String getIdent() {
+			return string(IDENT);
+		}
+
+		public String getName() {
+			return string(NAME);
+		}
+
+		public int getPid() {
+			return zigZag(PID, 0);
+		}
+
+		public String getPath() {
+			return string(PATH);
+		}
+
+		public String[] getArg() {
+			return v.stringsAt(at(ARG));
+		}
+
+		public String[] getEnv() {
+			return v.stringsAt(at(ENV));
+		}
+	}
+
+
+	public static final class ServiceView extends BlockView {
+		private static final int IDENT = 0;
+		private static final int IP_VERSION = 1;
+		private static final int IANA_PROTOCOL_NUMBER = 2;
+		private static final int IANA_PROTOCOL_NAME = 3;
+		private static final int NAME = 4;
+		private static final int PORT = 5;
+		private static final int PORTLIST = 6;
+		private static final int PROTOCOL = 7;
+
+		ServiceView(RFC4765BinaryAlertView v) {
+			super(v, 8);
+		}
+
+		void layout(long bits) {
+			at[IDENT] = has(bits, 0) ? v.markString() : -1;
+			at[IP_VERSION] = has(bits, 1) ? v.markVarint() : -1;
+			at[IANA_PROTOCOL_NUMBER] = has(bits, 2) ? v.markVarint() : -1;
+			at[IANA_PROTOCOL_NAME] = has(bits, 3) ? v.markString() : -1;
+			at[NAME] = has(bits, 4) ? v.markString() : -1;
+			at[PORT] = has(bits, 5) ? v.markVarint() : -1;
+			at[PORTLIST] = has(bits, 6) ? v.markString() : -1;
+			at[PROTOCOL] = has(bits, 7) ? v.markString() : -1;
+		}
+
+		public String getIdent() {
+			return string(IDENT);
+		}
+
+		public int getIpVersion() {
+			return zigZag(IP_VERSION, 0);
+		}
+
+		public int getIanaProtocolNumber() {
+			return zigZag(IANA_PROTOCOL_NUMBER, 0);
+		}
+
+		public String getIanaProtocolName() {
+			return string(IANA_PROTOCOL_NAME);
+		}
+
+		public String getName() {
+			return string(NAME);
+		}
+
+		public int getPort() {
+			return zigZag(PORT, 0);
+		}
+
+		public String getPortlist() {
+			return string(PORTLIST);
+		}
+
+		public String getProtocol() {
+			return string(PROTOCOL);
+		}
+	}
+
+
+	/**
+	 * Assessment, with its Impact, Action and Confidence read in place
+	 */
+	public static final class AssessmentView extends BlockView {
+		private static final int IMPACT = 0;
+		private static final int ACTION = 1;
+		private static final int CONFIDENCE = 2;
+
+		private ImpactView impact;
+		private ActionView action;
+		private ConfidenceView confidence;
+
+		AssessmentView(RFC4765BinaryAlertView v) {
+			super(v, 3);
+		}
+
+		void layout(long bits) {
+			at[IMPACT] = has(bits, 0) ? v.markBlock() : -1;
+			at[ACTION] = has(bits, 1) ? v.markBlock() : -1;
+			at[CONFIDENCE] = has(bits, 2) ? v.markBlock() : -1;
+		}
+
+		public ImpactView getImpact() {
+			if (at(IMPACT) < 0)
+				return null;
+			if (impact == null)
+				impact = new ImpactView(v);
+			impact.wrap(at(IMPACT));
+			return impact;
+		}
+
+		public ActionView getAction() {
+			if (at(ACTION) < 0)
+				return null;
+			if (action == null)
+				action = new ActionView(v);
+			action.wrap(at(ACTION));
+			return action;
+		}
+
+		public ConfidenceView getConfidence() {
+			if (at(CONFIDENCE) < 0)
+				return null;
+			if (confidence == null)
+				confidence = new ConfidenceView(v);
+			confidence.wrap(at(CONFIDENCE));
+			return confidence;
+		}
+	}
+
+	public static final class ImpactView extends BlockView {
+		private static final int SEVERITY = 0;
+		private static final int COMPLETION = 1;
+		private static final int TYPE = 2;
+
+		ImpactView(RFC4765BinaryAlertView v) {
+			super(v, 3);
+		}
+
+		void layout(long bits) {
+			at[SEVERITY] = has(bits, 0) ? v.markVarint() : -1;
+			at[COMPLETION] = has(bits, 1) ? v.markVarint() : -1;
+			at[TYPE] = v.markVarint();
+		}
+
+		public Impact.Severity getSeverity() {
+			return enumValue(SEVERITY, Impact.Severity.class);
+		}
+
+		public Impact.Completion getCompletion() {
+			return enumValue(COMPLETION, Impact.Completion.class);
+		}
+
+		public Impact.Type getType() {
+			return enumValue(TYPE, Impact.Type.class);
+		}
+	}
+
+	public static final class ActionView extends BlockView {
+		private static final int CATEGORY = 0;
+
+		ActionView(RFC4765BinaryAlertView v) {
+			super(v, 1);
+		}
+
+		void layout(long bits) {
+			at[CATEGORY] = v.markVarint();
+		}
+
+		public Action.Category getSKCategory() {
+			return enumValue(CATEGORY, Action.Category.class);
+		}
+
+		public Action.Category getRFCCategory() {
+			Action.Category category = getSKCategory();
+			if ((category == null) || (category.getValue() >= Action.Category.X_INFO.getValue()))
+				return Action.Category.OTHER;
+			return category;
+		}
+	}
+
+	public static final class ConfidenceView extends BlockView {
+		private static final int RATING = 0;
+		private static final int NUMERIC_RATING = 1;
+
+		ConfidenceView(RFC4765BinaryAlertView v) {
+			super(v, 2);
+		}
+
+		void layout(long bits) {
+			at[RATING] = v.markVarint();
+			at[NUMERIC_RATING] = has(bits, 0) ? v.markDouble() : -1;
+		}
+
+		public Confidence.Rank getSKRating() {
+			return enumValue(RATING, Confidence.Rank.class);
+		}
+
+		public Confidence.Rank getRFCRating() {
+			Confidence.Rank rating = getSKRating();
+			if ((rating == null) || (rating.getValue() >= Confidence.Rank.X_NEG_LOW.getValue()))
+				return Confidence.Rank.LOW;
+			return rating;
+		}
+
+		public double getSKNumericRating() {
+			int position = at(NUMERIC_RATING);
+			return (position < 0) ? 0.0d : v.buf.getDouble(position);
+		}
+
+		public double getRFCNumericRating() {
+			return Math.max(0.0d, getSKNumericRating());
+		}
+	}
+
+
+
+	private static boolean has(long bits, int bit) {
+		return (bits & (1L << bit)) != 0;
+	}
+
+	private int nextByte() {
+		if (p >= frameEnd)
+			throw new IllegalArgumentException("Truncated RFC4765 binary message");
+		return buf.get(p++);
+	}
+
+	private long varint() {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int x = nextByte();
+			// the tenth byte holds only bit 63
+			if ((shift == 63) && ((x & 0xff) > 1))
+				break;
+			v |= (long) (x & 0x7f) << shift;
+			if (x >= 0)
+				return v;
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	private long zigZag() {
+		long v = varint();
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * @return a length or count, which cannot be more than the bytes left in the frame
+	 */
+	private int length() {
+		long n = varint();
+		if ((n < 0) || (n > frameEnd - p))
+			throw new IllegalArgumentException("Truncated RFC4765 binary message");
+		return (int) n;
+	}
+
+	/**
+	 * Read the length of the block at p
+	 *
+	 * @return the position at which the block ends
+	 */
+	private int blockEnd() {
+		int length = length();
+		return p + length;
+	}
+
+
+	// each mark* skips one field and returns the position it started at
+
+	private int markVarint() {
+		int start = p;
+		varint();
+		return start;
+	}
+
+	private int markTime() {
+		int start = p;
+		varint();
+		varint();
+		return start;
+	}
+
+	private int markDouble() {
+		return markFixed(8);
+	}
+
+	private int markFixed(int bytes) {
+		int start = p;
+		if (frameEnd - p < bytes)
+			throw new IllegalArgumentException("Truncated RFC4765 binary message");
+		p += bytes;
+		return start;
+	}
+
+	private int markBlock() {
+		int start = p;
+		p = blockEnd();
+		return start;
+	}
+
+	/**
+	 * The Analyzer of a message, which in a stream with Analyzer handles may be a handle of one
+	 * an earlier frame defined
+	 */
+	private int markMessageAnalyzer() {
+		if (! useAnalyzerHandles)
+			return markBlock();
+		long tag = varint();
+		if (tag >= RFC4765BinaryFormat.ANALYZER_REFERENCE) {
+			long handle = tag - RFC4765BinaryFormat.ANALYZER_REFERENCE;
+			if (handle >= handleCount)
+				throw new IllegalArgumentException("RFC4765 binary Analyzer handle "+handle+" is not defined");
+			return handles[(int) handle];
+		}
+		return markBlock();
+	}
+
+	private int markString() {
+		int start = p;
+		long tag = varint();
+		if ((tag == RFC4765BinaryFormat.STRING_LITERAL) || (tag == RFC4765BinaryFormat.STRING_DEFINE)) {
+			int length = length();
+			p += length;
+		}
+		return start;
+	}
+
+	/**
+	 * A count and that many blocks
+	 */
+	private int markBlocks() {
+		int start = p;
+		int n = length();
+		for (int i = 0; i < n; i++)
+			p = blockEnd();
+		return start;
+	}
+
+	/**
+	 * A count and that many strings
+	 */
+	private int markStrings() {
+		int start = p;
+		int n = length();
+		for (int i = 0; i < n; i++)
+			markString();
+		return start;
+	}
+
+
+	/**
+	 * @return the number of items in the list at position, 0 if the list is absent
+	 */
+	private int countAt(int position) {
+		if (position < 0)
+			return 0;
+		p = position;
+		return length();
+	}
+
+	/**
+	 * @return the position of the i'th block of the list at position
+	 */
+	private int itemAt(int position, int i) {
+		int n = countAt(position);
+		if ((i < 0) || (i >= n))
+			throw new IndexOutOfBoundsException("Index "+i+" of "+n);
+		for (int skip = 0; skip < i; skip++)
+			p = blockEnd();
+		return p;
+	}
+
+	private DateTime timeAt(int position) {
+		if (position < 0)
+			return null;
+		p = position;
+		long millis = zigZag();
+		long offsetSeconds = zigZag();
+		return new DateTime(millis, (offsetSeconds == 0) ? DateTimeZone.UTC : DateTimeZone.forOffsetMillis((int) offsetSeconds * 1000));
+	}
+
+	private String[] stringsAt(int position) {
+		if (position < 0)
+			return null;
+		p = position;
+		String[] s = new String[length()];
+		for (int i = 0; i < s.length; i++)
+			s[i] = stringAt(p);
+		return s;
+	}
+
+	/**
+	 * Leaves p just past the string
+	 */
+	private String stringAt(int position) {
+		if (position < 0)
+			return null;
+		p = position;
+		int length = stringLength();
+		if (length < 0)
+			return null;
+		String s;
+		if (buf.hasArray())
+			s = new String(buf.array(), buf.arrayOffset() + p, length, UTF8);
+		else {
+			if ((scratch == null) || (scratch.length < length))
+				scratch = new byte[Math.max(length, 256)];
+			for (int i = 0; i < length; i++)
+				scratch[i] = buf.get(p + i);
+			s = new String(scratch, 0, length, UTF8);
+		}
+		p += length;
+		return s;
+	}
+
+	/**
+	 * Compare the string at position with s, in place
+	 */
+	private boolean stringEquals(int position, String s) {
+		if (position < 0)
+			return s == null;
+		p = position;
+		int length = stringLength();
+		if ((length < 0) || (s == null))
+			return (length < 0) && (s == null);
+		int q = p;
+		int end = p + length;
+		int n = s.length();
+		for (int i = 0; i < n; i++) {
+			int c = s.charAt(i);
+			if ((c >= Character.MIN_HIGH_SURROGATE) && (c <= Character.MAX_HIGH_SURROGATE) && (i + 1 < n)
+					&& (s.charAt(i + 1) >= Character.MIN_LOW_SURROGATE) && (s.charAt(i + 1) <= Character.MAX_LOW_SURROGATE))
+				c = Character.toCodePoint((char) c, s.charAt(++i));
+			else if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE))
+				c = '\uFFFD';
+			// the UTF-8 bytes of c, compared as they would be written
+			int bytes = (c < 0x80) ? 1 : (c < 0x800) ? 2 : (c < 0x10000) ? 3 : 4;
+			if (end - q < bytes)
+				return false;
+			if (bytes == 1) {
+				if (buf.get(q++) != c)
+					return false;
+				continue;
+			}
+			int lead = (bytes == 2) ? 0xc0 : (bytes == 3) ? 0xe0 : 0xf0;
+			if ((buf.get(q++) & 0xff) != (lead | (c >> (6 * (bytes - 1)))))
+				return false;
+			for (int shift = 6 * (bytes - 2); shift >= 0; shift -= 6)
+				if ((buf.get(q++) & 0xff) != (0x80 | ((c >> shift) & 0x3f)))
+					return false;
+		}
+		return q == end;
+	}
+
+	/**
+	 * Read a string's tag and length, leaving p at its first byte
+	 *
+	 * @return the byte length, -1 for a null string
+	 */
+	private int stringLength() {
+		long tag = varint();
+		if (tag == RFC4765BinaryFormat.STRING_NULL)
+			return -1;
+		if (tag >= RFC4765BinaryFormat.STRING_REFERENCE)
+			throw new IllegalArgumentException("RFC4765 binary string reference: the view needs a stream written without a dictionary");
+		return length();
+	}
+
+}
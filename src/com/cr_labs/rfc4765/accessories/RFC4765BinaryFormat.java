@@ -0,0 +1,222 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and primitive decoders of the compact binary encoding written by RFC4765BinaryWriter
+ * and read by RFC4765BinaryReader.
+ *
+ * <p><strong>Stream:</strong> the 4 bytes "IDMB", a version byte (VERSION), a flags byte
+ * (FLAG_DICTIONARY, FLAG_ANALYZER_HANDLES, FLAG_COMPRESSED), then any number of frames. Each frame is
+ * a varint byte length followed by that many bytes: a message kind byte (KIND_*) and the message block, or KIND_BATCH followed by
+ * a varint count and that many kind bytes and message blocks. In a stream with FLAG_COMPRESSED,
+ * those bytes are the output of an RFC4765Compressor, which the two ends agree on out of band.
+ *
+ * <p><strong>Blocks:</strong> every object of the model (Analyzer, Source, Address...) is written
+ * as a varint byte length followed by its fields, so that a reader can skip any object without
+ * decoding it. A block starts with a varint presence bitmap with one bit per optional field;
+ * fields whose bit is clear are absent from the block, and required fields have no bit.
+ * Readers ignore bits they don't know and any bytes after the fields they know, so a later
+ * version may add fields at the end of a block.
+ *
+ * <p><strong>Values:</strong> unsigned varints (7 bits per byte, low group first, high bit set on
+ * all but the last byte) for lengths, counts, bitmaps and enum codes (the getValue() of the enum,
+ * so X_* extension values survive); zigzag varints for model ints and times; IEEE 754 doubles as
+ * 8 bytes, big-endian. A time is the zigzag millisecond instant followed by the zigzag offset of
+ * its zone from UTC in seconds. A literal IP address is written in its numeric form: 4 bytes
+ * (IPv4) or 16 bytes (IPv6), big-endian, in place of the address string of the Address block,
+ * and a netmask that is a prefix length as a varint after the Address's other fields; presence
+ * bits 4 (IPv4), 5 (IPv6) and 6 (prefix length) say which. Host names, and masks that are not
+ * prefixes, stay strings.
+ *
+ * <p><strong>Strings:</strong> a varint tag: STRING_NULL, STRING_LITERAL (varint UTF-8 byte length and
+ * the bytes), STRING_DEFINE (as a literal, and also appended to the stream's dictionary), or
+ * STRING_REFERENCE + n for entry n of the dictionary. The dictionary starts empty on every stream,
+ * and holds at most MAX_DICTIONARY_SIZE entries.
+ *
+ * <p><strong>Analyzer handles:</strong> in a stream with FLAG_ANALYZER_HANDLES, the Analyzer of each
+ * message (not its originalAnalyzer) is preceded by a varint tag: ANALYZER_LITERAL (the Analyzer block
+ * follows), ANALYZER_DEFINE (the block follows, and the Analyzer becomes the stream's next handle), or
+ * ANALYZER_REFERENCE + n for handle n, with no block. Handles are numbered from 0 on every stream,
+ * up to MAX_ANALYZER_HANDLES.
+ */
+public final class RFC4765BinaryFormat {
+
+	public static final byte[] MAGIC = { 'I', 'D', 'M', 'B' };
+	public static final int VERSION = 1;
+
+	/**
+	 * Stream flag: the writer may emit STRING_DEFINE and STRING_REFERENCE tags
+	 */
+	public static final int FLAG_DICTIONARY = 0x01;
+	/**
+	 * Stream flag: each message's Analyzer is preceded by an ANALYZER_* tag
+	 */
+	public static final int FLAG_ANALYZER_HANDLES = 0x02;
+	/**
+	 * Stream flag: the content of each frame is compressed on its own
+	 */
+	public static final int FLAG_COMPRESSED = 0x04;
+
+	public static final int KIND_ALERT = 1;
+	public static final int KIND_HEARTBEAT = 2;
+	public static final int KIND_TOOL_ALERT = 3;
+	public static final int KIND_OVERFLOW_ALERT = 4;
+	public static final int KIND_CORRELATION_ALERT = 5;
+	/**
+	 * A frame holding many messages: a varint count, then for each message its kind byte and block
+	 */
+	public static final int KIND_BATCH = 6;
+
+	public static final int STRING_NULL = 0;
+	public static final int STRING_LITERAL = 1;
+	public static final int STRING_DEFINE = 2;
+	public static final int STRING_REFERENCE = 3;
+
+	public static final int ANALYZER_LITERAL = 0;
+	public static final int ANALYZER_DEFINE = 1;
+	public static final int ANALYZER_REFERENCE = 2;
+
+	public static final int MAX_ANALYZER_HANDLES = 4096;
+
+	public static final int MAX_DICTIONARY_SIZE = 65536;
+	/**
+	 * Longer strings are always written as literals
+	 */
+	public static final int MAX_DICTIONARY_STRING = 256;
+	/**
+	 * The largest frame, in bytes, a reader accepts unless told otherwise (see
+	 * RFC4765BinaryReader.setMaxFrameSize); a compressed frame must not expand past it either
+	 */
+	public static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+	private RFC4765BinaryFormat() {
+	}
+
+
+	/**
+	 * @return the unsigned varint at the buffer's position, advancing past it
+	 * @throws IllegalArgumentException if the varint is longer than 64 bits
+	 * @throws BufferUnderflowException if the buffer ends inside the varint
+	 */
+	public static long readVarint(ByteBuffer b)
+	throws IllegalArgumentException, BufferUnderflowException {
+		long v = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int x = b.get();
+			// the tenth byte holds only bit 63
+			if ((shift == 63) && ((x & 0xff) > 1))
+				break;
+			v |= (long) (x & 0x7f) << shift;
+			if (x >= 0)
+				return v;
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	/**
+	 * @return the unsigned varint at the buffer's position as an int, advancing past it
+	 * @throws IllegalArgumentException if the value does not fit in a non-negative int
+	 */
+	public static int readUnsignedInt(ByteBuffer b)
+	throws IllegalArgumentException, BufferUnderflowException {
+		long v = readVarint(b);
+		if ((v < 0) || (v > Integer.MAX_VALUE))
+			throw new IllegalArgumentException("Varint out of range: "+v);
+		return (int) v;
+	}
+
+	/**
+	 * @return the zigzag-encoded varint at the buffer's position, advancing past it
+	 */
+	public static long readZigZag(ByteBuffer b)
+	throws IllegalArgumentException, BufferUnderflowException {
+		long v = readVarint(b);
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	/**
+	 * Advance past a block (or a literal string body): a varint length and that many bytes
+	 *
+	 * @return the buffer position just after the block
+	 */
+	public static int skipBlock(ByteBuffer b)
+	throws IllegalArgumentException, BufferUnderflowException {
+		int length = readUnsignedInt(b);
+		if (length > b.remaining())
+			throw new BufferUnderflowException();
+		int end = b.position() + length;
+		b.position(end);
+		return end;
+	}
+
+	/**
+	 * Advance past an encoded string of any kind, without decoding it. A reader that keeps
+	 * the stream's dictionary must not skip over STRING_DEFINE strings this way.
+	 */
+	public static void skipString(ByteBuffer b)
+	throws IllegalArgumentException, BufferUnderflowException {
+		long tag = readVarint(b);
+		if ((tag == STRING_LITERAL) || (tag == STRING_DEFINE))
+			skipBlock(b);
+	}
+
+	/**
+	 * Read the stream header at the buffer's position, advancing past it
+	 *
+	 * @return the stream's flags (FLAG_DICTIONARY, FLAG_ANALYZER_HANDLES, FLAG_COMPRESSED)
+	 * @throws IllegalArgumentException if the buffer does not hold the header of an RFC4765 binary
+	 * stream of this version
+	 */
+	public static int readHeader(ByteBuffer b)
+	throws IllegalArgumentException {
+		if (b.remaining() < MAGIC.length + 2)
+			throw new IllegalArgumentException("Not an RFC4765 binary stream");
+		for (int i = 0; i < MAGIC.length; i++)
+			if (b.get() != MAGIC[i])
+				throw new IllegalArgumentException("Not an RFC4765 binary stream");
+		int version = b.get() & 0xff;
+		if (version != VERSION)
+			throw new IllegalArgumentException("Unsupported RFC4765 binary stream version "+version);
+		return b.get() & 0xff;
+	}
+
+	/**
+	 * @return the number of bytes the unsigned varint form of v takes
+	 */
+	static int varintSize(long v) {
+		int size = 1;
+		while ((v & ~0x7fL) != 0) {
+			v >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	static long zigZag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+}
@@ -0,0 +1,962 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.CorrelationAlert;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.OverflowAlert;
+import com.cr_labs.rfc4765.PortSet;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Reads IDMEFMessage objects from a stream written by RFC4765BinaryWriter.
+ *
+ * <p>Each frame is read into a reusable buffer (decompressed, in a compressed stream, by the
+ * RFC4765Compressor given to the constructor) and decoded from there. Strings are learned from
+ * the stream as they are defined, and so are Analyzers in a stream with Analyzer handles;
+ * messages that refer to the same handle share one Analyzer instance. Once next() has thrown
+ * an IllegalArgumentException the rest of such a stream can't be relied on. Host names given
+ * as Address values are kept unresolved, so reading never waits on DNS (see RFC4765Resolver).
+ *
+ * <p>A reader is not thread safe; use one per input stream.
+ *
+ * <pre>
+ * RFC4765BinaryReader r = new RFC4765BinaryReader(socketInputStream);
+ * IDMEFMessage m;
+ * while ((m = r.next()) != null)
+ *     process(m);
+ * </pre>
+ */
+public class RFC4765BinaryReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final InputStream in;
+	private final ArrayList<String> dictionary = new ArrayList<String>();
+	private final ArrayList<Analyzer> analyzerHandles = new ArrayList<Analyzer>();
+	private boolean useAnalyzerHandles;
+
+	private byte[] frame = new byte[1024];
+	private ByteBuffer b = ByteBuffer.wrap(frame);
+	private boolean headerRead;
+	private final RFC4765Compressor compressor;
+	private boolean compressed;
+	private byte[] packedFrame;
+	private final FrameBuffer unpacked = new FrameBuffer();
+	/**
+	 * Messages of the current batch frame not yet returned
+	 */
+	private int batchRemaining;
+
+	private RFC4765Interner interner;
+	private int maxFrameSize = RFC4765BinaryFormat.MAX_FRAME_SIZE;
+	private final IDMEFMessage_Alert.Builder alertBuilder = new IDMEFMessage_Alert.Builder();
+	private final IDMEFMessage_Heartbeat.Builder heartbeatBuilder = new IDMEFMessage_Heartbeat.Builder();
+	private long messageCount;
+	private long bytesRead;
+
+
+	/**
+	 * @param in the stream to read. It is buffered here if it is not already.
+	 */
+	public RFC4765BinaryReader(InputStream in) {
+		this(in, null);
+	}
+
+	/**
+	 * @param in the stream to read. It is buffered here if it is not already.
+	 * @param compressor to decompress the frames of a compressed stream, or null if the stream is not compressed
+	 */
+	public RFC4765BinaryReader(InputStream in, RFC4765Compressor compressor) {
+		this.compressor = compressor;
+		// streams that support mark (BufferedInputStream, ByteArrayInputStream...) are already buffered
+		if (in.markSupported())
+			this.in = in;
+		else
+			this.in = new BufferedInputStream(in);
+	}
+
+
+	/**
+	 * @param interner if not null, the Analyzers, Nodes, Classifications, References, Addresses
+	 * and Process arg and env lists read are interned in it, so that recurring values are shared by the
+	 * messages read (null to stop)
+	 */
+	public void setInterner(RFC4765Interner interner) {
+		this.interner = interner;
+	}
+
+	/**
+	 * @param maxFrameSize the largest frame to accept, in bytes, before and after decompression
+	 * (RFC4765BinaryFormat.MAX_FRAME_SIZE by default). A longer frame makes next() throw an
+	 * IOException rather than allocate a buffer for it.
+	 * @throws IllegalArgumentException if maxFrameSize is not positive
+	 */
+	public void setMaxFrameSize(int maxFrameSize)
+	throws IllegalArgumentException {
+		if (maxFrameSize <= 0)
+			throw new IllegalArgumentException("The maximum frame size must be positive");
+		this.maxFrameSize = maxFrameSize;
+	}
+
+
+	/**
+	 * Read the next message from the stream. The messages of a batch frame are returned one
+	 * at a time.
+	 *
+	 * @return the next message, or null at the end of the stream
+	 * @throws IOException if the stream is not an RFC4765 binary stream, is of a later major
+	 * version, ends in the middle of a frame, has a frame longer than the maximum frame size,
+	 * or the underlying stream throws it
+	 * @throws IllegalArgumentException if the content is malformed or is rejected by the object model
+	 */
+	public IDMEFMessage next()
+	throws IOException, IllegalArgumentException {
+		try {
+			while (batchRemaining == 0) {
+				if (! readFrame())
+					return null;
+				int kind = b.get();
+				if (kind != RFC4765BinaryFormat.KIND_BATCH)
+					return count(decode(kind));
+				batchRemaining = readCount();
+			}
+			batchRemaining--;
+			return count(decode(b.get()));
+		}
+		catch (BufferUnderflowException bue) {
+			batchRemaining = 0;
+			throw new IllegalArgumentException("Truncated RFC4765 binary message");
+		}
+	}
+
+	/**
+	 * Read the messages of the next frame together: all the messages of a batch frame (or the
+	 * rest of one that next() is part way through), or the one message of any other frame
+	 *
+	 * @return the messages, or null at the end of the stream
+	 * @throws IOException as next() does
+	 * @throws IllegalArgumentException as next() does
+	 */
+	public IDMEFMessageBatch nextBatch()
+	throws IOException, IllegalArgumentException {
+		IDMEFMessage m = next();
+		if (m == null)
+			return null;
+		ArrayList<IDMEFMessage> messages = new ArrayList<IDMEFMessage>(batchRemaining + 1);
+		messages.add(m);
+		while (batchRemaining > 0)
+			messages.add(next());
+		return new IDMEFMessageBatch(messages);
+	}
+
+	/**
+	 * Close the reader and the underlying stream
+	 */
+	public void close()
+	throws IOException {
+		in.close();
+	}
+
+	/**
+	 * @return the number of messages returned by next() so far
+	 */
+	public long getMessageCount() {
+		return messageCount;
+	}
+
+	/**
+	 * @return the number of bytes consumed from the underlying stream so far
+	 */
+	public long getBytesRead() {
+		return bytesRead;
+	}
+
+
+
+	/**
+	 * Read the next frame into the frame buffer, reading the stream header first if need be
+	 *
+	 * @return false at the end of the stream
+	 */
+	private boolean readFrame()
+	throws IOException {
+		if (! headerRead) {
+			for (int i = 0; i < RFC4765BinaryFormat.MAGIC.length; i++) {
+				int c = in.read();
+				if (c < 0)
+					return false;
+				if (c != RFC4765BinaryFormat.MAGIC[i])
+					throw new IOException("Not an RFC4765 binary stream");
+			}
+			int version = readByte();
+			if (version != RFC4765BinaryFormat.VERSION)
+				throw new IOException("Unsupported RFC4765 binary stream version "+version);
+			// the dictionary needs no setting up, as a writer without one never refers to it
+			int flags = readByte();
+			useAnalyzerHandles = (flags & RFC4765BinaryFormat.FLAG_ANALYZER_HANDLES) != 0;
+			compressed = (flags & RFC4765BinaryFormat.FLAG_COMPRESSED) != 0;
+			if (compressed && (compressor == null))
+				throw new IOException("RFC4765 binary stream is compressed, and the reader has no compressor");
+			bytesRead += RFC4765BinaryFormat.MAGIC.length + 2;
+			headerRead = true;
+		}
+
+		int length = readFrameLength();
+		if (length < 0)
+			return false;
+		if (! compressed) {
+			byte[] raw = readFully(frame, length);
+			if (raw != frame) {
+				frame = raw;
+				b = ByteBuffer.wrap(frame);
+			}
+			b.clear();
+			b.limit(length);
+			return true;
+		}
+
+		packedFrame = readFully(packedFrame, length);
+		unpacked.reset();
+		compressor.decompress(packedFrame, 0, length, unpacked, maxFrameSize);
+		if (unpacked.array() != frame) {
+			frame = unpacked.array();
+			b = ByteBuffer.wrap(frame);
+		}
+		b.clear();
+		b.limit(unpacked.size());
+		return true;
+	}
+
+	/**
+	 * Read length bytes from the stream into buffer, or into a new, larger buffer if it is too small
+	 *
+	 * @return the buffer holding the bytes
+	 */
+	private byte[] readFully(byte[] buffer, int length)
+	throws IOException {
+		if (length > maxFrameSize)
+			throw new IOException("RFC4765 binary frame of "+length+" bytes is longer than the limit of "+maxFrameSize);
+		if ((buffer == null) || (length > buffer.length))
+			buffer = new byte[Math.max(length, (buffer == null) ? 1024 : (int) Math.min(buffer.length * 2L, maxFrameSize))];
+		int n = 0;
+		while (n < length) {
+			int r = in.read(buffer, n, length - n);
+			if (r < 0)
+				throw new EOFException("RFC4765 binary stream ends inside a frame");
+			n += r;
+		}
+		bytesRead += length;
+		return buffer;
+	}
+
+	private IDMEFMessage count(IDMEFMessage m) {
+		messageCount++;
+		return m;
+	}
+
+	private IDMEFMessage decode(int kind) {
+		switch (kind) {
+		case RFC4765BinaryFormat.KIND_ALERT:
+		case RFC4765BinaryFormat.KIND_TOOL_ALERT:
+		case RFC4765BinaryFormat.KIND_OVERFLOW_ALERT:
+		case RFC4765BinaryFormat.KIND_CORRELATION_ALERT:
+			return readAlert(kind);
+		case RFC4765BinaryFormat.KIND_HEARTBEAT:
+			return readHeartbeat();
+		default:
+			throw new IllegalArgumentException("Unknown RFC4765 binary message kind "+kind);
+		}
+	}
+
+	private IDMEFMessage_Alert readAlert(int kind) {
+		IDMEFMessage_Alert.Builder alert = alertBuilder.reset();
+		int end = beginBlock();
+		long bits = readVarint();
+		if (has(bits, 0))
+			alert.messageID(readString());
+		alert.analyzer(readMessageAnalyzer());
+		alert.createTime(RFC4765BinaryFormat.readZigZag(b), readOffset());
+		if (has(bits, 1))
+			alert.detectTime(RFC4765BinaryFormat.readZigZag(b), readOffset());
+		if (has(bits, 2))
+			alert.analyzerTime(RFC4765BinaryFormat.readZigZag(b), readOffset());
+		alert.classification(readClassification());
+		if (has(bits, 3))
+			for (int i = readCount(); i > 0; i--)
+				alert.addSource(readSource());
+		if (has(bits, 4))
+			for (int i = readCount(); i > 0; i--)
+				alert.addTarget(readTarget());
+		if (has(bits, 5))
+			alert.assessment(readAssessment());
+		if (kind == RFC4765BinaryFormat.KIND_TOOL_ALERT)
+			alert.toolAlert(readToolAlert());
+		else if (kind == RFC4765BinaryFormat.KIND_OVERFLOW_ALERT)
+			alert.overflowAlert(readOverflowAlert());
+		else if (kind == RFC4765BinaryFormat.KIND_CORRELATION_ALERT)
+			alert.correlationAlert(readCorrelationAlert());
+		if (has(bits, 6))
+			for (AdditionalData ad : readAdditionalData())
+				alert.addAdditionalData(ad);
+		endBlock(end);
+		return alert.build();
+	}
+
+	private IDMEFMessage_Heartbeat readHeartbeat() {
+		IDMEFMessage_Heartbeat.Builder heartbeat = heartbeatBuilder.reset();
+		int end = beginBlock();
+		long bits = readVarint();
+		if (has(bits, 0))
+			heartbeat.messageID(readString());
+		heartbeat.analyzer(readMessageAnalyzer());
+		heartbeat.createTime(RFC4765BinaryFormat.readZigZag(b), readOffset());
+		if (has(bits, 1))
+			heartbeat.analyzerTime(RFC4765BinaryFormat.readZigZag(b), readOffset());
+		if (has(bits, 2))
+			heartbeat.heartbeatInterval(readInt());
+		if (has(bits, 3))
+			for (AdditionalData ad : readAdditionalData())
+				heartbeat.addAdditionalData(ad);
+		endBlock(end);
+		return heartbeat.build();
+	}
+
+
+	private Analyzer intern(Analyzer analyzer) {
+		return (interner == null) ? analyzer : interner.intern(analyzer);
+	}
+
+	private Classification intern(Classification classification) {
+		return (interner == null) ? classification : interner.intern(classification);
+	}
+
+	private Reference intern(Reference reference) {
+		return (interner == null) ? reference : interner.intern(reference);
+	}
+
+	private Node intern(Node node) {
+		return (interner == null) ? node : interner.intern(node);
+	}
+
+	private Address intern(Address address) {
+		return (interner == null) ? address : interner.intern(address);
+	}
+
+	private Process intern(Process process) {
+		return (interner == null) ? process : interner.intern(process);
+	}
+
+	/**
+	 * The Analyzer of a message. Messages that refer to the same handle share one Analyzer.
+	 */
+	private Analyzer readMessageAnalyzer() {
+		if (! useAnalyzerHandles)
+			return readAnalyzer();
+		long tag = readVarint();
+		if (tag >= RFC4765BinaryFormat.ANALYZER_REFERENCE) {
+			long handle = tag - RFC4765BinaryFormat.ANALYZER_REFERENCE;
+			if (handle >= analyzerHandles.size())
+				throw new IllegalArgumentException("RFC4765 binary Analyzer handle "+handle+" is not defined");
+			return analyzerHandles.get((int) handle);
+		}
+		Analyzer a = readAnalyzer();
+		if ((tag == RFC4765BinaryFormat.ANALYZER_DEFINE) && (analyzerHandles.size() < RFC4765BinaryFormat.MAX_ANALYZER_HANDLES))
+			analyzerHandles.add(a);
+		return a;
+	}
+
+	private Analyzer readAnalyzer() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String analyzerID = readString();
+		String name = has(bits, 0) ? readString() : null;
+		String manufacturer = has(bits, 1) ? readString() : null;
+		String model = has(bits, 2) ? readString() : null;
+		String version = has(bits, 3) ? readString() : null;
+		String aclass = has(bits, 4) ? readString() : null;
+		String ostype = has(bits, 5) ? readString() : null;
+		String osversion = has(bits, 6) ? readString() : null;
+		Node node = has(bits, 7) ? readNode() : null;
+		Process process = has(bits, 8) ? readProcess() : null;
+		Analyzer originalAnalyzer = has(bits, 9) ? readAnalyzer() : null;
+		endBlock(end);
+		return intern(new Analyzer(analyzerID, name, manufacturer, model, version, aclass, ostype, osversion, node, process, originalAnalyzer));
+	}
+
+	private Classification readClassification() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		String text = readString();
+		Reference[] reference = null;
+		if (has(bits, 1)) {
+			reference = new Reference[readCount()];
+			for (int i = 0; i < reference.length; i++)
+				reference[i] = readReference();
+		}
+		endBlock(end);
+		return intern(new Classification(ident, text, reference));
+	}
+
+	private Reference readReference() {
+		int end = beginBlock();
+		long bits = readVarint();
+		Reference.Origin origin = readEnum(Reference.Origin.class);
+		String meaning = readString();
+		String name = has(bits, 0) ? readString() : null;
+		String url = has(bits, 1) ? readString() : null;
+		endBlock(end);
+		try {
+			return intern(new Reference(origin, meaning, name, (url == null) ? null : new URI(url)));
+		}
+		catch (URISyntaxException use) {
+			throw new IllegalArgumentException("Reference url "+url+" is not a valid URI: "+use.getMessage());
+		}
+	}
+
+	private Source readSource() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		Source.SpoofedRank spoofed = readEnum(Source.SpoofedRank.class);
+		String iface = has(bits, 1) ? readString() : null;
+		Node node = has(bits, 2) ? readNode() : null;
+		User user = has(bits, 3) ? readUser() : null;
+		Process process = has(bits, 4) ? readProcess() : null;
+		Service service = has(bits, 5) ? readService() : null;
+		endBlock(end);
+		return new Source(ident, spoofed, iface, node, user, process, service);
+	}
+
+	private Target readTarget() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		Target.DecoyRank decoy = readEnum(Target.DecoyRank.class);
+		String iface = has(bits, 1) ? readString() : null;
+		Node node = has(bits, 2) ? readNode() : null;
+		User user = has(bits, 3) ? readUser() : null;
+		Process process = has(bits, 4) ? readProcess() : null;
+		Service service = has(bits, 5) ? readService() : null;
+		File file = has(bits, 6) ? readFile() : null;
+		endBlock(end);
+		return new Target(ident, decoy, iface, node, user, process, service, file);
+	}
+
+	private Node readNode() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		Node.Category category = readEnum(Node.Category.class);
+		String location = has(bits, 1) ? readString() : null;
+		String name = has(bits, 2) ? readString() : null;
+		Address[] address = null;
+		if (has(bits, 3)) {
+			address = new Address[readCount()];
+			for (int i = 0; i < address.length; i++)
+				address[i] = readAddress();
+		}
+		endBlock(end);
+		return intern(new Node(ident, category, location, name, address));
+	}
+
+	private Address readAddress() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		Address.Category category = readEnum(Address.Category.class);
+		int ipv4 = 0;
+		long high = 0;
+		long low = 0;
+		String address = null;
+		if (has(bits, 4))
+			ipv4 = b.getInt();
+		else if (has(bits, 5)) {
+			high = b.getLong();
+			low = b.getLong();
+		}
+		else
+			address = readString();
+		String vlanName = has(bits, 1) ? readString() : null;
+		String vlanNum = has(bits, 2) ? readString() : null;
+		String netmask = has(bits, 3) ? readString() : null;
+		int prefix = has(bits, 6) ? RFC4765BinaryFormat.readUnsignedInt(b) : -1;
+		endBlock(end);
+		if (has(bits, 4))
+			return intern(Address.fromIPv4(ident, category, ipv4, prefix, netmask, vlanName, vlanNum));
+		if (has(bits, 5))
+			return intern(Address.fromIPv6(ident, category, high, low, prefix, netmask, vlanName, vlanNum));
+		// Address takes a network as "address/netmask", and splits it itself
+		if (netmask != null)
+			address = address+"/"+netmask;
+		return intern(new Address(ident, address, category, vlanName, vlanNum, false));
+	}
+
+	private User readUser() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		User.Category category = readEnum(User.Category.class);
+		UserId[] userid = new UserId[0];
+		if (has(bits, 1)) {
+			userid = new UserId[readCount()];
+			for (int i = 0; i < userid.length; i++)
+				userid[i] = readUserId();
+		}
+		endBlock(end);
+		return new User(ident, category, userid);
+	}
+
+	private UserId readUserId() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		UserId.Type type = readEnum(UserId.Type.class);
+		String tty = has(bits, 1) ? readString() : null;
+		String name = has(bits, 2) ? readString() : null;
+		String number = has(bits, 3) ? readString() : null;
+		endBlock(end);
+		return new UserId(ident, type, tty, name, number);
+	}
+
+	private Process readProcess() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		String name = has(bits, 1) ? readString() : null;
+		int pid = has(bits, 2) ? readInt() : 0;
+		String path = has(bits, 3) ? readString() : null;
+		String[] arg = has(bits, 4) ? readStrings() : null;
+		String[] env = has(bits, 5) ? readStrings() : null;
+		endBlock(end);
+		return intern(new Process(ident, name, pid, path, arg, env));
+	}
+
+	private Service readService() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		int ipVersion = has(bits, 1) ? readInt() : 0;
+		int ianaProtocolNumber = has(bits, 2) ? readInt() : 0;
+		String ianaProtocolName = has(bits, 3) ? readString() : null;
+		String name = has(bits, 4) ? readString() : null;
+		int port = has(bits, 5) ? readInt() : 0;
+		String portlist = has(bits, 6) ? readString() : null;
+		String protocol = has(bits, 7) ? readString() : null;
+		endBlock(end);
+		return new Service(ident, ipVersion, ianaProtocolNumber, ianaProtocolName, name, port, portlist, protocol);
+	}
+
+	private File readFile() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String ident = has(bits, 0) ? readString() : null;
+		File.Category category = readEnum(File.Category.class);
+		File.FSType fsType = has(bits, 1) ? readEnum(File.FSType.class) : null;
+		String fileType = has(bits, 2) ? readString() : null;
+		String name = readString();
+		String path = readString();
+		DateTime createTime = has(bits, 3) ? readTime() : null;
+		DateTime modifyTime = has(bits, 4) ? readTime() : null;
+		DateTime accessTime = has(bits, 5) ? readTime() : null;
+		int dataSize = has(bits, 6) ? readInt() : -1;
+		int diskSize = has(bits, 7) ? readInt() : -1;
+		FileAccess[] fileAccess = null;
+		if (has(bits, 8)) {
+			fileAccess = new FileAccess[readCount()];
+			for (int i = 0; i < fileAccess.length; i++)
+				fileAccess[i] = readFileAccess();
+		}
+		Linkage[] linkage = null;
+		if (has(bits, 9)) {
+			linkage = new Linkage[readCount()];
+			for (int i = 0; i < linkage.length; i++)
+				linkage[i] = readLinkage();
+		}
+		Inode inode = has(bits, 10) ? readInode() : null;
+		Checksum[] checksum = null;
+		if (has(bits, 11)) {
+			checksum = new Checksum[readCount()];
+			for (int i = 0; i < checksum.length; i++)
+				checksum[i] = readChecksum();
+		}
+		endBlock(end);
+		return new File(ident, category, fsType, fileType, name, path, createTime, modifyTime, accessTime, dataSize, diskSize,
+				fileAccess, linkage, inode, checksum);
+	}
+
+	private FileAccess readFileAccess() {
+		int end = beginBlock();
+		readVarint();
+		UserId userId = readUserId();
+		FileAccess.Permission[] permission = new FileAccess.Permission[readCount()];
+		for (int i = 0; i < permission.length; i++)
+			permission[i] = readEnum(FileAccess.Permission.class);
+		endBlock(end);
+		return new FileAccess(userId, permission);
+	}
+
+	private Linkage readLinkage() {
+		int end = beginBlock();
+		long bits = readVarint();
+		Linkage.Category category = readEnum(Linkage.Category.class);
+		String name = has(bits, 0) ? readString() : null;
+		String path = has(bits, 1) ? readString() : null;
+		File file = has(bits, 2) ? readFile() : null;
+		endBlock(end);
+		return new Linkage(category, name, path, file);
+	}
+
+	private Inode readInode() {
+		int end = beginBlock();
+		long bits = readVarint();
+		DateTime changeTime = has(bits, 0) ? readTime() : null;
+		int number = -1;
+		int majorDevice = -1;
+		int minorDevice = -1;
+		int cMajorDevice = -1;
+		int cMinorDevice = -1;
+		if (has(bits, 1)) {
+			number = readInt();
+			majorDevice = readInt();
+			minorDevice = readInt();
+		}
+		if (has(bits, 2)) {
+			cMajorDevice = readInt();
+			cMinorDevice = readInt();
+		}
+		endBlock(end);
+		return new Inode(changeTime, number, majorDevice, minorDevice, cMajorDevice, cMinorDevice);
+	}
+
+	private Checksum readChecksum() {
+		int end = beginBlock();
+		long bits = readVarint();
+		Checksum.Algorithm algorithm = readEnum(Checksum.Algorithm.class);
+		String value = readString();
+		String key = has(bits, 0) ? readString() : null;
+		endBlock(end);
+		return new Checksum(algorithm, value, key);
+	}
+
+	private Assessment readAssessment() {
+		int end = beginBlock();
+		long bits = readVarint();
+		Impact impact = null;
+		Action action = null;
+		Confidence confidence = null;
+		if (has(bits, 0)) {
+			int impactEnd = beginBlock();
+			long impactBits = readVarint();
+			Impact.Severity severity = has(impactBits, 0) ? readEnum(Impact.Severity.class) : null;
+			Impact.Completion completion = has(impactBits, 1) ? readEnum(Impact.Completion.class) : null;
+			impact = new Impact(severity, completion, readEnum(Impact.Type.class));
+			endBlock(impactEnd);
+		}
+		if (has(bits, 1)) {
+			int actionEnd = beginBlock();
+			readVarint();
+			action = new Action(readEnum(Action.Category.class));
+			endBlock(actionEnd);
+		}
+		if (has(bits, 2)) {
+			int confidenceEnd = beginBlock();
+			long confidenceBits = readVarint();
+			Confidence.Rank rank = readEnum(Confidence.Rank.class);
+			if (has(confidenceBits, 0))
+				confidence = new Confidence((rank == null) ? Confidence.Rank.NUMERIC : rank, b.getDouble());
+			else
+				confidence = new Confidence((rank == null) ? Confidence.Rank.LOW : rank);
+			endBlock(confidenceEnd);
+		}
+		endBlock(end);
+		return new Assessment(impact, action, confidence);
+	}
+
+	private ToolAlert readToolAlert() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String name = readString();
+		String command = has(bits, 0) ? readString() : null;
+		String[] alertIdent = readStrings();
+		String[] analyzerID = has(bits, 1) ? readStrings() : null;
+		endBlock(end);
+		return new ToolAlert(name, command, alertIdent, analyzerID);
+	}
+
+	private OverflowAlert readOverflowAlert() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String program = has(bits, 0) ? readString() : null;
+		int size = has(bits, 1) ? readInt() : -1;
+		byte[] buffer = null;
+		if (has(bits, 2)) {
+			buffer = new byte[readLength()];
+			b.get(buffer);
+		}
+		endBlock(end);
+		return new OverflowAlert(program, size, buffer);
+	}
+
+	private CorrelationAlert readCorrelationAlert() {
+		int end = beginBlock();
+		long bits = readVarint();
+		String name = readString();
+		String[] alertIdent = readStrings();
+		String[] analyzerID = has(bits, 0) ? readStrings() : null;
+		endBlock(end);
+		return new CorrelationAlert(name, alertIdent, analyzerID);
+	}
+
+	private AdditionalData[] readAdditionalData() {
+		AdditionalData[] additionalData = new AdditionalData[readCount()];
+		for (int i = 0; i < additionalData.length; i++) {
+			int end = beginBlock();
+			long bits = readVarint();
+			AdditionalData.Type type = readEnum(AdditionalData.Type.class);
+			String meaning = has(bits, 0) ? readString() : null;
+			if (type == null)
+				throw new IllegalArgumentException("Unknown AdditionalData type");
+			AdditionalData ad;
+			switch (type) {
+			case BOOLEAN:
+				ad = new AdditionalData(b.get() != 0, meaning);
+				break;
+			case BYTE:
+				ad = new AdditionalData(b.get(), meaning);
+				break;
+			case CHARACTER:
+				ad = new AdditionalData((char) readVarint(), meaning);
+				break;
+			case DATE_TIME:
+				ad = new AdditionalData(type, readTime(), meaning);
+				break;
+			case INTEGER:
+				ad = new AdditionalData(readInt(), meaning);
+				break;
+			case PORTLIST:
+				int[] ports = new int[readCount()];
+				int previous = 0;
+				for (int p = 0; p < ports.length; p++) {
+					previous += readInt();
+					ports[p] = previous;
+				}
+				ad = new AdditionalData(new PortSet(ports), meaning);
+				break;
+			case REAL:
+				ad = new AdditionalData(b.getDouble(), meaning);
+				break;
+			case BYTE_STRING:
+				byte[] bytes = new byte[readLength()];
+				b.get(bytes);
+				ad = new AdditionalData(bytes, meaning);
+				break;
+			default:
+				// NTPSTAMP, STRING, XMLTEXT
+				ad = new AdditionalData(type, readString(), meaning);
+			}
+			endBlock(end);
+			additionalData[i] = ad;
+		}
+		return additionalData;
+	}
+
+
+	private static boolean has(long bits, int bit) {
+		return (bits & (1L << bit)) != 0;
+	}
+
+	/**
+	 * Read the length of a block
+	 *
+	 * @return the buffer position at which the block ends
+	 */
+	private int beginBlock() {
+		int length = readLength();
+		return b.position() + length;
+	}
+
+	/**
+	 * Move to the end of a block, past any fields added by a later version of the format
+	 */
+	private void endBlock(int end) {
+		if (b.position() > end)
+			throw new IllegalArgumentException("RFC4765 binary block overrun");
+		b.position(end);
+	}
+
+	private DateTime readTime() {
+		long millis = RFC4765BinaryFormat.readZigZag(b);
+		int offsetMillis = readOffset();
+		return new DateTime(millis, (offsetMillis == 0) ? DateTimeZone.UTC : DateTimeZone.forOffsetMillis(offsetMillis));
+	}
+
+	/**
+	 * @return the zone offset that follows the milliseconds of a time, in milliseconds
+	 */
+	private int readOffset() {
+		return (int) RFC4765BinaryFormat.readZigZag(b) * 1000;
+	}
+
+	private <E extends Enum<E>> E readEnum(Class<E> type) {
+		long v = readVarint();
+		return RFC4765EnumCodes.fromValue(type, (v > Integer.MAX_VALUE) ? -1 : (int) v);
+	}
+
+	private String[] readStrings() {
+		String[] s = new String[readCount()];
+		for (int i = 0; i < s.length; i++)
+			s[i] = readString();
+		return s;
+	}
+
+	private String readString() {
+		long tag = readVarint();
+		if (tag == RFC4765BinaryFormat.STRING_NULL)
+			return null;
+		if (tag >= RFC4765BinaryFormat.STRING_REFERENCE) {
+			long index = tag - RFC4765BinaryFormat.STRING_REFERENCE;
+			if (index >= dictionary.size())
+				throw new IllegalArgumentException("RFC4765 binary string reference "+index+" is not in the dictionary");
+			return dictionary.get((int) index);
+		}
+		int length = readLength();
+		String s = new String(frame, b.position(), length, UTF8);
+		b.position(b.position() + length);
+		if ((tag == RFC4765BinaryFormat.STRING_DEFINE) && (dictionary.size() < RFC4765BinaryFormat.MAX_DICTIONARY_SIZE))
+			dictionary.add(s);
+		return s;
+	}
+
+	private long readVarint() {
+		return RFC4765BinaryFormat.readVarint(b);
+	}
+
+	private int readInt() {
+		return (int) RFC4765BinaryFormat.readZigZag(b);
+	}
+
+	/**
+	 * @return an element count, which cannot be more than the bytes left in the frame
+	 */
+	private int readCount() {
+		int n = RFC4765BinaryFormat.readUnsignedInt(b);
+		if (n > b.remaining())
+			throw new BufferUnderflowException();
+		return n;
+	}
+
+	/**
+	 * @return a byte length, checked against the bytes left in the frame
+	 */
+	private int readLength() {
+		return readCount();
+	}
+
+	/**
+	 * @return the length of the next frame, or -1 at a clean end of stream
+	 */
+	private int readFrameLength()
+	throws IOException {
+		long v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int c = in.read();
+			if (c < 0) {
+				if (shift == 0)
+					return -1;
+				throw new EOFException("RFC4765 binary stream ends inside a frame length");
+			}
+			bytesRead++;
+			v |= (long) (c & 0x7f) << shift;
+			if ((c & 0x80) == 0) {
+				if (v > Integer.MAX_VALUE)
+					break;
+				if (v > maxFrameSize)
+					throw new IOException("RFC4765 binary frame of "+v+" bytes is longer than the limit of "+maxFrameSize);
+				return (int) v;
+			}
+		}
+		throw new IOException("Malformed RFC4765 binary frame length");
+	}
+
+	private int readByte()
+	throws IOException {
+		int c = in.read();
+		if (c < 0)
+			throw new EOFException("RFC4765 binary stream ends inside its header");
+		return c;
+	}
+
+
+	/**
+	 * A ByteArrayOutputStream whose array can be decoded in place
+	 */
+	private static final class FrameBuffer
+	extends ByteArrayOutputStream {
+
+		byte[] array() {
+			return buf;
+		}
+
+	}
+
+}
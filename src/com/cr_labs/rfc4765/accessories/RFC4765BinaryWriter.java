@@ -0,0 +1,1042 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.joda.time.DateTime;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.CorrelationAlert;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_CorrelationAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessage_OverflowAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_ToolAlert;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.OverflowAlert;
+import com.cr_labs.rfc4765.PortSet;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Writes IDMEFMessage objects to a stream in the compact binary encoding described in
+ * RFC4765BinaryFormat, for hops between processes that both use this library.
+ *
+ * <p>Unlike RFC4765XMLWriter, nothing is mapped to the RFC: X_* extension enum values and
+ * negative confidence ratings are carried as they are.
+ *
+ * <p>Strings that repeat from message to message (analyzer, node and classification
+ * strings, user names, process arguments...) are sent once per stream and referenced by
+ * number after that. Strings that are unique to a message (message ids, alert idents,
+ * AdditionalData values, checksums) are always written in full. In the same way each
+ * message's Analyzer is sent in full the first time and as a handle after that, so the
+ * heartbeats and alerts of one sensor carry their Analyzer once per stream. Analyzers are
+ * matched by content (equals()), so equal Analyzers built apart from each other share a handle.
+ *
+ * <p>Each message is encoded in a reusable buffer and written to the stream as one frame;
+ * writeBatch() puts many messages in one frame, written with one call to the stream.
+ * Given an RFC4765Compressor, the writer compresses each frame on its own, so per message
+ * with writeMessage() or per batch with writeBatch().
+ * A message that can't be encoded is refused without writing anything, and the writer can go
+ * on; but once a frame can't be sent (the stream or the compressor threw), the reader could
+ * no longer follow the stream, so every later write throws an IOException.
+ * A writer is not thread safe; use one per output stream.
+ *
+ * <pre>
+ * RFC4765BinaryWriter w = new RFC4765BinaryWriter(socketOutputStream);
+ * w.writeMessage(alert);
+ * w.flush();
+ * </pre>
+ */
+public class RFC4765BinaryWriter {
+
+	private final OutputStream os;
+	private final boolean useDictionary;
+	private final HashMap<String,Integer> dictionary = new HashMap<String,Integer>();
+	private final ArrayList<String> dictionaryOrder = new ArrayList<String>();
+	private final boolean useAnalyzerHandles;
+	private final HashMap<Analyzer,Integer> analyzerHandles = new HashMap<Analyzer,Integer>();
+	private final ArrayList<Analyzer> analyzerOrder = new ArrayList<Analyzer>();
+	private final RFC4765Compressor compressor;
+	private final ByteArrayOutputStream packed;
+
+	private byte[] buf = new byte[1024];
+	private int pos;
+	private boolean headerWritten;
+	/**
+	 * Why a frame could not be sent, after which the writer can't be used
+	 */
+	private Exception failure;
+
+	private long messageCount;
+	private long bytesWritten;
+
+
+	/**
+	 * Write messages to a stream, with a string dictionary and Analyzer handles
+	 *
+	 * @param os where to write. Writes are made one frame at a time, so os need not be buffered.
+	 */
+	public RFC4765BinaryWriter(OutputStream os) {
+		this(os, true, true);
+	}
+
+	/**
+	 * @param os where to write. Writes are made one frame at a time, so os need not be buffered.
+	 * @param useDictionary if false, every string and every Analyzer is written in full, so that each
+	 * frame can be decoded on its own (e.g. when frames are stored and read back individually)
+	 */
+	public RFC4765BinaryWriter(OutputStream os, boolean useDictionary) {
+		this(os, useDictionary, useDictionary);
+	}
+
+	/**
+	 * @param os where to write. Writes are made one frame at a time, so os need not be buffered.
+	 * @param useDictionary if false, every string is written in full
+	 * @param useAnalyzerHandles if false, every message's Analyzer is written in full
+	 */
+	public RFC4765BinaryWriter(OutputStream os, boolean useDictionary, boolean useAnalyzerHandles) {
+		this(os, useDictionary, useAnalyzerHandles, null);
+	}
+
+	/**
+	 * @param os where to write. Compressed frames are written with two writes, so os should be buffered.
+	 * @param useDictionary if false, every string is written in full
+	 * @param useAnalyzerHandles if false, every message's Analyzer is written in full
+	 * @param compressor to compress each frame (one message, or one batch), or null not to compress.
+	 * The reader must be given a compressor that matches it.
+	 */
+	public RFC4765BinaryWriter(OutputStream os, boolean useDictionary, boolean useAnalyzerHandles, RFC4765Compressor compressor) {
+		this.os = os;
+		this.useDictionary = useDictionary;
+		this.useAnalyzerHandles = useAnalyzerHandles;
+		this.compressor = compressor;
+		this.packed = (compressor == null) ? null : new ByteArrayOutputStream();
+	}
+
+
+	/**
+	 * Write one message as a frame. The stream header is written before the first message.
+	 *
+	 * @param message the alert or heartbeat to write
+	 * @throws IOException if the underlying stream throws it, or an earlier frame could not be sent
+	 * @throws IllegalArgumentException if message is not one of the IDMEFMessage_* classes
+	 */
+	public void writeMessage(IDMEFMessage message)
+	throws IOException, IllegalArgumentException {
+		writeHeader();
+		int dictionarySize = dictionaryOrder.size();
+		int handleCount = analyzerOrder.size();
+		pos = 0;
+		int frame = beginBlock();
+		try {
+			writeBody(message);
+			endBlock(frame);
+		}
+		catch (RuntimeException re) {
+			rollBack(dictionarySize, handleCount);
+			throw re;
+		}
+		sendFrame(dictionarySize, handleCount);
+		messageCount++;
+	}
+
+	/**
+	 * Write all the messages of a batch as one frame, with a single write to the stream
+	 *
+	 * @throws IOException if the underlying stream throws it, or an earlier frame could not be sent
+	 * @throws IllegalArgumentException if a message is not one of the IDMEFMessage_* classes,
+	 * in which case nothing of the batch is written
+	 */
+	public void writeBatch(IDMEFMessageBatch batch)
+	throws IOException, IllegalArgumentException {
+		writeHeader();
+		IDMEFMessage[] messages = batch.getMessages();
+		int dictionarySize = dictionaryOrder.size();
+		int handleCount = analyzerOrder.size();
+		pos = 0;
+		int frame = beginBlock();
+		try {
+			writeByte(RFC4765BinaryFormat.KIND_BATCH);
+			writeVarint(messages.length);
+			for (int i = 0; i < messages.length; i++)
+				writeBody(messages[i]);
+			endBlock(frame);
+		}
+		catch (RuntimeException re) {
+			rollBack(dictionarySize, handleCount);
+			throw re;
+		}
+		sendFrame(dictionarySize, handleCount);
+		messageCount += messages.length;
+	}
+
+	/**
+	 * Flush the underlying stream
+	 */
+	public void flush()
+	throws IOException {
+		os.flush();
+	}
+
+	/**
+	 * @return the number of messages written so far
+	 */
+	public long getMessageCount() {
+		return messageCount;
+	}
+
+	/**
+	 * @return the number of bytes written so far, including the stream header
+	 */
+	public long getBytesWritten() {
+		return bytesWritten;
+	}
+
+
+
+	private void writeHeader()
+	throws IOException {
+		if (failure != null)
+			throw new IOException("RFC4765 binary writer failed on an earlier frame", failure);
+		if (headerWritten)
+			return;
+		os.write(RFC4765BinaryFormat.MAGIC);
+		os.write(RFC4765BinaryFormat.VERSION);
+		os.write((useDictionary ? RFC4765BinaryFormat.FLAG_DICTIONARY : 0)
+				| (useAnalyzerHandles ? RFC4765BinaryFormat.FLAG_ANALYZER_HANDLES : 0)
+				| ((compressor != null) ? RFC4765BinaryFormat.FLAG_COMPRESSED : 0));
+		bytesWritten += RFC4765BinaryFormat.MAGIC.length + 2;
+		headerWritten = true;
+	}
+
+	/**
+	 * Write the frame in the buffer as writeFrame() does. If that fails, part of the frame may
+	 * have reached the stream, or the compressor may be left mid-frame, so the writer refuses
+	 * to write anything more.
+	 */
+	private void sendFrame(int dictionarySize, int handleCount)
+	throws IOException {
+		try {
+			writeFrame();
+		}
+		catch (IOException ioe) {
+			rollBack(dictionarySize, handleCount);
+			failure = ioe;
+			throw ioe;
+		}
+		catch (RuntimeException re) {
+			rollBack(dictionarySize, handleCount);
+			failure = re;
+			throw re;
+		}
+	}
+
+	/**
+	 * Write the frame in the buffer to the stream, compressing its content if need be
+	 */
+	private void writeFrame()
+	throws IOException {
+		if (compressor == null) {
+			os.write(buf, 0, pos);
+			bytesWritten += pos;
+			return;
+		}
+		int offset = 0;
+		while (buf[offset++] < 0)
+			; // past the frame length
+		packed.reset();
+		compressor.compress(buf, offset, pos - offset, packed);
+		pos = 0;
+		writeVarint(packed.size());
+		os.write(buf, 0, pos);
+		packed.writeTo(os);
+		bytesWritten += pos + packed.size();
+	}
+
+	/**
+	 * Forget the strings and Analyzers defined since the dictionary had dictionarySize entries
+	 * and there were handleCount handles: the frame that defined them is never sent, so the
+	 * reader will not learn them
+	 */
+	private void rollBack(int dictionarySize, int handleCount) {
+		while (dictionaryOrder.size() > dictionarySize)
+			dictionary.remove(dictionaryOrder.remove(dictionaryOrder.size() - 1));
+		while (analyzerOrder.size() > handleCount)
+			analyzerHandles.remove(analyzerOrder.remove(analyzerOrder.size() - 1));
+	}
+
+	/**
+	 * The kind byte and the message block of one message
+	 */
+	private void writeBody(IDMEFMessage message) {
+		if (message instanceof IDMEFMessage_ToolAlert) {
+			writeByte(RFC4765BinaryFormat.KIND_TOOL_ALERT);
+			writeAlert((IDMEFMessage_Alert) message);
+		}
+		else if (message instanceof IDMEFMessage_OverflowAlert) {
+			writeByte(RFC4765BinaryFormat.KIND_OVERFLOW_ALERT);
+			writeAlert((IDMEFMessage_Alert) message);
+		}
+		else if (message instanceof IDMEFMessage_CorrelationAlert) {
+			writeByte(RFC4765BinaryFormat.KIND_CORRELATION_ALERT);
+			writeAlert((IDMEFMessage_Alert) message);
+		}
+		else if (message instanceof IDMEFMessage_Alert) {
+			writeByte(RFC4765BinaryFormat.KIND_ALERT);
+			writeAlert((IDMEFMessage_Alert) message);
+		}
+		else if (message instanceof IDMEFMessage_Heartbeat) {
+			writeByte(RFC4765BinaryFormat.KIND_HEARTBEAT);
+			writeHeartbeat((IDMEFMessage_Heartbeat) message);
+		}
+		else
+			throw new IllegalArgumentException("Cannot write IDMEFMessage of class "+message.getClass().getName());
+	}
+
+	private void writeAlert(IDMEFMessage_Alert a) {
+		int block = beginBlock();
+		Source[] source = a.getSource();
+		Target[] target = a.getTarget();
+		writeVarint(bits(a.getMessageID() != null, a.getDetectTimeMillis() != IDMEFMessage.NO_TIME, a.getAnalyzerTimeMillis() != IDMEFMessage.NO_TIME,
+				count(source) > 0, count(target) > 0, a.getAssessment() != null, count(a.getAdditionalData()) > 0));
+		if (a.getMessageID() != null)
+			writeString(a.getMessageID(), false);
+		writeMessageAnalyzer(a.getAnalyzer());
+		writeTime(a.getCreateTimeMillis(), a.getCreateTimeOffset());
+		if (a.getDetectTimeMillis() != IDMEFMessage.NO_TIME)
+			writeTime(a.getDetectTimeMillis(), a.getDetectTimeOffset());
+		if (a.getAnalyzerTimeMillis() != IDMEFMessage.NO_TIME)
+			writeTime(a.getAnalyzerTimeMillis(), a.getAnalyzerTimeOffset());
+		writeClassification(a.getClassification());
+		if (count(source) > 0) {
+			writeVarint(count(source));
+			for (int i = 0; i < source.length; i++)
+				if (source[i] != null)
+					writeSource(source[i]);
+		}
+		if (count(target) > 0) {
+			writeVarint(count(target));
+			for (int i = 0; i < target.length; i++)
+				if (target[i] != null)
+					writeTarget(target[i]);
+		}
+		if (a.getAssessment() != null)
+			writeAssessment(a.getAssessment());
+		if (a instanceof IDMEFMessage_ToolAlert)
+			writeToolAlert(((IDMEFMessage_ToolAlert) a).getToolAlert());
+		else if (a instanceof IDMEFMessage_OverflowAlert)
+			writeOverflowAlert(((IDMEFMessage_OverflowAlert) a).getOverflowAlert());
+		else if (a instanceof IDMEFMessage_CorrelationAlert)
+			writeCorrelationAlert(((IDMEFMessage_CorrelationAlert) a).getCorrelationAlert());
+		writeAdditionalData(a.getAdditionalData());
+		endBlock(block);
+	}
+
+	private void writeHeartbeat(IDMEFMessage_Heartbeat h) {
+		int block = beginBlock();
+		writeVarint(bits(h.getMessageID() != null, h.getAnalyzerTimeMillis() != IDMEFMessage.NO_TIME, h.getHeartbeatInterval() >= 0,
+				count(h.getAdditionalData()) > 0));
+		if (h.getMessageID() != null)
+			writeString(h.getMessageID(), false);
+		writeMessageAnalyzer(h.getAnalyzer());
+		writeTime(h.getCreateTimeMillis(), h.getCreateTimeOffset());
+		if (h.getAnalyzerTimeMillis() != IDMEFMessage.NO_TIME)
+			writeTime(h.getAnalyzerTimeMillis(), h.getAnalyzerTimeOffset());
+		if (h.getHeartbeatInterval() >= 0)
+			writeZigZag(h.getHeartbeatInterval());
+		writeAdditionalData(h.getAdditionalData());
+		endBlock(block);
+	}
+
+
+	/**
+	 * The Analyzer of a message: with handles, its tag, and then its block unless the stream
+	 * has had it before
+	 */
+	private void writeMessageAnalyzer(Analyzer a) {
+		if (! useAnalyzerHandles) {
+			writeAnalyzer(a);
+			return;
+		}
+		Integer handle = analyzerHandles.get(a);
+		if (handle != null) {
+			writeVarint(RFC4765BinaryFormat.ANALYZER_REFERENCE + handle.intValue());
+			return;
+		}
+		if (analyzerOrder.size() < RFC4765BinaryFormat.MAX_ANALYZER_HANDLES) {
+			analyzerHandles.put(a, Integer.valueOf(analyzerOrder.size()));
+			analyzerOrder.add(a);
+			writeVarint(RFC4765BinaryFormat.ANALYZER_DEFINE);
+		}
+		else
+			writeVarint(RFC4765BinaryFormat.ANALYZER_LITERAL);
+		writeAnalyzer(a);
+	}
+
+	private void writeAnalyzer(Analyzer a) {
+		int block = beginBlock();
+		writeVarint(bits(a.getName() != null, a.getManufacturer() != null, a.getModel() != null, a.getVersion() != null,
+				a.getAclass() != null, a.getOstype() != null, a.getOsversion() != null,
+				a.getNode() != null, a.getProcess() != null, a.getOriginalAnalyzer() != null));
+		writeString(a.getAnalyzerID(), true);
+		writeOptionalString(a.getName());
+		writeOptionalString(a.getManufacturer());
+		writeOptionalString(a.getModel());
+		writeOptionalString(a.getVersion());
+		writeOptionalString(a.getAclass());
+		writeOptionalString(a.getOstype());
+		writeOptionalString(a.getOsversion());
+		if (a.getNode() != null)
+			writeNode(a.getNode());
+		if (a.getProcess() != null)
+			writeProcess(a.getProcess());
+		if (a.getOriginalAnalyzer() != null)
+			writeAnalyzer(a.getOriginalAnalyzer());
+		endBlock(block);
+	}
+
+	private void writeClassification(Classification c) {
+		int block = beginBlock();
+		Reference[] reference = c.getReference();
+		writeVarint(bits(c.getIdent() != null, count(reference) > 0));
+		writeOptionalString(c.getIdent());
+		writeString(c.getText(), true);
+		if (count(reference) > 0) {
+			writeVarint(count(reference));
+			for (int i = 0; i < reference.length; i++)
+				if (reference[i] != null)
+					writeReference(reference[i]);
+		}
+		endBlock(block);
+	}
+
+	private void writeReference(Reference r) {
+		int block = beginBlock();
+		writeVarint(bits(r.getName() != null, r.getUri() != null));
+		writeVarint(r.getOrigin().getValue());
+		writeString(r.getMeaning(), true);
+		writeOptionalString(r.getName());
+		if (r.getUri() != null)
+			writeString(r.getUri().toString(), true);
+		endBlock(block);
+	}
+
+	private void writeSource(Source s) {
+		int block = beginBlock();
+		writeVarint(bits(s.getIdent() != null, s.getInterface() != null, s.getNode() != null, s.getUser() != null,
+				s.getProcess() != null, s.getService() != null));
+		writeOptionalString(s.getIdent());
+		writeVarint(s.getSpoofed().getValue());
+		writeOptionalString(s.getInterface());
+		if (s.getNode() != null)
+			writeNode(s.getNode());
+		if (s.getUser() != null)
+			writeUser(s.getUser());
+		if (s.getProcess() != null)
+			writeProcess(s.getProcess());
+		if (s.getService() != null)
+			writeService(s.getService());
+		endBlock(block);
+	}
+
+	private void writeTarget(Target t) {
+		int block = beginBlock();
+		writeVarint(bits(t.getIdent() != null, t.getInterface() != null, t.getNode() != null, t.getUser() != null,
+				t.getProcess() != null, t.getService() != null, t.getFile() != null));
+		writeOptionalString(t.getIdent());
+		writeVarint(t.getDecoy().getValue());
+		writeOptionalString(t.getInterface());
+		if (t.getNode() != null)
+			writeNode(t.getNode());
+		if (t.getUser() != null)
+			writeUser(t.getUser());
+		if (t.getProcess() != null)
+			writeProcess(t.getProcess());
+		if (t.getService() != null)
+			writeService(t.getService());
+		if (t.getFile() != null)
+			writeFile(t.getFile());
+		endBlock(block);
+	}
+
+	private void writeNode(Node n) {
+		int block = beginBlock();
+		Address[] address = n.getAddress();
+		writeVarint(bits(n.getIdent() != null, n.getLocation() != null, n.getName() != null, count(address) > 0));
+		writeOptionalString(n.getIdent());
+		writeVarint(n.getCategory().getValue());
+		writeOptionalString(n.getLocation());
+		writeOptionalString(n.getName());
+		if (count(address) > 0) {
+			writeVarint(count(address));
+			for (int i = 0; i < address.length; i++)
+				if (address[i] != null)
+					writeAddress(address[i]);
+		}
+		endBlock(block);
+	}
+
+	private void writeAddress(Address a) {
+		int block = beginBlock();
+		// a literal IP address and a prefix length go in their numeric forms; only host names
+		// and masks that are not prefixes are written as text
+		boolean ipv4 = a.isIPv4();
+		boolean ipv6 = a.isIPv6();
+		int prefix = (ipv4 || ipv6) ? a.getPrefixLength() : -1;
+		String netmask = (prefix < 0) ? a.getNetmask() : null;
+		writeVarint(bits(a.getIdent() != null, a.getVlanName() != null, a.getVlanNum() != null, netmask != null,
+				ipv4, ipv6, prefix >= 0));
+		writeOptionalString(a.getIdent());
+		writeVarint(a.getSKCategory().getValue());
+		if (ipv4)
+			writeFixed(a.getIPv4(), 4);
+		else if (ipv6) {
+			writeFixed(a.getIPv6High(), 8);
+			writeFixed(a.getIPv6Low(), 8);
+		}
+		else
+			writeString(a.getAddress(), true);
+		writeOptionalString(a.getVlanName());
+		writeOptionalString(a.getVlanNum());
+		writeOptionalString(netmask);
+		if (prefix >= 0)
+			writeVarint(prefix);
+		endBlock(block);
+	}
+
+	private void writeUser(User u) {
+		int block = beginBlock();
+		int userids = u.getUseridCount();
+		writeVarint(bits(u.getIdent() != null, userids > 0));
+		writeOptionalString(u.getIdent());
+		writeVarint(u.getCategory().getValue());
+		if (userids > 0) {
+			writeVarint(userids);
+			for (int i = 0; i < userids; i++)
+				writeUserId(u.getUserid(i));
+		}
+		endBlock(block);
+	}
+
+	private void writeUserId(UserId u) {
+		int block = beginBlock();
+		writeVarint(bits(u.getIdent() != null, u.getTty() != null, u.getName() != null, u.getNumber() != null));
+		writeOptionalString(u.getIdent());
+		writeVarint(u.getType().getValue());
+		writeOptionalString(u.getTty());
+		writeOptionalString(u.getName());
+		writeOptionalString(u.getNumber());
+		endBlock(block);
+	}
+
+	private void writeProcess(Process p) {
+		int block = beginBlock();
+		String[] arg = p.getArgList().toArray();
+		String[] env = p.getEnvList().toArray();
+		writeVarint(bits(p.getIdent() != null, p.getName() != null, p.getPid() > 0, p.getPath() != null,
+				count(arg) > 0, count(env) > 0));
+		writeOptionalString(p.getIdent());
+		writeOptionalString(p.getName());
+		if (p.getPid() > 0)
+			writeZigZag(p.getPid());
+		writeOptionalString(p.getPath());
+		if (count(arg) > 0)
+			writeStrings(arg);
+		if (count(env) > 0)
+			writeStrings(env);
+		endBlock(block);
+	}
+
+	private void writeService(Service s) {
+		int block = beginBlock();
+		writeVarint(bits(s.getIdent() != null, s.getIpVersion() > 0, s.getIanaProtocolNumber() > 0,
+				s.getIanaProtocolName() != null, s.getName() != null, s.getPort() > 0, s.getPortlist() != null,
+				s.getProtocol() != null));
+		writeOptionalString(s.getIdent());
+		if (s.getIpVersion() > 0)
+			writeZigZag(s.getIpVersion());
+		if (s.getIanaProtocolNumber() > 0)
+			writeZigZag(s.getIanaProtocolNumber());
+		writeOptionalString(s.getIanaProtocolName());
+		writeOptionalString(s.getName());
+		if (s.getPort() > 0)
+			writeZigZag(s.getPort());
+		writeOptionalString(s.getPortlist());
+		writeOptionalString(s.getProtocol());
+		endBlock(block);
+	}
+
+	private void writeFile(File f) {
+		int block = beginBlock();
+		FileAccess[] fileAccess = f.getFileAccess();
+		Linkage[] linkage = f.getLinkage();
+		Checksum[] checksum = f.getChecksum();
+		writeVarint(bits(f.getItent() != null, f.getFSType() != null, f.getFileType() != null,
+				f.getCreateTime() != null, f.getModifyTime() != null, f.getAccessTime() != null,
+				f.getDataSize() >= 0, f.getDiskSize() >= 0,
+				count(fileAccess) > 0, count(linkage) > 0, f.getInode() != null, count(checksum) > 0));
+		writeOptionalString(f.getItent());
+		writeVarint(f.getCategory().getValue());
+		if (f.getFSType() != null)
+			writeVarint(f.getFSType().getValue());
+		writeOptionalString(f.getFileType());
+		writeString(f.getName(), true);
+		writeString(f.getPath(), true);
+		if (f.getCreateTime() != null)
+			writeTime(f.getCreateTime());
+		if (f.getModifyTime() != null)
+			writeTime(f.getModifyTime());
+		if (f.getAccessTime() != null)
+			writeTime(f.getAccessTime());
+		if (f.getDataSize() >= 0)
+			writeZigZag(f.getDataSize());
+		if (f.getDiskSize() >= 0)
+			writeZigZag(f.getDiskSize());
+		if (count(fileAccess) > 0) {
+			writeVarint(count(fileAccess));
+			for (int i = 0; i < fileAccess.length; i++)
+				if (fileAccess[i] != null)
+					writeFileAccess(fileAccess[i]);
+		}
+		if (count(linkage) > 0) {
+			writeVarint(count(linkage));
+			for (int i = 0; i < linkage.length; i++)
+				if (linkage[i] != null)
+					writeLinkage(linkage[i]);
+		}
+		if (f.getInode() != null)
+			writeInode(f.getInode());
+		if (count(checksum) > 0) {
+			writeVarint(count(checksum));
+			for (int i = 0; i < checksum.length; i++)
+				if (checksum[i] != null)
+					writeChecksum(checksum[i]);
+		}
+		endBlock(block);
+	}
+
+	private void writeFileAccess(FileAccess fa) {
+		int block = beginBlock();
+		writeVarint(0);
+		writeUserId(fa.getUserid());
+		FileAccess.Permission[] permission = fa.getPermission();
+		writeVarint(permission.length);
+		for (int i = 0; i < permission.length; i++)
+			writeVarint(permission[i].getValue());
+		endBlock(block);
+	}
+
+	private void writeLinkage(Linkage l) {
+		int block = beginBlock();
+		writeVarint(bits(l.getName() != null, l.getPath() != null, l.getFile() != null));
+		writeVarint(l.getCategory().getValue());
+		writeOptionalString(l.getName());
+		writeOptionalString(l.getPath());
+		if (l.getFile() != null)
+			writeFile(l.getFile());
+		endBlock(block);
+	}
+
+	private void writeInode(Inode i) {
+		int block = beginBlock();
+		writeVarint(bits(i.getChangeTime() != null, i.getNumber() != -1, i.getCMajorDevice() != -1));
+		if (i.getChangeTime() != null)
+			writeTime(i.getChangeTime());
+		if (i.getNumber() != -1) {
+			writeZigZag(i.getNumber());
+			writeZigZag(i.getMajorDevice());
+			writeZigZag(i.getMinorDevice());
+		}
+		if (i.getCMajorDevice() != -1) {
+			writeZigZag(i.getCMajorDevice());
+			writeZigZag(i.getCMinorDevice());
+		}
+		endBlock(block);
+	}
+
+	private void writeChecksum(Checksum c) {
+		int block = beginBlock();
+		writeVarint(bits(c.getKey() != null));
+		writeVarint(c.getAlgorithm().getValue());
+		writeString(c.getValue(), false);
+		writeOptionalString(c.getKey());
+		endBlock(block);
+	}
+
+	private void writeAssessment(Assessment a) {
+		int block = beginBlock();
+		Impact impact = a.getImpact();
+		Action action = a.getAction();
+		Confidence confidence = a.getConfidence();
+		writeVarint(bits(impact != null, action != null, confidence != null));
+		if (impact != null) {
+			int impactBlock = beginBlock();
+			writeVarint(bits(impact.getSeverity() != null, impact.getCompletion() != null));
+			if (impact.getSeverity() != null)
+				writeVarint(impact.getSeverity().getValue());
+			if (impact.getCompletion() != null)
+				writeVarint(impact.getCompletion().getValue());
+			writeVarint(impact.getType().getValue());
+			endBlock(impactBlock);
+		}
+		if (action != null) {
+			int actionBlock = beginBlock();
+			writeVarint(0);
+			writeVarint(action.getSKCategory().getValue());
+			endBlock(actionBlock);
+		}
+		if (confidence != null) {
+			int confidenceBlock = beginBlock();
+			boolean numeric = (confidence.getSKNumericRating() != 0.0d);
+			writeVarint(bits(numeric));
+			writeVarint(confidence.getSKRatingValue());
+			if (numeric)
+				writeDouble(confidence.getSKNumericRating());
+			endBlock(confidenceBlock);
+		}
+		endBlock(block);
+	}
+
+	private void writeToolAlert(ToolAlert t) {
+		int block = beginBlock();
+		writeVarint(bits(t.getCommand() != null, t.getAnalyzerID() != null));
+		writeString(t.getName(), true);
+		writeOptionalString(t.getCommand());
+		writeAlertIdents(t.getAlertIdent(), t.getAnalyzerID());
+		endBlock(block);
+	}
+
+	private void writeOverflowAlert(OverflowAlert o) {
+		int block = beginBlock();
+		writeVarint(bits(o.getProgram() != null, o.getSize() >= 0, o.getBuffer() != null));
+		writeOptionalString(o.getProgram());
+		if (o.getSize() >= 0)
+			writeZigZag(o.getSize());
+		if (o.getBuffer() != null) {
+			writeVarint(o.getBuffer().length);
+			writeBytes(o.getBuffer(), 0, o.getBuffer().length);
+		}
+		endBlock(block);
+	}
+
+	private void writeCorrelationAlert(CorrelationAlert c) {
+		int block = beginBlock();
+		writeVarint(bits(c.getAnalyzerID() != null));
+		writeString(c.getName(), true);
+		writeAlertIdents(c.getAlertIdent(), c.getAnalyzerID());
+		endBlock(block);
+	}
+
+	/**
+	 * alertidents, then the analyzerids (if present, which the presence bitmap says) matched to them by index
+	 */
+	private void writeAlertIdents(String[] alertIdent, String[] analyzerID) {
+		writeVarint(alertIdent.length);
+		for (int i = 0; i < alertIdent.length; i++)
+			writeString(alertIdent[i], false);
+		if (analyzerID != null)
+			writeStrings(analyzerID);
+	}
+
+	/**
+	 * A count and then the AdditionalData blocks. Writes nothing if there are none, which the
+	 * enclosing message's presence bitmap records.
+	 */
+	private void writeAdditionalData(AdditionalData[] additionalData) {
+		if (count(additionalData) == 0)
+			return;
+		writeVarint(count(additionalData));
+		for (int i = 0; i < additionalData.length; i++) {
+			AdditionalData ad = additionalData[i];
+			if (ad == null)
+				continue;
+			int block = beginBlock();
+			writeVarint(bits(ad.getMeaning() != null));
+			writeVarint(ad.getAdType().getValue());
+			writeOptionalString(ad.getMeaning());
+			switch (ad.getAdType()) {
+			case BOOLEAN:
+				writeByte(ad.getBoolean() ? 1 : 0);
+				break;
+			case BYTE:
+				writeByte(ad.getByte());
+				break;
+			case CHARACTER:
+				writeVarint(ad.getChar());
+				break;
+			case DATE_TIME:
+				writeTime(ad.getDateTime());
+				break;
+			case INTEGER:
+				writeZigZag(ad.getInt());
+				break;
+			case PORTLIST:
+				// ports are ascending, so each is written as the difference from the one before
+				PortSet ports = ad.getPortSet();
+				writeVarint(ports.size());
+				int previous = 0;
+				for (int p = ports.nextPort(0); p >= 0; p = ports.nextPort(p + 1)) {
+					writeZigZag(p - previous);
+					previous = p;
+				}
+				break;
+			case REAL:
+				writeDouble(ad.getDouble());
+				break;
+			case BYTE_STRING:
+				byte[] bytes = ad.getBytes();
+				writeVarint(bytes.length);
+				ensure(bytes.length);
+				System.arraycopy(bytes, 0, buf, pos, bytes.length);
+				pos += bytes.length;
+				break;
+			default:
+				// NTPSTAMP, STRING, XMLTEXT
+				writeString(ad.getString(), false);
+			}
+			endBlock(block);
+		}
+	}
+
+
+	/**
+	 * @return a presence bitmap with bit i set if present[i] is true
+	 */
+	private static long bits(boolean... present) {
+		long bits = 0;
+		for (int i = 0; i < present.length; i++)
+			if (present[i])
+				bits |= 1L << i;
+		return bits;
+	}
+
+	/**
+	 * @return the number of non-null elements of the array, 0 if it is null
+	 */
+	private static int count(Object[] array) {
+		if (array == null)
+			return 0;
+		int n = 0;
+		for (int i = 0; i < array.length; i++)
+			if (array[i] != null)
+				n++;
+		return n;
+	}
+
+	private void writeTime(DateTime dt) {
+		long millis = dt.getMillis();
+		writeTime(millis, dt.getZone().getOffset(millis));
+	}
+
+	private void writeTime(long millis, int offsetMillis) {
+		writeZigZag(millis);
+		writeZigZag(offsetMillis / 1000);
+	}
+
+	private void writeStrings(String[] s) {
+		writeVarint(s.length);
+		for (int i = 0; i < s.length; i++)
+			writeString(s[i], true);
+	}
+
+	/**
+	 * Write s if it is not null. Its presence is recorded in the enclosing block's bitmap.
+	 */
+	private void writeOptionalString(String s) {
+		if (s != null)
+			writeString(s, true);
+	}
+
+	/**
+	 * @param shared true if s is likely to recur in later messages, and so should go in the dictionary
+	 */
+	private void writeString(String s, boolean shared) {
+		if (s == null) {
+			writeVarint(RFC4765BinaryFormat.STRING_NULL);
+			return;
+		}
+		if (shared && useDictionary) {
+			Integer index = dictionary.get(s);
+			if (index != null) {
+				writeVarint(RFC4765BinaryFormat.STRING_REFERENCE + index.intValue());
+				return;
+			}
+			if ((s.length() <= RFC4765BinaryFormat.MAX_DICTIONARY_STRING)
+					&& (dictionaryOrder.size() < RFC4765BinaryFormat.MAX_DICTIONARY_SIZE)) {
+				dictionary.put(s, Integer.valueOf(dictionaryOrder.size()));
+				dictionaryOrder.add(s);
+				writeVarint(RFC4765BinaryFormat.STRING_DEFINE);
+				writeUTF8(s);
+				return;
+			}
+		}
+		writeVarint(RFC4765BinaryFormat.STRING_LITERAL);
+		writeUTF8(s);
+	}
+
+	/**
+	 * The UTF-8 byte length of s and then its bytes, encoded straight into the buffer
+	 */
+	private void writeUTF8(String s) {
+		int len = s.length();
+		int utf8Length = 0;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80)
+				utf8Length++;
+			else if (c < 0x800)
+				utf8Length += 2;
+			else if (Character.isHighSurrogate(c) && (i + 1 < len) && Character.isLowSurrogate(s.charAt(i + 1))) {
+				utf8Length += 4;
+				i++;
+			}
+			else
+				utf8Length += 3;
+		}
+		writeVarint(utf8Length);
+		ensure(utf8Length);
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80)
+				buf[pos++] = (byte) c;
+			else if (c < 0x800) {
+				buf[pos++] = (byte) (0xc0 | (c >> 6));
+				buf[pos++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && (i + 1 < len) && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int cp = Character.toCodePoint(c, s.charAt(++i));
+				buf[pos++] = (byte) (0xf0 | (cp >> 18));
+				buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+			}
+			else {
+				// an unpaired surrogate is written as U+FFFD, as String.getBytes() would
+				if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE))
+					c = '\uFFFD';
+				buf[pos++] = (byte) (0xe0 | (c >> 12));
+				buf[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buf[pos++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+	}
+
+	/**
+	 * Reserve one byte for the length of a block that is about to be written
+	 *
+	 * @return the mark to pass to endBlock()
+	 */
+	private int beginBlock() {
+		ensure(1);
+		return pos++;
+	}
+
+	/**
+	 * Fill in the length of the block started at 'mark', moving the block along if the
+	 * length needs more than the one byte reserved for it
+	 */
+	private void endBlock(int mark) {
+		int length = pos - mark - 1;
+		int extra = RFC4765BinaryFormat.varintSize(length) - 1;
+		if (extra > 0) {
+			ensure(extra);
+			System.arraycopy(buf, mark + 1, buf, mark + 1 + extra, length);
+			pos += extra;
+		}
+		int end = pos;
+		pos = mark;
+		writeVarint(length);
+		pos = end;
+	}
+
+	private void writeByte(int b) {
+		ensure(1);
+		buf[pos++] = (byte) b;
+	}
+
+	private void writeBytes(byte[] b, int offset, int length) {
+		ensure(length);
+		System.arraycopy(b, offset, buf, pos, length);
+		pos += length;
+	}
+
+	private void writeVarint(long v) {
+		ensure(10);
+		while ((v & ~0x7fL) != 0) {
+			buf[pos++] = (byte) ((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		buf[pos++] = (byte) v;
+	}
+
+	private void writeZigZag(long v) {
+		writeVarint(RFC4765BinaryFormat.zigZag(v));
+	}
+
+	private void writeDouble(double d) {
+		writeFixed(Double.doubleToLongBits(d), 8);
+	}
+
+	/**
+	 * The low 'bytes' bytes of v, big-endian
+	 */
+	private void writeFixed(long v, int bytes) {
+		ensure(bytes);
+		for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8)
+			buf[pos++] = (byte) (v >>> shift);
+	}
+
+	private void ensure(int n) {
+		if (pos + n > buf.length) {
+			byte[] larger = new byte[Math.max(buf.length * 2, pos + n)];
+			System.arraycopy(buf, 0, larger, 0, pos);
+			buf = larger;
+		}
+	}
+
+}
@@ -0,0 +1,54 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * A compression stage for encoded messages: RFC4765BinaryWriter and RFC4765BinaryReader pass each
+ * frame through one (a single message, or a whole batch), and it can be applied in the same way to
+ * the documents of RFC4765XMLWriter or RFC4765JSONWriter. The two ends of a stream must use
+ * compressors that agree, e.g. RFC4765DeflateCompressors with the same preset dictionary.
+ *
+ * <p>Implementations may keep state between calls, so need not be thread safe.
+ *
+ * @see RFC4765DeflateCompressor
+ */
+public interface RFC4765Compressor {
+
+	/**
+	 * Compress length bytes of in, starting at offset, appending the result to out
+	 */
+	public void compress(byte[] in, int offset, int length, ByteArrayOutputStream out);
+
+	/**
+	 * Decompress length bytes of in, starting at offset, appending the result to out
+	 *
+	 * @param maxLength the most bytes the result may have; a frame that expands further is refused
+	 * rather than held in memory
+	 * @throws IllegalArgumentException if the bytes are not the complete output of a matching
+	 * compress(), or expand past maxLength bytes
+	 */
+	public void decompress(byte[] in, int offset, int length, ByteArrayOutputStream out, int maxLength)
+	throws IllegalArgumentException;
+
+}
@@ -0,0 +1,306 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.Formats;
+import com.cr_labs.rfc4765.NtpStamp;
+import com.cr_labs.rfc4765.PortSet;
+
+/**
+ * Text forms of the IDMEF data types of RFC4765 Section 3.2 (INTEGER, DATETIME, NTPSTAMP, BYTE[]...),
+ * written straight into an Appendable so that serializers don't build intermediate Strings,
+ * and parsed back by the readers.
+ */
+public final class RFC4765DataTypes {
+
+	/**
+	 * Seconds from the NTP epoch (1900-01-01) to the Unix epoch (1970-01-01)
+	 */
+	public static final long NTP_EPOCH_OFFSET_SECONDS = NtpStamp.EPOCH_OFFSET_SECONDS;
+
+	private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	private static final int[] BASE64_VALUES = new int[128];
+	static {
+		Arrays.fill(BASE64_VALUES, -1);
+		for (int i = 0; i < BASE64.length; i++)
+			BASE64_VALUES[BASE64[i]] = i;
+	}
+
+	private RFC4765DataTypes() {
+	}
+
+
+	/**
+	 * Append the decimal form of v
+	 */
+	public static void appendLong(Appendable out, long v)
+	throws IOException {
+		Formats.appendLong(out, v);
+	}
+
+
+	/**
+	 * Append a DATETIME (RFC4765 Section 3.2.6) in the ISO 8601 extended format with milliseconds,
+	 * e.g. "2011-03-01T13:45:00.250-05:00", using the time zone of the DateTime.
+	 */
+	public static void appendDateTime(Appendable out, DateTime dt)
+	throws IOException {
+		long millis = dt.getMillis();
+		appendDateTime(out, millis, dt.getZone().getOffset(millis));
+	}
+
+	/**
+	 * Append a DATETIME (RFC4765 Section 3.2.6) in the ISO 8601 extended format with milliseconds.
+	 *
+	 * @param millis milliseconds since the Unix epoch, UTC
+	 * @param offsetMillis offset of the local time from UTC; a zero offset is written as "Z"
+	 */
+	public static void appendDateTime(Appendable out, long millis, int offsetMillis)
+	throws IOException {
+		Formats.appendDateTime(out, millis, offsetMillis);
+	}
+
+
+	/**
+	 * Append an NTPSTAMP (RFC4765 Section 3.2.7) for the given time, in the form "0xbc71f4f5.0xef449129"
+	 *
+	 * @param millis milliseconds since the Unix epoch, UTC
+	 * @see NtpStamp
+	 */
+	public static void appendNtpStamp(Appendable out, long millis)
+	throws IOException {
+		NtpStamp.append(out, NtpStamp.fromMillis(millis));
+	}
+
+
+	/**
+	 * Append a BYTE[] (RFC4765 Section 3.2.4) in base64 form
+	 */
+	public static void appendBase64(Appendable out, byte[] data, int offset, int length)
+	throws IOException {
+		int end = offset + length;
+		int i = offset;
+		for (; i + 3 <= end; i += 3) {
+			int b = ((data[i] & 0xff) << 16) | ((data[i+1] & 0xff) << 8) | (data[i+2] & 0xff);
+			out.append(BASE64[b >>> 18]).append(BASE64[(b >>> 12) & 0x3f]).append(BASE64[(b >>> 6) & 0x3f]).append(BASE64[b & 0x3f]);
+		}
+		if (end - i == 1) {
+			int b = (data[i] & 0xff) << 16;
+			out.append(BASE64[b >>> 18]).append(BASE64[(b >>> 12) & 0x3f]).append("==");
+		}
+		else if (end - i == 2) {
+			int b = ((data[i] & 0xff) << 16) | ((data[i+1] & 0xff) << 8);
+			out.append(BASE64[b >>> 18]).append(BASE64[(b >>> 12) & 0x3f]).append(BASE64[(b >>> 6) & 0x3f]).append('=');
+		}
+	}
+
+
+	/**
+	 * Parse a DATETIME (RFC4765 Section 3.2.6): "YYYY-MM-DDThh:mm:ss", optionally followed by a
+	 * fraction of a second (any number of digits, kept to millisecond precision) and a time zone
+	 * of "Z" or "+hh:mm" / "-hh:mm". A time with no zone is taken to be UTC.
+	 *
+	 * @return a DateTime in a fixed-offset zone matching the offset given in the text
+	 * @throws IllegalArgumentException if the text is not in that form
+	 */
+	public static DateTime parseDateTime(String s)
+	throws IllegalArgumentException {
+		long millis = parseDateTimeMillis(s);
+		return new DateTime(millis, DateTimeZone.forOffsetMillis(parseDateTimeOffset(s)));
+	}
+
+	/**
+	 * Parse a DATETIME as parseDateTime() does, without making a DateTime
+	 *
+	 * @return the instant in milliseconds since the Unix epoch
+	 * @throws IllegalArgumentException if the text is not in that form
+	 */
+	public static long parseDateTimeMillis(CharSequence s)
+	throws IllegalArgumentException {
+		return parseDateTimeMillis(s, 0, s.length());
+	}
+
+	/**
+	 * Parse the DATETIME in s from start to end as parseDateTime() does, without making a DateTime
+	 * or a String; whitespace around it is ignored
+	 *
+	 * @return the instant in milliseconds since the Unix epoch
+	 * @throws IllegalArgumentException if the text is not in that form
+	 */
+	public static long parseDateTimeMillis(CharSequence s, int start, int end)
+	throws IllegalArgumentException {
+		while ((start < end) && (s.charAt(start) <= ' '))
+			start++;
+		while ((end > start) && (s.charAt(end - 1) <= ' '))
+			end--;
+		if ((end - start < 19) || (s.charAt(start + 4) != '-') || (s.charAt(start + 7) != '-') || (s.charAt(start + 10) != 'T')
+				|| (s.charAt(start + 13) != ':') || (s.charAt(start + 16) != ':'))
+			throw notDateTime(s, start, end);
+		int year = digits(s, start, start + 4, end);
+		int month = digits(s, start + 5, start + 7, end);
+		int day = digits(s, start + 8, start + 10, end);
+		int hour = digits(s, start + 11, start + 13, end);
+		int minute = digits(s, start + 14, start + 16, end);
+		int second = digits(s, start + 17, start + 19, end);
+		int i = start + 19;
+		int millis = 0;
+		if ((i < end) && (s.charAt(i) == '.')) {
+			int scale = 100;
+			i++;
+			int fractionStart = i;
+			while ((i < end) && (s.charAt(i) >= '0') && (s.charAt(i) <= '9')) {
+				millis += (s.charAt(i) - '0') * scale;
+				scale /= 10;
+				i++;
+			}
+			if (i == fractionStart)
+				throw notDateTime(s, start, end);
+		}
+		int offsetMillis = 0;
+		if (i < end) {
+			char c = s.charAt(i);
+			if ((c == 'Z') && (i + 1 == end))
+				offsetMillis = 0;
+			else if (((c == '+') || (c == '-')) && (i + 6 == end) && (s.charAt(i+3) == ':')) {
+				offsetMillis = (digits(s, i+1, i+3, end) * 60 + digits(s, i+4, i+6, end)) * 60000;
+				if (c == '-')
+					offsetMillis = -offsetMillis;
+			}
+			else
+				throw notDateTime(s, start, end);
+		}
+		if ((month < 1) || (month > 12) || (day < 1) || (day > 31) || (hour > 23) || (minute > 59) || (second > 60))
+			throw notDateTime(s, start, end);
+
+		return daysFromCivil(year, month, day) * 86400000L
+			+ hour * 3600000L + minute * 60000L + second * 1000L + millis - offsetMillis;
+	}
+
+	/**
+	 * @return the offset from UTC in milliseconds of the zone of a DATETIME that
+	 * parseDateTimeMillis() accepts: 0 for "Z" or no zone
+	 */
+	public static int parseDateTimeOffset(CharSequence s) {
+		return parseDateTimeOffset(s, 0, s.length());
+	}
+
+	/**
+	 * @return the offset from UTC in milliseconds of the zone of the DATETIME in s from start to
+	 * end, which parseDateTimeMillis() accepts: 0 for "Z" or no zone
+	 */
+	public static int parseDateTimeOffset(CharSequence s, int start, int end) {
+		while ((end > start) && (s.charAt(end - 1) <= ' '))
+			end--;
+		if ((end - start < 6) || (s.charAt(end - 3) != ':'))
+			return 0;
+		char c = s.charAt(end - 6);
+		if ((c != '+') && (c != '-'))
+			return 0;
+		int offsetMillis = (digits(s, end - 5, end - 3, end) * 60 + digits(s, end - 2, end, end)) * 60000;
+		return (c == '-') ? -offsetMillis : offsetMillis;
+	}
+
+
+	/**
+	 * Decode a BYTE[] (RFC4765 Section 3.2.4) from base64. Whitespace is ignored.
+	 *
+	 * @throws IllegalArgumentException if s contains characters that are not base64
+	 */
+	public static byte[] decodeBase64(String s)
+	throws IllegalArgumentException {
+		int len = s.length();
+		byte[] buffer = new byte[(len / 4) * 3 + 3];
+		int count = 0;
+		int bits = 0;
+		int nbits = 0;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if ((c == '=') || (c <= ' '))
+				continue;
+			int v = (c < 128) ? BASE64_VALUES[c] : -1;
+			if (v < 0)
+				throw new IllegalArgumentException("Not base64 data at offset "+i);
+			bits = (bits << 6) | v;
+			nbits += 6;
+			if (nbits >= 8) {
+				nbits -= 8;
+				buffer[count++] = (byte) (bits >>> nbits);
+			}
+		}
+		if (count == buffer.length)
+			return buffer;
+		byte[] result = new byte[count];
+		System.arraycopy(buffer, 0, result, 0, count);
+		return result;
+	}
+
+
+	/**
+	 * Expand an RFC4765 portlist ("1-3,5,7") into an Integer[]. PortSet holds a portlist
+	 * without expanding it.
+	 *
+	 * @throws IllegalArgumentException if the text is not a portlist
+	 */
+	public static Integer[] parsePortlist(String text)
+	throws IllegalArgumentException {
+		int[] ports = new PortSet(text).toArray();
+		Integer[] boxed = new Integer[ports.length];
+		for (int i = 0; i < ports.length; i++)
+			boxed[i] = Integer.valueOf(ports[i]);
+		return boxed;
+	}
+
+	private static int digits(CharSequence s, int start, int end, int textEnd)
+	throws IllegalArgumentException {
+		int v = 0;
+		for (int i = start; i < end; i++) {
+			char c = s.charAt(i);
+			if ((c < '0') || (c > '9'))
+				throw notDateTime(s, 0, textEnd);
+			v = v * 10 + (c - '0');
+		}
+		return v;
+	}
+
+	private static IllegalArgumentException notDateTime(CharSequence s, int start, int end) {
+		return new IllegalArgumentException("Not an RFC4765 DATETIME: "+s.subSequence(start, end));
+	}
+
+	/**
+	 * Days since 1970-01-01 of a proleptic Gregorian date, after H. Hinnant's days_from_civil
+	 */
+	static long daysFromCivil(int year, int month, int day) {
+		long y = (month <= 2) ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yoe = y - era * 400;
+		long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+		return era * 146097 + doe - 719468;
+	}
+
+}
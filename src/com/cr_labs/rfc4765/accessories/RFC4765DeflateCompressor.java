@@ -0,0 +1,295 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * An RFC4765Compressor using the JDK's Deflater and Inflater (zlib format), with an optional
+ * preset dictionary.
+ *
+ * <p>A single alert is too short for deflate to find much repetition within it, but alerts
+ * repeat each other: the same analyzer, classification texts, reference URLs and addresses.
+ * A preset dictionary made from sample alerts with trainDictionary() lets each message refer
+ * back to that shared content, so even one message compresses well on its own. Both ends must
+ * use the same dictionary; a message compressed with another dictionary is rejected by its
+ * zlib dictionary id rather than decoded wrongly.
+ *
+ * <p>A compressor keeps one Deflater and one Inflater, so is not thread safe; use one per
+ * writer or reader, and call end() when done with it to release their native memory.
+ *
+ * <pre>
+ * byte[] dictionary = RFC4765DeflateCompressor.trainDictionary(samples, 16384);
+ * RFC4765BinaryWriter w = new RFC4765BinaryWriter(os, true, true, new RFC4765DeflateCompressor(dictionary));
+ * </pre>
+ */
+public class RFC4765DeflateCompressor
+implements RFC4765Compressor {
+
+	/**
+	 * The largest useful dictionary: deflate can only refer back this far
+	 */
+	public static final int MAX_DICTIONARY_SIZE = 32768;
+
+	/**
+	 * Length of the byte sequences that trainDictionary() counts
+	 */
+	private static final int GRAM = 8;
+	/**
+	 * Length of the sample pieces that trainDictionary() chooses from
+	 */
+	private static final int SEGMENT = 64;
+
+	private final byte[] dictionary;
+	private final long dictionaryID;
+	private final Deflater deflater;
+	private final Inflater inflater = new Inflater();
+	private final byte[] chunk = new byte[4096];
+
+
+	/**
+	 * @param dictionary the preset dictionary, or null for none. The array is not copied.
+	 * @throws IllegalArgumentException if the dictionary is longer than MAX_DICTIONARY_SIZE
+	 */
+	public RFC4765DeflateCompressor(byte[] dictionary)
+	throws IllegalArgumentException {
+		this(dictionary, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * @param dictionary the preset dictionary, or null for none. The array is not copied.
+	 * @param level the Deflater compression level, 0-9 or Deflater.DEFAULT_COMPRESSION
+	 * @throws IllegalArgumentException if the dictionary is longer than MAX_DICTIONARY_SIZE, or the level is out of range
+	 */
+	public RFC4765DeflateCompressor(byte[] dictionary, int level)
+	throws IllegalArgumentException {
+		if ((dictionary != null) && (dictionary.length > MAX_DICTIONARY_SIZE))
+			throw new IllegalArgumentException("Deflate dictionary is longer than "+MAX_DICTIONARY_SIZE+" bytes");
+		if ((level < Deflater.DEFAULT_COMPRESSION) || (level > Deflater.BEST_COMPRESSION))
+			throw new IllegalArgumentException("Deflate level out of range: "+level);
+		this.dictionary = dictionary;
+		if (dictionary != null) {
+			Adler32 adler = new Adler32();
+			adler.update(dictionary);
+			dictionaryID = adler.getValue();
+		}
+		else
+			dictionaryID = 0;
+		deflater = new Deflater(level);
+	}
+
+
+	public void compress(byte[] in, int offset, int length, ByteArrayOutputStream out) {
+		deflater.reset();
+		if (dictionary != null)
+			deflater.setDictionary(dictionary);
+		deflater.setInput(in, offset, length);
+		deflater.finish();
+		while (! deflater.finished()) {
+			int n = deflater.deflate(chunk);
+			out.write(chunk, 0, n);
+		}
+	}
+
+	public void decompress(byte[] in, int offset, int length, ByteArrayOutputStream out, int maxLength)
+	throws IllegalArgumentException {
+		inflater.reset();
+		inflater.setInput(in, offset, length);
+		int left = maxLength;
+		try {
+			while (! inflater.finished()) {
+				int n = inflater.inflate(chunk);
+				if (n > 0) {
+					left -= n;
+					if (left < 0)
+						throw new IllegalArgumentException("Deflated data expands past the limit of "+maxLength+" bytes");
+					out.write(chunk, 0, n);
+					continue;
+				}
+				if (inflater.needsDictionary()) {
+					if ((dictionary == null) || ((inflater.getAdler() & 0xffffffffL) != dictionaryID))
+						throw new IllegalArgumentException("Deflated data needs a different dictionary");
+					inflater.setDictionary(dictionary);
+				}
+				else
+					throw new IllegalArgumentException("Deflated data is truncated");
+			}
+		}
+		catch (DataFormatException dfe) {
+			throw new IllegalArgumentException("Malformed deflated data: "+dfe.getMessage());
+		}
+	}
+
+	/**
+	 * @return the preset dictionary, or null
+	 */
+	public byte[] getDictionary() {
+		return dictionary;
+	}
+
+	/**
+	 * Release the native memory of the Deflater and Inflater. The compressor can't be used after this.
+	 */
+	public void end() {
+		deflater.end();
+		inflater.end();
+	}
+
+
+	/**
+	 * Make a preset dictionary from sample messages, each encoded as it will be when compressed
+	 * (e.g. a frame of an RFC4765BinaryWriter without a dictionary, or one XML document).
+	 *
+	 * <p>The samples are cut into 64-byte segments, and the segments are chosen greedily by how
+	 * many samples share their 8-byte sequences, each choice using up the sequences it covers
+	 * so that the dictionary does not repeat itself. The best segments go at the end of the
+	 * dictionary, where deflate reaches them with the shortest distances.
+	 *
+	 * @param samples REQUIRED typical messages; some hundreds are enough
+	 * @param size the largest dictionary to make, 1 to MAX_DICTIONARY_SIZE bytes
+	 * @return the dictionary, shorter than size if the samples have little in common
+	 * @throws IllegalArgumentException if samples is null or holds a null, or size is out of range
+	 */
+	public static byte[] trainDictionary(Collection<byte[]> samples, int size)
+	throws IllegalArgumentException {
+		if (samples == null)
+			throw new IllegalArgumentException("Required parameter 'samples' was null");
+		if ((size < 1) || (size > MAX_DICTIONARY_SIZE))
+			throw new IllegalArgumentException("Deflate dictionary size out of range: "+size);
+
+		// the number of samples each sequence occurs in
+		HashMap<Long,int[]> counts = new HashMap<Long,int[]>();
+		HashSet<Long> seen = new HashSet<Long>();
+		for (byte[] sample : samples) {
+			if (sample == null)
+				throw new IllegalArgumentException("Dictionary sample was null");
+			seen.clear();
+			for (int i = 0; i + GRAM <= sample.length; i++) {
+				Long gram = Long.valueOf(gram(sample, i));
+				if (seen.add(gram)) {
+					int[] n = counts.get(gram);
+					if (n == null)
+						counts.put(gram, new int[] { 1 });
+					else
+						n[0]++;
+				}
+			}
+		}
+
+		PriorityQueue<Segment> queue = new PriorityQueue<Segment>();
+		for (byte[] sample : samples) {
+			for (int i = 0; i < sample.length; i += SEGMENT) {
+				Segment s = new Segment(sample, i, Math.min(SEGMENT, sample.length - i));
+				s.score = score(s, counts);
+				if (s.score > 0)
+					queue.add(s);
+			}
+		}
+
+		// scores only go down as segments are chosen, so a segment that still has its
+		// queued score after rescoring is the best one left
+		ArrayList<Segment> chosen = new ArrayList<Segment>();
+		int total = 0;
+		while ((total < size) && ! queue.isEmpty()) {
+			Segment s = queue.poll();
+			int score = score(s, counts);
+			if (score == 0)
+				continue;
+			if (score < s.score) {
+				s.score = score;
+				queue.add(s);
+				continue;
+			}
+			chosen.add(s);
+			total += s.length;
+			for (int i = s.offset; i + GRAM <= s.offset + s.length; i++) {
+				int[] n = counts.get(Long.valueOf(gram(s.sample, i)));
+				if (n != null)
+					n[0] = 0;
+			}
+		}
+
+		byte[] dictionary = new byte[Math.min(total, size)];
+		int end = dictionary.length;
+		for (int i = 0; (i < chosen.size()) && (end > 0); i++) {
+			Segment s = chosen.get(i);
+			int n = Math.min(s.length, end);
+			System.arraycopy(s.sample, s.offset + s.length - n, dictionary, end - n, n);
+			end -= n;
+		}
+		return dictionary;
+	}
+
+	/**
+	 * @return the sum, over the sequences of a segment, of the number of samples sharing each one
+	 */
+	private static int score(Segment s, HashMap<Long,int[]> counts) {
+		int score = 0;
+		for (int i = s.offset; i + GRAM <= s.offset + s.length; i++) {
+			int[] n = counts.get(Long.valueOf(gram(s.sample, i)));
+			if ((n != null) && (n[0] > 1))
+				score += n[0];
+		}
+		return score;
+	}
+
+	private static long gram(byte[] b, int offset) {
+		long g = 0;
+		for (int i = 0; i < GRAM; i++)
+			g = (g << 8) | (b[offset + i] & 0xff);
+		return g;
+	}
+
+
+	/**
+	 * A piece of a sample, ordered best (highest score) first
+	 */
+	private static final class Segment
+	implements Comparable<Segment> {
+
+		final byte[] sample;
+		final int offset;
+		final int length;
+		int score;
+
+		Segment(byte[] sample, int offset, int length) {
+			this.sample = sample;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		public int compareTo(Segment other) {
+			return (score > other.score) ? -1 : ((score < other.score) ? 1 : 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,187 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.CodedEnum;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Maps the enums of the RFC4765 classes to and from the keywords used for them in the
+ * IDMEF XML interchange format (e.g. Address.Category.IPV4_ADDR &lt;-&gt; "ipv4-addr"),
+ * and from their integer values (CodedEnum.getValue()) back to the enum, for the binary codec.
+ *
+ * <p>All tables are built once when the class is loaded, so lookups are a map probe and
+ * an array index, with no reflection and no string building per call.
+ *
+ * <p>Non-RFC extension values (X_*) are given keywords of the same form ("x-you", "x-info"...)
+ * so that they survive a round trip between peers that understand them. Writers that must
+ * produce strictly RFC-compliant output should pass the RFC-mapped value of an enum
+ * (e.g. Address.getRFCCategory()) rather than the extended one.
+ */
+public final class RFC4765EnumCodes {
+
+	private static final IdentityHashMap <Class<?>, String[]> KEYWORDS = new IdentityHashMap <Class<?>, String[]> ();
+	private static final IdentityHashMap <Class<?>, HashMap<String,Enum<?>>> BY_KEYWORD = new IdentityHashMap <Class<?>, HashMap<String,Enum<?>>> ();
+	/**
+	 * RFC values are small and dense, so are indexed directly; X_* extension values go in the overflow map
+	 */
+	private static final int DENSE_VALUES = 64;
+	private static final IdentityHashMap <Class<?>, Enum<?>[]> BY_VALUE = new IdentityHashMap <Class<?>, Enum<?>[]> ();
+	private static final IdentityHashMap <Class<?>, HashMap<Integer,Enum<?>>> BY_EXTENSION_VALUE = new IdentityHashMap <Class<?>, HashMap<Integer,Enum<?>>> ();
+
+	static {
+		register(Action.Category.values());
+		register(AdditionalData.Type.values());
+		register(Address.Category.values());
+		register(Checksum.Algorithm.values(),
+				"MD4", "MD5", "SHA1", "SHA2-256", "SHA2-384", "SHA2-512", "CRC-32", "Haval", "Tiger", "Gost");
+		register(Confidence.Rank.values());
+		register(File.Category.values());
+		register(File.FSType.values());
+		register(FileAccess.Permission.values(),
+				"noAccess", "read", "write", "execute", "search", "delete", "executeAs", "changePermissions", "takeOwnership");
+		register(Impact.Completion.values());
+		register(Impact.Severity.values());
+		register(Impact.Type.values());
+		register(Linkage.Category.values());
+		register(Node.Category.values());
+		register(Reference.Origin.values());
+		register(Source.SpoofedRank.values());
+		register(Target.DecoyRank.values());
+		register(User.Category.values());
+		register(UserId.Type.values());
+
+		// the one RFC keyword that isn't just the lower-cased constant name
+		override(Address.Category.EMAIL, "e-mail");
+	}
+
+	private RFC4765EnumCodes() {
+	}
+
+
+	/**
+	 * Register an enum type using the default keyword form: lower case, with '_' replaced by '-'
+	 */
+	private static void register(Enum<?>[] values) {
+		String[] keywords = new String[values.length];
+		for (int i = 0; i < values.length; i++)
+			keywords[i] = values[i].name().toLowerCase(Locale.US).replace('_', '-');
+		register(values, keywords);
+	}
+
+	/**
+	 * Register an enum type whose keywords are given explicitly, in ordinal order
+	 */
+	private static void register(Enum<?>[] values, String... keywords) {
+		if (values.length != keywords.length)
+			throw new IllegalStateException("keyword table size mismatch for "+values[0].getDeclaringClass());
+		HashMap<String,Enum<?>> byKeyword = new HashMap<String,Enum<?>>();
+		Enum<?>[] byValue = new Enum<?>[DENSE_VALUES];
+		HashMap<Integer,Enum<?>> byExtensionValue = new HashMap<Integer,Enum<?>>();
+		for (int i = 0; i < values.length; i++) {
+			byKeyword.put(keywords[i], values[i]);
+			int v = ((CodedEnum) values[i]).getValue();
+			if ((v >= 0) && (v < DENSE_VALUES))
+				byValue[v] = values[i];
+			else
+				byExtensionValue.put(Integer.valueOf(v), values[i]);
+		}
+		Class<?> type = values[0].getDeclaringClass();
+		KEYWORDS.put(type, keywords);
+		BY_KEYWORD.put(type, byKeyword);
+		BY_VALUE.put(type, byValue);
+		BY_EXTENSION_VALUE.put(type, byExtensionValue);
+	}
+
+	private static void override(Enum<?> value, String keyword) {
+		String[] keywords = KEYWORDS.get(value.getDeclaringClass());
+		HashMap<String,Enum<?>> byKeyword = BY_KEYWORD.get(value.getDeclaringClass());
+		byKeyword.remove(keywords[value.ordinal()]);
+		keywords[value.ordinal()] = keyword;
+		byKeyword.put(keyword, value);
+	}
+
+
+	/**
+	 * @param value any enum value declared by one of the RFC4765 classes
+	 * @return the IDMEF keyword for the value
+	 * @throws IllegalArgumentException if the enum type is not one of the RFC4765 enums
+	 */
+	public static String keyword(Enum<?> value)
+	throws IllegalArgumentException {
+		String[] keywords = KEYWORDS.get(value.getDeclaringClass());
+		if (keywords == null)
+			throw new IllegalArgumentException("Not an RFC4765 enum: "+value.getDeclaringClass());
+		return keywords[value.ordinal()];
+	}
+
+	/**
+	 * @param type the enum class to look up, e.g. Address.Category.class
+	 * @param keyword the IDMEF keyword
+	 * @return the enum value for the keyword, or null if keyword is null or is not a keyword of 'type'
+	 * @throws IllegalArgumentException if the enum type is not one of the RFC4765 enums
+	 */
+	public static <E extends Enum<E>> E fromKeyword(Class<E> type, String keyword)
+	throws IllegalArgumentException {
+		HashMap<String,Enum<?>> byKeyword = BY_KEYWORD.get(type);
+		if (byKeyword == null)
+			throw new IllegalArgumentException("Not an RFC4765 enum: "+type);
+		if (keyword == null)
+			return null;
+		return type.cast(byKeyword.get(keyword));
+	}
+
+	/**
+	 * @param type the enum class to look up, e.g. Address.Category.class
+	 * @param value the integer value of the enum constant, as returned by its getValue()
+	 * @return the enum constant having that value, or null if there is none
+	 * @throws IllegalArgumentException if the enum type is not one of the RFC4765 enums
+	 */
+	public static <E extends Enum<E>> E fromValue(Class<E> type, int value)
+	throws IllegalArgumentException {
+		Enum<?>[] byValue = BY_VALUE.get(type);
+		if (byValue == null)
+			throw new IllegalArgumentException("Not an RFC4765 enum: "+type);
+		if ((value >= 0) && (value < DENSE_VALUES))
+			return type.cast(byValue[value]);
+		return type.cast(BY_EXTENSION_VALUE.get(type).get(Integer.valueOf(value)));
+	}
+
+}
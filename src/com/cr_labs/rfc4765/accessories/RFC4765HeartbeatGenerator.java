@@ -24,8 +24,6 @@ Contact: jim@cr-labs.com
 import java.util.Timer;
 import java.util.TimerTask;
 
-import org.joda.time.DateTime;
-
 import com.cr_labs.rfc4765.Analyzer;
 import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
 
@@ -111,9 +109,11 @@ public abstract class RFC4765HeartbeatGenerator {
 		public void run() {
 			// generate a fresh IDMEFMessage_Heartbeat, inserting the 'analyzer'
 			IDMEFMessage_Heartbeat h;
+			// create and analyzer time are the same instant, held as epoch milliseconds
+			long now = System.currentTimeMillis();
 			// is synchronized to protect the increment of nextMessageID
 			synchronized (this) {
-				h = new IDMEFMessage_Heartbeat(messageIDPrefix+nextMessageID,analyzer,new DateTime(),new DateTime(),intervalSeconds,null);
+				h = new IDMEFMessage_Heartbeat(messageIDPrefix+nextMessageID,analyzer,now,now,intervalSeconds,null);
 				nextMessageID++;
 			}
 			processHeartbeat(h);
@@ -74,7 +74,7 @@ public class RFC4765HeartbeatTracker {
 	 * @returna read-only list of IDMEFMessage_Heartbeat objects for the given analyzer
 	 */
 	public ReadonlyList <IDMEFMessage_Heartbeat> getLoggedHeartbeats(Analyzer analyzer) {
-		CopyOnWriteArrayList <IDMEFMessage_Heartbeat> al = heartbeats.get(analyzer);
+		CopyOnWriteArrayList <IDMEFMessage_Heartbeat> al = heartbeats.get(analyzer.getAnalyzerID());
 		return new ReadonlyList <IDMEFMessage_Heartbeat> (al);
 	}
 	
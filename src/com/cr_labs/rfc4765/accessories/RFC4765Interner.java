@@ -0,0 +1,299 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Fingerprinted;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.StringList;
+
+/**
+ * Canonical instances of the Analyzers, Nodes, Classifications, References, Addresses and Process
+ * arg and env lists that recur from alert to alert. intern() returns the instance already in the pool
+ * that equals its argument, or adds the argument and returns it, so the alerts of one sensor
+ * share one Analyzer rather than each holding a copy. A reader given an interner (see
+ * setInterner() on the XML, JSON and binary readers) interns each of these objects as it
+ * builds it; as Addresses are built before the Node holding them and Nodes before their
+ * Analyzer, whole trees end up shared.
+ *
+ * <pre>
+ * RFC4765Interner interner = new RFC4765Interner();
+ * RFC4765XMLReader r = new RFC4765XMLReader(in);
+ * r.setInterner(interner);
+ * ...
+ * System.out.println(interner.getHits()+" hits, "+interner.getMisses()+" misses");
+ * </pre>
+ *
+ * <p>Each pool holds at most maxEntries objects, the least recently used going first, so a
+ * stream of values that never repeat (Node names of a scan, say) costs a bounded amount of
+ * memory. A pool is split in stripes by fingerprint, each with its own lock, so an interner
+ * may be shared by many reader threads. Interned objects are shared: treat the arrays they
+ * return (Node.getAddress(), for example) as read only. Process.getArg() and getEnv() return
+ * copies; getArgList() and getEnvList() give the shared lists.
+ *
+ * <p>Processes differ from alert to alert by pid, so only their arg and env lists are pooled;
+ * an interner made with utf8Strings set also packs those lists into UTF-8 bytes before pooling
+ * them (see StringList.toUtf8()), trading a decode on each getArg() for about half the memory.
+ */
+public class RFC4765Interner {
+
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+	/**
+	 * A bounded pool of canonical instances of one class
+	 */
+	public static final class Pool<T extends Fingerprinted> {
+
+		private static final int STRIPES = 16;
+
+		private final int maxEntries;
+		private final LinkedHashMap<T, T>[] stripes;
+		private final AtomicLong hits = new AtomicLong();
+		private final AtomicLong misses = new AtomicLong();
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		Pool(int maxEntries) {
+			this.maxEntries = maxEntries;
+			final int perStripe = (maxEntries + STRIPES - 1) / STRIPES;
+			stripes = new LinkedHashMap[STRIPES];
+			for (int i = 0; i < STRIPES; i++)
+				stripes[i] = new LinkedHashMap<T, T>(16, 0.75f, true) {
+					private static final long serialVersionUID = 1L;
+
+					protected boolean removeEldestEntry(Map.Entry<T, T> eldest) {
+						return size() > perStripe;
+					}
+				};
+		}
+
+		/**
+		 * @param o the object to intern, or null
+		 * @return the pooled object equal to o, or o itself if there was none (o is then pooled)
+		 */
+		public T intern(T o) {
+			if (o == null)
+				return null;
+			// the high bits, as the LinkedHashMap spreads the stripe's entries by the low ones
+			LinkedHashMap<T, T> stripe = stripes[(int) (o.getFingerprint() >>> 60)];
+			synchronized (stripe) {
+				T pooled = stripe.get(o);
+				if (pooled != null) {
+					hits.incrementAndGet();
+					return pooled;
+				}
+				stripe.put(o, o);
+			}
+			misses.incrementAndGet();
+			return o;
+		}
+
+		/**
+		 * @return the number of objects in the pool
+		 */
+		public int size() {
+			int n = 0;
+			for (LinkedHashMap<T, T> stripe : stripes)
+				synchronized (stripe) {
+					n += stripe.size();
+				}
+			return n;
+		}
+
+		public int getMaxEntries() {
+			return maxEntries;
+		}
+
+		/**
+		 * @return the number of calls to intern() that returned a pooled object
+		 */
+		public long getHits() {
+			return hits.get();
+		}
+
+		/**
+		 * @return the number of calls to intern() that pooled their argument
+		 */
+		public long getMisses() {
+			return misses.get();
+		}
+
+		/**
+		 * Empty the pool. The counts are kept.
+		 */
+		public void clear() {
+			for (LinkedHashMap<T, T> stripe : stripes)
+				synchronized (stripe) {
+					stripe.clear();
+				}
+		}
+
+	}
+
+
+	private final Pool<Analyzer> analyzers;
+	private final Pool<Node> nodes;
+	private final Pool<Classification> classifications;
+	private final Pool<Reference> references;
+	private final Pool<Address> addresses;
+	private final Pool<StringList> strings;
+	private final boolean utf8Strings;
+
+
+	/**
+	 * An interner holding up to DEFAULT_MAX_ENTRIES objects of each class
+	 */
+	public RFC4765Interner() {
+		this(DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param maxEntries the most objects of each class to hold (at least 1)
+	 * @throws IllegalArgumentException if maxEntries is less than 1
+	 */
+	public RFC4765Interner(int maxEntries)
+	throws IllegalArgumentException {
+		this(maxEntries, false);
+	}
+
+	/**
+	 * @param maxEntries the most objects of each class to hold (at least 1)
+	 * @param utf8Strings true to hold pooled arg and env lists as UTF-8 bytes
+	 * @throws IllegalArgumentException if maxEntries is less than 1
+	 */
+	public RFC4765Interner(int maxEntries, boolean utf8Strings)
+	throws IllegalArgumentException {
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries must be at least 1: "+maxEntries);
+		analyzers = new Pool<Analyzer>(maxEntries);
+		nodes = new Pool<Node>(maxEntries);
+		classifications = new Pool<Classification>(maxEntries);
+		references = new Pool<Reference>(maxEntries);
+		addresses = new Pool<Address>(maxEntries);
+		strings = new Pool<StringList>(maxEntries);
+		this.utf8Strings = utf8Strings;
+	}
+
+
+	public Analyzer intern(Analyzer analyzer) {
+		return analyzers.intern(analyzer);
+	}
+
+	public Node intern(Node node) {
+		return nodes.intern(node);
+	}
+
+	public Classification intern(Classification classification) {
+		return classifications.intern(classification);
+	}
+
+	public Reference intern(Reference reference) {
+		return references.intern(reference);
+	}
+
+	public Address intern(Address address) {
+		return addresses.intern(address);
+	}
+
+	public StringList intern(StringList list) {
+		if ((list == null) || (list.size() == 0))
+			return StringList.EMPTY;
+		return strings.intern(utf8Strings ? list.toUtf8() : list);
+	}
+
+	/**
+	 * @return process itself if its arg and env lists are already the pooled ones, else a copy
+	 * of it holding the pooled lists
+	 */
+	public Process intern(Process process) {
+		if (process == null)
+			return null;
+		StringList arg = intern(process.getArgList());
+		StringList env = intern(process.getEnvList());
+		if ((arg == process.getArgList()) && (env == process.getEnvList()))
+			return process;
+		return new Process(process, arg, env);
+	}
+
+
+	public Pool<Analyzer> getAnalyzers() {
+		return analyzers;
+	}
+
+	public Pool<Node> getNodes() {
+		return nodes;
+	}
+
+	public Pool<Classification> getClassifications() {
+		return classifications;
+	}
+
+	public Pool<Reference> getReferences() {
+		return references;
+	}
+
+	public Pool<Address> getAddresses() {
+		return addresses;
+	}
+
+	public Pool<StringList> getStrings() {
+		return strings;
+	}
+
+	public boolean isUtf8Strings() {
+		return utf8Strings;
+	}
+
+	/**
+	 * @return the number of calls to intern() that returned a pooled object, over all classes
+	 */
+	public long getHits() {
+		return analyzers.getHits() + nodes.getHits() + classifications.getHits() + references.getHits() + addresses.getHits() + strings.getHits();
+	}
+
+	/**
+	 * @return the number of calls to intern() that pooled their argument, over all classes
+	 */
+	public long getMisses() {
+		return analyzers.getMisses() + nodes.getMisses() + classifications.getMisses() + references.getMisses() + addresses.getMisses() + strings.getMisses();
+	}
+
+	/**
+	 * Empty all the pools. The counts are kept.
+	 */
+	public void clear() {
+		analyzers.clear();
+		nodes.clear();
+		classifications.clear();
+		references.clear();
+		addresses.clear();
+		strings.clear();
+	}
+
+}
@@ -0,0 +1,1564 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.CorrelationAlert;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.OverflowAlert;
+import com.cr_labs.rfc4765.PortSet;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Reads IDMEFMessage objects from the JSON written by RFC4765JSONWriter: a sequence of
+ * {"Alert": ...} and {"Heartbeat": ...} objects, separated by whitespace (usually one per line),
+ * and {"IDMEF-Message": [...]} batches of them.
+ *
+ * <p>The reader is a hand-written pull parser that builds the model objects as it goes, with
+ * no reflection and no intermediate tree. Members may come in any order; unknown members,
+ * and null values of optional members, are ignored. Host names given as Address values are
+ * kept unresolved, so reading never waits on DNS (see RFC4765Resolver).
+ *
+ * <p>A reader is not thread safe; use one per input stream.
+ *
+ * <pre>
+ * RFC4765JSONReader r = new RFC4765JSONReader(new FileInputStream("alerts.json"));
+ * IDMEFMessage m;
+ * while ((m = r.next()) != null)
+ *     process(m);
+ * r.close();
+ * </pre>
+ */
+public class RFC4765JSONReader {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	/**
+	 * The member names the reader looks for. nextName() matches a name against these where it
+	 * lies in the buffer and returns the constant, so reading a name makes no String.
+	 */
+	private static final String[] MEMBER_NAMES = {
+			"Action", "AdditionalData", "Address", "Alert", "Analyzer", "AnalyzerTime", "Assessment",
+			"Checksum", "Classification", "Confidence", "CorrelationAlert", "CreateTime", "DetectTime",
+			"File", "FileAccess", "Heartbeat", "HeartbeatInterval", "IDMEF-Message", "Impact", "Inode",
+			"Linkage", "Node", "OverflowAlert", "Process", "Reference", "Service", "Source", "Target",
+			"ToolAlert", "User", "UserId", "access-time", "address", "alertident", "algorithm",
+			"analyzerid", "arg", "buffer", "c-major-device", "c-minor-device", "category", "change-time",
+			"class", "command", "completion", "create-time", "data", "data-size", "decoy", "disk-size",
+			"env", "file-type", "fstype", "iana_protocol_name", "iana_protocol_number", "ident",
+			"interface", "ip_version", "key", "location", "major-device", "manufacturer", "meaning",
+			"messageid", "minor-device", "model", "modify-time", "name", "netmask", "number", "origin",
+			"ostype", "osversion", "path", "permission", "pid", "port", "portlist", "program", "protocol",
+			"rating", "severity", "size", "spoofed", "text", "tty", "type", "url", "value", "version",
+			"vlan-name", "vlan-num" };
+	/**
+	 * What nextName() returns for a member not in MEMBER_NAMES, which the reader skips
+	 */
+	private static final String OTHER_MEMBER = "";
+	/**
+	 * MEMBER_NAMES by hash code, open addressed, and their characters in the same slots
+	 */
+	private static final String[] NAME_TABLE = new String[512];
+	private static final char[][] NAME_CHARS = new char[NAME_TABLE.length][];
+	static {
+		for (String name : MEMBER_NAMES) {
+			int i = slot(name.hashCode());
+			while (NAME_TABLE[i] != null)
+				i = (i + 1) & (NAME_TABLE.length - 1);
+			NAME_TABLE[i] = name;
+			NAME_CHARS[i] = name.toCharArray();
+		}
+	}
+
+	private final Reader in;
+	private final char[] buf = new char[8192];
+	private int pos;
+	private int limit;
+	private final StringBuilder sb = new StringBuilder();
+	/**
+	 * A name that did not lie whole and unescaped in the buffer, copied out of sb
+	 */
+	private char[] nameChars = new char[64];
+	/**
+	 * true just after a '{' or '[', when the first member or element needs no comma before it.
+	 * One flag is enough, as it is always used up before any nested value is read.
+	 */
+	private boolean opened;
+	/**
+	 * true while the array of an {"IDMEF-Message": [...]} batch is being read
+	 */
+	private boolean inBatch;
+
+	private RFC4765Interner interner;
+	private long messageCount;
+	private final IDMEFMessage_Alert.Builder alertBuilder = new IDMEFMessage_Alert.Builder();
+	private final IDMEFMessage_Heartbeat.Builder heartbeatBuilder = new IDMEFMessage_Heartbeat.Builder();
+	private int timeOffset;
+
+
+	/**
+	 * @param in the characters to read
+	 */
+	public RFC4765JSONReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * @param in UTF-8 encoded JSON to read
+	 */
+	public RFC4765JSONReader(InputStream in) {
+		this(new InputStreamReader(in, UTF8));
+	}
+
+
+	/**
+	 * @param interner if not null, the Analyzers, Nodes, Classifications, References, Addresses
+	 * and Process arg and env lists read are interned in it, so that recurring values are shared by the
+	 * messages read (null to stop)
+	 */
+	public void setInterner(RFC4765Interner interner) {
+		this.interner = interner;
+	}
+
+
+	/**
+	 * Read the next message from the stream. The messages of an {"IDMEF-Message": [...]} batch
+	 * are returned one at a time.
+	 *
+	 * @return the next message, or null at the end of the stream
+	 * @throws IOException if the underlying Reader throws it
+	 * @throws IllegalArgumentException if the JSON is malformed or is rejected by the object model
+	 */
+	public IDMEFMessage next()
+	throws IOException, IllegalArgumentException {
+		IDMEFMessage m = null;
+		while (m == null) {
+			if (inBatch)
+				m = batchElement();
+			else if (peek() < 0)
+				return null;
+			else
+				m = readMessage(true);
+		}
+		messageCount++;
+		return m;
+	}
+
+	/**
+	 * Read the messages of the next object together: all the messages of a batch (or the rest
+	 * of one that next() is part way through), or the one message of any other object
+	 *
+	 * @return the messages, or null at the end of the stream
+	 * @throws IOException as next() does
+	 * @throws IllegalArgumentException as next() does
+	 */
+	public IDMEFMessageBatch nextBatch()
+	throws IOException, IllegalArgumentException {
+		IDMEFMessage m = next();
+		if (m == null)
+			return null;
+		ArrayList<IDMEFMessage> messages = new ArrayList<IDMEFMessage>();
+		messages.add(m);
+		while (inBatch) {
+			m = batchElement();
+			if (m != null) {
+				messages.add(m);
+				messageCount++;
+			}
+		}
+		return new IDMEFMessageBatch(messages);
+	}
+
+	/**
+	 * Close the reader and the underlying stream
+	 */
+	public void close()
+	throws IOException {
+		in.close();
+	}
+
+	/**
+	 * @return the number of messages returned by next() so far
+	 */
+	public long getMessageCount() {
+		return messageCount;
+	}
+
+
+
+	/**
+	 * Read an {"Alert": ...} or {"Heartbeat": ...} object. With envelope set, the object may
+	 * instead be an {"IDMEF-Message": [...]} batch, which is opened for batchElement() to read.
+	 *
+	 * @return the message, or null if the object was a batch
+	 */
+	private IDMEFMessage readMessage(boolean envelope)
+	throws IOException {
+		IDMEFMessage m = null;
+		boolean batch = false;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("Alert".equals(name))
+				m = readAlert();
+			else if ("Heartbeat".equals(name))
+				m = readHeartbeat();
+			else if (envelope && "IDMEF-Message".equals(name)) {
+				if (beginArray()) {
+					inBatch = true;
+					return null;
+				}
+				batch = true;
+			}
+			else
+				skipValue();
+		}
+		if ((m == null) && ! batch)
+			throw new IllegalArgumentException("JSON object is not an Alert, Heartbeat or IDMEF-Message");
+		return m;
+	}
+
+	/**
+	 * @return the next message of the open batch, or null at the end of the batch, having
+	 * read the rest of its object
+	 */
+	private IDMEFMessage batchElement()
+	throws IOException {
+		if (nextElement())
+			return readMessage(false);
+		inBatch = false;
+		while (nextName() != null)
+			skipValue();
+		return null;
+	}
+
+	private IDMEFMessage_Alert readAlert()
+	throws IOException {
+		if (nullValue())
+			return null;
+		IDMEFMessage_Alert.Builder alert = alertBuilder.reset();
+
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("messageid".equals(name))
+				alert.messageID(readString());
+			else if ("Analyzer".equals(name))
+				alert.analyzer(readAnalyzer());
+			else if ("CreateTime".equals(name))
+				alert.createTime(readTimeMillis(), timeOffset);
+			else if ("DetectTime".equals(name))
+				alert.detectTime(readTimeMillis(), timeOffset);
+			else if ("AnalyzerTime".equals(name))
+				alert.analyzerTime(readTimeMillis(), timeOffset);
+			else if ("Source".equals(name)) {
+				if (beginArray())
+					while (nextElement())
+						alert.addSource(readSource());
+			}
+			else if ("Target".equals(name)) {
+				if (beginArray())
+					while (nextElement())
+						alert.addTarget(readTarget());
+			}
+			else if ("Classification".equals(name))
+				alert.classification(readClassification());
+			else if ("Assessment".equals(name))
+				alert.assessment(readAssessment());
+			else if ("ToolAlert".equals(name))
+				alert.toolAlert(readToolAlert());
+			else if ("OverflowAlert".equals(name))
+				alert.overflowAlert(readOverflowAlert());
+			else if ("CorrelationAlert".equals(name))
+				alert.correlationAlert(readCorrelationAlert());
+			else if ("AdditionalData".equals(name)) {
+				AdditionalData[] additionalData = readAdditionalData();
+				if (additionalData != null)
+					for (AdditionalData ad : additionalData)
+						alert.addAdditionalData(ad);
+			}
+			else
+				skipValue();
+		}
+		return alert.build();
+	}
+
+	private IDMEFMessage_Heartbeat readHeartbeat()
+	throws IOException {
+		if (nullValue())
+			return null;
+		IDMEFMessage_Heartbeat.Builder heartbeat = heartbeatBuilder.reset();
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("messageid".equals(name))
+				heartbeat.messageID(readString());
+			else if ("Analyzer".equals(name))
+				heartbeat.analyzer(readAnalyzer());
+			else if ("CreateTime".equals(name))
+				heartbeat.createTime(readTimeMillis(), timeOffset);
+			else if ("HeartbeatInterval".equals(name))
+				heartbeat.heartbeatInterval(readInt(-1));
+			else if ("AnalyzerTime".equals(name))
+				heartbeat.analyzerTime(readTimeMillis(), timeOffset);
+			else if ("AdditionalData".equals(name)) {
+				AdditionalData[] additionalData = readAdditionalData();
+				if (additionalData != null)
+					for (AdditionalData ad : additionalData)
+						heartbeat.addAdditionalData(ad);
+			}
+			else
+				skipValue();
+		}
+		return heartbeat.build();
+	}
+
+	private Analyzer intern(Analyzer analyzer) {
+		return (interner == null) ? analyzer : interner.intern(analyzer);
+	}
+
+	private Classification intern(Classification classification) {
+		return (interner == null) ? classification : interner.intern(classification);
+	}
+
+	private Reference intern(Reference reference) {
+		return (interner == null) ? reference : interner.intern(reference);
+	}
+
+	private Node intern(Node node) {
+		return (interner == null) ? node : interner.intern(node);
+	}
+
+	private Address intern(Address address) {
+		return (interner == null) ? address : interner.intern(address);
+	}
+
+	private Process intern(Process process) {
+		return (interner == null) ? process : interner.intern(process);
+	}
+
+
+	private Analyzer readAnalyzer()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String analyzerID = null;
+		String name = null;
+		String manufacturer = null;
+		String model = null;
+		String version = null;
+		String aclass = null;
+		String ostype = null;
+		String osversion = null;
+		Node node = null;
+		Process process = null;
+		Analyzer originalAnalyzer = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("analyzerid".equals(member))
+				analyzerID = readString();
+			else if ("name".equals(member))
+				name = readString();
+			else if ("manufacturer".equals(member))
+				manufacturer = readString();
+			else if ("model".equals(member))
+				model = readString();
+			else if ("version".equals(member))
+				version = readString();
+			else if ("class".equals(member))
+				aclass = readString();
+			else if ("ostype".equals(member))
+				ostype = readString();
+			else if ("osversion".equals(member))
+				osversion = readString();
+			else if ("Node".equals(member))
+				node = readNode();
+			else if ("Process".equals(member))
+				process = readProcess();
+			else if ("Analyzer".equals(member))
+				originalAnalyzer = readAnalyzer();
+			else
+				skipValue();
+		}
+		return intern(new Analyzer(analyzerID, name, manufacturer, model, version, aclass, ostype, osversion, node, process, originalAnalyzer));
+	}
+
+	private Classification readClassification()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String ident = null;
+		String text = null;
+		ArrayList<Reference> reference = null;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("ident".equals(name))
+				ident = readString();
+			else if ("text".equals(name))
+				text = readString();
+			else if ("Reference".equals(name)) {
+				if (beginArray()) {
+					reference = new ArrayList<Reference>(2);
+					while (nextElement())
+						reference.add(readReference());
+				}
+			}
+			else
+				skipValue();
+		}
+		return intern(new Classification(ident, text, (reference == null) ? null : reference.toArray(new Reference[reference.size()])));
+	}
+
+	private Reference readReference()
+	throws IOException {
+		Reference.Origin origin = null;
+		String meaning = null;
+		String name = null;
+		String url = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("origin".equals(member))
+				origin = RFC4765EnumCodes.fromKeyword(Reference.Origin.class, readString());
+			else if ("meaning".equals(member))
+				meaning = readString();
+			else if ("name".equals(member))
+				name = readString();
+			else if ("url".equals(member))
+				url = readString();
+			else
+				skipValue();
+		}
+		try {
+			return intern(new Reference(origin, meaning, name, (url == null) ? null : new URI(url)));
+		}
+		catch (URISyntaxException use) {
+			throw new IllegalArgumentException("Reference url "+url+" is not a valid URI: "+use.getMessage());
+		}
+	}
+
+	private Source readSource()
+	throws IOException {
+		String ident = null;
+		Source.SpoofedRank spoofed = null;
+		String iface = null;
+		Node node = null;
+		User user = null;
+		Process process = null;
+		Service service = null;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("ident".equals(name))
+				ident = readString();
+			else if ("spoofed".equals(name))
+				spoofed = RFC4765EnumCodes.fromKeyword(Source.SpoofedRank.class, readString());
+			else if ("interface".equals(name))
+				iface = readString();
+			else if ("Node".equals(name))
+				node = readNode();
+			else if ("User".equals(name))
+				user = readUser();
+			else if ("Process".equals(name))
+				process = readProcess();
+			else if ("Service".equals(name))
+				service = readService();
+			else
+				skipValue();
+		}
+		return new Source(ident, spoofed, iface, node, user, process, service);
+	}
+
+	private Target readTarget()
+	throws IOException {
+		String ident = null;
+		Target.DecoyRank decoy = null;
+		String iface = null;
+		Node node = null;
+		User user = null;
+		Process process = null;
+		Service service = null;
+		File file = null;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("ident".equals(name))
+				ident = readString();
+			else if ("decoy".equals(name))
+				decoy = RFC4765EnumCodes.fromKeyword(Target.DecoyRank.class, readString());
+			else if ("interface".equals(name))
+				iface = readString();
+			else if ("Node".equals(name))
+				node = readNode();
+			else if ("User".equals(name))
+				user = readUser();
+			else if ("Process".equals(name))
+				process = readProcess();
+			else if ("Service".equals(name))
+				service = readService();
+			else if ("File".equals(name))
+				file = readFile();
+			else
+				skipValue();
+		}
+		return new Target(ident, decoy, iface, node, user, process, service, file);
+	}
+
+	private Node readNode()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String ident = null;
+		Node.Category category = null;
+		String location = null;
+		String name = null;
+		ArrayList<Address> address = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("ident".equals(member))
+				ident = readString();
+			else if ("category".equals(member))
+				category = RFC4765EnumCodes.fromKeyword(Node.Category.class, readString());
+			else if ("location".equals(member))
+				location = readString();
+			else if ("name".equals(member))
+				name = readString();
+			else if ("Address".equals(member)) {
+				if (beginArray()) {
+					address = new ArrayList<Address>(2);
+					while (nextElement())
+						address.add(readAddress());
+				}
+			}
+			else
+				skipValue();
+		}
+		return intern(new Node(ident, category, location, name, (address == null) ? null : address.toArray(new Address[address.size()])));
+	}
+
+	private Address readAddress()
+	throws IOException {
+		String ident = null;
+		Address.Category category = null;
+		String vlanName = null;
+		String vlanNum = null;
+		String address = null;
+		String netmask = null;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("ident".equals(name))
+				ident = readString();
+			else if ("category".equals(name))
+				category = RFC4765EnumCodes.fromKeyword(Address.Category.class, readString());
+			else if ("vlan-name".equals(name))
+				vlanName = readString();
+			else if ("vlan-num".equals(name))
+				vlanNum = readString();
+			else if ("address".equals(name))
+				address = readString();
+			else if ("netmask".equals(name))
+				netmask = readString();
+			else
+				skipValue();
+		}
+		// Address takes a network as "address/netmask", and splits it itself; other categories have no netmask
+		if ((netmask != null) && (address != null)
+				&& ((category == Address.Category.IPV4_NET) || (category == Address.Category.IPV4_NET_MASK)
+						|| (category == Address.Category.IPV6_NET) || (category == Address.Category.IPV6_NET_MASK)))
+			address = address+"/"+netmask;
+		return intern(new Address(ident, address, category, vlanName, vlanNum, false));
+	}
+
+	private User readUser()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String ident = null;
+		User.Category category = null;
+		ArrayList<UserId> userid = new ArrayList<UserId>(1);
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("ident".equals(name))
+				ident = readString();
+			else if ("category".equals(name))
+				category = RFC4765EnumCodes.fromKeyword(User.Category.class, readString());
+			else if ("UserId".equals(name)) {
+				if (beginArray())
+					while (nextElement())
+						userid.add(readUserId());
+			}
+			else
+				skipValue();
+		}
+		return new User(ident, category, userid.toArray(new UserId[userid.size()]));
+	}
+
+	private UserId readUserId()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String ident = null;
+		UserId.Type type = null;
+		String tty = null;
+		String name = null;
+		String number = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("ident".equals(member))
+				ident = readString();
+			else if ("type".equals(member))
+				type = RFC4765EnumCodes.fromKeyword(UserId.Type.class, readString());
+			else if ("tty".equals(member))
+				tty = readString();
+			else if ("name".equals(member))
+				name = readString();
+			else if ("number".equals(member))
+				number = readString();
+			else
+				skipValue();
+		}
+		return new UserId(ident, type, tty, name, number);
+	}
+
+	private Process readProcess()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String ident = null;
+		String name = null;
+		int pid = 0;
+		String path = null;
+		String[] arg = null;
+		String[] env = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("ident".equals(member))
+				ident = readString();
+			else if ("name".equals(member))
+				name = readString();
+			else if ("pid".equals(member))
+				pid = readInt(0);
+			else if ("path".equals(member))
+				path = readString();
+			else if ("arg".equals(member))
+				arg = readStrings();
+			else if ("env".equals(member))
+				env = readStrings();
+			else
+				skipValue();
+		}
+		return intern(new Process(ident, name, pid, path, arg, env));
+	}
+
+	private Service readService()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String ident = null;
+		int ipVersion = 0;
+		int ianaProtocolNumber = 0;
+		String ianaProtocolName = null;
+		String name = null;
+		int port = 0;
+		String portlist = null;
+		String protocol = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("ident".equals(member))
+				ident = readString();
+			else if ("ip_version".equals(member))
+				ipVersion = readInt(0);
+			else if ("iana_protocol_number".equals(member))
+				ianaProtocolNumber = readInt(0);
+			else if ("iana_protocol_name".equals(member))
+				ianaProtocolName = readString();
+			else if ("name".equals(member))
+				name = readString();
+			else if ("port".equals(member))
+				port = readInt(0);
+			else if ("portlist".equals(member))
+				portlist = readString();
+			else if ("protocol".equals(member))
+				protocol = readString();
+			else
+				skipValue();
+		}
+		return new Service(ident, ipVersion, ianaProtocolNumber, ianaProtocolName, name, port, portlist, protocol);
+	}
+
+	private File readFile()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String ident = null;
+		File.Category category = null;
+		File.FSType fsType = null;
+		String fileType = null;
+		String name = null;
+		String path = null;
+		DateTime createTime = null;
+		DateTime modifyTime = null;
+		DateTime accessTime = null;
+		int dataSize = -1;
+		int diskSize = -1;
+		ArrayList<FileAccess> fileAccess = null;
+		ArrayList<Linkage> linkage = null;
+		Inode inode = null;
+		ArrayList<Checksum> checksum = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("ident".equals(member))
+				ident = readString();
+			else if ("category".equals(member))
+				category = RFC4765EnumCodes.fromKeyword(File.Category.class, readString());
+			else if ("fstype".equals(member))
+				fsType = RFC4765EnumCodes.fromKeyword(File.FSType.class, readString());
+			else if ("file-type".equals(member))
+				fileType = readString();
+			else if ("name".equals(member))
+				name = readString();
+			else if ("path".equals(member))
+				path = readString();
+			else if ("create-time".equals(member))
+				createTime = readTime();
+			else if ("modify-time".equals(member))
+				modifyTime = readTime();
+			else if ("access-time".equals(member))
+				accessTime = readTime();
+			else if ("data-size".equals(member))
+				dataSize = readInt(-1);
+			else if ("disk-size".equals(member))
+				diskSize = readInt(-1);
+			else if ("FileAccess".equals(member)) {
+				if (beginArray()) {
+					fileAccess = new ArrayList<FileAccess>(2);
+					while (nextElement())
+						fileAccess.add(readFileAccess());
+				}
+			}
+			else if ("Linkage".equals(member)) {
+				if (beginArray()) {
+					linkage = new ArrayList<Linkage>(2);
+					while (nextElement())
+						linkage.add(readLinkage());
+				}
+			}
+			else if ("Inode".equals(member))
+				inode = readInode();
+			else if ("Checksum".equals(member)) {
+				if (beginArray()) {
+					checksum = new ArrayList<Checksum>(2);
+					while (nextElement())
+						checksum.add(readChecksum());
+				}
+			}
+			else
+				skipValue();
+		}
+		return new File(ident, category, fsType, fileType, name, path, createTime, modifyTime, accessTime, dataSize, diskSize,
+				(fileAccess == null) ? null : fileAccess.toArray(new FileAccess[fileAccess.size()]),
+				(linkage == null) ? null : linkage.toArray(new Linkage[linkage.size()]),
+				inode,
+				(checksum == null) ? null : checksum.toArray(new Checksum[checksum.size()]));
+	}
+
+	private FileAccess readFileAccess()
+	throws IOException {
+		UserId userId = null;
+		ArrayList<FileAccess.Permission> permission = new ArrayList<FileAccess.Permission>(4);
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("UserId".equals(name))
+				userId = readUserId();
+			else if ("permission".equals(name)) {
+				if (beginArray())
+					while (nextElement())
+						permission.add(RFC4765EnumCodes.fromKeyword(FileAccess.Permission.class, readString()));
+			}
+			else
+				skipValue();
+		}
+		return new FileAccess(userId, permission.toArray(new FileAccess.Permission[permission.size()]));
+	}
+
+	private Linkage readLinkage()
+	throws IOException {
+		Linkage.Category category = null;
+		String name = null;
+		String path = null;
+		File file = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("category".equals(member))
+				category = RFC4765EnumCodes.fromKeyword(Linkage.Category.class, readString());
+			else if ("name".equals(member))
+				name = readString();
+			else if ("path".equals(member))
+				path = readString();
+			else if ("File".equals(member))
+				file = readFile();
+			else
+				skipValue();
+		}
+		return new Linkage(category, name, path, file);
+	}
+
+	private Inode readInode()
+	throws IOException {
+		if (nullValue())
+			return null;
+		DateTime changeTime = null;
+		int number = -1;
+		int majorDevice = -1;
+		int minorDevice = -1;
+		int cMajorDevice = -1;
+		int cMinorDevice = -1;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("change-time".equals(name))
+				changeTime = readTime();
+			else if ("number".equals(name))
+				number = readInt(-1);
+			else if ("major-device".equals(name))
+				majorDevice = readInt(-1);
+			else if ("minor-device".equals(name))
+				minorDevice = readInt(-1);
+			else if ("c-major-device".equals(name))
+				cMajorDevice = readInt(-1);
+			else if ("c-minor-device".equals(name))
+				cMinorDevice = readInt(-1);
+			else
+				skipValue();
+		}
+		return new Inode(changeTime, number, majorDevice, minorDevice, cMajorDevice, cMinorDevice);
+	}
+
+	private Checksum readChecksum()
+	throws IOException {
+		Checksum.Algorithm algorithm = null;
+		String value = null;
+		String key = null;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("algorithm".equals(name))
+				algorithm = RFC4765EnumCodes.fromKeyword(Checksum.Algorithm.class, readString());
+			else if ("value".equals(name))
+				value = readString();
+			else if ("key".equals(name))
+				key = readString();
+			else
+				skipValue();
+		}
+		return new Checksum(algorithm, value, key);
+	}
+
+	private Assessment readAssessment()
+	throws IOException {
+		if (nullValue())
+			return null;
+		Impact impact = null;
+		Action action = null;
+		Confidence confidence = null;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("Impact".equals(name)) {
+				if (nullValue())
+					continue;
+				Impact.Severity severity = null;
+				Impact.Completion completion = null;
+				Impact.Type type = null;
+				beginObject();
+				String member;
+				while ((member = nextName()) != null) {
+					if ("severity".equals(member))
+						severity = RFC4765EnumCodes.fromKeyword(Impact.Severity.class, readString());
+					else if ("completion".equals(member))
+						completion = RFC4765EnumCodes.fromKeyword(Impact.Completion.class, readString());
+					else if ("type".equals(member))
+						type = RFC4765EnumCodes.fromKeyword(Impact.Type.class, readString());
+					else
+						skipValue();
+				}
+				impact = new Impact(severity, completion, type);
+			}
+			else if ("Action".equals(name)) {
+				if (nullValue())
+					continue;
+				Action.Category category = null;
+				beginObject();
+				String member;
+				while ((member = nextName()) != null) {
+					if ("category".equals(member))
+						category = RFC4765EnumCodes.fromKeyword(Action.Category.class, readString());
+					else
+						skipValue();
+				}
+				action = new Action(category);
+			}
+			else if ("Confidence".equals(name)) {
+				if (nullValue())
+					continue;
+				Confidence.Rank rank = null;
+				double value = Double.NaN;
+				beginObject();
+				String member;
+				while ((member = nextName()) != null) {
+					if ("rating".equals(member))
+						rank = RFC4765EnumCodes.fromKeyword(Confidence.Rank.class, readString());
+					else if ("value".equals(member))
+						value = readDouble();
+					else
+						skipValue();
+				}
+				if (rank == Confidence.Rank.NUMERIC)
+					confidence = new Confidence(value);
+				else
+					confidence = new Confidence((rank == null) ? Confidence.Rank.LOW : rank);
+			}
+			else
+				skipValue();
+		}
+		return new Assessment(impact, action, confidence);
+	}
+
+	private ToolAlert readToolAlert()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String name = null;
+		String command = null;
+		String[] alertIdent = null;
+		String[] analyzerID = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("name".equals(member))
+				name = readString();
+			else if ("command".equals(member))
+				command = readString();
+			else if ("alertident".equals(member))
+				alertIdent = readStrings();
+			else if ("analyzerid".equals(member))
+				analyzerID = readStrings();
+			else
+				skipValue();
+		}
+		return new ToolAlert(name, command, alertIdent, analyzerID);
+	}
+
+	private OverflowAlert readOverflowAlert()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String program = null;
+		int size = -1;
+		byte[] buffer = null;
+		beginObject();
+		String name;
+		while ((name = nextName()) != null) {
+			if ("program".equals(name))
+				program = readString();
+			else if ("size".equals(name))
+				size = readInt(-1);
+			else if ("buffer".equals(name)) {
+				String base64 = readString();
+				if (base64 != null)
+					buffer = RFC4765DataTypes.decodeBase64(base64);
+			}
+			else
+				skipValue();
+		}
+		return new OverflowAlert(program, size, buffer);
+	}
+
+	private CorrelationAlert readCorrelationAlert()
+	throws IOException {
+		if (nullValue())
+			return null;
+		String name = null;
+		String[] alertIdent = null;
+		String[] analyzerID = null;
+		beginObject();
+		String member;
+		while ((member = nextName()) != null) {
+			if ("name".equals(member))
+				name = readString();
+			else if ("alertident".equals(member))
+				alertIdent = readStrings();
+			else if ("analyzerid".equals(member))
+				analyzerID = readStrings();
+			else
+				skipValue();
+		}
+		return new CorrelationAlert(name, alertIdent, analyzerID);
+	}
+
+	private AdditionalData[] readAdditionalData()
+	throws IOException {
+		if (! beginArray())
+			return null;
+		ArrayList<AdditionalData> additionalData = new ArrayList<AdditionalData>(4);
+		while (nextElement()) {
+			AdditionalData.Type type = null;
+			String meaning = null;
+			AdditionalData ad = null;
+			beginObject();
+			String name;
+			while ((name = nextName()) != null) {
+				if ("type".equals(name))
+					type = RFC4765EnumCodes.fromKeyword(AdditionalData.Type.class, readString());
+				else if ("meaning".equals(name)) {
+					meaning = readString();
+					if (ad != null)
+						ad = new AdditionalData(ad, meaning);
+				}
+				else if ("data".equals(name)) {
+					// the type member comes first as written, but may not in JSON from elsewhere
+					if (type == null)
+						throw new IllegalArgumentException("AdditionalData 'type' must come before 'data'");
+					ad = readAdditionalDataValue(type, meaning);
+				}
+				else
+					skipValue();
+			}
+			// no type, or no data: the constructor says which is missing
+			additionalData.add((ad != null) ? ad : new AdditionalData(type, null, meaning));
+		}
+		return additionalData.toArray(new AdditionalData[additionalData.size()]);
+	}
+
+	/**
+	 * @return the AdditionalData of the value, or null if it is null
+	 */
+	private AdditionalData readAdditionalDataValue(AdditionalData.Type type, String meaning)
+	throws IOException {
+		if (nullValue())
+			return null;
+		switch (type) {
+		case BOOLEAN:
+			if (peek() == 't') {
+				literal("true");
+				return new AdditionalData(true, meaning);
+			}
+			literal("false");
+			return new AdditionalData(false, meaning);
+		case BYTE:
+			return new AdditionalData((byte) readInt(0), meaning);
+		case CHARACTER:
+			String c = readString();
+			if (c.length() != 1)
+				throw new IllegalArgumentException("AdditionalData character value must be one character: "+c);
+			return new AdditionalData(c.charAt(0), meaning);
+		case DATE_TIME:
+			return new AdditionalData(type, readTime(), meaning);
+		case INTEGER:
+			return new AdditionalData(readInt(0), meaning);
+		case PORTLIST:
+			int[] ports = new int[8];
+			int n = 0;
+			if (beginArray())
+				while (nextElement()) {
+					if (n == ports.length)
+						ports = Arrays.copyOf(ports, n * 2);
+					ports[n++] = readInt(0);
+				}
+			return new AdditionalData(new PortSet(Arrays.copyOf(ports, n)), meaning);
+		case REAL:
+			return new AdditionalData(readDouble(), meaning);
+		case BYTE_STRING:
+			return new AdditionalData(RFC4765DataTypes.decodeBase64(readString()), meaning);
+		default:
+			// NTPSTAMP, STRING, XMLTEXT
+			return new AdditionalData(type, readString(), meaning);
+		}
+	}
+
+
+
+	/**
+	 * @return a DATETIME string member, or null
+	 */
+	private DateTime readTime()
+	throws IOException {
+		if (! readText())
+			return null;
+		return new DateTime(RFC4765DataTypes.parseDateTimeMillis(sb), DateTimeZone.forOffsetMillis(RFC4765DataTypes.parseDateTimeOffset(sb)));
+	}
+
+	/**
+	 * Read a message time without making a String or a DateTime: the milliseconds are returned
+	 * (IDMEFMessage.NO_TIME for null) and the zone offset left in timeOffset, so
+	 * createTime(readTimeMillis(), timeOffset) sees both
+	 */
+	private long readTimeMillis()
+	throws IOException {
+		if (! readText()) {
+			timeOffset = 0;
+			return IDMEFMessage.NO_TIME;
+		}
+		long millis = RFC4765DataTypes.parseDateTimeMillis(sb);
+		timeOffset = RFC4765DataTypes.parseDateTimeOffset(sb);
+		return millis;
+	}
+
+	/**
+	 * @return an array of strings (elements may be null), or null
+	 */
+	private String[] readStrings()
+	throws IOException {
+		if (! beginArray())
+			return null;
+		ArrayList<String> strings = new ArrayList<String>(4);
+		while (nextElement())
+			strings.add(readString());
+		return strings.toArray(new String[strings.size()]);
+	}
+
+	/**
+	 * @param absent the value to return for a null
+	 */
+	private int readInt(int absent)
+	throws IOException {
+		if (nullValue())
+			return absent;
+		int c = peek();
+		boolean negative = (c == '-');
+		if (negative)
+			pos++;
+		long v = 0;
+		int digits = 0;
+		while (true) {
+			if ((pos == limit) && ! fill())
+				break;
+			c = buf[pos];
+			if ((c < '0') || (c > '9'))
+				break;
+			v = v * 10 + (c - '0');
+			if (v > 0x80000000L)
+				throw new IllegalArgumentException("JSON integer out of range");
+			digits++;
+			pos++;
+		}
+		if ((digits == 0) || ((c == '.') || (c == 'e') || (c == 'E')))
+			throw new IllegalArgumentException("Expected a JSON integer");
+		if (negative)
+			v = -v;
+		if (v > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("JSON integer out of range");
+		return (int) v;
+	}
+
+	/**
+	 * @return a JSON number, or a string holding a number (as written for NaN and the infinities)
+	 */
+	private double readDouble()
+	throws IOException {
+		if (nullValue())
+			return Double.NaN;
+		if (peek() == '"')
+			return parseDouble(readString());
+		sb.setLength(0);
+		while (true) {
+			if ((pos == limit) && ! fill())
+				break;
+			char c = buf[pos];
+			if (((c < '0') || (c > '9')) && (c != '-') && (c != '+') && (c != '.') && (c != 'e') && (c != 'E'))
+				break;
+			sb.append(c);
+			pos++;
+		}
+		return parseDouble(sb.toString());
+	}
+
+	private static double parseDouble(String s) {
+		try {
+			return Double.parseDouble(s);
+		}
+		catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("Expected a JSON number: "+s);
+		}
+	}
+
+	/**
+	 * @return a string value, or null for a JSON null
+	 */
+	private String readString()
+	throws IOException {
+		if (nullValue())
+			return null;
+		expect('"');
+		sb.setLength(0);
+		while (true) {
+			if ((pos == limit) && ! fill())
+				throw new IllegalArgumentException("JSON ends inside a string");
+			// copy runs of plain characters in one go
+			int runStart = pos;
+			while ((pos < limit) && (buf[pos] != '"') && (buf[pos] != '\\'))
+				pos++;
+			if (pos == limit) {
+				sb.append(buf, runStart, pos - runStart);
+				continue;
+			}
+			char c = buf[pos];
+			if ((c == '"') && (sb.length() == 0)) {
+				pos++;
+				return new String(buf, runStart, pos - 1 - runStart);
+			}
+			sb.append(buf, runStart, pos - runStart);
+			pos++;
+			if (c == '"')
+				return sb.toString();
+			sb.append(readEscape());
+		}
+	}
+
+	/**
+	 * Read a string value into sb without making a String
+	 *
+	 * @return false if the value is null
+	 */
+	private boolean readText()
+	throws IOException {
+		if (nullValue())
+			return false;
+		expect('"');
+		sb.setLength(0);
+		while (true) {
+			if ((pos == limit) && ! fill())
+				throw new IllegalArgumentException("JSON ends inside a string");
+			int runStart = pos;
+			while ((pos < limit) && (buf[pos] != '"') && (buf[pos] != '\\'))
+				pos++;
+			sb.append(buf, runStart, pos - runStart);
+			if (pos == limit)
+				continue;
+			char c = buf[pos++];
+			if (c == '"')
+				return true;
+			sb.append(readEscape());
+		}
+	}
+
+	private char readEscape()
+	throws IOException {
+		int c = read();
+		switch (c) {
+		case '"': return '"';
+		case '\\': return '\\';
+		case '/': return '/';
+		case 'b': return '\b';
+		case 'f': return '\f';
+		case 'n': return '\n';
+		case 'r': return '\r';
+		case 't': return '\t';
+		case 'u':
+			int v = 0;
+			for (int i = 0; i < 4; i++) {
+				int h = Character.digit(read(), 16);
+				if (h < 0)
+					throw new IllegalArgumentException("Bad \\u escape in JSON string");
+				v = (v << 4) | h;
+			}
+			return (char) v;
+		default:
+			throw new IllegalArgumentException("Bad escape in JSON string");
+		}
+	}
+
+	/**
+	 * Skip a value of any type
+	 */
+	private void skipValue()
+	throws IOException {
+		int c = peek();
+		if (c == '"')
+			readString();
+		else if (c == '{') {
+			beginObject();
+			while (nextName() != null)
+				skipValue();
+		}
+		else if (c == '[') {
+			beginArray();
+			while (nextElement())
+				skipValue();
+		}
+		else {
+			// number, true, false or null
+			while (true) {
+				if ((pos == limit) && ! fill())
+					break;
+				c = buf[pos];
+				if ((c == ',') || (c == '}') || (c == ']') || (c <= ' '))
+					break;
+				pos++;
+			}
+		}
+	}
+
+
+	/**
+	 * Consume a JSON null if it is next
+	 *
+	 * @return true if there was a null
+	 */
+	private boolean nullValue()
+	throws IOException {
+		if (peek() != 'n')
+			return false;
+		literal("null");
+		return true;
+	}
+
+	private void literal(String word)
+	throws IOException {
+		for (int i = 0; i < word.length(); i++)
+			if (read() != word.charAt(i))
+				throw new IllegalArgumentException("Expected JSON "+word);
+	}
+
+	private void beginObject()
+	throws IOException {
+		expect('{');
+		opened = true;
+	}
+
+	/**
+	 * Move to the next member of the current object
+	 *
+	 * @return the member's name, one of MEMBER_NAMES or OTHER_MEMBER, or null at the end of the object
+	 */
+	private String nextName()
+	throws IOException {
+		int c = read(peek());
+		if (c == '}') {
+			opened = false;
+			return null;
+		}
+		if (opened)
+			opened = false;
+		else if (c == ',')
+			c = read(peek());
+		else
+			throw new IllegalArgumentException("Expected ',' or '}' in JSON object");
+		if (c != '"')
+			throw new IllegalArgumentException("Expected a member name in JSON object");
+		String name = memberName();
+		expect(':');
+		return name;
+	}
+
+	/**
+	 * Read a member name, its opening quote already read
+	 *
+	 * @return the name as one of MEMBER_NAMES, or OTHER_MEMBER
+	 */
+	private String memberName()
+	throws IOException {
+		// nearly every name lies whole in the buffer with no escapes: hash and match it there
+		int h = 0;
+		int end = pos;
+		while (end < limit) {
+			char c = buf[end];
+			if ((c == '"') || (c == '\\'))
+				break;
+			h = 31 * h + c;
+			end++;
+		}
+		if ((end < limit) && (buf[end] == '"')) {
+			String name = lookupName(h, buf, pos, end);
+			pos = end + 1;
+			return name;
+		}
+		pos--;
+		readText();
+		int length = sb.length();
+		if (nameChars.length < length)
+			nameChars = new char[length];
+		sb.getChars(0, length, nameChars, 0);
+		h = 0;
+		for (int i = 0; i < length; i++)
+			h = 31 * h + nameChars[i];
+		return lookupName(h, nameChars, 0, length);
+	}
+
+	/**
+	 * @param h the String hash code of chars[start, end)
+	 * @return the one of MEMBER_NAMES spelled by chars[start, end), or OTHER_MEMBER
+	 */
+	private static String lookupName(int h, char[] chars, int start, int end) {
+		int length = end - start;
+		for (int i = slot(h); NAME_TABLE[i] != null; i = (i + 1) & (NAME_TABLE.length - 1)) {
+			char[] name = NAME_CHARS[i];
+			if (name.length != length)
+				continue;
+			int j = 0;
+			while ((j < length) && (name[j] == chars[start + j]))
+				j++;
+			if (j == length)
+				return NAME_TABLE[i];
+		}
+		return OTHER_MEMBER;
+	}
+
+	/**
+	 * @return the NAME_TABLE slot to start looking for a name with String hash code h
+	 */
+	private static int slot(int h) {
+		return (h ^ (h >>> 9)) & (NAME_TABLE.length - 1);
+	}
+
+	/**
+	 * Start an array value
+	 *
+	 * @return false if the value is null rather than an array
+	 */
+	private boolean beginArray()
+	throws IOException {
+		if (nullValue())
+			return false;
+		expect('[');
+		opened = true;
+		return true;
+	}
+
+	/**
+	 * Move to the next element of the current array
+	 *
+	 * @return false at the end of the array
+	 */
+	private boolean nextElement()
+	throws IOException {
+		int c = peek();
+		if (c == ']') {
+			pos++;
+			opened = false;
+			return false;
+		}
+		if (opened) {
+			opened = false;
+			return true;
+		}
+		if (c == ',') {
+			pos++;
+			return true;
+		}
+		throw new IllegalArgumentException("Expected ',' or ']' in JSON array");
+	}
+
+	private void expect(char expected)
+	throws IOException {
+		if (read(peek()) != expected)
+			throw new IllegalArgumentException("Expected '"+expected+"' in JSON");
+	}
+
+	/**
+	 * Consume the character that peek() returned
+	 */
+	private int read(int peeked) {
+		if (peeked >= 0)
+			pos++;
+		return peeked;
+	}
+
+	private int read()
+	throws IOException {
+		if ((pos == limit) && ! fill())
+			throw new IllegalArgumentException("JSON ends unexpectedly");
+		return buf[pos++];
+	}
+
+	/**
+	 * @return the next character that is not whitespace, without consuming it, or -1 at the end of input
+	 */
+	private int peek()
+	throws IOException {
+		while (true) {
+			if ((pos == limit) && ! fill())
+				return -1;
+			char c = buf[pos];
+			if ((c != ' ') && (c != '\n') && (c != '\r') && (c != '\t'))
+				return c;
+			pos++;
+		}
+	}
+
+	private boolean fill()
+	throws IOException {
+		int n = in.read(buf, 0, buf.length);
+		if (n <= 0)
+			return false;
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+}
@@ -0,0 +1,850 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import org.joda.time.DateTime;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.CorrelationAlert;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_CorrelationAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.IDMEFMessage_OverflowAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_ToolAlert;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.NtpStamp;
+import com.cr_labs.rfc4765.OverflowAlert;
+import com.cr_labs.rfc4765.PortSet;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Writes IDMEFMessage objects as JSON, one message per line, streaming straight into an
+ * Appendable (or an OutputStream, as UTF-8), with no reflection and no intermediate tree.
+ *
+ * <p>Each message is an object with a single member, "Alert" or "Heartbeat". Member names are
+ * the element and attribute names of the RFC's XML schema (as written by RFC4765XMLWriter);
+ * elements that may repeat (Source, Target, Reference, Address, UserId, arg, AdditionalData...)
+ * are arrays. Enumerated values are the RFC keywords, times are DATETIME strings and
+ * AdditionalData values are JSON numbers, booleans, strings or (for portlists) arrays of numbers.
+ * As with the XML writer, values are RFC-mapped (no X_* extension values).
+ *
+ * <p>writeBatch() writes many messages as one object, {"IDMEF-Message": [...]}, whose array
+ * holds the message objects.
+ *
+ * <p>With omitNulls set, absent optional fields are left out; otherwise they are written as null,
+ * so every message of a kind has the same members.
+ *
+ * <p>A writer is not thread safe; use one per thread or per output stream.
+ *
+ * <pre>
+ * RFC4765JSONWriter w = new RFC4765JSONWriter(socketOutputStream, true);
+ * w.writeMessage(alert);
+ * w.flush();
+ * </pre>
+ */
+public class RFC4765JSONWriter {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Appendable out;
+	private final boolean omitNulls;
+
+	/**
+	 * true when the next member of the current object is its first, so needs no comma
+	 */
+	private boolean first;
+
+
+	/**
+	 * Write messages into any Appendable (StringBuilder, Writer, CharBuffer...)
+	 *
+	 * @param out where to write
+	 * @param omitNulls true to leave absent optional fields out, false to write them as null
+	 */
+	public RFC4765JSONWriter(Appendable out, boolean omitNulls) {
+		this.out = out;
+		this.omitNulls = omitNulls;
+	}
+
+	/**
+	 * Write messages as UTF-8 to an OutputStream. Output is buffered; call flush() to push it to the stream.
+	 *
+	 * @param os where to write
+	 * @param omitNulls true to leave absent optional fields out, false to write them as null
+	 */
+	public RFC4765JSONWriter(OutputStream os, boolean omitNulls) {
+		this(new BufferedWriter(new OutputStreamWriter(os, UTF8)), omitNulls);
+	}
+
+
+	/**
+	 * Write one message as a JSON object followed by a newline
+	 *
+	 * @param message the alert or heartbeat to write
+	 * @throws IOException if the underlying Appendable throws it
+	 * @throws IllegalArgumentException if message is not one of the IDMEFMessage_* classes
+	 */
+	public void writeMessage(IDMEFMessage message)
+	throws IOException, IllegalArgumentException {
+		writeBody(message);
+		out.append('\n');
+	}
+
+	/**
+	 * Write a batch as one {"IDMEF-Message": [...]} object, holding the message objects
+	 * in order, followed by a newline
+	 *
+	 * @param batch the alerts and heartbeats to write
+	 * @throws IOException if the underlying Appendable throws it
+	 * @throws IllegalArgumentException if a message is not one of the IDMEFMessage_* classes
+	 */
+	public void writeBatch(IDMEFMessageBatch batch)
+	throws IOException, IllegalArgumentException {
+		out.append("{\"IDMEF-Message\":[");
+		IDMEFMessage[] messages = batch.getMessages();
+		for (int i = 0; i < messages.length; i++) {
+			if (i > 0)
+				out.append(',');
+			writeBody(messages[i]);
+		}
+		out.append("]}\n");
+	}
+
+	/**
+	 * Flush the underlying Appendable, if it can be flushed
+	 */
+	public void flush()
+	throws IOException {
+		if (out instanceof Flushable)
+			((Flushable) out).flush();
+	}
+
+
+
+	private void writeBody(IDMEFMessage message)
+	throws IOException, IllegalArgumentException {
+		if (message instanceof IDMEFMessage_Alert) {
+			out.append("{\"Alert\":");
+			writeAlert((IDMEFMessage_Alert) message);
+		}
+		else if (message instanceof IDMEFMessage_Heartbeat) {
+			out.append("{\"Heartbeat\":");
+			writeHeartbeat((IDMEFMessage_Heartbeat) message);
+		}
+		else
+			throw new IllegalArgumentException("Cannot write IDMEFMessage of class "+message.getClass().getName());
+		out.append('}');
+	}
+
+	private void writeAlert(IDMEFMessage_Alert a)
+	throws IOException {
+		begin();
+		field("messageid", a.getMessageID());
+		name("Analyzer");
+		writeAnalyzer(a.getAnalyzer());
+		timeField("CreateTime", a.getCreateTimeMillis(), a.getCreateTimeOffset());
+		timeField("DetectTime", a.getDetectTimeMillis(), a.getDetectTimeOffset());
+		timeField("AnalyzerTime", a.getAnalyzerTimeMillis(), a.getAnalyzerTimeOffset());
+		Source[] source = a.getSource();
+		if (nonEmpty(source, "Source")) {
+			beginArray();
+			for (int i = 0; i < source.length; i++)
+				if (source[i] != null) {
+					element();
+					writeSource(source[i]);
+				}
+			endArray();
+		}
+		Target[] target = a.getTarget();
+		if (nonEmpty(target, "Target")) {
+			beginArray();
+			for (int i = 0; i < target.length; i++)
+				if (target[i] != null) {
+					element();
+					writeTarget(target[i]);
+				}
+			endArray();
+		}
+		name("Classification");
+		writeClassification(a.getClassification());
+		if (present(a.getAssessment(), "Assessment"))
+			writeAssessment(a.getAssessment());
+		if (a instanceof IDMEFMessage_ToolAlert) {
+			name("ToolAlert");
+			writeToolAlert(((IDMEFMessage_ToolAlert) a).getToolAlert());
+		}
+		else if (a instanceof IDMEFMessage_OverflowAlert) {
+			name("OverflowAlert");
+			writeOverflowAlert(((IDMEFMessage_OverflowAlert) a).getOverflowAlert());
+		}
+		else if (a instanceof IDMEFMessage_CorrelationAlert) {
+			name("CorrelationAlert");
+			writeCorrelationAlert(((IDMEFMessage_CorrelationAlert) a).getCorrelationAlert());
+		}
+		writeAdditionalData(a.getAdditionalData());
+		end();
+	}
+
+	private void writeHeartbeat(IDMEFMessage_Heartbeat h)
+	throws IOException {
+		begin();
+		field("messageid", h.getMessageID());
+		name("Analyzer");
+		writeAnalyzer(h.getAnalyzer());
+		timeField("CreateTime", h.getCreateTimeMillis(), h.getCreateTimeOffset());
+		intField("HeartbeatInterval", h.getHeartbeatInterval(), h.getHeartbeatInterval() >= 0);
+		timeField("AnalyzerTime", h.getAnalyzerTimeMillis(), h.getAnalyzerTimeOffset());
+		writeAdditionalData(h.getAdditionalData());
+		end();
+	}
+
+
+	private void writeAnalyzer(Analyzer a)
+	throws IOException {
+		begin();
+		field("analyzerid", a.getAnalyzerID());
+		field("name", a.getName());
+		field("manufacturer", a.getManufacturer());
+		field("model", a.getModel());
+		field("version", a.getVersion());
+		field("class", a.getAclass());
+		field("ostype", a.getOstype());
+		field("osversion", a.getOsversion());
+		if (present(a.getNode(), "Node"))
+			writeNode(a.getNode());
+		if (present(a.getProcess(), "Process"))
+			writeProcess(a.getProcess());
+		if (present(a.getOriginalAnalyzer(), "Analyzer"))
+			writeAnalyzer(a.getOriginalAnalyzer());
+		end();
+	}
+
+	private void writeClassification(Classification c)
+	throws IOException {
+		begin();
+		field("ident", c.getIdent());
+		field("text", c.getText());
+		Reference[] reference = c.getReference();
+		if (nonEmpty(reference, "Reference")) {
+			beginArray();
+			for (int i = 0; i < reference.length; i++)
+				if (reference[i] != null) {
+					element();
+					writeReference(reference[i]);
+				}
+			endArray();
+		}
+		end();
+	}
+
+	private void writeReference(Reference r)
+	throws IOException {
+		begin();
+		field("origin", RFC4765EnumCodes.keyword(r.getOrigin()));
+		field("meaning", r.getMeaning());
+		field("name", r.getName());
+		field("url", (r.getUrl() == null) ? null : r.getUri().toString());
+		end();
+	}
+
+	private void writeSource(Source s)
+	throws IOException {
+		begin();
+		field("ident", s.getIdent());
+		field("spoofed", RFC4765EnumCodes.keyword(s.getSpoofed()));
+		field("interface", s.getInterface());
+		if (present(s.getNode(), "Node"))
+			writeNode(s.getNode());
+		if (present(s.getUser(), "User"))
+			writeUser(s.getUser());
+		if (present(s.getProcess(), "Process"))
+			writeProcess(s.getProcess());
+		if (present(s.getService(), "Service"))
+			writeService(s.getService());
+		end();
+	}
+
+	private void writeTarget(Target t)
+	throws IOException {
+		begin();
+		field("ident", t.getIdent());
+		field("decoy", RFC4765EnumCodes.keyword(t.getDecoy()));
+		field("interface", t.getInterface());
+		if (present(t.getNode(), "Node"))
+			writeNode(t.getNode());
+		if (present(t.getUser(), "User"))
+			writeUser(t.getUser());
+		if (present(t.getProcess(), "Process"))
+			writeProcess(t.getProcess());
+		if (present(t.getService(), "Service"))
+			writeService(t.getService());
+		if (present(t.getFile(), "File"))
+			writeFile(t.getFile());
+		end();
+	}
+
+	private void writeNode(Node n)
+	throws IOException {
+		begin();
+		field("ident", n.getIdent());
+		field("category", RFC4765EnumCodes.keyword(n.getCategory()));
+		field("location", n.getLocation());
+		field("name", n.getName());
+		Address[] address = n.getAddress();
+		if (nonEmpty(address, "Address")) {
+			beginArray();
+			for (int i = 0; i < address.length; i++)
+				if (address[i] != null) {
+					element();
+					writeAddress(address[i]);
+				}
+			endArray();
+		}
+		end();
+	}
+
+	private void writeAddress(Address a)
+	throws IOException {
+		begin();
+		field("ident", a.getIdent());
+		field("category", RFC4765EnumCodes.keyword(a.getRFCCategory()));
+		field("vlan-name", a.getVlanName());
+		field("vlan-num", a.getVlanNum());
+		field("address", a.getAddress());
+		field("netmask", a.getNetmask());
+		end();
+	}
+
+	private void writeUser(User u)
+	throws IOException {
+		begin();
+		field("ident", u.getIdent());
+		field("category", RFC4765EnumCodes.keyword(u.getCategory()));
+		if (u.getUseridCount() > 0) {
+			name("UserId");
+			beginArray();
+			for (int i = 0; i < u.getUseridCount(); i++) {
+				element();
+				writeUserId(u.getUserid(i));
+			}
+			endArray();
+		}
+		else if (! omitNulls)
+			nullField("UserId");
+		end();
+	}
+
+	private void writeUserId(UserId u)
+	throws IOException {
+		begin();
+		field("ident", u.getIdent());
+		field("type", RFC4765EnumCodes.keyword(u.getType()));
+		field("tty", u.getTty());
+		field("name", u.getName());
+		field("number", u.getNumber());
+		end();
+	}
+
+	private void writeProcess(Process p)
+	throws IOException {
+		begin();
+		field("ident", p.getIdent());
+		field("name", p.getName());
+		intField("pid", p.getPid(), p.getPid() > 0);
+		field("path", p.getPath());
+		stringsField("arg", p.getArgList().toArray());
+		stringsField("env", p.getEnvList().toArray());
+		end();
+	}
+
+	private void writeService(Service s)
+	throws IOException {
+		begin();
+		field("ident", s.getIdent());
+		intField("ip_version", s.getIpVersion(), s.getIpVersion() > 0);
+		intField("iana_protocol_number", s.getIanaProtocolNumber(), s.getIanaProtocolNumber() > 0);
+		field("iana_protocol_name", s.getIanaProtocolName());
+		field("name", s.getName());
+		intField("port", s.getPort(), s.getPort() > 0);
+		field("portlist", s.getPortlist());
+		field("protocol", s.getProtocol());
+		end();
+	}
+
+	private void writeFile(File f)
+	throws IOException {
+		begin();
+		field("ident", f.getItent());
+		field("category", RFC4765EnumCodes.keyword(f.getCategory()));
+		field("fstype", (f.getFSType() == null) ? null : RFC4765EnumCodes.keyword(f.getFSType()));
+		field("file-type", f.getFileType());
+		field("name", f.getName());
+		field("path", f.getPath());
+		timeField("create-time", f.getCreateTime());
+		timeField("modify-time", f.getModifyTime());
+		timeField("access-time", f.getAccessTime());
+		intField("data-size", f.getDataSize(), f.getDataSize() >= 0);
+		intField("disk-size", f.getDiskSize(), f.getDiskSize() >= 0);
+		FileAccess[] fileAccess = f.getFileAccess();
+		if (nonEmpty(fileAccess, "FileAccess")) {
+			beginArray();
+			for (int i = 0; i < fileAccess.length; i++)
+				if (fileAccess[i] != null) {
+					element();
+					writeFileAccess(fileAccess[i]);
+				}
+			endArray();
+		}
+		Linkage[] linkage = f.getLinkage();
+		if (nonEmpty(linkage, "Linkage")) {
+			beginArray();
+			for (int i = 0; i < linkage.length; i++)
+				if (linkage[i] != null) {
+					element();
+					writeLinkage(linkage[i]);
+				}
+			endArray();
+		}
+		if (present(f.getInode(), "Inode"))
+			writeInode(f.getInode());
+		Checksum[] checksum = f.getChecksum();
+		if (nonEmpty(checksum, "Checksum")) {
+			beginArray();
+			for (int i = 0; i < checksum.length; i++)
+				if (checksum[i] != null) {
+					element();
+					writeChecksum(checksum[i]);
+				}
+			endArray();
+		}
+		end();
+	}
+
+	private void writeFileAccess(FileAccess fa)
+	throws IOException {
+		begin();
+		name("UserId");
+		writeUserId(fa.getUserid());
+		name("permission");
+		beginArray();
+		FileAccess.Permission[] permission = fa.getPermission();
+		for (int i = 0; i < permission.length; i++) {
+			element();
+			string(RFC4765EnumCodes.keyword(permission[i]));
+		}
+		endArray();
+		end();
+	}
+
+	private void writeLinkage(Linkage l)
+	throws IOException {
+		begin();
+		field("category", RFC4765EnumCodes.keyword(l.getCategory()));
+		field("name", l.getName());
+		field("path", l.getPath());
+		if (present(l.getFile(), "File"))
+			writeFile(l.getFile());
+		end();
+	}
+
+	private void writeInode(Inode i)
+	throws IOException {
+		begin();
+		timeField("change-time", i.getChangeTime());
+		intField("number", i.getNumber(), i.getNumber() != -1);
+		intField("major-device", i.getMajorDevice(), i.getNumber() != -1);
+		intField("minor-device", i.getMinorDevice(), i.getNumber() != -1);
+		intField("c-major-device", i.getCMajorDevice(), i.getCMajorDevice() != -1);
+		intField("c-minor-device", i.getCMinorDevice(), i.getCMajorDevice() != -1);
+		end();
+	}
+
+	private void writeChecksum(Checksum c)
+	throws IOException {
+		begin();
+		field("algorithm", RFC4765EnumCodes.keyword(c.getAlgorithm()));
+		field("value", c.getValue());
+		field("key", c.getKey());
+		end();
+	}
+
+	private void writeAssessment(Assessment a)
+	throws IOException {
+		begin();
+		Impact impact = a.getImpact();
+		if (present(impact, "Impact")) {
+			begin();
+			field("severity", (impact.getSeverity() == null) ? null : RFC4765EnumCodes.keyword(impact.getSeverity()));
+			field("completion", (impact.getCompletion() == null) ? null : RFC4765EnumCodes.keyword(impact.getCompletion()));
+			field("type", RFC4765EnumCodes.keyword(impact.getType()));
+			end();
+		}
+		Action action = a.getAction();
+		if (present(action, "Action")) {
+			begin();
+			field("category", RFC4765EnumCodes.keyword(action.getRFCCategory()));
+			end();
+		}
+		Confidence confidence = a.getConfidence();
+		if (present(confidence, "Confidence")) {
+			begin();
+			field("rating", RFC4765EnumCodes.keyword(confidence.getRFCRating()));
+			if (confidence.getRFCRating() == Confidence.Rank.NUMERIC) {
+				name("value");
+				number(confidence.getRFCNumericRating());
+			}
+			else if (! omitNulls)
+				nullField("value");
+			end();
+		}
+		end();
+	}
+
+	private void writeToolAlert(ToolAlert t)
+	throws IOException {
+		begin();
+		field("name", t.getName());
+		field("command", t.getCommand());
+		stringsField("alertident", t.getAlertIdent());
+		stringsField("analyzerid", t.getAnalyzerID());
+		end();
+	}
+
+	private void writeOverflowAlert(OverflowAlert o)
+	throws IOException {
+		begin();
+		field("program", o.getProgram());
+		intField("size", o.getSize(), o.getSize() >= 0);
+		byte[] buffer = o.getBuffer();
+		if (buffer != null) {
+			name("buffer");
+			out.append('"');
+			RFC4765DataTypes.appendBase64(out, buffer, 0, buffer.length);
+			out.append('"');
+		}
+		else if (! omitNulls)
+			nullField("buffer");
+		end();
+	}
+
+	private void writeCorrelationAlert(CorrelationAlert c)
+	throws IOException {
+		begin();
+		field("name", c.getName());
+		stringsField("alertident", c.getAlertIdent());
+		stringsField("analyzerid", c.getAnalyzerID());
+		end();
+	}
+
+	private void writeAdditionalData(AdditionalData[] additionalData)
+	throws IOException {
+		if (! nonEmpty(additionalData, "AdditionalData"))
+			return;
+		beginArray();
+		for (int i = 0; i < additionalData.length; i++) {
+			AdditionalData ad = additionalData[i];
+			if (ad == null)
+				continue;
+			element();
+			begin();
+			field("type", RFC4765EnumCodes.keyword(ad.getAdType()));
+			field("meaning", ad.getMeaning());
+			name("data");
+			switch (ad.getAdType()) {
+			case BOOLEAN:
+				out.append(ad.getBoolean() ? "true" : "false");
+				break;
+			case BYTE:
+				RFC4765DataTypes.appendLong(out, ad.getByte());
+				break;
+			case INTEGER:
+				RFC4765DataTypes.appendLong(out, ad.getInt());
+				break;
+			case REAL:
+				number(ad.getDouble());
+				break;
+			case CHARACTER:
+				string(String.valueOf(ad.getChar()));
+				break;
+			case DATE_TIME:
+				out.append('"');
+				RFC4765DataTypes.appendDateTime(out, ad.getDateTime());
+				out.append('"');
+				break;
+			case PORTLIST:
+				PortSet ports = ad.getPortSet();
+				int first = ports.nextPort(0);
+				out.append('[');
+				for (int p = first; p >= 0; p = ports.nextPort(p + 1)) {
+					if (p > first)
+						out.append(',');
+					RFC4765DataTypes.appendLong(out, p);
+				}
+				out.append(']');
+				break;
+			case BYTE_STRING:
+				byte[] bytes = ad.getBytes();
+				out.append('"');
+				RFC4765DataTypes.appendBase64(out, bytes, 0, bytes.length);
+				out.append('"');
+				break;
+			case NTPSTAMP:
+				out.append('"');
+				NtpStamp.append(out, ad.getNtpStamp());
+				out.append('"');
+				break;
+			default:
+				// STRING, XMLTEXT
+				string(ad.getString());
+			}
+			end();
+		}
+		endArray();
+	}
+
+
+	/**
+	 * Write the name of a member holding an object, array or null, if the value is present or nulls are wanted
+	 *
+	 * @return true if value is present, and so the caller should now write it
+	 */
+	private boolean present(Object value, String name)
+	throws IOException {
+		if (value != null) {
+			name(name);
+			return true;
+		}
+		if (! omitNulls)
+			nullField(name);
+		return false;
+	}
+
+	/**
+	 * As present(), for an array member, which is written only if it has a non-null element
+	 */
+	private boolean nonEmpty(Object[] array, String name)
+	throws IOException {
+		if (array != null)
+			for (int i = 0; i < array.length; i++)
+				if (array[i] != null) {
+					name(name);
+					return true;
+				}
+		if (! omitNulls)
+			nullField(name);
+		return false;
+	}
+
+	private void field(String name, String value)
+	throws IOException {
+		if (value != null) {
+			name(name);
+			string(value);
+		}
+		else if (! omitNulls)
+			nullField(name);
+	}
+
+	private void intField(String name, long value, boolean isPresent)
+	throws IOException {
+		if (isPresent) {
+			name(name);
+			RFC4765DataTypes.appendLong(out, value);
+		}
+		else if (! omitNulls)
+			nullField(name);
+	}
+
+	/**
+	 * message times, given in epoch milliseconds and an offset from UTC (IDMEFMessage.NO_TIME if absent)
+	 */
+	private void timeField(String name, long millis, int offsetMillis)
+	throws IOException {
+		if (millis != IDMEFMessage.NO_TIME) {
+			name(name);
+			out.append('"');
+			RFC4765DataTypes.appendDateTime(out, millis, offsetMillis);
+			out.append('"');
+		}
+		else if (! omitNulls)
+			nullField(name);
+	}
+
+	private void timeField(String name, DateTime dt)
+	throws IOException {
+		if (dt != null) {
+			name(name);
+			out.append('"');
+			RFC4765DataTypes.appendDateTime(out, dt);
+			out.append('"');
+		}
+		else if (! omitNulls)
+			nullField(name);
+	}
+
+	private void stringsField(String name, String[] values)
+	throws IOException {
+		if (values == null) {
+			if (! omitNulls)
+				nullField(name);
+			return;
+		}
+		name(name);
+		beginArray();
+		for (int i = 0; i < values.length; i++) {
+			element();
+			if (values[i] == null)
+				out.append("null");
+			else
+				string(values[i]);
+		}
+		endArray();
+	}
+
+	private void nullField(String name)
+	throws IOException {
+		name(name);
+		out.append("null");
+	}
+
+	/**
+	 * A JSON number, or (as JSON has no form for them) a string for NaN and the infinities
+	 */
+	private void number(double d)
+	throws IOException {
+		if (Double.isNaN(d) || Double.isInfinite(d))
+			string(Double.toString(d));
+		else
+			out.append(Double.toString(d));
+	}
+
+
+	private void begin()
+	throws IOException {
+		out.append('{');
+		first = true;
+	}
+
+	private void end()
+	throws IOException {
+		out.append('}');
+		first = false;
+	}
+
+	private void beginArray()
+	throws IOException {
+		out.append('[');
+		first = true;
+	}
+
+	private void endArray()
+	throws IOException {
+		out.append(']');
+		first = false;
+	}
+
+	/**
+	 * Separate an array element from the one before it
+	 */
+	private void element()
+	throws IOException {
+		if (! first)
+			out.append(',');
+		first = false;
+	}
+
+	/**
+	 * Write a member name, with the comma separating it from the member before. Names are
+	 * all constants of this class, so need no escaping.
+	 */
+	private void name(String name)
+	throws IOException {
+		if (! first)
+			out.append(',');
+		first = false;
+		out.append('"').append(name).append("\":");
+	}
+
+	/**
+	 * Write s as a quoted JSON string. Runs of characters that need no escaping are appended
+	 * as a single sub-sequence.
+	 */
+	private void string(String s)
+	throws IOException {
+		out.append('"');
+		int len = s.length();
+		int runStart = 0;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if ((c >= 0x20) && (c != '"') && (c != '\\'))
+				continue;
+			if (i > runStart)
+				out.append(s, runStart, i);
+			runStart = i + 1;
+			if (c == '"')
+				out.append("\\\"");
+			else if (c == '\\')
+				out.append("\\\\");
+			else if (c == '\n')
+				out.append("\\n");
+			else if (c == '\r')
+				out.append("\\r");
+			else if (c == '\t')
+				out.append("\\t");
+			else
+				out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+		}
+		if (runStart < len)
+			out.append(s, runStart, len);
+		out.append('"');
+	}
+
+}
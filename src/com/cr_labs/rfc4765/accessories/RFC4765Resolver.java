@@ -0,0 +1,506 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Node;
+
+/**
+ * Resolves host names off the caller's thread. The readers construct Addresses without
+ * resolving the host names they hold (see Address.isHostName()); an application that wants
+ * them resolved hands them (or the Nodes holding them) to a resolver, which looks them up on
+ * its Executor and returns a Future of the resolved Address or Node. The resolveAsync()
+ * methods return the same as a CompletableFuture, to be chained rather than waited on.
+ *
+ * <pre>
+ * RFC4765Resolver resolver = new RFC4765Resolver(Executors.newFixedThreadPool(4));
+ * Future&lt;Address&gt; resolved = resolver.resolve(address);
+ * ...
+ * InetAddress ia = resolved.get().getInetAddress();
+ * </pre>
+ *
+ * <p>Each name is looked up once: the lookup is kept in a bounded cache (least recently used
+ * first out) for ttlMillis if it resolved, or negativeTtlMillis if it did not, and callers
+ * asking for a name whose lookup is still running share that lookup rather than starting
+ * another. So a scan that produces thousands of alerts naming one host costs one lookup.
+ * A Listener given with a request is called when its Future is done, so the caller need not
+ * block in get(). If the Executor refuses a lookup (it has been shut down, or its queue is
+ * full), the lookup fails with the RejectedExecutionException and is not cached, so the next
+ * request for the name tries again. A resolver may be shared by many threads.
+ */
+public class RFC4765Resolver {
+
+	/**
+	 * Called when a Future returned by the resolver is done, on the thread that completed it:
+	 * an Executor thread, or the caller's own thread if everything was in the cache. get() on
+	 * the Future does not block. Anything done() throws goes to that thread's
+	 * UncaughtExceptionHandler, and the other callers of the same lookup are still completed.
+	 */
+	public interface Listener<V> {
+		void done(Future<V> result);
+	}
+
+	public static final int DEFAULT_MAX_ENTRIES = 4096;
+	public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L;
+	public static final long DEFAULT_NEGATIVE_TTL_MILLIS = 30 * 1000L;
+
+	private final Executor executor;
+	private final long ttlMillis;
+	private final long negativeTtlMillis;
+	/**
+	 * Lookups by lower case name, running or done, in access order
+	 */
+	private final LinkedHashMap<String, Lookup> cache;
+	private long hits;
+	private long misses;
+
+
+	/**
+	 * A resolver with a cache of DEFAULT_MAX_ENTRIES names, kept for DEFAULT_TTL_MILLIS if they
+	 * resolve and DEFAULT_NEGATIVE_TTL_MILLIS if they don't
+	 *
+	 * @param executor REQUIRED runs the lookups, each of which may block for as long as DNS takes
+	 * @throws IllegalArgumentException if executor is null
+	 */
+	public RFC4765Resolver(Executor executor)
+	throws IllegalArgumentException {
+		this(executor, DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS, DEFAULT_NEGATIVE_TTL_MILLIS);
+	}
+
+	/**
+	 * @param executor REQUIRED runs the lookups, each of which may block for as long as DNS takes
+	 * @param maxEntries the most names to keep in the cache (at least 1)
+	 * @param ttlMillis how long a name that resolved is kept
+	 * @param negativeTtlMillis how long a name that did not resolve is kept
+	 * @throws IllegalArgumentException if executor is null, maxEntries is less than 1 or a time is negative
+	 */
+	public RFC4765Resolver(Executor executor, final int maxEntries, long ttlMillis, long negativeTtlMillis)
+	throws IllegalArgumentException {
+		if (executor == null)
+			throw new IllegalArgumentException("Required parameter 'executor' was null");
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries must be at least 1: "+maxEntries);
+		if ((ttlMillis < 0) || (negativeTtlMillis < 0))
+			throw new IllegalArgumentException("Negative time to live: "+ttlMillis+", "+negativeTtlMillis);
+		this.executor = executor;
+		this.ttlMillis = ttlMillis;
+		this.negativeTtlMillis = negativeTtlMillis;
+		this.cache = new LinkedHashMap<String, Lookup>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<String, Lookup> eldest) {
+				// a running lookup that falls out still completes for the callers waiting on it
+				return size() > maxEntries;
+			}
+		};
+	}
+
+
+	/**
+	 * Start looking up a host name (or a literal address)
+	 *
+	 * @param name REQUIRED the name to look up
+	 * @return the address the name resolves to. The Future's get() throws an ExecutionException
+	 * wrapping the UnknownHostException if it does not resolve, or the RejectedExecutionException
+	 * if the Executor refused the lookup.
+	 */
+	public Future<InetAddress> resolve(String name) {
+		return resolve(name, null);
+	}
+
+	/**
+	 * As resolve(String), calling listener (if not null) when the lookup is done
+	 */
+	public Future<InetAddress> resolve(String name, Listener<InetAddress> listener) {
+		final Lookup lookup = lookup(name);
+		return after(new Lookup[] { lookup }, new Callable<InetAddress>() {
+			public InetAddress call()
+			throws Exception {
+				return result(lookup);
+			}
+		}, listener);
+	}
+
+	/**
+	 * Start resolving the host name of an Address
+	 *
+	 * @param address REQUIRED the Address to resolve
+	 * @return a copy of the Address holding what its name resolves to, or the Address itself (at
+	 * once, without using the Executor) if it is not an unresolved host name. The Future's get()
+	 * throws an ExecutionException wrapping the UnknownHostException if the name does not resolve,
+	 * or the RejectedExecutionException if the Executor refused the lookup.
+	 */
+	public Future<Address> resolve(Address address) {
+		return resolve(address, null);
+	}
+
+	/**
+	 * As resolve(Address), calling listener (if not null) when the Address is resolved
+	 */
+	public Future<Address> resolve(final Address address, Listener<Address> listener) {
+		if (! needsResolving(address))
+			return after(new Lookup[0], new Callable<Address>() {
+				public Address call() {
+					return address;
+				}
+			}, listener);
+		final Lookup lookup = lookup(address.getAddress());
+		return after(new Lookup[] { lookup }, new Callable<Address>() {
+			public Address call()
+			throws Exception {
+				return new Address(address, result(lookup));
+			}
+		}, listener);
+	}
+
+	/**
+	 * Start resolving the host names of a Node: those of its Addresses or, if it has no
+	 * Address, its name. A name that does not resolve, or whose lookup the Executor refused, is
+	 * left as it was, so the Future's get() does not throw for unknown hosts.
+	 *
+	 * @param node REQUIRED the Node to resolve
+	 * @return a copy of the Node holding the resolved Addresses, or (if the Node has no Address)
+	 * the address its name resolves to; or the Node itself if nothing resolved
+	 */
+	public Future<Node> resolve(Node node) {
+		return resolve(node, null);
+	}
+
+	/**
+	 * As resolve(Node), calling listener (if not null) when the Node is resolved
+	 */
+	public Future<Node> resolve(final Node node, Listener<Node> listener) {
+		final Address[] addresses = node.getAddress();
+		final Lookup[] lookups;
+		if (addresses.length == 0)
+			lookups = new Lookup[] { (node.getName() == null) ? null : lookup(node.getName()) };
+		else {
+			lookups = new Lookup[addresses.length];
+			for (int i = 0; i < addresses.length; i++)
+				if ((addresses[i] != null) && needsResolving(addresses[i]))
+					lookups[i] = lookup(addresses[i].getAddress());
+		}
+		return after(lookups, new Callable<Node>() {
+			public Node call() {
+				Address[] resolved = null;
+				if (addresses.length == 0) {
+					InetAddress ia = resultOrNull(lookups[0]);
+					if (ia != null)
+						resolved = new Address[] { new Address(null, ia.getHostAddress(),
+								(ia instanceof Inet4Address) ? Address.Category.IPV4_ADDR : Address.Category.IPV6_ADDR, null, null) };
+				}
+				else
+					for (int i = 0; i < addresses.length; i++) {
+						InetAddress ia = resultOrNull(lookups[i]);
+						if (ia != null) {
+							if (resolved == null)
+								resolved = addresses.clone();
+							resolved[i] = new Address(addresses[i], ia);
+						}
+					}
+				if (resolved == null)
+					return node;
+				return new Node(node.getIdent(), node.getCategory(), node.getLocation(), node.getName(), resolved);
+			}
+		}, listener);
+	}
+
+	/**
+	 * As resolve(String), as a CompletableFuture. It completes exceptionally with the
+	 * UnknownHostException if the name does not resolve, or the RejectedExecutionException if the
+	 * Executor refused the lookup; stages chained without an Executor run on the thread that
+	 * completed it.
+	 */
+	public CompletableFuture<InetAddress> resolveAsync(String name) {
+		CompletableFuture<InetAddress> future = new CompletableFuture<InetAddress>();
+		resolve(name, completing(future));
+		return future;
+	}
+
+	/**
+	 * As resolve(Address), as a CompletableFuture
+	 */
+	public CompletableFuture<Address> resolveAsync(Address address) {
+		CompletableFuture<Address> future = new CompletableFuture<Address>();
+		resolve(address, completing(future));
+		return future;
+	}
+
+	/**
+	 * As resolve(Node), as a CompletableFuture
+	 */
+	public CompletableFuture<Node> resolveAsync(Node node) {
+		CompletableFuture<Node> future = new CompletableFuture<Node>();
+		resolve(node, completing(future));
+		return future;
+	}
+
+	/**
+	 * @return true if the Address holds a host name that has not been resolved
+	 */
+	public static boolean needsResolving(Address address) {
+		return address.isHostName() && (address.getInetAddress() == null);
+	}
+
+	/**
+	 * Forget every name in the cache. Running lookups still complete for their callers.
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the number of requests for a name that was in the cache (resolved, unknown or still being looked up)
+	 */
+	public long getHits() {
+		synchronized (cache) {
+			return hits;
+		}
+	}
+
+	/**
+	 * @return the number of requests that started a lookup
+	 */
+	public long getMisses() {
+		synchronized (cache) {
+			return misses;
+		}
+	}
+
+
+	/**
+	 * @return the cached or running lookup of name, or a new one started on the Executor. If the
+	 * Executor refuses it, the new lookup is taken out of the cache again and fails.
+	 */
+	private Lookup lookup(String name) {
+		String key = name.toLowerCase(Locale.ENGLISH);
+		Lookup lookup;
+		synchronized (cache) {
+			lookup = cache.get(key);
+			if ((lookup != null) && (! lookup.isDone() || (lookup.expires - System.currentTimeMillis() > 0))) {
+				hits++;
+				return lookup;
+			}
+			misses++;
+			lookup = new Lookup(name);
+			cache.put(key, lookup);
+		}
+		try {
+			executor.execute(lookup);
+		}
+		catch (RejectedExecutionException ree) {
+			synchronized (cache) {
+				if (cache.get(key) == lookup)
+					cache.remove(key);
+			}
+			// completes the callers that found the lookup in the cache meanwhile as well
+			lookup.fail(ree);
+		}
+		return lookup;
+	}
+
+	/**
+	 * @return a Future of callable, which is run (on the thread that completes the last of them)
+	 * once all the lookups that are not null are done
+	 */
+	private static <V> Future<V> after(Lookup[] lookups, Callable<V> callable, final Listener<V> listener) {
+		final FutureTask<V> task = new FutureTask<V>(callable) {
+			protected void done() {
+				if (listener != null)
+					try {
+						listener.done(this);
+					}
+					catch (Throwable t) {
+						uncaught(t);
+					}
+			}
+		};
+		final AtomicInteger pending = new AtomicInteger(1);
+		Runnable countDown = new Runnable() {
+			public void run() {
+				if (pending.decrementAndGet() == 0)
+					task.run();
+			}
+		};
+		for (Lookup lookup : lookups)
+			if (lookup != null) {
+				pending.incrementAndGet();
+				lookup.whenDone(countDown);
+			}
+		countDown.run();
+		return task;
+	}
+
+	/**
+	 * @return a Listener that completes future as its Future is done
+	 */
+	private static <V> Listener<V> completing(final CompletableFuture<V> future) {
+		return new Listener<V>() {
+			public void done(Future<V> result) {
+				try {
+					future.complete(result.get());
+				}
+				catch (ExecutionException ee) {
+					future.completeExceptionally(ee.getCause());
+				}
+				catch (Throwable t) {
+					future.completeExceptionally(t);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Hand t to the current thread's UncaughtExceptionHandler, without unwinding the thread
+	 */
+	private static void uncaught(Throwable t) {
+		Thread thread = Thread.currentThread();
+		thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+	}
+
+	/**
+	 * @return the address of a lookup that is done
+	 * @throws UnknownHostException if the name did not resolve
+	 */
+	private static InetAddress result(Lookup lookup)
+	throws Exception {
+		try {
+			return lookup.get();
+		}
+		catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof Exception)
+				throw (Exception) cause;
+			throw ee;
+		}
+	}
+
+	/**
+	 * @return the address of a lookup that is done, or null if lookup is null or the name did not resolve
+	 */
+	private static InetAddress resultOrNull(Lookup lookup) {
+		if (lookup == null)
+			return null;
+		try {
+			return lookup.get();
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+
+
+	/**
+	 * One lookup of a name, shared by every caller asking for it while it is cached
+	 */
+	private class Lookup
+	extends FutureTask<InetAddress> {
+
+		/**
+		 * When the finished lookup goes stale, in System.currentTimeMillis() time
+		 */
+		private volatile long expires;
+		/**
+		 * Run when the lookup is done; null once it is
+		 */
+		private List<Runnable> waiting = new ArrayList<Runnable>(2);
+
+		private Lookup(final String name) {
+			super(new Callable<InetAddress>() {
+				public InetAddress call()
+				throws UnknownHostException {
+					return InetAddress.getByName(name);
+				}
+			});
+		}
+
+		/**
+		 * Finish the lookup with e without running it
+		 */
+		private void fail(Throwable e) {
+			setException(e);
+		}
+
+		/**
+		 * Set expires before the lookup is done, so no caller finds it done and not yet timed
+		 */
+		protected void set(InetAddress v) {
+			expires = System.currentTimeMillis() + ttlMillis;
+			super.set(v);
+		}
+
+		protected void setException(Throwable t) {
+			expires = System.currentTimeMillis() + negativeTtlMillis;
+			super.setException(t);
+		}
+
+		/**
+		 * Run r when the lookup is done: now, if it already is
+		 */
+		private void whenDone(Runnable r) {
+			synchronized (this) {
+				if (waiting != null) {
+					waiting.add(r);
+					return;
+				}
+			}
+			r.run();
+		}
+
+		protected void done() {
+			List<Runnable> done;
+			synchronized (this) {
+				done = waiting;
+				waiting = null;
+			}
+			// one waiter that throws must not leave the others waiting
+			for (Runnable r : done)
+				try {
+					r.run();
+				}
+				catch (Throwable t) {
+					uncaught(t);
+				}
+		}
+
+	}
+
+}
@@ -0,0 +1,812 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.CodedEnum;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.CorrelationAlert;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_CorrelationAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessage_OverflowAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_ToolAlert;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.OverflowAlert;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Checks a whole IDMEFMessage against the constraints of RFC4765 in one pass, and reports every
+ * violation rather than stopping at the first, so it can stand in for a schema-validating parser
+ * on ingest.
+ *
+ * <p>The constructors of the model already reject the worst mistakes (a missing analyzer,
+ * createTime or classification...). The validator checks those again, as objects may come from
+ * elsewhere, and adds the constraints the constructors leave alone: the forms of address and
+ * netmask text, a UserId's name or number, a Service's name/port or portlist, port ranges,
+ * null array elements, characters that XML 1.0 cannot carry, and (unless allowed) the X_*
+ * extension values of this library, which are not part of the RFC.
+ *
+ * <p>Each violation is a message prefixed with the path of the element it was found in, named
+ * as in the RFC's XML schema (e.g. "Alert.Source[0].Node.Address[1]: ..."). Nothing is allocated
+ * for a message without violations. A validator is not thread safe; use one per thread.
+ *
+ * <pre>
+ * RFC4765Validator v = new RFC4765Validator();
+ * if (v.validate(alert) &gt; 0)
+ *     log(v.getViolations());
+ * </pre>
+ */
+public class RFC4765Validator {
+
+	/**
+	 * Deeper nesting of originalAnalyzers, or of Files within Linkages, is reported
+	 */
+	private static final int MAX_DEPTH = 16;
+
+	private final boolean allowExtensions;
+	private final ArrayList<String> violations = new ArrayList<String>();
+	private final StringBuilder path = new StringBuilder();
+
+
+	/**
+	 * A validator that reports X_* extension values as violations
+	 */
+	public RFC4765Validator() {
+		this(false);
+	}
+
+	/**
+	 * @param allowExtensions true to accept the X_* extension values of the enums (Action, Address
+	 * and Confidence) and negative numeric confidence ratings, false to report them
+	 */
+	public RFC4765Validator(boolean allowExtensions) {
+		this.allowExtensions = allowExtensions;
+	}
+
+
+	/**
+	 * Check a message, replacing the violations of the last message checked
+	 *
+	 * @param message the message to check
+	 * @return the number of violations found
+	 */
+	public int validate(IDMEFMessage message) {
+		violations.clear();
+		path.setLength(0);
+		if (message instanceof IDMEFMessage_Alert)
+			alert((IDMEFMessage_Alert) message);
+		else if (message instanceof IDMEFMessage_Heartbeat)
+			heartbeat((IDMEFMessage_Heartbeat) message);
+		else
+			report("not an Alert or a Heartbeat");
+		return violations.size();
+	}
+
+	/**
+	 * @return true if the message has no violations
+	 */
+	public boolean isValid(IDMEFMessage message) {
+		return validate(message) == 0;
+	}
+
+	/**
+	 * @return the violations found by the last call to validate(), in the order found. The list
+	 * is reused by the next call.
+	 */
+	public List<String> getViolations() {
+		return violations;
+	}
+
+
+
+	private void alert(IDMEFMessage_Alert a) {
+		int mark = push("Alert");
+		text("messageid", a.getMessageID());
+		if (required("Analyzer", a.getAnalyzer()))
+			analyzer(a.getAnalyzer(), 0);
+		if (a.getCreateTimeMillis() == IDMEFMessage.NO_TIME)
+			report("'CreateTime' is required by the RFC");
+		if (required("Classification", a.getClassification()))
+			classification(a.getClassification());
+		Source[] source = a.getSource();
+		if (source != null)
+			for (int i = 0; i < source.length; i++)
+				if (element("Source", i, source[i]))
+					source(source[i], i);
+		Target[] target = a.getTarget();
+		if (target != null)
+			for (int i = 0; i < target.length; i++)
+				if (element("Target", i, target[i]))
+					target(target[i], i);
+		if (a.getAssessment() != null)
+			assessment(a.getAssessment());
+		if (a instanceof IDMEFMessage_ToolAlert) {
+			ToolAlert t = ((IDMEFMessage_ToolAlert) a).getToolAlert();
+			if (required("ToolAlert", t))
+				toolAlert(t);
+		}
+		else if (a instanceof IDMEFMessage_OverflowAlert) {
+			OverflowAlert o = ((IDMEFMessage_OverflowAlert) a).getOverflowAlert();
+			if (required("OverflowAlert", o))
+				overflowAlert(o);
+		}
+		else if (a instanceof IDMEFMessage_CorrelationAlert) {
+			CorrelationAlert c = ((IDMEFMessage_CorrelationAlert) a).getCorrelationAlert();
+			if (required("CorrelationAlert", c))
+				correlationAlert(c);
+		}
+		additionalData(a.getAdditionalData());
+		pop(mark);
+	}
+
+	private void heartbeat(IDMEFMessage_Heartbeat h) {
+		int mark = push("Heartbeat");
+		text("messageid", h.getMessageID());
+		if (required("Analyzer", h.getAnalyzer()))
+			analyzer(h.getAnalyzer(), 0);
+		if (h.getCreateTimeMillis() == IDMEFMessage.NO_TIME)
+			report("'CreateTime' is required by the RFC");
+		if (h.getHeartbeatInterval() < -1)
+			report("'HeartbeatInterval' is negative");
+		additionalData(h.getAdditionalData());
+		pop(mark);
+	}
+
+	private void analyzer(Analyzer a, int depth) {
+		if (depth > MAX_DEPTH) {
+			report("originalAnalyzers are nested more than "+MAX_DEPTH+" deep");
+			return;
+		}
+		int mark = push("Analyzer");
+		text("analyzerid", a.getAnalyzerID());
+		text("name", a.getName());
+		text("manufacturer", a.getManufacturer());
+		text("model", a.getModel());
+		text("version", a.getVersion());
+		text("class", a.getAclass());
+		text("ostype", a.getOstype());
+		text("osversion", a.getOsversion());
+		if (a.getNode() != null)
+			node(a.getNode());
+		if (a.getProcess() != null)
+			process(a.getProcess());
+		if (a.getOriginalAnalyzer() != null)
+			analyzer(a.getOriginalAnalyzer(), depth + 1);
+		pop(mark);
+	}
+
+	private void classification(Classification c) {
+		int mark = push("Classification");
+		text("ident", c.getIdent());
+		if (required("text", c.getText()))
+			text("text", c.getText());
+		Reference[] reference = c.getReference();
+		if (reference != null)
+			for (int i = 0; i < reference.length; i++)
+				if (element("Reference", i, reference[i]))
+					reference(reference[i], i);
+		pop(mark);
+	}
+
+	private void reference(Reference r, int index) {
+		int mark = push("Reference", index);
+		extension("origin", r.getOrigin());
+		text("meaning", r.getMeaning());
+		if (required("name", r.getName()))
+			text("name", r.getName());
+		required("url", r.getUri());
+		pop(mark);
+	}
+
+	private void source(Source s, int index) {
+		int mark = push("Source", index);
+		text("ident", s.getIdent());
+		extension("spoofed", s.getSpoofed());
+		text("interface", s.getInterface());
+		if (s.getNode() != null)
+			node(s.getNode());
+		if (s.getUser() != null)
+			user(s.getUser());
+		if (s.getProcess() != null)
+			process(s.getProcess());
+		if (s.getService() != null)
+			service(s.getService());
+		pop(mark);
+	}
+
+	private void target(Target t, int index) {
+		int mark = push("Target", index);
+		text("ident", t.getIdent());
+		extension("decoy", t.getDecoy());
+		text("interface", t.getInterface());
+		if (t.getNode() != null)
+			node(t.getNode());
+		if (t.getUser() != null)
+			user(t.getUser());
+		if (t.getProcess() != null)
+			process(t.getProcess());
+		if (t.getService() != null)
+			service(t.getService());
+		if (t.getFile() != null)
+			file(t.getFile(), 0);
+		pop(mark);
+	}
+
+	private void node(Node n) {
+		int mark = push("Node");
+		text("ident", n.getIdent());
+		extension("category", n.getCategory());
+		text("location", n.getLocation());
+		text("name", n.getName());
+		Address[] address = n.getAddress();
+		int addresses = 0;
+		if (address != null)
+			for (int i = 0; i < address.length; i++)
+				if (element("Address", i, address[i])) {
+					address(address[i], i);
+					addresses++;
+				}
+		if ((n.getName() == null) && (addresses == 0))
+			report("the RFC requires a name or an Address");
+		pop(mark);
+	}
+
+	private void address(Address a, int index) {
+		int mark = push("Address", index);
+		text("ident", a.getIdent());
+		extension("category", a.getSKCategory());
+		text("vlan-name", a.getVlanName());
+		text("vlan-num", a.getVlanNum());
+		// a literal IP address is checked in its numeric form, as its text would be built afresh
+		boolean ipv4 = a.isIPv4();
+		boolean ipv6 = a.isIPv6();
+		String address = (ipv4 || ipv6) ? null : a.getAddress();
+		int prefix = a.getPrefixLength();
+		String netmask = (prefix < 0) ? a.getNetmask() : null;
+		if (ipv4 || ipv6 || required("address", address)) {
+			text("address", address);
+			boolean form = true;
+			switch (a.getSKCategory()) {
+			case IPV4_ADDR:
+			case IPV4_ADDR_HEX:
+				form = ipv4;
+				break;
+			case IPV4_NET:
+				form = ipv4 && (prefix >= 0) && (prefix <= 32);
+				break;
+			case IPV4_NET_MASK:
+				form = ipv4 && ((prefix >= 0) || isIPv4(netmask));
+				break;
+			case IPV6_ADDR:
+			case IPV6_ADDR_HEX:
+				form = ipv6;
+				break;
+			case IPV6_NET:
+				form = ipv6 && (prefix >= 0);
+				break;
+			case IPV6_NET_MASK:
+				form = ipv6 && ((prefix >= 0) || isIPv6(netmask));
+				break;
+			default:
+			}
+			if (! form)
+				report("'address' is not in the form of category "+RFC4765EnumCodes.keyword(a.getSKCategory()));
+		}
+		pop(mark);
+	}
+
+	private void user(User u) {
+		int mark = push("User");
+		text("ident", u.getIdent());
+		extension("category", u.getCategory());
+		int userids = 0;
+		for (int i = 0; i < u.getUseridCount(); i++)
+			if (element("UserId", i, u.getUserid(i))) {
+				userId(u.getUserid(i), i);
+				userids++;
+			}
+		if (userids == 0)
+			report("the RFC requires at least one UserId");
+		pop(mark);
+	}
+
+	private void userId(UserId u, int index) {
+		int mark = (index < 0) ? push("UserId") : push("UserId", index);
+		text("ident", u.getIdent());
+		extension("type", u.getType());
+		text("tty", u.getTty());
+		text("name", u.getName());
+		text("number", u.getNumber());
+		if ((u.getName() == null) && (u.getNumber() == null))
+			report("the RFC requires a name or a number");
+		else if ((u.getNumber() != null) && ! isDecimal(u.getNumber(), Long.MAX_VALUE))
+			report("'number' is not an integer");
+		pop(mark);
+	}
+
+	private void process(Process p) {
+		int mark = push("Process");
+		text("ident", p.getIdent());
+		if (required("name", p.getName()))
+			text("name", p.getName());
+		text("path", p.getPath());
+		strings("arg", p.getArgList().toArray());
+		strings("env", p.getEnvList().toArray());
+		pop(mark);
+	}
+
+	private void service(Service s) {
+		int mark = push("Service");
+		text("ident", s.getIdent());
+		text("name", s.getName());
+		text("iana_protocol_name", s.getIanaProtocolName());
+		text("protocol", s.getProtocol());
+		if ((s.getIpVersion() > 0) && (s.getIpVersion() != 4) && (s.getIpVersion() != 6))
+			report("'ip_version' is not 4 or 6");
+		if ((s.getIanaProtocolNumber() < 0) || (s.getIanaProtocolNumber() > 255))
+			report("'iana_protocol_number' is not 0-255");
+		if ((s.getPort() < 0) || (s.getPort() > 65535))
+			report("'port' is not 1-65535");
+		boolean namePort = (s.getName() != null) || (s.getPort() > 0);
+		if (s.getPortlist() != null) {
+			if (namePort)
+				report("the RFC allows a name and/or port, or a portlist, but not both");
+			if (! isPortlist(s.getPortlist()))
+				report("'portlist' is not a list of ports and port ranges");
+		}
+		else if (! namePort)
+			report("the RFC requires a name and/or port, or a portlist");
+		pop(mark);
+	}
+
+	private void file(File f, int depth) {
+		if (depth > MAX_DEPTH) {
+			report("Files are linked more than "+MAX_DEPTH+" deep");
+			return;
+		}
+		int mark = push("File");
+		text("ident", f.getItent());
+		if (required("category", f.getCategory()))
+			extension("category", f.getCategory());
+		extension("fstype", f.getFSType());
+		text("file-type", f.getFileType());
+		if (required("name", f.getName()))
+			text("name", f.getName());
+		if (required("path", f.getPath()))
+			text("path", f.getPath());
+		if (f.getDataSize() < -1)
+			report("'data-size' is negative");
+		if (f.getDiskSize() < -1)
+			report("'disk-size' is negative");
+		FileAccess[] fileAccess = f.getFileAccess();
+		if (fileAccess != null)
+			for (int i = 0; i < fileAccess.length; i++)
+				if (element("FileAccess", i, fileAccess[i]))
+					fileAccess(fileAccess[i], i);
+		Linkage[] linkage = f.getLinkage();
+		if (linkage != null)
+			for (int i = 0; i < linkage.length; i++)
+				if (element("Linkage", i, linkage[i]))
+					linkage(linkage[i], i, depth);
+		if (f.getInode() != null)
+			inode(f.getInode());
+		Checksum[] checksum = f.getChecksum();
+		if (checksum != null)
+			for (int i = 0; i < checksum.length; i++)
+				if (element("Checksum", i, checksum[i]))
+					checksum(checksum[i], i);
+		pop(mark);
+	}
+
+	private void fileAccess(FileAccess a, int index) {
+		int mark = push("FileAccess", index);
+		if (required("UserId", a.getUserid()))
+			userId(a.getUserid(), -1);
+		FileAccess.Permission[] permission = a.getPermission();
+		int permissions = 0;
+		if (permission != null)
+			for (int i = 0; i < permission.length; i++)
+				if (element("Permission", i, permission[i])) {
+					extension("Permission", permission[i]);
+					permissions++;
+				}
+		if (permissions == 0)
+			report("the RFC requires at least one Permission");
+		pop(mark);
+	}
+
+	private void linkage(Linkage l, int index, int depth) {
+		int mark = push("Linkage", index);
+		if (required("category", l.getCategory()))
+			extension("category", l.getCategory());
+		text("name", l.getName());
+		text("path", l.getPath());
+		if ((l.getFile() == null) && ((l.getName() == null) || (l.getPath() == null)))
+			report("the RFC requires a File, or a name and a path");
+		if (l.getFile() != null)
+			file(l.getFile(), depth + 1);
+		pop(mark);
+	}
+
+	private void inode(Inode i) {
+		int mark = push("Inode");
+		boolean number = i.getNumber() >= 0;
+		boolean major = i.getMajorDevice() >= 0;
+		boolean minor = i.getMinorDevice() >= 0;
+		if ((number != major) || (number != minor))
+			report("the RFC requires number, major-device and minor-device together");
+		if ((i.getCMajorDevice() >= 0) != (i.getCMinorDevice() >= 0))
+			report("the RFC requires c-major-device and c-minor-device together");
+		pop(mark);
+	}
+
+	private void checksum(Checksum c, int index) {
+		int mark = push("Checksum", index);
+		if (required("algorithm", c.getAlgorithm()))
+			extension("algorithm", c.getAlgorithm());
+		if (required("value", c.getValue()))
+			text("value", c.getValue());
+		text("key", c.getKey());
+		pop(mark);
+	}
+
+	private void assessment(Assessment a) {
+		int mark = push("Assessment");
+		Impact impact = a.getImpact();
+		if (impact != null) {
+			int m = push("Impact");
+			extension("severity", impact.getSeverity());
+			extension("completion", impact.getCompletion());
+			extension("type", impact.getType());
+			pop(m);
+		}
+		Action action = a.getAction();
+		if (action != null) {
+			int m = push("Action");
+			extension("category", action.getSKCategory());
+			pop(m);
+		}
+		Confidence confidence = a.getConfidence();
+		if (confidence != null) {
+			int m = push("Confidence");
+			extension("rating", confidence.getSKRating());
+			if (confidence.getSKRating() == Confidence.Rank.NUMERIC) {
+				double value = confidence.getSKNumericRating();
+				if (! ((value >= (allowExtensions ? -1.0d : 0.0d)) && (value <= 1.0d)))
+					report("the numeric rating "+value+" is not 0.0-1.0");
+			}
+			pop(m);
+		}
+		pop(mark);
+	}
+
+	private void toolAlert(ToolAlert t) {
+		int mark = push("ToolAlert");
+		if (required("name", t.getName()))
+			text("name", t.getName());
+		text("command", t.getCommand());
+		strings("alertident", t.getAlertIdent());
+		strings("analyzerid", t.getAnalyzerID());
+		pop(mark);
+	}
+
+	private void overflowAlert(OverflowAlert o) {
+		int mark = push("OverflowAlert");
+		if (required("program", o.getProgram()))
+			text("program", o.getProgram());
+		if (o.getSize() < -1)
+			report("'size' is negative");
+		if ((o.getSize() >= 0) && (o.getBuffer() != null) && (o.getSize() < o.getBuffer().length))
+			report("'size' is less than the length of 'buffer'");
+		pop(mark);
+	}
+
+	private void correlationAlert(CorrelationAlert c) {
+		int mark = push("CorrelationAlert");
+		if (required("name", c.getName()))
+			text("name", c.getName());
+		String[] alertIdent = c.getAlertIdent();
+		if ((alertIdent == null) || (alertIdent.length == 0))
+			report("the RFC requires at least one alertident");
+		strings("alertident", alertIdent);
+		strings("analyzerid", c.getAnalyzerID());
+		pop(mark);
+	}
+
+	private void additionalData(AdditionalData[] ad) {
+		if (ad == null)
+			return;
+		for (int i = 0; i < ad.length; i++) {
+			if (! element("AdditionalData", i, ad[i]))
+				continue;
+			int mark = push("AdditionalData", i);
+			text("meaning", ad[i].getMeaning());
+			if (required("type", ad[i].getAdType()))
+				extension("type", ad[i].getAdType());
+			switch (ad[i].getAdType()) {
+			case STRING:
+			case XMLTEXT:
+				text("data", ad[i].getString());
+				break;
+			default:
+				// the constructor has checked the other types, NTPSTAMP included
+			}
+			pop(mark);
+		}
+	}
+
+
+
+	/**
+	 * Report a required value that is missing
+	 *
+	 * @return true if the value is present
+	 */
+	private boolean required(String name, Object value) {
+		if (value != null)
+			return true;
+		report("'"+name+"' is required by the RFC");
+		return false;
+	}
+
+	/**
+	 * Report a null element of an array
+	 *
+	 * @return true if the element is present
+	 */
+	private boolean element(String name, int index, Object value) {
+		if (value != null)
+			return true;
+		report(name+"["+index+"] is null");
+		return false;
+	}
+
+	/**
+	 * Report an X_* extension value, unless they are allowed
+	 */
+	private void extension(String name, CodedEnum value) {
+		if ((value != null) && ! allowExtensions && (value.getValue() >= 10000))
+			report("'"+name+"' is the non-RFC value "+value);
+	}
+
+	private void strings(String name, String[] values) {
+		if (values == null)
+			return;
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] == null)
+				report(name+"["+i+"] is null");
+			else
+				text(name, values[i]);
+		}
+	}
+
+	/**
+	 * Report a string holding characters that XML 1.0 cannot carry: control characters other
+	 * than tab, newline and carriage return, unpaired surrogates, and U+FFFE and U+FFFF
+	 */
+	private void text(String name, String s) {
+		if (s == null)
+			return;
+		int len = s.length();
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			if (c < 0x20) {
+				if ((c == '\t') || (c == '\n') || (c == '\r'))
+					continue;
+			}
+			else if (c < 0xd800)
+				continue;
+			else if (c < 0xdc00) {
+				if ((i + 1 < len) && (s.charAt(i + 1) >= 0xdc00) && (s.charAt(i + 1) <= 0xdfff)) {
+					i++;
+					continue;
+				}
+			}
+			else if (c > 0xdfff) {
+				if (c < 0xfffe)
+					continue;
+			}
+			report("'"+name+"' holds the character U+"+Integer.toHexString(0x10000 | c).substring(1)
+					+" at "+i+", which XML cannot carry");
+			return;
+		}
+	}
+
+	private int push(String name) {
+		int mark = path.length();
+		if (mark > 0)
+			path.append('.');
+		path.append(name);
+		return mark;
+	}
+
+	private int push(String name, int index) {
+		int mark = push(name);
+		path.append('[').append(index).append(']');
+		return mark;
+	}
+
+	private void pop(int mark) {
+		path.setLength(mark);
+	}
+
+	private void report(String message) {
+		violations.add((path.length() == 0) ? message : path+": "+message);
+	}
+
+
+
+	/**
+	 * @return true if s is a dotted-quad IPv4 address
+	 */
+	private static boolean isIPv4(String s) {
+		return (s != null) && isIPv4(s, 0, s.length());
+	}
+
+	private static boolean isIPv4(String s, int start, int end) {
+		int parts = 0;
+		int value = 0;
+		int digits = 0;
+		for (int i = start; i <= end; i++) {
+			char c = (i < end) ? s.charAt(i) : '.';
+			if ((c >= '0') && (c <= '9')) {
+				value = value * 10 + (c - '0');
+				if ((++digits > 3) || (value > 255))
+					return false;
+			}
+			else if ((c == '.') && (digits > 0)) {
+				parts++;
+				value = 0;
+				digits = 0;
+			}
+			else
+				return false;
+		}
+		return parts == 4;
+	}
+
+	/**
+	 * @return true if s is an IPv6 address in the text forms of RFC4291 section 2.2 (hex groups,
+	 * "::", and a dotted-quad IPv4 tail)
+	 */
+	private static boolean isIPv6(String s) {
+		if (s == null)
+			return false;
+		int len = s.length();
+		int groups = 0;
+		boolean compressed = false;
+		int i = 0;
+		if (s.startsWith("::")) {
+			compressed = true;
+			i = 2;
+			if (i == len)
+				return true;
+		}
+		while (i < len) {
+			int start = i;
+			while ((i < len) && (Character.digit(s.charAt(i), 16) >= 0))
+				i++;
+			if ((i < len) && (s.charAt(i) == '.')) {
+				// an IPv4 tail takes the place of the last two groups
+				if (! isIPv4(s, start, len))
+					return false;
+				groups += 2;
+				break;
+			}
+			if ((i == start) || (i - start > 4))
+				return false;
+			groups++;
+			if (i == len)
+				break;
+			if (s.charAt(i) != ':')
+				return false;
+			i++;
+			if ((i < len) && (s.charAt(i) == ':')) {
+				if (compressed)
+					return false;
+				compressed = true;
+				i++;
+				if (i == len)
+					break;
+			}
+			else if (i == len)
+				return false;
+		}
+		return compressed ? (groups < 8) : (groups == 8);
+	}
+
+	/**
+	 * @return true if s is an unsigned decimal integer no greater than max
+	 */
+	private static boolean isDecimal(String s, long max) {
+		if ((s == null) || (s.length() == 0) || (s.length() > 18))
+			return false;
+		long v = 0;
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if ((c < '0') || (c > '9'))
+				return false;
+			v = v * 10 + (c - '0');
+		}
+		return v <= max;
+	}
+
+	/**
+	 * @return true if s is a portlist as RFC4765DataTypes.parsePortlist() reads it: ports and
+	 * low-high ranges of ports, separated by commas
+	 */
+	private static boolean isPortlist(String s) {
+		int len = s.length();
+		int start = 0;
+		while (start <= len) {
+			int comma = s.indexOf(',', start);
+			if (comma < 0)
+				comma = len;
+			int low = -1;
+			int value = -1;
+			for (int i = start; i < comma; i++) {
+				char c = s.charAt(i);
+				if ((c >= '0') && (c <= '9')) {
+					value = ((value < 0) ? 0 : value * 10) + (c - '0');
+					if (value > 65535)
+						return false;
+				}
+				else if ((c == '-') && (low < 0) && (value >= 0)) {
+					low = value;
+					value = -1;
+				}
+				else if (c != ' ')
+					return false;
+			}
+			if ((value < 0) || ((low >= 0) && (low > value)))
+				return false;
+			start = comma + 1;
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,1076 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.joda.time.DateTime;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.CorrelationAlert;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.OverflowAlert;
+import com.cr_labs.rfc4765.PortSet;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Reads RFC4765 IDMEF-Message XML from an InputStream and builds the com.cr_labs.rfc4765
+ * objects directly from the StAX event stream - no DOM, and no more than one message's
+ * worth of objects in memory at a time, so archives of any size are read in constant memory.
+ *
+ * <p>Each call to next() returns the next Alert or Heartbeat in the stream, wherever it appears:
+ * an IDMEF-Message may carry many of them, and an archive may wrap many IDMEF-Message elements
+ * in a root element of its own; nextBatch() returns the messages of one IDMEF-Message together.
+ * (Plain concatenations of XML documents are not well-formed XML; wrap them in a root element
+ * first.) Elements are matched by local name, so both the default namespace and an "idmef:"
+ * prefix are accepted; unknown elements are skipped.
+ *
+ * <p>Content that the object model rejects (a missing required element, for example) surfaces
+ * as the IllegalArgumentException thrown by the model class's constructor. Host names given
+ * as Address values are kept unresolved, so reading never waits on DNS (see RFC4765Resolver).
+ *
+ * <p>Running totals of messages, bytes and time spent parsing are kept for throughput reporting.
+ * A reader is not thread safe.
+ *
+ * <pre>
+ * RFC4765XMLReader r = new RFC4765XMLReader(new FileInputStream("alerts.xml"));
+ * IDMEFMessage m;
+ * while ((m = r.next()) != null)
+ *     process(m);
+ * System.out.println(r.getMessagesPerSecond()+" messages/s");
+ * r.close();
+ * </pre>
+ */
+public class RFC4765XMLReader {
+
+	private static final XMLInputFactory FACTORY = XMLInputFactory.newInstance();
+	static {
+		// IDMEF needs neither, and both are XML attack surface
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+	}
+
+	private final CountingInputStream in;
+	private final XMLStreamReader r;
+
+	private RFC4765Interner interner;
+	private long messageCount;
+	private long parseNanos;
+	private final IDMEFMessage_Alert.Builder alertBuilder = new IDMEFMessage_Alert.Builder();
+	private final IDMEFMessage_Heartbeat.Builder heartbeatBuilder = new IDMEFMessage_Heartbeat.Builder();
+	private int timeOffset;
+
+
+	/**
+	 * @param in the stream to read. The encoding is taken from the XML declaration (default UTF-8).
+	 * @throws XMLStreamException if the stream cannot be opened as XML
+	 */
+	public RFC4765XMLReader(InputStream in)
+	throws XMLStreamException {
+		this.in = new CountingInputStream(in);
+		this.r = FACTORY.createXMLStreamReader(this.in);
+	}
+
+
+	/**
+	 * @param interner if not null, the Analyzers, Nodes, Classifications, References, Addresses
+	 * and Process arg and env lists read are interned in it, so that recurring values are shared by the
+	 * messages read (null to stop)
+	 */
+	public void setInterner(RFC4765Interner interner) {
+		this.interner = interner;
+	}
+
+
+	/**
+	 * Read the next Alert or Heartbeat from the stream
+	 *
+	 * @return the next message, or null at the end of the stream
+	 * @throws XMLStreamException if the XML is malformed
+	 * @throws IllegalArgumentException if the content is rejected by the object model
+	 */
+	public IDMEFMessage next()
+	throws XMLStreamException, IllegalArgumentException {
+		long started = System.nanoTime();
+		try {
+			while (r.hasNext()) {
+				if (r.next() != XMLStreamConstants.START_ELEMENT)
+					continue;
+				String name = r.getLocalName();
+				IDMEFMessage m;
+				if ("Alert".equals(name))
+					m = readAlert();
+				else if ("Heartbeat".equals(name))
+					m = readHeartbeat();
+				else
+					continue;
+				messageCount++;
+				return m;
+			}
+			return null;
+		}
+		finally {
+			parseNanos += System.nanoTime() - started;
+		}
+	}
+
+	/**
+	 * Read the Alerts and Heartbeats up to the end of the next IDMEF-Message element. Called
+	 * part way through an IDMEF-Message (after next()), it returns the rest of that one.
+	 *
+	 * @return the messages of the envelope (possibly none, for an empty IDMEF-Message), or
+	 * null at the end of the stream
+	 * @throws XMLStreamException if the XML is malformed
+	 * @throws IllegalArgumentException if the content is rejected by the object model
+	 */
+	public IDMEFMessageBatch nextBatch()
+	throws XMLStreamException, IllegalArgumentException {
+		long started = System.nanoTime();
+		try {
+			ArrayList<IDMEFMessage> messages = new ArrayList<IDMEFMessage>();
+			while (r.hasNext()) {
+				int event = r.next();
+				if (event == XMLStreamConstants.END_ELEMENT) {
+					if ("IDMEF-Message".equals(r.getLocalName()))
+						return new IDMEFMessageBatch(messages);
+					continue;
+				}
+				if (event != XMLStreamConstants.START_ELEMENT)
+					continue;
+				String name = r.getLocalName();
+				if ("Alert".equals(name))
+					messages.add(readAlert());
+				else if ("Heartbeat".equals(name))
+					messages.add(readHeartbeat());
+				else
+					continue;
+				messageCount++;
+			}
+			return messages.isEmpty() ? null : new IDMEFMessageBatch(messages);
+		}
+		finally {
+			parseNanos += System.nanoTime() - started;
+		}
+	}
+
+	/**
+	 * Close the reader and the underlying stream
+	 */
+	public void close()
+	throws XMLStreamException, IOException {
+		r.close();
+		in.close();
+	}
+
+
+	/**
+	 * @return the number of messages returned by next() so far
+	 */
+	public long getMessageCount() {
+		return messageCount;
+	}
+
+	/**
+	 * @return the number of bytes consumed from the underlying stream so far (this runs
+	 * a little ahead of the parse position, because the XML parser reads in blocks)
+	 */
+	public long getBytesRead() {
+		return in.count;
+	}
+
+	/**
+	 * @return the total time spent inside next(), in nanoseconds
+	 */
+	public long getParseNanos() {
+		return parseNanos;
+	}
+
+	/**
+	 * @return messages parsed per second of time spent parsing, or 0 if nothing has been parsed
+	 */
+	public double getMessagesPerSecond() {
+		return (parseNanos == 0) ? 0.0d : messageCount * 1.0e9d / parseNanos;
+	}
+
+	/**
+	 * @return bytes parsed per second of time spent parsing, or 0 if nothing has been parsed
+	 */
+	public double getBytesPerSecond() {
+		return (parseNanos == 0) ? 0.0d : in.count * 1.0e9d / parseNanos;
+	}
+
+
+
+	private IDMEFMessage_Alert readAlert()
+	throws XMLStreamException {
+		IDMEFMessage_Alert.Builder alert = alertBuilder.reset();
+		alert.messageID(attr("messageid"));
+
+		while (nextChild()) {
+			String name = r.getLocalName();
+			if ("Analyzer".equals(name))
+				alert.analyzer(readAnalyzer());
+			else if ("CreateTime".equals(name))
+				alert.createTime(readTimeMillis(), timeOffset);
+			else if ("DetectTime".equals(name))
+				alert.detectTime(readTimeMillis(), timeOffset);
+			else if ("AnalyzerTime".equals(name))
+				alert.analyzerTime(readTimeMillis(), timeOffset);
+			else if ("Source".equals(name))
+				alert.addSource(readSource());
+			else if ("Target".equals(name))
+				alert.addTarget(readTarget());
+			else if ("Classification".equals(name))
+				alert.classification(readClassification());
+			else if ("Assessment".equals(name))
+				alert.assessment(readAssessment());
+			else if ("ToolAlert".equals(name))
+				alert.toolAlert(readToolAlert());
+			else if ("OverflowAlert".equals(name))
+				alert.overflowAlert(readOverflowAlert());
+			else if ("CorrelationAlert".equals(name))
+				alert.correlationAlert(readCorrelationAlert());
+			else if ("AdditionalData".equals(name))
+				alert.addAdditionalData(readAdditionalData());
+			else
+				skip();
+		}
+		return alert.build();
+	}
+
+	private IDMEFMessage_Heartbeat readHeartbeat()
+	throws XMLStreamException {
+		IDMEFMessage_Heartbeat.Builder heartbeat = heartbeatBuilder.reset();
+		heartbeat.messageID(attr("messageid"));
+
+		while (nextChild()) {
+			String name = r.getLocalName();
+			if ("Analyzer".equals(name))
+				heartbeat.analyzer(readAnalyzer());
+			else if ("CreateTime".equals(name))
+				heartbeat.createTime(readTimeMillis(), timeOffset);
+			else if ("AnalyzerTime".equals(name))
+				heartbeat.analyzerTime(readTimeMillis(), timeOffset);
+			else if ("HeartbeatInterval".equals(name))
+				heartbeat.heartbeatInterval(readInt());
+			else if ("AdditionalData".equals(name))
+				heartbeat.addAdditionalData(readAdditionalData());
+			else
+				skip();
+		}
+		return heartbeat.build();
+	}
+
+	private Analyzer intern(Analyzer analyzer) {
+		return (interner == null) ? analyzer : interner.intern(analyzer);
+	}
+
+	private Classification intern(Classification classification) {
+		return (interner == null) ? classification : interner.intern(classification);
+	}
+
+	private Reference intern(Reference reference) {
+		return (interner == null) ? reference : interner.intern(reference);
+	}
+
+	private Node intern(Node node) {
+		return (interner == null) ? node : interner.intern(node);
+	}
+
+	private Address intern(Address address) {
+		return (interner == null) ? address : interner.intern(address);
+	}
+
+	private Process intern(Process process) {
+		return (interner == null) ? process : interner.intern(process);
+	}
+
+
+	private Analyzer readAnalyzer()
+	throws XMLStreamException {
+		String analyzerID = attr("analyzerid");
+		String name = attr("name");
+		String manufacturer = attr("manufacturer");
+		String model = attr("model");
+		String version = attr("version");
+		String aclass = attr("class");
+		String ostype = attr("ostype");
+		String osversion = attr("osversion");
+		Node node = null;
+		Process process = null;
+		Analyzer originalAnalyzer = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("Node".equals(child))
+				node = readNode();
+			else if ("Process".equals(child))
+				process = readProcess();
+			else if ("Analyzer".equals(child))
+				originalAnalyzer = readAnalyzer();
+			else
+				skip();
+		}
+		return intern(new Analyzer(analyzerID, name, manufacturer, model, version, aclass, ostype, osversion, node, process, originalAnalyzer));
+	}
+
+	private Classification readClassification()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		String text = attr("text");
+		ArrayList<Reference> reference = null;
+		while (nextChild()) {
+			if ("Reference".equals(r.getLocalName())) {
+				if (reference == null)
+					reference = new ArrayList<Reference>(2);
+				reference.add(readReference());
+			}
+			else
+				skip();
+		}
+		return intern(new Classification(ident, text, (reference == null) ? null : reference.toArray(new Reference[reference.size()])));
+	}
+
+	private Reference readReference()
+	throws XMLStreamException {
+		Reference.Origin origin = RFC4765EnumCodes.fromKeyword(Reference.Origin.class, attr("origin"));
+		String meaning = attr("meaning");
+		String name = null;
+		String url = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("name".equals(child))
+				name = r.getElementText();
+			else if ("url".equals(child))
+				url = r.getElementText().trim();
+			else
+				skip();
+		}
+		try {
+			return intern(new Reference(origin, meaning, name, (url == null) ? null : new URI(url)));
+		}
+		catch (URISyntaxException use) {
+			throw new IllegalArgumentException("Reference url "+url+" is not a valid URI: "+use.getMessage());
+		}
+	}
+
+	private Source readSource()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		Source.SpoofedRank spoofed = RFC4765EnumCodes.fromKeyword(Source.SpoofedRank.class, attr("spoofed"));
+		String iface = attr("interface");
+		Node node = null;
+		User user = null;
+		Process process = null;
+		Service service = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("Node".equals(child))
+				node = readNode();
+			else if ("User".equals(child))
+				user = readUser();
+			else if ("Process".equals(child))
+				process = readProcess();
+			else if ("Service".equals(child))
+				service = readService();
+			else
+				skip();
+		}
+		return new Source(ident, spoofed, iface, node, user, process, service);
+	}
+
+	private Target readTarget()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		Target.DecoyRank decoy = RFC4765EnumCodes.fromKeyword(Target.DecoyRank.class, attr("decoy"));
+		String iface = attr("interface");
+		Node node = null;
+		User user = null;
+		Process process = null;
+		Service service = null;
+		File file = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("Node".equals(child))
+				node = readNode();
+			else if ("User".equals(child))
+				user = readUser();
+			else if ("Process".equals(child))
+				process = readProcess();
+			else if ("Service".equals(child))
+				service = readService();
+			else if ("File".equals(child) && (file == null))
+				// the object model carries one File per Target
+				file = readFile();
+			else
+				skip();
+		}
+		return new Target(ident, decoy, iface, node, user, process, service, file);
+	}
+
+	private Node readNode()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		Node.Category category = RFC4765EnumCodes.fromKeyword(Node.Category.class, attr("category"));
+		String location = null;
+		String name = null;
+		ArrayList<Address> address = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("location".equals(child))
+				location = r.getElementText();
+			else if ("name".equals(child))
+				name = r.getElementText();
+			else if ("Address".equals(child)) {
+				if (address == null)
+					address = new ArrayList<Address>(2);
+				address.add(readAddress());
+			}
+			else
+				skip();
+		}
+		return intern(new Node(ident, category, location, name, (address == null) ? null : address.toArray(new Address[address.size()])));
+	}
+
+	private Address readAddress()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		Address.Category category = RFC4765EnumCodes.fromKeyword(Address.Category.class, attr("category"));
+		String vlanName = attr("vlan-name");
+		String vlanNum = attr("vlan-num");
+		String address = null;
+		String netmask = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("address".equals(child))
+				address = r.getElementText();
+			else if ("netmask".equals(child))
+				netmask = r.getElementText().trim();
+			else
+				skip();
+		}
+		// the Address class takes net categories as a single "address/netmask" string
+		if ((netmask != null) && (address != null)
+				&& ((category == Address.Category.IPV4_NET) || (category == Address.Category.IPV4_NET_MASK)
+						|| (category == Address.Category.IPV6_NET) || (category == Address.Category.IPV6_NET_MASK)))
+			address = address.trim()+"/"+netmask;
+		return intern(new Address(ident, address, category, vlanName, vlanNum, false));
+	}
+
+	private User readUser()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		User.Category category = RFC4765EnumCodes.fromKeyword(User.Category.class, attr("category"));
+		ArrayList<UserId> userid = new ArrayList<UserId>(1);
+		while (nextChild()) {
+			if ("UserId".equals(r.getLocalName()))
+				userid.add(readUserId());
+			else
+				skip();
+		}
+		return new User(ident, category, userid.toArray(new UserId[userid.size()]));
+	}
+
+	private UserId readUserId()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		UserId.Type type = RFC4765EnumCodes.fromKeyword(UserId.Type.class, attr("type"));
+		String tty = attr("tty");
+		String name = null;
+		String number = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("name".equals(child))
+				name = r.getElementText();
+			else if ("number".equals(child))
+				number = r.getElementText().trim();
+			else
+				skip();
+		}
+		return new UserId(ident, type, tty, name, number);
+	}
+
+	private Process readProcess()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		String name = null;
+		int pid = 0;
+		String path = null;
+		ArrayList<String> arg = null;
+		ArrayList<String> env = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("name".equals(child))
+				name = r.getElementText();
+			else if ("pid".equals(child))
+				pid = readInt();
+			else if ("path".equals(child))
+				path = r.getElementText();
+			else if ("arg".equals(child)) {
+				if (arg == null)
+					arg = new ArrayList<String>();
+				arg.add(r.getElementText());
+			}
+			else if ("env".equals(child)) {
+				if (env == null)
+					env = new ArrayList<String>();
+				env.add(r.getElementText());
+			}
+			else
+				skip();
+		}
+		return intern(new Process(ident, name, pid, path,
+				(arg == null) ? null : arg.toArray(new String[arg.size()]),
+				(env == null) ? null : env.toArray(new String[env.size()])));
+	}
+
+	private Service readService()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		int ipVersion = intAttr("ip_version", 0);
+		int ianaProtocolNumber = intAttr("iana_protocol_number", 0);
+		String ianaProtocolName = attr("iana_protocol_name");
+		String name = null;
+		int port = 0;
+		String portlist = null;
+		String protocol = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("name".equals(child))
+				name = r.getElementText();
+			else if ("port".equals(child))
+				port = readInt();
+			else if ("portlist".equals(child))
+				portlist = r.getElementText().trim();
+			else if ("protocol".equals(child))
+				protocol = r.getElementText();
+			else
+				skip();
+		}
+		return new Service(ident, ipVersion, ianaProtocolNumber, ianaProtocolName, name, port, portlist, protocol);
+	}
+
+	private File readFile()
+	throws XMLStreamException {
+		String ident = attr("ident");
+		File.Category category = RFC4765EnumCodes.fromKeyword(File.Category.class, attr("category"));
+		File.FSType fsType = RFC4765EnumCodes.fromKeyword(File.FSType.class, attr("fstype"));
+		String fileType = attr("file-type");
+		String name = null;
+		String path = null;
+		DateTime createTime = null;
+		DateTime modifyTime = null;
+		DateTime accessTime = null;
+		int dataSize = -1;
+		int diskSize = -1;
+		ArrayList<FileAccess> fileAccess = null;
+		ArrayList<Linkage> linkage = null;
+		Inode inode = null;
+		ArrayList<Checksum> checksum = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("name".equals(child))
+				name = r.getElementText();
+			else if ("path".equals(child))
+				path = r.getElementText();
+			else if ("create-time".equals(child))
+				createTime = readDateTime();
+			else if ("modify-time".equals(child))
+				modifyTime = readDateTime();
+			else if ("access-time".equals(child))
+				accessTime = readDateTime();
+			else if ("data-size".equals(child))
+				dataSize = readInt();
+			else if ("disk-size".equals(child))
+				diskSize = readInt();
+			else if ("FileAccess".equals(child)) {
+				if (fileAccess == null)
+					fileAccess = new ArrayList<FileAccess>(2);
+				fileAccess.add(readFileAccess());
+			}
+			else if ("Linkage".equals(child)) {
+				if (linkage == null)
+					linkage = new ArrayList<Linkage>(2);
+				linkage.add(readLinkage());
+			}
+			else if ("Inode".equals(child))
+				inode = readInode();
+			else if ("Checksum".equals(child)) {
+				if (checksum == null)
+					checksum = new ArrayList<Checksum>(2);
+				checksum.add(readChecksum());
+			}
+			else
+				skip();
+		}
+		return new File(ident, category, fsType, fileType, name, path, createTime, modifyTime, accessTime, dataSize, diskSize,
+				(fileAccess == null) ? null : fileAccess.toArray(new FileAccess[fileAccess.size()]),
+				(linkage == null) ? null : linkage.toArray(new Linkage[linkage.size()]),
+				inode,
+				(checksum == null) ? null : checksum.toArray(new Checksum[checksum.size()]));
+	}
+
+	private FileAccess readFileAccess()
+	throws XMLStreamException {
+		UserId userId = null;
+		ArrayList<FileAccess.Permission> permission = new ArrayList<FileAccess.Permission>(4);
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("UserId".equals(child))
+				userId = readUserId();
+			else if ("permission".equals(child)) {
+				FileAccess.Permission p = RFC4765EnumCodes.fromKeyword(FileAccess.Permission.class, attr("perms"));
+				if (p != null)
+					permission.add(p);
+				skip();
+			}
+			else
+				skip();
+		}
+		return new FileAccess(userId, permission.toArray(new FileAccess.Permission[permission.size()]));
+	}
+
+	private Linkage readLinkage()
+	throws XMLStreamException {
+		Linkage.Category category = RFC4765EnumCodes.fromKeyword(Linkage.Category.class, attr("category"));
+		String name = null;
+		String path = null;
+		File file = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("name".equals(child))
+				name = r.getElementText();
+			else if ("path".equals(child))
+				path = r.getElementText();
+			else if ("File".equals(child))
+				file = readFile();
+			else
+				skip();
+		}
+		return new Linkage(category, name, path, file);
+	}
+
+	private Inode readInode()
+	throws XMLStreamException {
+		DateTime changeTime = null;
+		int number = -1;
+		int majorDevice = -1;
+		int minorDevice = -1;
+		int cMajorDevice = -1;
+		int cMinorDevice = -1;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("change-time".equals(child))
+				changeTime = readDateTime();
+			else if ("number".equals(child))
+				number = readInt();
+			else if ("major-device".equals(child))
+				majorDevice = readInt();
+			else if ("minor-device".equals(child))
+				minorDevice = readInt();
+			else if ("c-major-device".equals(child))
+				cMajorDevice = readInt();
+			else if ("c-minor-device".equals(child))
+				cMinorDevice = readInt();
+			else
+				skip();
+		}
+		return new Inode(changeTime, number, majorDevice, minorDevice, cMajorDevice, cMinorDevice);
+	}
+
+	private Checksum readChecksum()
+	throws XMLStreamException {
+		Checksum.Algorithm algorithm = RFC4765EnumCodes.fromKeyword(Checksum.Algorithm.class, attr("algorithm"));
+		String value = null;
+		String key = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("value".equals(child))
+				value = r.getElementText();
+			else if ("key".equals(child))
+				key = r.getElementText();
+			else
+				skip();
+		}
+		return new Checksum(algorithm, value, key);
+	}
+
+	private Assessment readAssessment()
+	throws XMLStreamException {
+		Impact impact = null;
+		Action action = null;
+		Confidence confidence = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("Impact".equals(child)) {
+				impact = new Impact(
+						RFC4765EnumCodes.fromKeyword(Impact.Severity.class, attr("severity")),
+						RFC4765EnumCodes.fromKeyword(Impact.Completion.class, attr("completion")),
+						RFC4765EnumCodes.fromKeyword(Impact.Type.class, attr("type")));
+				skip();
+			}
+			else if ("Action".equals(child) && (action == null)) {
+				// the object model carries one Action per Assessment
+				action = new Action(RFC4765EnumCodes.fromKeyword(Action.Category.class, attr("category")));
+				skip();
+			}
+			else if ("Confidence".equals(child)) {
+				Confidence.Rank rank = RFC4765EnumCodes.fromKeyword(Confidence.Rank.class, attr("rating"));
+				String value = r.getElementText().trim();
+				if ((rank == Confidence.Rank.NUMERIC) && (value.length() > 0))
+					confidence = new Confidence(parseDouble(value));
+				else
+					confidence = new Confidence((rank == null) ? Confidence.Rank.LOW : rank);
+			}
+			else
+				skip();
+		}
+		return new Assessment(impact, action, confidence);
+	}
+
+	private ToolAlert readToolAlert()
+	throws XMLStreamException {
+		String name = null;
+		String command = null;
+		ArrayList<String> alertIdent = new ArrayList<String>(4);
+		ArrayList<String> analyzerID = new ArrayList<String>(4);
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("name".equals(child))
+				name = r.getElementText();
+			else if ("command".equals(child))
+				command = r.getElementText();
+			else if ("alertident".equals(child))
+				readAlertIdent(alertIdent, analyzerID);
+			else
+				skip();
+		}
+		return new ToolAlert(name, command, alertIdent.toArray(new String[alertIdent.size()]), analyzerIDs(analyzerID));
+	}
+
+	private OverflowAlert readOverflowAlert()
+	throws XMLStreamException {
+		String program = null;
+		int size = -1;
+		byte[] buffer = null;
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("program".equals(child))
+				program = r.getElementText();
+			else if ("size".equals(child))
+				size = readInt();
+			else if ("buffer".equals(child))
+				buffer = RFC4765DataTypes.decodeBase64(r.getElementText());
+			else
+				skip();
+		}
+		return new OverflowAlert(program, size, buffer);
+	}
+
+	private CorrelationAlert readCorrelationAlert()
+	throws XMLStreamException {
+		String name = null;
+		ArrayList<String> alertIdent = new ArrayList<String>(4);
+		ArrayList<String> analyzerID = new ArrayList<String>(4);
+		while (nextChild()) {
+			String child = r.getLocalName();
+			if ("name".equals(child))
+				name = r.getElementText();
+			else if ("alertident".equals(child))
+				readAlertIdent(alertIdent, analyzerID);
+			else
+				skip();
+		}
+		return new CorrelationAlert(name, alertIdent.toArray(new String[alertIdent.size()]), analyzerIDs(analyzerID));
+	}
+
+	private void readAlertIdent(ArrayList<String> alertIdent, ArrayList<String> analyzerID)
+	throws XMLStreamException {
+		analyzerID.add(attr("analyzerid"));
+		alertIdent.add(r.getElementText().trim());
+	}
+
+	/**
+	 * @return the analyzerids parallel to the alertidents, or null if none of the alertidents had one
+	 */
+	private String[] analyzerIDs(ArrayList<String> analyzerID) {
+		for (int i = 0; i < analyzerID.size(); i++)
+			if (analyzerID.get(i) != null)
+				return analyzerID.toArray(new String[analyzerID.size()]);
+		return null;
+	}
+
+	private AdditionalData readAdditionalData()
+	throws XMLStreamException {
+		AdditionalData.Type type = RFC4765EnumCodes.fromKeyword(AdditionalData.Type.class, attr("type"));
+		String meaning = attr("meaning");
+		AdditionalData ad = null;
+		while (nextChild()) {
+			if ((type != null) && RFC4765EnumCodes.keyword(type).equals(r.getLocalName()))
+				ad = readAdditionalDataValue(type, meaning);
+			else
+				skip();
+		}
+		if (ad == null)
+			// no type, or no value: the constructor says which is missing
+			return new AdditionalData(type, null, meaning);
+		return ad;
+	}
+
+	private AdditionalData readAdditionalDataValue(AdditionalData.Type type, String meaning)
+	throws XMLStreamException {
+		if (type == AdditionalData.Type.XMLTEXT)
+			return new AdditionalData(type, readMarkup(), meaning);
+		String text = r.getElementText();
+		switch (type) {
+		case BOOLEAN:
+			return new AdditionalData("true".equals(text.trim()) || "1".equals(text.trim()), meaning);
+		case BYTE:
+			return new AdditionalData((byte) parseInt(text), meaning);
+		case CHARACTER:
+			if (text.length() != 1)
+				throw new IllegalArgumentException("AdditionalData character value must be one character: "+text);
+			return new AdditionalData(text.charAt(0), meaning);
+		case DATE_TIME:
+			return new AdditionalData(type, RFC4765DataTypes.parseDateTime(text), meaning);
+		case INTEGER:
+			return new AdditionalData(parseInt(text), meaning);
+		case PORTLIST:
+			return new AdditionalData(new PortSet(text), meaning);
+		case REAL:
+			return new AdditionalData(parseDouble(text), meaning);
+		case BYTE_STRING:
+			return new AdditionalData(RFC4765DataTypes.decodeBase64(text), meaning);
+		default:
+			// NTPSTAMP, STRING
+			return new AdditionalData(type, text, meaning);
+		}
+	}
+
+	/**
+	 * Copy out the element content of an xmltext value as markup text. Positioned at the
+	 * start of the xmltext element; leaves the reader at its end.
+	 */
+	private String readMarkup()
+	throws XMLStreamException {
+		StringBuilder sb = new StringBuilder();
+		int depth = 1;
+		while (depth > 0) {
+			int event = r.next();
+			switch (event) {
+			case XMLStreamConstants.START_ELEMENT:
+				depth++;
+				sb.append('<').append(r.getLocalName());
+				for (int i = 0; i < r.getAttributeCount(); i++) {
+					sb.append(' ').append(r.getAttributeLocalName(i)).append("=\"");
+					escapeTo(sb, r.getAttributeValue(i));
+					sb.append('"');
+				}
+				sb.append('>');
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				depth--;
+				if (depth > 0)
+					sb.append("</").append(r.getLocalName()).append('>');
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+				escapeTo(sb, r.getText());
+				break;
+			default:
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void escapeTo(StringBuilder sb, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '<')
+				sb.append("&lt;");
+			else if (c == '&')
+				sb.append("&amp;");
+			else if (c == '"')
+				sb.append("&quot;");
+			else
+				sb.append(c);
+		}
+	}
+
+
+	/**
+	 * CreateTime, DetectTime, AnalyzerTime and the file and inode times. The ntpstamp attribute
+	 * of the first three carries the same instant as the text and is not needed.
+	 */
+	private DateTime readDateTime()
+	throws XMLStreamException {
+		return RFC4765DataTypes.parseDateTime(r.getElementText());
+	}
+
+	/**
+	 * Read a message time without making a DateTime: the milliseconds are returned and the zone
+	 * offset left in timeOffset, so createTime(readTimeMillis(), timeOffset) sees both
+	 */
+	private long readTimeMillis()
+	throws XMLStreamException {
+		String text = r.getElementText();
+		long millis = RFC4765DataTypes.parseDateTimeMillis(text);
+		timeOffset = RFC4765DataTypes.parseDateTimeOffset(text);
+		return millis;
+	}
+
+	private int readInt()
+	throws XMLStreamException {
+		return parseInt(r.getElementText());
+	}
+
+	private String attr(String name) {
+		return r.getAttributeValue(null, name);
+	}
+
+	private int intAttr(String name, int defaultValue) {
+		String value = attr(name);
+		return (value == null) ? defaultValue : parseInt(value);
+	}
+
+	private static int parseInt(String s)
+	throws IllegalArgumentException {
+		try {
+			return Integer.parseInt(s.trim());
+		}
+		catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("Not an RFC4765 INTEGER: "+s);
+		}
+	}
+
+	private static double parseDouble(String s)
+	throws IllegalArgumentException {
+		try {
+			return Double.parseDouble(s.trim());
+		}
+		catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("Not an RFC4765 REAL: "+s);
+		}
+	}
+
+
+	/**
+	 * Advance to the next child element of the current element.
+	 *
+	 * @return true if positioned at the child's start tag, false if the current element ended
+	 */
+	private boolean nextChild()
+	throws XMLStreamException {
+		while (true) {
+			int event = r.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				return true;
+			if (event == XMLStreamConstants.END_ELEMENT)
+				return false;
+		}
+	}
+
+	/**
+	 * Skip the current element and everything in it. Positioned at its start tag; leaves the reader at its end tag.
+	 */
+	private void skip()
+	throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = r.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+
+	/**
+	 * Counts bytes read through it, for throughput reporting
+	 */
+	private static class CountingInputStream extends FilterInputStream {
+		long count;
+
+		CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		public int read()
+		throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				count++;
+			return b;
+		}
+
+		public int read(byte[] b, int off, int len)
+		throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				count += n;
+			return n;
+		}
+
+		public long skip(long n)
+		throws IOException {
+			long skipped = super.skip(n);
+			count += skipped;
+			return skipped;
+		}
+	}
+
+}
@@ -0,0 +1,773 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+import org.joda.time.DateTime;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.CorrelationAlert;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_CorrelationAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessage_OverflowAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_ToolAlert;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.NtpStamp;
+import com.cr_labs.rfc4765.OverflowAlert;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Writes IDMEFMessage objects as RFC4765 IDMEF-Message XML documents, streaming
+ * straight into an Appendable (or an OutputStream, as UTF-8).
+ *
+ * <p>Unlike XStream (see RFC4765XStreamConfigurator) this writer walks the object
+ * model with ordinary getter calls - no reflection and no intermediate tree - and
+ * emits the element and attribute names of the RFC's schema, in schema order,
+ * in the "http://iana.org/idmef" namespace.
+ *
+ * <p>Output is strictly RFC-compliant: where a class carries non-RFC extension values
+ * (the X_* constants), the RFC-mapped value is written (e.g. Address.getRFCCategory()).
+ * Confidence ratings are written using the RFC's 0.0 .. 1.0 range.
+ *
+ * <p>A writer is not thread safe; use one per thread or per output stream.
+ *
+ * <pre>
+ * RFC4765XMLWriter w = new RFC4765XMLWriter(socketOutputStream);
+ * w.writeMessage(alert);
+ * w.flush();
+ * </pre>
+ */
+public class RFC4765XMLWriter {
+
+	/**
+	 * The XML namespace of IDMEF messages, per RFC4765 Section 8
+	 */
+	public static final String NAMESPACE = "http://iana.org/idmef";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final Appendable out;
+	private final boolean writeDeclaration;
+
+
+	/**
+	 * Write documents into any Appendable (StringBuilder, Writer, CharBuffer...).
+	 * No XML declaration is written, as the eventual character encoding is up to the caller.
+	 *
+	 * @param out where to write
+	 */
+	public RFC4765XMLWriter(Appendable out) {
+		this.out = out;
+		this.writeDeclaration = false;
+	}
+
+	/**
+	 * Write UTF-8 encoded documents, each with an XML declaration, to an OutputStream.
+	 * Output is buffered; call flush() to push it to the stream.
+	 *
+	 * @param os where to write
+	 */
+	public RFC4765XMLWriter(OutputStream os) {
+		this.out = new BufferedWriter(new OutputStreamWriter(os, UTF8));
+		this.writeDeclaration = true;
+	}
+
+
+	/**
+	 * Write one complete IDMEF-Message document containing the given message
+	 *
+	 * @param message the alert or heartbeat to write
+	 * @throws IOException if the underlying Appendable throws it
+	 * @throws IllegalArgumentException if message is not one of the IDMEFMessage_* classes
+	 */
+	public void writeMessage(IDMEFMessage message)
+	throws IOException, IllegalArgumentException {
+		startDocument(message.getVersion());
+		writeBody(message);
+		out.append("</IDMEF-Message>\n");
+	}
+
+	/**
+	 * Write one IDMEF-Message document containing all the messages of the batch, in order
+	 *
+	 * @throws IOException if the underlying Appendable throws it
+	 * @throws IllegalArgumentException if a message is not one of the IDMEFMessage_* classes.
+	 * The messages before it have been written by then, and the document is left unfinished.
+	 */
+	public void writeBatch(IDMEFMessageBatch batch)
+	throws IOException, IllegalArgumentException {
+		startDocument(batch.getVersion());
+		IDMEFMessage[] messages = batch.getMessages();
+		for (int i = 0; i < messages.length; i++)
+			writeBody(messages[i]);
+		out.append("</IDMEF-Message>\n");
+	}
+
+	/**
+	 * Flush the underlying Appendable, if it can be flushed
+	 */
+	public void flush()
+	throws IOException {
+		if (out instanceof Flushable)
+			((Flushable) out).flush();
+	}
+
+
+
+	private void startDocument(String version)
+	throws IOException {
+		if (writeDeclaration)
+			out.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+		out.append("<IDMEF-Message xmlns=\"").append(NAMESPACE).append("\" version=\"");
+		out.append(version).append("\">");
+	}
+
+	/**
+	 * The Alert or Heartbeat element of a message
+	 */
+	private void writeBody(IDMEFMessage message)
+	throws IOException, IllegalArgumentException {
+		if (message instanceof IDMEFMessage_Alert)
+			writeAlert((IDMEFMessage_Alert) message);
+		else if (message instanceof IDMEFMessage_Heartbeat)
+			writeHeartbeat((IDMEFMessage_Heartbeat) message);
+		else
+			throw new IllegalArgumentException("Cannot write IDMEFMessage of class "+message.getClass().getName());
+	}
+
+	private void writeAlert(IDMEFMessage_Alert a)
+	throws IOException {
+		start("Alert");
+		attr("messageid", a.getMessageID());
+		out.append('>');
+		writeAnalyzer(a.getAnalyzer());
+		writeTime("CreateTime", a.getCreateTimeMillis(), a.getCreateTimeOffset());
+		writeTime("DetectTime", a.getDetectTimeMillis(), a.getDetectTimeOffset());
+		writeTime("AnalyzerTime", a.getAnalyzerTimeMillis(), a.getAnalyzerTimeOffset());
+		Source[] source = a.getSource();
+		if (source != null)
+			for (int i = 0; i < source.length; i++)
+				writeSource(source[i]);
+		Target[] target = a.getTarget();
+		if (target != null)
+			for (int i = 0; i < target.length; i++)
+				writeTarget(target[i]);
+		writeClassification(a.getClassification());
+		writeAssessment(a.getAssessment());
+		if (a instanceof IDMEFMessage_ToolAlert)
+			writeToolAlert(((IDMEFMessage_ToolAlert) a).getToolAlert());
+		else if (a instanceof IDMEFMessage_OverflowAlert)
+			writeOverflowAlert(((IDMEFMessage_OverflowAlert) a).getOverflowAlert());
+		else if (a instanceof IDMEFMessage_CorrelationAlert)
+			writeCorrelationAlert(((IDMEFMessage_CorrelationAlert) a).getCorrelationAlert());
+		writeAdditionalData(a.getAdditionalData());
+		end("Alert");
+	}
+
+	private void writeHeartbeat(IDMEFMessage_Heartbeat h)
+	throws IOException {
+		start("Heartbeat");
+		attr("messageid", h.getMessageID());
+		out.append('>');
+		writeAnalyzer(h.getAnalyzer());
+		writeTime("CreateTime", h.getCreateTimeMillis(), h.getCreateTimeOffset());
+		if (h.getHeartbeatInterval() >= 0)
+			intElement("HeartbeatInterval", h.getHeartbeatInterval());
+		writeTime("AnalyzerTime", h.getAnalyzerTimeMillis(), h.getAnalyzerTimeOffset());
+		writeAdditionalData(h.getAdditionalData());
+		end("Heartbeat");
+	}
+
+
+	private void writeAnalyzer(Analyzer a)
+	throws IOException {
+		if (a == null)
+			return;
+		start("Analyzer");
+		attr("analyzerid", a.getAnalyzerID());
+		attr("name", a.getName());
+		attr("manufacturer", a.getManufacturer());
+		attr("model", a.getModel());
+		attr("version", a.getVersion());
+		attr("class", a.getAclass());
+		attr("ostype", a.getOstype());
+		attr("osversion", a.getOsversion());
+		if ((a.getNode() == null) && (a.getProcess() == null) && (a.getOriginalAnalyzer() == null)) {
+			out.append("/>");
+			return;
+		}
+		out.append('>');
+		writeNode(a.getNode());
+		writeProcess(a.getProcess());
+		writeAnalyzer(a.getOriginalAnalyzer());
+		end("Analyzer");
+	}
+
+	private void writeClassification(Classification c)
+	throws IOException {
+		if (c == null)
+			return;
+		start("Classification");
+		attr("ident", c.getIdent());
+		attr("text", c.getText());
+		Reference[] reference = c.getReference();
+		if ((reference == null) || (reference.length == 0)) {
+			out.append("/>");
+			return;
+		}
+		out.append('>');
+		for (int i = 0; i < reference.length; i++)
+			writeReference(reference[i]);
+		end("Classification");
+	}
+
+	private void writeReference(Reference r)
+	throws IOException {
+		if (r == null)
+			return;
+		start("Reference");
+		attr("origin", RFC4765EnumCodes.keyword(r.getOrigin()));
+		attr("meaning", r.getMeaning());
+		out.append('>');
+		textElement("name", r.getName());
+		if (r.getUri() != null)
+			textElement("url", r.getUri().toString());
+		end("Reference");
+	}
+
+	private void writeSource(Source s)
+	throws IOException {
+		if (s == null)
+			return;
+		start("Source");
+		attr("ident", s.getIdent());
+		attr("spoofed", RFC4765EnumCodes.keyword(s.getSpoofed()));
+		attr("interface", s.getInterface());
+		out.append('>');
+		writeNode(s.getNode());
+		writeUser(s.getUser());
+		writeProcess(s.getProcess());
+		writeService(s.getService());
+		end("Source");
+	}
+
+	private void writeTarget(Target t)
+	throws IOException {
+		if (t == null)
+			return;
+		start("Target");
+		attr("ident", t.getIdent());
+		attr("decoy", RFC4765EnumCodes.keyword(t.getDecoy()));
+		attr("interface", t.getInterface());
+		out.append('>');
+		writeNode(t.getNode());
+		writeUser(t.getUser());
+		writeProcess(t.getProcess());
+		writeService(t.getService());
+		writeFile(t.getFile());
+		end("Target");
+	}
+
+	private void writeNode(Node n)
+	throws IOException {
+		if (n == null)
+			return;
+		start("Node");
+		attr("ident", n.getIdent());
+		attr("category", RFC4765EnumCodes.keyword(n.getCategory()));
+		out.append('>');
+		textElement("location", n.getLocation());
+		textElement("name", n.getName());
+		Address[] address = n.getAddress();
+		if (address != null)
+			for (int i = 0; i < address.length; i++)
+				writeAddress(address[i]);
+		end("Node");
+	}
+
+	private void writeAddress(Address a)
+	throws IOException {
+		if (a == null)
+			return;
+		start("Address");
+		attr("ident", a.getIdent());
+		attr("category", RFC4765EnumCodes.keyword(a.getRFCCategory()));
+		attr("vlan-name", a.getVlanName());
+		attr("vlan-num", a.getVlanNum());
+		out.append('>');
+		textElement("address", a.getAddress());
+		textElement("netmask", a.getNetmask());
+		end("Address");
+	}
+
+	private void writeUser(User u)
+	throws IOException {
+		if (u == null)
+			return;
+		start("User");
+		attr("ident", u.getIdent());
+		attr("category", RFC4765EnumCodes.keyword(u.getCategory()));
+		out.append('>');
+		for (int i = 0; i < u.getUseridCount(); i++)
+			writeUserId(u.getUserid(i));
+		end("User");
+	}
+
+	private void writeUserId(UserId u)
+	throws IOException {
+		if (u == null)
+			return;
+		start("UserId");
+		attr("ident", u.getIdent());
+		attr("type", RFC4765EnumCodes.keyword(u.getType()));
+		attr("tty", u.getTty());
+		if ((u.getName() == null) && (u.getNumber() == null)) {
+			out.append("/>");
+			return;
+		}
+		out.append('>');
+		textElement("name", u.getName());
+		textElement("number", u.getNumber());
+		end("UserId");
+	}
+
+	private void writeProcess(Process p)
+	throws IOException {
+		if (p == null)
+			return;
+		start("Process");
+		attr("ident", p.getIdent());
+		out.append('>');
+		textElement("name", p.getName());
+		if (p.getPid() > 0)
+			intElement("pid", p.getPid());
+		textElement("path", p.getPath());
+		String[] arg = p.getArgList().toArray();
+		if (arg != null)
+			for (int i = 0; i < arg.length; i++)
+				textElement("arg", arg[i]);
+		String[] env = p.getEnvList().toArray();
+		if (env != null)
+			for (int i = 0; i < env.length; i++)
+				textElement("env", env[i]);
+		end("Process");
+	}
+
+	private void writeService(Service s)
+	throws IOException {
+		if (s == null)
+			return;
+		start("Service");
+		attr("ident", s.getIdent());
+		if (s.getIpVersion() > 0)
+			intAttr("ip_version", s.getIpVersion());
+		if (s.getIanaProtocolNumber() > 0)
+			intAttr("iana_protocol_number", s.getIanaProtocolNumber());
+		attr("iana_protocol_name", s.getIanaProtocolName());
+		out.append('>');
+		textElement("name", s.getName());
+		if (s.getPort() > 0)
+			intElement("port", s.getPort());
+		textElement("portlist", s.getPortlist());
+		textElement("protocol", s.getProtocol());
+		end("Service");
+	}
+
+	private void writeFile(File f)
+	throws IOException {
+		if (f == null)
+			return;
+		start("File");
+		attr("ident", f.getItent());
+		attr("category", RFC4765EnumCodes.keyword(f.getCategory()));
+		if (f.getFSType() != null)
+			attr("fstype", RFC4765EnumCodes.keyword(f.getFSType()));
+		attr("file-type", f.getFileType());
+		out.append('>');
+		textElement("name", f.getName());
+		textElement("path", f.getPath());
+		writeTimeElement("create-time", f.getCreateTime());
+		writeTimeElement("modify-time", f.getModifyTime());
+		writeTimeElement("access-time", f.getAccessTime());
+		if (f.getDataSize() >= 0)
+			intElement("data-size", f.getDataSize());
+		if (f.getDiskSize() >= 0)
+			intElement("disk-size", f.getDiskSize());
+		FileAccess[] fileAccess = f.getFileAccess();
+		if (fileAccess != null)
+			for (int i = 0; i < fileAccess.length; i++)
+				writeFileAccess(fileAccess[i]);
+		Linkage[] linkage = f.getLinkage();
+		if (linkage != null)
+			for (int i = 0; i < linkage.length; i++)
+				writeLinkage(linkage[i]);
+		writeInode(f.getInode());
+		Checksum[] checksum = f.getChecksum();
+		if (checksum != null)
+			for (int i = 0; i < checksum.length; i++)
+				writeChecksum(checksum[i]);
+		end("File");
+	}
+
+	private void writeFileAccess(FileAccess fa)
+	throws IOException {
+		if (fa == null)
+			return;
+		out.append("<FileAccess>");
+		writeUserId(fa.getUserid());
+		FileAccess.Permission[] permission = fa.getPermission();
+		for (int i = 0; i < permission.length; i++) {
+			start("permission");
+			attr("perms", RFC4765EnumCodes.keyword(permission[i]));
+			out.append("/>");
+		}
+		end("FileAccess");
+	}
+
+	private void writeLinkage(Linkage l)
+	throws IOException {
+		if (l == null)
+			return;
+		start("Linkage");
+		attr("category", RFC4765EnumCodes.keyword(l.getCategory()));
+		out.append('>');
+		if ((l.getName() != null) && (l.getPath() != null)) {
+			textElement("name", l.getName());
+			textElement("path", l.getPath());
+		}
+		else
+			writeFile(l.getFile());
+		end("Linkage");
+	}
+
+	private void writeInode(Inode i)
+	throws IOException {
+		if (i == null)
+			return;
+		out.append("<Inode>");
+		writeTimeElement("change-time", i.getChangeTime());
+		if (i.getNumber() != -1) {
+			intElement("number", i.getNumber());
+			intElement("major-device", i.getMajorDevice());
+			intElement("minor-device", i.getMinorDevice());
+		}
+		if (i.getCMajorDevice() != -1) {
+			intElement("c-major-device", i.getCMajorDevice());
+			intElement("c-minor-device", i.getCMinorDevice());
+		}
+		end("Inode");
+	}
+
+	private void writeChecksum(Checksum c)
+	throws IOException {
+		if (c == null)
+			return;
+		start("Checksum");
+		attr("algorithm", RFC4765EnumCodes.keyword(c.getAlgorithm()));
+		out.append('>');
+		textElement("value", c.getValue());
+		textElement("key", c.getKey());
+		end("Checksum");
+	}
+
+	private void writeAssessment(Assessment a)
+	throws IOException {
+		if (a == null)
+			return;
+		out.append("<Assessment>");
+		Impact impact = a.getImpact();
+		if (impact != null) {
+			start("Impact");
+			if (impact.getSeverity() != null)
+				attr("severity", RFC4765EnumCodes.keyword(impact.getSeverity()));
+			if (impact.getCompletion() != null)
+				attr("completion", RFC4765EnumCodes.keyword(impact.getCompletion()));
+			attr("type", RFC4765EnumCodes.keyword(impact.getType()));
+			out.append("/>");
+		}
+		Action action = a.getAction();
+		if (action != null) {
+			start("Action");
+			attr("category", RFC4765EnumCodes.keyword(action.getRFCCategory()));
+			out.append("/>");
+		}
+		Confidence confidence = a.getConfidence();
+		if (confidence != null) {
+			start("Confidence");
+			attr("rating", RFC4765EnumCodes.keyword(confidence.getRFCRating()));
+			if (confidence.getRFCRating() == Confidence.Rank.NUMERIC) {
+				out.append('>');
+				out.append(Double.toString(confidence.getRFCNumericRating()));
+				end("Confidence");
+			}
+			else
+				out.append("/>");
+		}
+		end("Assessment");
+	}
+
+	private void writeToolAlert(ToolAlert t)
+	throws IOException {
+		out.append("<ToolAlert>");
+		textElement("name", t.getName());
+		textElement("command", t.getCommand());
+		writeAlertIdents(t.getAlertIdent(), t.getAnalyzerID());
+		end("ToolAlert");
+	}
+
+	private void writeOverflowAlert(OverflowAlert o)
+	throws IOException {
+		out.append("<OverflowAlert>");
+		textElement("program", o.getProgram());
+		if (o.getSize() >= 0)
+			intElement("size", o.getSize());
+		byte[] buffer = o.getBuffer();
+		if (buffer != null) {
+			out.append("<buffer>");
+			RFC4765DataTypes.appendBase64(out, buffer, 0, buffer.length);
+			end("buffer");
+		}
+		end("OverflowAlert");
+	}
+
+	private void writeCorrelationAlert(CorrelationAlert c)
+	throws IOException {
+		out.append("<CorrelationAlert>");
+		textElement("name", c.getName());
+		writeAlertIdents(c.getAlertIdent(), c.getAnalyzerID());
+		end("CorrelationAlert");
+	}
+
+	/**
+	 * alertident elements, with each analyzerID (if present) matched to the alertident at the same index
+	 */
+	private void writeAlertIdents(String[] alertIdent, String[] analyzerID)
+	throws IOException {
+		for (int i = 0; i < alertIdent.length; i++) {
+			start("alertident");
+			if ((analyzerID != null) && (i < analyzerID.length))
+				attr("analyzerid", analyzerID[i]);
+			out.append('>');
+			escape(alertIdent[i], false);
+			end("alertident");
+		}
+	}
+
+	private void writeAdditionalData(AdditionalData[] additionalData)
+	throws IOException {
+		if (additionalData == null)
+			return;
+		for (int i = 0; i < additionalData.length; i++) {
+			AdditionalData ad = additionalData[i];
+			if (ad == null)
+				continue;
+			String typeKeyword = RFC4765EnumCodes.keyword(ad.getAdType());
+			start("AdditionalData");
+			attr("type", typeKeyword);
+			attr("meaning", ad.getMeaning());
+			out.append("><").append(typeKeyword).append('>');
+			switch (ad.getAdType()) {
+			case BOOLEAN:
+				out.append(ad.getBoolean() ? "true" : "false");
+				break;
+			case DATE_TIME:
+				RFC4765DataTypes.appendDateTime(out, ad.getDateTime());
+				break;
+			case INTEGER:
+				RFC4765DataTypes.appendLong(out, ad.getInt());
+				break;
+			case BYTE:
+				RFC4765DataTypes.appendLong(out, ad.getByte());
+				break;
+			case CHARACTER:
+				escape(String.valueOf(ad.getChar()), false);
+				break;
+			case REAL:
+				out.append(Double.toString(ad.getDouble()));
+				break;
+			case PORTLIST:
+				out.append(ad.getPortSet().toString());
+				break;
+			case BYTE_STRING:
+				byte[] bytes = ad.getBytes();
+				RFC4765DataTypes.appendBase64(out, bytes, 0, bytes.length);
+				break;
+			case XMLTEXT:
+				// xmltext is an XML fragment and is written as-is
+				out.append(ad.getString());
+				break;
+			case NTPSTAMP:
+				NtpStamp.append(out, ad.getNtpStamp());
+				break;
+			default:
+				// STRING
+				escape(ad.getString(), false);
+			}
+			out.append("</").append(typeKeyword).append('>');
+			end("AdditionalData");
+		}
+	}
+
+
+	/**
+	 * message times, given in epoch milliseconds and an offset from UTC (IDMEFMessage.NO_TIME if absent)
+	 */
+	private void writeTime(String element, long millis, int offsetMillis)
+	throws IOException {
+		if (millis == IDMEFMessage.NO_TIME)
+			return;
+		start(element);
+		out.append(" ntpstamp=\"");
+		RFC4765DataTypes.appendNtpStamp(out, millis);
+		out.append("\">");
+		RFC4765DataTypes.appendDateTime(out, millis, offsetMillis);
+		end(element);
+	}
+
+	/**
+	 * file and inode times, which are plain DATETIME elements
+	 */
+	private void writeTimeElement(String element, DateTime dt)
+	throws IOException {
+		if (dt == null)
+			return;
+		out.append('<').append(element).append('>');
+		RFC4765DataTypes.appendDateTime(out, dt);
+		end(element);
+	}
+
+
+	private void start(String element)
+	throws IOException {
+		out.append('<').append(element);
+	}
+
+	private void end(String element)
+	throws IOException {
+		out.append("</").append(element).append('>');
+	}
+
+	private void attr(String name, String value)
+	throws IOException {
+		if (value == null)
+			return;
+		out.append(' ').append(name).append("=\"");
+		escape(value, true);
+		out.append('"');
+	}
+
+	private void intAttr(String name, long value)
+	throws IOException {
+		out.append(' ').append(name).append("=\"");
+		RFC4765DataTypes.appendLong(out, value);
+		out.append('"');
+	}
+
+	private void textElement(String element, String value)
+	throws IOException {
+		if (value == null)
+			return;
+		out.append('<').append(element).append('>');
+		escape(value, false);
+		end(element);
+	}
+
+	private void intElement(String element, long value)
+	throws IOException {
+		out.append('<').append(element).append('>');
+		RFC4765DataTypes.appendLong(out, value);
+		end(element);
+	}
+
+	/**
+	 * Append s, escaping markup characters. Runs of characters that need no escaping are
+	 * appended as a single sub-sequence. Control characters that XML 1.0 cannot carry
+	 * are replaced with U+FFFD; whitespace controls are kept as character references
+	 * wherever a parser would otherwise normalize them away.
+	 */
+	private void escape(String s, boolean inAttribute)
+	throws IOException {
+		int len = s.length();
+		int runStart = 0;
+		for (int i = 0; i < len; i++) {
+			char c = s.charAt(i);
+			String replacement;
+			if (c == '<')
+				replacement = "&lt;";
+			else if (c == '>')
+				replacement = "&gt;";
+			else if (c == '&')
+				replacement = "&amp;";
+			else if (c == '"' && inAttribute)
+				replacement = "&quot;";
+			else if (c < 0x20) {
+				if (c == '\r')
+					replacement = "&#13;";
+				else if (c == '\t')
+					replacement = inAttribute ? "&#9;" : null;
+				else if (c == '\n')
+					replacement = inAttribute ? "&#10;" : null;
+				else
+					replacement = "\uFFFD";
+			}
+			else
+				replacement = null;
+			if (replacement != null) {
+				if (i > runStart)
+					out.append(s, runStart, i);
+				out.append(replacement);
+				runStart = i + 1;
+			}
+		}
+		if (runStart < len)
+			out.append(s, runStart, len);
+	}
+
+}
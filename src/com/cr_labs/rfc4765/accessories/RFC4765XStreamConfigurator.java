@@ -31,6 +31,10 @@ public final class RFC4765XStreamConfigurator {
 	 * 
 	 * Call like this: RFC4765XStreamConfigurator.configureXStream(xstream);
 	 * 
+	 * Besides the aliases it registers a converter for each RFC4765 class (RFC4765XStreamConverters),
+	 * so XStream doesn't marshal them by reflection, turns off XStream's reference tracking,
+	 * which the RFC4765 object trees don't need, and allows the RFC4765 classes to be unmarshalled.
+	 * 
 	 * This class is not in the RFC4765 package because of the dependency on XStream...
 	 * XStream isn't needed by RFC4765, only by SK which wants to XML-ify the RFC4765 classes AND make them pretty
 	 */
@@ -66,6 +70,41 @@ public final class RFC4765XStreamConfigurator {
 		xs.alias("RFC4765ToolAlert",com.cr_labs.rfc4765.ToolAlert.class);
 		xs.alias("RFC4765User",com.cr_labs.rfc4765.User.class);
 		xs.alias("RFC4765UserId",com.cr_labs.rfc4765.UserId.class);
+
+		xs.registerConverter(new RFC4765XStreamConverters.ActionConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.AdditionalDataConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.AddressConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.AnalyzerConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.AssessmentConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.ChecksumConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.ClassificationConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.ConfidenceConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.CorrelationAlertConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.FileConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.FileAccessConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.AlertConverter(com.cr_labs.rfc4765.IDMEFMessage_Alert.class));
+		xs.registerConverter(new RFC4765XStreamConverters.AlertConverter(com.cr_labs.rfc4765.IDMEFMessage_CorrelationAlert.class));
+		xs.registerConverter(new RFC4765XStreamConverters.HeartbeatConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.AlertConverter(com.cr_labs.rfc4765.IDMEFMessage_OverflowAlert.class));
+		xs.registerConverter(new RFC4765XStreamConverters.AlertConverter(com.cr_labs.rfc4765.IDMEFMessage_ToolAlert.class));
+		xs.registerConverter(new RFC4765XStreamConverters.ImpactConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.InodeConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.LinkageConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.NodeConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.OverflowAlertConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.ProcessConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.ReferenceConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.ServiceConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.SourceConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.TargetConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.ToolAlertConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.UserConverter());
+		xs.registerConverter(new RFC4765XStreamConverters.UserIdConverter());
+
+		// the converters write every object in place, never as a reference to one written before
+		xs.setMode(XStream.NO_REFERENCES);
+		// XStream's security framework refuses to unmarshal any type it has not been told to allow
+		xs.allowTypesByWildcard(new String[] { "com.cr_labs.rfc4765.*" });
 	}
 	
 	
@@ -0,0 +1,1420 @@
+package com.cr_labs.rfc4765.accessories;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+
+import org.joda.time.DateTime;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.CorrelationAlert;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_CorrelationAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessage_OverflowAlert;
+import com.cr_labs.rfc4765.IDMEFMessage_ToolAlert;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Linkage;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.NtpStamp;
+import com.cr_labs.rfc4765.OverflowAlert;
+import com.cr_labs.rfc4765.PortSet;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+
+/**
+ * XStream converters for the RFC4765 classes, registered by RFC4765XStreamConfigurator.
+ *
+ * <p>Each converter handles exactly one class, reading its fields through the getters and
+ * building the object through its constructor, so XStream never falls back to its
+ * reflection converter for the object model. Elements are named after the fields, as the
+ * reflection converter names them, and array items after the RFC4765XStreamConfigurator
+ * aliases. Times are written as RFC4765 DATETIME text, enums by name, and derived state
+ * (Address's InetAddress) is not written at all.
+ *
+ * <p>The converters never write references, so the object graph is a tree and XStream can
+ * be run with XStream.NO_REFERENCES.
+ */
+public final class RFC4765XStreamConverters {
+
+	private RFC4765XStreamConverters() {
+	}
+
+
+	/**
+	 * A converter for one class (not its subclasses)
+	 */
+	private abstract static class ModelConverter implements Converter {
+		private final Class<?> type;
+
+		ModelConverter(Class<?> type) {
+			this.type = type;
+		}
+
+		@SuppressWarnings("rawtypes")
+		public boolean canConvert(Class type) {
+			return type == this.type;
+		}
+	}
+
+
+	/**
+	 * IDMEFMessage_Alert and its ToolAlert, OverflowAlert and CorrelationAlert subclasses,
+	 * one instance per class
+	 */
+	public static final class AlertConverter extends ModelConverter {
+		private final Class<? extends IDMEFMessage_Alert> alertClass;
+
+		public AlertConverter(Class<? extends IDMEFMessage_Alert> alertClass) {
+			super(alertClass);
+			this.alertClass = alertClass;
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			IDMEFMessage_Alert a = (IDMEFMessage_Alert) source;
+			text(w, "version", a.getVersion());
+			text(w, "messageID", a.getMessageID());
+			object(w, c, "analyzer", a.getAnalyzer());
+			time(w, "createTime", a.getCreateTime());
+			time(w, "detectTime", a.getDetectTime());
+			time(w, "analyzerTime", a.getAnalyzerTime());
+			array(w, c, "source", "RFC4765Source", a.getSource());
+			array(w, c, "target", "RFC4765Target", a.getTarget());
+			object(w, c, "classification", a.getClassification());
+			object(w, c, "assessment", a.getAssessment());
+			array(w, c, "additionalData", "RFC4765AdditionalData", a.getAdditionalData());
+			if (a instanceof IDMEFMessage_ToolAlert)
+				object(w, c, "toolAlert", ((IDMEFMessage_ToolAlert) a).getToolAlert());
+			else if (a instanceof IDMEFMessage_OverflowAlert)
+				object(w, c, "overflowAlert", ((IDMEFMessage_OverflowAlert) a).getOverflowAlert());
+			else if (a instanceof IDMEFMessage_CorrelationAlert)
+				object(w, c, "correlationAlert", ((IDMEFMessage_CorrelationAlert) a).getCorrelationAlert());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String messageID = null;
+			Analyzer analyzer = null;
+			DateTime createTime = null;
+			DateTime detectTime = null;
+			DateTime analyzerTime = null;
+			Source[] source = null;
+			Target[] target = null;
+			Classification classification = null;
+			Assessment assessment = null;
+			AdditionalData[] additionalData = null;
+			ToolAlert toolAlert = null;
+			OverflowAlert overflowAlert = null;
+			CorrelationAlert correlationAlert = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("messageID".equals(name))
+					messageID = r.getValue();
+				else if ("analyzer".equals(name))
+					analyzer = (Analyzer) c.convertAnother(null, Analyzer.class);
+				else if ("createTime".equals(name))
+					createTime = time(r);
+				else if ("detectTime".equals(name))
+					detectTime = time(r);
+				else if ("analyzerTime".equals(name))
+					analyzerTime = time(r);
+				else if ("source".equals(name))
+					source = array(r, c, Source.class).toArray(new Source[0]);
+				else if ("target".equals(name))
+					target = array(r, c, Target.class).toArray(new Target[0]);
+				else if ("classification".equals(name))
+					classification = (Classification) c.convertAnother(null, Classification.class);
+				else if ("assessment".equals(name))
+					assessment = (Assessment) c.convertAnother(null, Assessment.class);
+				else if ("additionalData".equals(name))
+					additionalData = array(r, c, AdditionalData.class).toArray(new AdditionalData[0]);
+				else if ("toolAlert".equals(name))
+					toolAlert = (ToolAlert) c.convertAnother(null, ToolAlert.class);
+				else if ("overflowAlert".equals(name))
+					overflowAlert = (OverflowAlert) c.convertAnother(null, OverflowAlert.class);
+				else if ("correlationAlert".equals(name))
+					correlationAlert = (CorrelationAlert) c.convertAnother(null, CorrelationAlert.class);
+				r.moveUp();
+			}
+			if (alertClass == IDMEFMessage_ToolAlert.class)
+				return new IDMEFMessage_ToolAlert(toolAlert, messageID, analyzer, createTime, classification,
+						detectTime, analyzerTime, source, target, assessment, additionalData);
+			if (alertClass == IDMEFMessage_OverflowAlert.class)
+				return new IDMEFMessage_OverflowAlert(overflowAlert, messageID, analyzer, createTime, classification,
+						detectTime, analyzerTime, source, target, assessment, additionalData);
+			if (alertClass == IDMEFMessage_CorrelationAlert.class)
+				return new IDMEFMessage_CorrelationAlert(correlationAlert, messageID, analyzer, createTime, classification,
+						detectTime, analyzerTime, source, target, assessment, additionalData);
+			return new IDMEFMessage_Alert(messageID, analyzer, createTime, classification,
+					detectTime, analyzerTime, source, target, assessment, additionalData);
+		}
+	}
+
+	public static final class HeartbeatConverter extends ModelConverter {
+		public HeartbeatConverter() {
+			super(IDMEFMessage_Heartbeat.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			IDMEFMessage_Heartbeat h = (IDMEFMessage_Heartbeat) source;
+			text(w, "version", h.getVersion());
+			text(w, "messageID", h.getMessageID());
+			object(w, c, "analyzer", h.getAnalyzer());
+			time(w, "createTime", h.getCreateTime());
+			integer(w, "heartbeatInterval", h.getHeartbeatInterval());
+			time(w, "analyzerTime", h.getAnalyzerTime());
+			array(w, c, "additionalData", "RFC4765AdditionalData", h.getAdditionalData());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String messageID = null;
+			Analyzer analyzer = null;
+			DateTime createTime = null;
+			int heartbeatInterval = -1;
+			DateTime analyzerTime = null;
+			AdditionalData[] additionalData = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("messageID".equals(name))
+					messageID = r.getValue();
+				else if ("analyzer".equals(name))
+					analyzer = (Analyzer) c.convertAnother(null, Analyzer.class);
+				else if ("createTime".equals(name))
+					createTime = time(r);
+				else if ("heartbeatInterval".equals(name))
+					heartbeatInterval = integer(r);
+				else if ("analyzerTime".equals(name))
+					analyzerTime = time(r);
+				else if ("additionalData".equals(name))
+					additionalData = array(r, c, AdditionalData.class).toArray(new AdditionalData[0]);
+				r.moveUp();
+			}
+			return new IDMEFMessage_Heartbeat(messageID, analyzer, createTime, analyzerTime, heartbeatInterval, additionalData);
+		}
+	}
+
+	public static final class AnalyzerConverter extends ModelConverter {
+		public AnalyzerConverter() {
+			super(Analyzer.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Analyzer a = (Analyzer) source;
+			text(w, "analyzerID", a.getAnalyzerID());
+			text(w, "name", a.getName());
+			text(w, "manufacturer", a.getManufacturer());
+			text(w, "model", a.getModel());
+			text(w, "version", a.getVersion());
+			text(w, "aclass", a.getAclass());
+			text(w, "ostype", a.getOstype());
+			text(w, "osversion", a.getOsversion());
+			object(w, c, "node", a.getNode());
+			object(w, c, "process", a.getProcess());
+			object(w, c, "originalAnalyzer", a.getOriginalAnalyzer());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String analyzerID = null;
+			String name = null;
+			String manufacturer = null;
+			String model = null;
+			String version = null;
+			String aclass = null;
+			String ostype = null;
+			String osversion = null;
+			Node node = null;
+			Process process = null;
+			Analyzer originalAnalyzer = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("analyzerID".equals(field))
+					analyzerID = r.getValue();
+				else if ("name".equals(field))
+					name = r.getValue();
+				else if ("manufacturer".equals(field))
+					manufacturer = r.getValue();
+				else if ("model".equals(field))
+					model = r.getValue();
+				else if ("version".equals(field))
+					version = r.getValue();
+				else if ("aclass".equals(field))
+					aclass = r.getValue();
+				else if ("ostype".equals(field))
+					ostype = r.getValue();
+				else if ("osversion".equals(field))
+					osversion = r.getValue();
+				else if ("node".equals(field))
+					node = (Node) c.convertAnother(null, Node.class);
+				else if ("process".equals(field))
+					process = (Process) c.convertAnother(null, Process.class);
+				else if ("originalAnalyzer".equals(field))
+					originalAnalyzer = (Analyzer) c.convertAnother(null, Analyzer.class);
+				r.moveUp();
+			}
+			return new Analyzer(analyzerID, name, manufacturer, model, version, aclass, ostype, osversion, node, process, originalAnalyzer);
+		}
+	}
+
+	public static final class ClassificationConverter extends ModelConverter {
+		public ClassificationConverter() {
+			super(Classification.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Classification cl = (Classification) source;
+			text(w, "ident", cl.getIdent());
+			text(w, "text", cl.getText());
+			array(w, c, "reference", "RFC4765Referene", cl.getReference());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			String text = null;
+			Reference[] reference = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("ident".equals(name))
+					ident = r.getValue();
+				else if ("text".equals(name))
+					text = r.getValue();
+				else if ("reference".equals(name))
+					reference = array(r, c, Reference.class).toArray(new Reference[0]);
+				r.moveUp();
+			}
+			return new Classification(ident, text, reference);
+		}
+	}
+
+	public static final class ReferenceConverter extends ModelConverter {
+		public ReferenceConverter() {
+			super(Reference.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Reference ref = (Reference) source;
+			enumText(w, "origin", ref.getOrigin());
+			text(w, "meaning", ref.getMeaning());
+			text(w, "name", ref.getName());
+			if (ref.getUri() != null)
+				text(w, "url", ref.getUri().toString());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			Reference.Origin origin = null;
+			String meaning = null;
+			String name = null;
+			String url = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("origin".equals(field))
+					origin = enumValue(r, Reference.Origin.class);
+				else if ("meaning".equals(field))
+					meaning = r.getValue();
+				else if ("name".equals(field))
+					name = r.getValue();
+				else if ("url".equals(field))
+					url = r.getValue();
+				r.moveUp();
+			}
+			try {
+				return new Reference(origin, meaning, name, (url == null) ? null : new URI(url));
+			}
+			catch (URISyntaxException use) {
+				throw new IllegalArgumentException("Reference url "+url+" is not a valid URI: "+use.getMessage());
+			}
+		}
+	}
+
+	public static final class SourceConverter extends ModelConverter {
+		public SourceConverter() {
+			super(Source.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Source s = (Source) source;
+			text(w, "ident", s.getIdent());
+			enumText(w, "spoofed", s.getSpoofed());
+			text(w, "iface", s.getInterface());
+			object(w, c, "node", s.getNode());
+			object(w, c, "user", s.getUser());
+			object(w, c, "process", s.getProcess());
+			object(w, c, "service", s.getService());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			Source.SpoofedRank spoofed = null;
+			String iface = null;
+			Node node = null;
+			User user = null;
+			Process process = null;
+			Service service = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("ident".equals(name))
+					ident = r.getValue();
+				else if ("spoofed".equals(name))
+					spoofed = enumValue(r, Source.SpoofedRank.class);
+				else if ("iface".equals(name))
+					iface = r.getValue();
+				else if ("node".equals(name))
+					node = (Node) c.convertAnother(null, Node.class);
+				else if ("user".equals(name))
+					user = (User) c.convertAnother(null, User.class);
+				else if ("process".equals(name))
+					process = (Process) c.convertAnother(null, Process.class);
+				else if ("service".equals(name))
+					service = (Service) c.convertAnother(null, Service.class);
+				r.moveUp();
+			}
+			return new Source(ident, spoofed, iface, node, user, process, service);
+		}
+	}
+
+	public static final class TargetConverter extends ModelConverter {
+		public TargetConverter() {
+			super(Target.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Target t = (Target) source;
+			text(w, "ident", t.getIdent());
+			enumText(w, "decoy", t.getDecoy());
+			text(w, "iface", t.getInterface());
+			object(w, c, "node", t.getNode());
+			object(w, c, "user", t.getUser());
+			object(w, c, "process", t.getProcess());
+			object(w, c, "service", t.getService());
+			object(w, c, "file", t.getFile());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			Target.DecoyRank decoy = null;
+			String iface = null;
+			Node node = null;
+			User user = null;
+			Process process = null;
+			Service service = null;
+			File file = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("ident".equals(name))
+					ident = r.getValue();
+				else if ("decoy".equals(name))
+					decoy = enumValue(r, Target.DecoyRank.class);
+				else if ("iface".equals(name))
+					iface = r.getValue();
+				else if ("node".equals(name))
+					node = (Node) c.convertAnother(null, Node.class);
+				else if ("user".equals(name))
+					user = (User) c.convertAnother(null, User.class);
+				else if ("process".equals(name))
+					process = (Process) c.convertAnother(null, Process.class);
+				else if ("service".equals(name))
+					service = (Service) c.convertAnother(null, Service.class);
+				else if ("file".equals(name))
+					file = (File) c.convertAnother(null, File.class);
+				r.moveUp();
+			}
+			return new Target(ident, decoy, iface, node, user, process, service, file);
+		}
+	}
+
+	public static final class NodeConverter extends ModelConverter {
+		public NodeConverter() {
+			super(Node.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Node n = (Node) source;
+			text(w, "ident", n.getIdent());
+			enumText(w, "category", n.getCategory());
+			text(w, "location", n.getLocation());
+			text(w, "name", n.getName());
+			array(w, c, "address", "RFC4765Address", n.getAddress());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			Node.Category category = null;
+			String location = null;
+			String name = null;
+			Address[] address = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("ident".equals(field))
+					ident = r.getValue();
+				else if ("category".equals(field))
+					category = enumValue(r, Node.Category.class);
+				else if ("location".equals(field))
+					location = r.getValue();
+				else if ("name".equals(field))
+					name = r.getValue();
+				else if ("address".equals(field))
+					address = array(r, c, Address.class).toArray(new Address[0]);
+				r.moveUp();
+			}
+			return new Node(ident, category, location, name, address);
+		}
+	}
+
+	public static final class AddressConverter extends ModelConverter {
+		public AddressConverter() {
+			super(Address.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Address a = (Address) source;
+			text(w, "ident", a.getIdent());
+			enumText(w, "category", a.getSKCategory());
+			text(w, "vlanName", a.getVlanName());
+			text(w, "vlanNum", a.getVlanNum());
+			text(w, "address", a.getAddress());
+			text(w, "netmask", a.getNetmask());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			Address.Category category = null;
+			String vlanName = null;
+			String vlanNum = null;
+			String address = null;
+			String netmask = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("ident".equals(name))
+					ident = r.getValue();
+				else if ("category".equals(name))
+					category = enumValue(r, Address.Category.class);
+				else if ("vlanName".equals(name))
+					vlanName = r.getValue();
+				else if ("vlanNum".equals(name))
+					vlanNum = r.getValue();
+				else if ("address".equals(name))
+					address = r.getValue();
+				else if ("netmask".equals(name))
+					netmask = r.getValue();
+				r.moveUp();
+			}
+			// Address takes a network as "address/netmask", and splits it itself
+			if ((address != null) && (netmask != null))
+				address = address+"/"+netmask;
+			return new Address(ident, address, category, vlanName, vlanNum, false);
+		}
+	}
+
+	public static final class UserConverter extends ModelConverter {
+		public UserConverter() {
+			super(User.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			User u = (User) source;
+			text(w, "ident", u.getIdent());
+			enumText(w, "category", u.getCategory());
+			array(w, c, "userid", "RFC4765UserId", u.getUseridList().toArray());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			User.Category category = null;
+			ArrayList<UserId> userid = new ArrayList<UserId>(1);
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("ident".equals(name))
+					ident = r.getValue();
+				else if ("category".equals(name))
+					category = enumValue(r, User.Category.class);
+				else if ("userid".equals(name))
+					userid.addAll(array(r, c, UserId.class));
+				r.moveUp();
+			}
+			return new User(ident, category, userid.toArray(new UserId[userid.size()]));
+		}
+	}
+
+	public static final class UserIdConverter extends ModelConverter {
+		public UserIdConverter() {
+			super(UserId.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			UserId u = (UserId) source;
+			text(w, "ident", u.getIdent());
+			enumText(w, "type", u.getType());
+			text(w, "tty", u.getTty());
+			text(w, "name", u.getName());
+			text(w, "number", u.getNumber());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			UserId.Type type = null;
+			String tty = null;
+			String name = null;
+			String number = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("ident".equals(field))
+					ident = r.getValue();
+				else if ("type".equals(field))
+					type = enumValue(r, UserId.Type.class);
+				else if ("tty".equals(field))
+					tty = r.getValue();
+				else if ("name".equals(field))
+					name = r.getValue();
+				else if ("number".equals(field))
+					number = r.getValue();
+				r.moveUp();
+			}
+			return new UserId(ident, type, tty, name, number);
+		}
+	}
+
+	public static final class ProcessConverter extends ModelConverter {
+		public ProcessConverter() {
+			super(Process.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Process p = (Process) source;
+			text(w, "ident", p.getIdent());
+			text(w, "name", p.getName());
+			integer(w, "pid", p.getPid());
+			text(w, "path", p.getPath());
+			strings(w, "arg", p.getArgList().toArray());
+			strings(w, "env", p.getEnvList().toArray());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			String name = null;
+			int pid = 0;
+			String path = null;
+			String[] arg = null;
+			String[] env = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("ident".equals(field))
+					ident = r.getValue();
+				else if ("name".equals(field))
+					name = r.getValue();
+				else if ("pid".equals(field))
+					pid = integer(r);
+				else if ("path".equals(field))
+					path = r.getValue();
+				else if ("arg".equals(field))
+					arg = strings(r);
+				else if ("env".equals(field))
+					env = strings(r);
+				r.moveUp();
+			}
+			return new Process(ident, name, pid, path, arg, env);
+		}
+	}
+
+	public static final class ServiceConverter extends ModelConverter {
+		public ServiceConverter() {
+			super(Service.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Service s = (Service) source;
+			text(w, "ident", s.getIdent());
+			integer(w, "ipVersion", s.getIpVersion());
+			integer(w, "ianaProtocolNumber", s.getIanaProtocolNumber());
+			text(w, "ianaProtocolName", s.getIanaProtocolName());
+			text(w, "name", s.getName());
+			integer(w, "port", s.getPort());
+			text(w, "portlist", s.getPortlist());
+			text(w, "protocol", s.getProtocol());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			int ipVersion = 0;
+			int ianaProtocolNumber = 0;
+			String ianaProtocolName = null;
+			String name = null;
+			int port = 0;
+			String portlist = null;
+			String protocol = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("ident".equals(field))
+					ident = r.getValue();
+				else if ("ipVersion".equals(field))
+					ipVersion = integer(r);
+				else if ("ianaProtocolNumber".equals(field))
+					ianaProtocolNumber = integer(r);
+				else if ("ianaProtocolName".equals(field))
+					ianaProtocolName = r.getValue();
+				else if ("name".equals(field))
+					name = r.getValue();
+				else if ("port".equals(field))
+					port = integer(r);
+				else if ("portlist".equals(field))
+					portlist = r.getValue();
+				else if ("protocol".equals(field))
+					protocol = r.getValue();
+				r.moveUp();
+			}
+			return new Service(ident, ipVersion, ianaProtocolNumber, ianaProtocolName, name, port, portlist, protocol);
+		}
+	}
+
+	public static final class FileConverter extends ModelConverter {
+		public FileConverter() {
+			super(File.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			File f = (File) source;
+			text(w, "ident", f.getItent());
+			enumText(w, "category", f.getCategory());
+			enumText(w, "fsType", f.getFSType());
+			text(w, "fileType", f.getFileType());
+			text(w, "name", f.getName());
+			text(w, "path", f.getPath());
+			time(w, "createTime", f.getCreateTime());
+			time(w, "modifyTime", f.getModifyTime());
+			time(w, "accessTime", f.getAccessTime());
+			integer(w, "dataSize", f.getDataSize());
+			integer(w, "diskSize", f.getDiskSize());
+			array(w, c, "fileAccess", "RFC4765FileAccess", f.getFileAccess());
+			array(w, c, "linkage", "RFC4765Linkage", f.getLinkage());
+			object(w, c, "inode", f.getInode());
+			array(w, c, "checksum", "RFC4765Checksum", f.getChecksum());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String ident = null;
+			File.Category category = null;
+			File.FSType fsType = null;
+			String fileType = null;
+			String name = null;
+			String path = null;
+			DateTime createTime = null;
+			DateTime modifyTime = null;
+			DateTime accessTime = null;
+			int dataSize = -1;
+			int diskSize = -1;
+			FileAccess[] fileAccess = null;
+			Linkage[] linkage = null;
+			Inode inode = null;
+			Checksum[] checksum = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("ident".equals(field))
+					ident = r.getValue();
+				else if ("category".equals(field))
+					category = enumValue(r, File.Category.class);
+				else if ("fsType".equals(field))
+					fsType = enumValue(r, File.FSType.class);
+				else if ("fileType".equals(field))
+					fileType = r.getValue();
+				else if ("name".equals(field))
+					name = r.getValue();
+				else if ("path".equals(field))
+					path = r.getValue();
+				else if ("createTime".equals(field))
+					createTime = time(r);
+				else if ("modifyTime".equals(field))
+					modifyTime = time(r);
+				else if ("accessTime".equals(field))
+					accessTime = time(r);
+				else if ("dataSize".equals(field))
+					dataSize = integer(r);
+				else if ("diskSize".equals(field))
+					diskSize = integer(r);
+				else if ("fileAccess".equals(field))
+					fileAccess = array(r, c, FileAccess.class).toArray(new FileAccess[0]);
+				else if ("linkage".equals(field))
+					linkage = array(r, c, Linkage.class).toArray(new Linkage[0]);
+				else if ("inode".equals(field))
+					inode = (Inode) c.convertAnother(null, Inode.class);
+				else if ("checksum".equals(field))
+					checksum = array(r, c, Checksum.class).toArray(new Checksum[0]);
+				r.moveUp();
+			}
+			return new File(ident, category, fsType, fileType, name, path, createTime, modifyTime, accessTime, dataSize, diskSize,
+					fileAccess, linkage, inode, checksum);
+		}
+	}
+
+	public static final class FileAccessConverter extends ModelConverter {
+		public FileAccessConverter() {
+			super(FileAccess.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			FileAccess fa = (FileAccess) source;
+			object(w, c, "userid", fa.getUserid());
+			FileAccess.Permission[] permission = fa.getPermission();
+			if (permission != null) {
+				w.startNode("permission");
+				for (int i = 0; i < permission.length; i++)
+					enumText(w, "Permission", permission[i]);
+				w.endNode();
+			}
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			UserId userid = null;
+			ArrayList<FileAccess.Permission> permission = new ArrayList<FileAccess.Permission>();
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("userid".equals(name))
+					userid = (UserId) c.convertAnother(null, UserId.class);
+				else if ("permission".equals(name)) {
+					while (r.hasMoreChildren()) {
+						r.moveDown();
+						permission.add(enumValue(r, FileAccess.Permission.class));
+						r.moveUp();
+					}
+				}
+				r.moveUp();
+			}
+			return new FileAccess(userid, permission.toArray(new FileAccess.Permission[permission.size()]));
+		}
+	}
+
+	public static final class LinkageConverter extends ModelConverter {
+		public LinkageConverter() {
+			super(Linkage.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Linkage l = (Linkage) source;
+			text(w, "name", l.getName());
+			text(w, "path", l.getPath());
+			object(w, c, "file", l.getFile());
+			enumText(w, "category", l.getCategory());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String name = null;
+			String path = null;
+			File file = null;
+			Linkage.Category category = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("name".equals(field))
+					name = r.getValue();
+				else if ("path".equals(field))
+					path = r.getValue();
+				else if ("file".equals(field))
+					file = (File) c.convertAnother(null, File.class);
+				else if ("category".equals(field))
+					category = enumValue(r, Linkage.Category.class);
+				r.moveUp();
+			}
+			return new Linkage(category, name, path, file);
+		}
+	}
+
+	public static final class InodeConverter extends ModelConverter {
+		public InodeConverter() {
+			super(Inode.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Inode i = (Inode) source;
+			time(w, "changeTime", i.getChangeTime());
+			integer(w, "number", i.getNumber());
+			integer(w, "majorDevice", i.getMajorDevice());
+			integer(w, "minorDevice", i.getMinorDevice());
+			integer(w, "cMajorDevice", i.getCMajorDevice());
+			integer(w, "cMinorDevice", i.getCMinorDevice());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			DateTime changeTime = null;
+			int number = -1;
+			int majorDevice = -1;
+			int minorDevice = -1;
+			int cMajorDevice = -1;
+			int cMinorDevice = -1;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("changeTime".equals(name))
+					changeTime = time(r);
+				else if ("number".equals(name))
+					number = integer(r);
+				else if ("majorDevice".equals(name))
+					majorDevice = integer(r);
+				else if ("minorDevice".equals(name))
+					minorDevice = integer(r);
+				else if ("cMajorDevice".equals(name))
+					cMajorDevice = integer(r);
+				else if ("cMinorDevice".equals(name))
+					cMinorDevice = integer(r);
+				r.moveUp();
+			}
+			return new Inode(changeTime, number, majorDevice, minorDevice, cMajorDevice, cMinorDevice);
+		}
+	}
+
+	public static final class ChecksumConverter extends ModelConverter {
+		public ChecksumConverter() {
+			super(Checksum.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Checksum cs = (Checksum) source;
+			enumText(w, "algorithm", cs.getAlgorithm());
+			text(w, "value", cs.getValue());
+			text(w, "key", cs.getKey());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			Checksum.Algorithm algorithm = null;
+			String value = null;
+			String key = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("algorithm".equals(name))
+					algorithm = enumValue(r, Checksum.Algorithm.class);
+				else if ("value".equals(name))
+					value = r.getValue();
+				else if ("key".equals(name))
+					key = r.getValue();
+				r.moveUp();
+			}
+			return new Checksum(algorithm, value, key);
+		}
+	}
+
+	public static final class AssessmentConverter extends ModelConverter {
+		public AssessmentConverter() {
+			super(Assessment.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Assessment a = (Assessment) source;
+			object(w, c, "impact", a.getImpact());
+			object(w, c, "action", a.getAction());
+			object(w, c, "confidence", a.getConfidence());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			Impact impact = null;
+			Action action = null;
+			Confidence confidence = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("impact".equals(name))
+					impact = (Impact) c.convertAnother(null, Impact.class);
+				else if ("action".equals(name))
+					action = (Action) c.convertAnother(null, Action.class);
+				else if ("confidence".equals(name))
+					confidence = (Confidence) c.convertAnother(null, Confidence.class);
+				r.moveUp();
+			}
+			return new Assessment(impact, action, confidence);
+		}
+	}
+
+	public static final class ImpactConverter extends ModelConverter {
+		public ImpactConverter() {
+			super(Impact.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Impact i = (Impact) source;
+			enumText(w, "severity", i.getSeverity());
+			enumText(w, "completion", i.getCompletion());
+			enumText(w, "type", i.getType());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			Impact.Severity severity = null;
+			Impact.Completion completion = null;
+			Impact.Type type = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("severity".equals(name))
+					severity = enumValue(r, Impact.Severity.class);
+				else if ("completion".equals(name))
+					completion = enumValue(r, Impact.Completion.class);
+				else if ("type".equals(name))
+					type = enumValue(r, Impact.Type.class);
+				r.moveUp();
+			}
+			return new Impact(severity, completion, type);
+		}
+	}
+
+	public static final class ActionConverter extends ModelConverter {
+		public ActionConverter() {
+			super(Action.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			enumText(w, "category", ((Action) source).getSKCategory());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			Action.Category category = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				if ("category".equals(r.getNodeName()))
+					category = enumValue(r, Action.Category.class);
+				r.moveUp();
+			}
+			return new Action(category);
+		}
+	}
+
+	public static final class ConfidenceConverter extends ModelConverter {
+		public ConfidenceConverter() {
+			super(Confidence.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			Confidence conf = (Confidence) source;
+			enumText(w, "rating", conf.getSKRating());
+			text(w, "numericRating", Double.toString(conf.getSKNumericRating()));
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			Confidence.Rank rating = null;
+			double numericRating = 0.0d;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("rating".equals(name))
+					rating = enumValue(r, Confidence.Rank.class);
+				else if ("numericRating".equals(name))
+					numericRating = real(r);
+				r.moveUp();
+			}
+			if (numericRating != 0.0d)
+				return new Confidence((rating == null) ? Confidence.Rank.NUMERIC : rating, numericRating);
+			return new Confidence((rating == null) ? Confidence.Rank.LOW : rating);
+		}
+	}
+
+	public static final class ToolAlertConverter extends ModelConverter {
+		public ToolAlertConverter() {
+			super(ToolAlert.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			ToolAlert t = (ToolAlert) source;
+			text(w, "name", t.getName());
+			text(w, "command", t.getCommand());
+			strings(w, "alertIdent", t.getAlertIdent());
+			strings(w, "analyzerID", t.getAnalyzerID());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String name = null;
+			String command = null;
+			String[] alertIdent = null;
+			String[] analyzerID = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("name".equals(field))
+					name = r.getValue();
+				else if ("command".equals(field))
+					command = r.getValue();
+				else if ("alertIdent".equals(field))
+					alertIdent = strings(r);
+				else if ("analyzerID".equals(field))
+					analyzerID = strings(r);
+				r.moveUp();
+			}
+			return new ToolAlert(name, command, alertIdent, analyzerID);
+		}
+	}
+
+	public static final class OverflowAlertConverter extends ModelConverter {
+		public OverflowAlertConverter() {
+			super(OverflowAlert.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			OverflowAlert o = (OverflowAlert) source;
+			text(w, "program", o.getProgram());
+			integer(w, "size", o.getSize());
+			if (o.getBuffer() != null) {
+				StringBuilder sb = new StringBuilder();
+				try {
+					RFC4765DataTypes.appendBase64(sb, o.getBuffer(), 0, o.getBuffer().length);
+				}
+				catch (IOException ioe) {
+					// StringBuilder doesn't throw it
+				}
+				text(w, "buffer", sb.toString());
+			}
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String program = null;
+			int size = -1;
+			byte[] buffer = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("program".equals(name))
+					program = r.getValue();
+				else if ("size".equals(name))
+					size = integer(r);
+				else if ("buffer".equals(name))
+					buffer = RFC4765DataTypes.decodeBase64(r.getValue());
+				r.moveUp();
+			}
+			return new OverflowAlert(program, size, buffer);
+		}
+	}
+
+	public static final class CorrelationAlertConverter extends ModelConverter {
+		public CorrelationAlertConverter() {
+			super(CorrelationAlert.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			CorrelationAlert ca = (CorrelationAlert) source;
+			text(w, "name", ca.getName());
+			strings(w, "alertIdent", ca.getAlertIdent());
+			strings(w, "analyzerID", ca.getAnalyzerID());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			String name = null;
+			String[] alertIdent = null;
+			String[] analyzerID = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String field = r.getNodeName();
+				if ("name".equals(field))
+					name = r.getValue();
+				else if ("alertIdent".equals(field))
+					alertIdent = strings(r);
+				else if ("analyzerID".equals(field))
+					analyzerID = strings(r);
+				r.moveUp();
+			}
+			return new CorrelationAlert(name, alertIdent, analyzerID);
+		}
+	}
+
+	/**
+	 * The data is written as the text of its RFC4765 type, as in the IDMEF XML, so that
+	 * no class attribute is needed to read it back.
+	 */
+	public static final class AdditionalDataConverter extends ModelConverter {
+		public AdditionalDataConverter() {
+			super(AdditionalData.class);
+		}
+
+		public void marshal(Object source, HierarchicalStreamWriter w, MarshallingContext c) {
+			AdditionalData ad = (AdditionalData) source;
+			enumText(w, "adType", ad.getAdType());
+			StringBuilder sb = new StringBuilder();
+			try {
+				switch (ad.getAdType()) {
+				case BOOLEAN:
+					sb.append(ad.getBoolean());
+					break;
+				case BYTE:
+					sb.append(ad.getByte());
+					break;
+				case CHARACTER:
+					sb.append(ad.getChar());
+					break;
+				case INTEGER:
+					sb.append(ad.getInt());
+					break;
+				case REAL:
+					sb.append(ad.getDouble());
+					break;
+				case DATE_TIME:
+					RFC4765DataTypes.appendDateTime(sb, ad.getDateTime());
+					break;
+				case PORTLIST:
+					sb.append(ad.getPortSet().toString());
+					break;
+				case BYTE_STRING:
+					byte[] bytes = ad.getBytes();
+					RFC4765DataTypes.appendBase64(sb, bytes, 0, bytes.length);
+					break;
+				case NTPSTAMP:
+					NtpStamp.append(sb, ad.getNtpStamp());
+					break;
+				default:
+					// STRING, XMLTEXT
+					sb.append(ad.getString());
+				}
+			}
+			catch (IOException ioe) {
+				// StringBuilder doesn't throw it
+			}
+			text(w, "data", sb.toString());
+			text(w, "meaning", ad.getMeaning());
+		}
+
+		public Object unmarshal(HierarchicalStreamReader r, UnmarshallingContext c) {
+			AdditionalData.Type type = null;
+			String text = null;
+			String meaning = null;
+			while (r.hasMoreChildren()) {
+				r.moveDown();
+				String name = r.getNodeName();
+				if ("adType".equals(name))
+					type = enumValue(r, AdditionalData.Type.class);
+				else if ("data".equals(name))
+					text = r.getValue();
+				else if ("meaning".equals(name))
+					meaning = r.getValue();
+				r.moveUp();
+			}
+			if (type == null)
+				throw new IllegalArgumentException("AdditionalData has no adType");
+			if (text == null)
+				// the constructor says what is missing
+				return new AdditionalData(type, null, meaning);
+			switch (type) {
+			case BOOLEAN:
+				return new AdditionalData(Boolean.valueOf(text.trim()).booleanValue(), meaning);
+			case BYTE:
+				return new AdditionalData((byte) parseInt(text), meaning);
+			case CHARACTER:
+				if (text.length() != 1)
+					throw new IllegalArgumentException("AdditionalData character value must be one character: "+text);
+				return new AdditionalData(text.charAt(0), meaning);
+			case DATE_TIME:
+				return new AdditionalData(type, RFC4765DataTypes.parseDateTime(text), meaning);
+			case INTEGER:
+				return new AdditionalData(parseInt(text), meaning);
+			case PORTLIST:
+				return new AdditionalData(new PortSet(text), meaning);
+			case REAL:
+				return new AdditionalData(parseDouble(text), meaning);
+			case BYTE_STRING:
+				return new AdditionalData(RFC4765DataTypes.decodeBase64(text), meaning);
+			default:
+				// NTPSTAMP, STRING, XMLTEXT
+				return new AdditionalData(type, text, meaning);
+			}
+		}
+	}
+
+
+
+	private static void text(HierarchicalStreamWriter w, String name, String value) {
+		if (value == null)
+			return;
+		w.startNode(name);
+		w.setValue(value);
+		w.endNode();
+	}
+
+	/**
+	 * ints are always written, as the reflection converter writes primitives
+	 */
+	private static void integer(HierarchicalStreamWriter w, String name, int value) {
+		w.startNode(name);
+		w.setValue(Integer.toString(value));
+		w.endNode();
+	}
+
+	private static void enumText(HierarchicalStreamWriter w, String name, Enum<?> value) {
+		if (value != null)
+			text(w, name, value.name());
+	}
+
+	private static void time(HierarchicalStreamWriter w, String name, DateTime value) {
+		if (value == null)
+			return;
+		StringBuilder sb = new StringBuilder(29);
+		try {
+			RFC4765DataTypes.appendDateTime(sb, value);
+		}
+		catch (IOException ioe) {
+			// StringBuilder doesn't throw it
+		}
+		text(w, name, sb.toString());
+	}
+
+	private static void object(HierarchicalStreamWriter w, MarshallingContext c, String name, Object value) {
+		if (value == null)
+			return;
+		w.startNode(name);
+		c.convertAnother(value);
+		w.endNode();
+	}
+
+	/**
+	 * An array as the reflection converter writes it: an element for the field holding one
+	 * element per item, named for the item's class alias, or "null"
+	 */
+	private static void array(HierarchicalStreamWriter w, MarshallingContext c, String name, String itemName, Object[] items) {
+		if (items == null)
+			return;
+		w.startNode(name);
+		for (int i = 0; i < items.length; i++) {
+			if (items[i] == null) {
+				w.startNode("null");
+				w.endNode();
+			}
+			else {
+				w.startNode(itemName);
+				c.convertAnother(items[i]);
+				w.endNode();
+			}
+		}
+		w.endNode();
+	}
+
+	private static void strings(HierarchicalStreamWriter w, String name, String[] items) {
+		if (items == null)
+			return;
+		w.startNode(name);
+		for (int i = 0; i < items.length; i++) {
+			if (items[i] == null) {
+				w.startNode("null");
+				w.endNode();
+			}
+			else
+				text(w, "string", items[i]);
+		}
+		w.endNode();
+	}
+
+
+	private static DateTime time(HierarchicalStreamReader r) {
+		return RFC4765DataTypes.parseDateTime(r.getValue());
+	}
+
+	private static int integer(HierarchicalStreamReader r) {
+		return parseInt(r.getValue());
+	}
+
+	private static double real(HierarchicalStreamReader r) {
+		return parseDouble(r.getValue());
+	}
+
+	private static <E extends Enum<E>> E enumValue(HierarchicalStreamReader r, Class<E> type) {
+		String name = r.getValue().trim();
+		try {
+			return Enum.valueOf(type, name);
+		}
+		catch (IllegalArgumentException iae) {
+			throw new IllegalArgumentException("Not a "+type.getSimpleName()+": "+name);
+		}
+	}
+
+	/**
+	 * Read the items of an array written by array(). The reader is positioned at the field
+	 * element and is left there.
+	 */
+	private static <T> ArrayList<T> array(HierarchicalStreamReader r, UnmarshallingContext c, Class<T> itemType) {
+		ArrayList<T> items = new ArrayList<T>();
+		while (r.hasMoreChildren()) {
+			r.moveDown();
+			if ("null".equals(r.getNodeName()))
+				items.add(null);
+			else
+				items.add(itemType.cast(c.convertAnother(null, itemType)));
+			r.moveUp();
+		}
+		return items;
+	}
+
+	private static String[] strings(HierarchicalStreamReader r) {
+		ArrayList<String> items = new ArrayList<String>();
+		while (r.hasMoreChildren()) {
+			r.moveDown();
+			items.add("null".equals(r.getNodeName()) ? null : r.getValue());
+			r.moveUp();
+		}
+		return items.toArray(new String[items.size()]);
+	}
+
+	private static int parseInt(String s)
+	throws IllegalArgumentException {
+		try {
+			return Integer.parseInt(s.trim());
+		}
+		catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("Not an RFC4765 INTEGER: "+s);
+		}
+	}
+
+	private static double parseDouble(String s)
+	throws IllegalArgumentException {
+		try {
+			return Double.parseDouble(s.trim());
+		}
+		catch (NumberFormatException nfe) {
+			throw new IllegalArgumentException("Not an RFC4765 REAL: "+s);
+		}
+	}
+
+}
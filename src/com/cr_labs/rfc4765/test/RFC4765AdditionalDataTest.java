@@ -0,0 +1,74 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.util.Arrays;
+
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.PortSet;
+
+/**
+ * Checks that AdditionalData holds its primitive values and byte strings unboxed, whether made
+ * from boxed or primitive values or read back from XML, and that a getter of the wrong type is refused.
+ */
+public class RFC4765AdditionalDataTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765AdditionalDataTest");
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		IDMEFMessage_Alert read = (IDMEFMessage_Alert) fromXML(toXML(alert));
+		AdditionalData[] ad = read.getAdditionalData();
+		check("additional data read back", Arrays.asList(alert.getAdditionalData()), Arrays.asList(ad));
+		check("INTEGER", 42, ad[0].getInt());
+		check("BOOLEAN", true, ad[2].getBoolean());
+		check("REAL", 2.5d, ad[6].getDouble());
+		check("BYTE_STRING", true, Arrays.equals(ad[4].getBytes(), new byte[] { 1, 2, 3, -1 }));
+		check("BYTE_STRING buffer", 4, ad[4].getByteBuffer().remaining());
+		check("PORTLIST", new PortSet(new int[] { 21, 22, 23 }), ad[3].getPortSet());
+		check("boxed data", new AdditionalData(42, "count").getData(), ad[0].getData());
+		try {
+			ad[0].getDouble();
+			fail("getDouble() of an INTEGER");
+		}
+		catch (IllegalStateException expected) {
+		}
+
+		// the primitive constructors make the same AdditionalData as the boxed ones
+		check("boolean", new AdditionalData(AdditionalData.Type.BOOLEAN, Boolean.TRUE, "m"), new AdditionalData(true, "m"));
+		check("byte", new AdditionalData(AdditionalData.Type.BYTE, Byte.valueOf((byte) -3), "m"), new AdditionalData((byte) -3, "m"));
+		check("char", new AdditionalData(AdditionalData.Type.CHARACTER, Character.valueOf('x'), "m"), new AdditionalData('x', "m"));
+		check("int", new AdditionalData(AdditionalData.Type.INTEGER, Integer.valueOf(-7), "m"), new AdditionalData(-7, "m"));
+		check("double", new AdditionalData(AdditionalData.Type.REAL, Double.valueOf(0.125d), "m"), new AdditionalData(0.125d, "m"));
+		check("bytes", new AdditionalData(AdditionalData.Type.BYTE_STRING, new Byte[] { 9, -9 }, "m"), new AdditionalData(new byte[] { 9, -9 }, "m"));
+		try {
+			new AdditionalData(AdditionalData.Type.INTEGER, "42", null);
+			fail("an INTEGER made from a String");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		System.out.println("additional data OK");
+	}
+
+}
@@ -0,0 +1,361 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.accessories.RFC4765Resolver;
+
+/**
+ * Checks that literal addresses of every IP category parse (in memory) to what the JDK makes
+ * of them, including IPv6 addresses with zone IDs, that malformed literals and netmasks are rejected, and that host names are kept
+ * unresolved or resolved as asked, and through RFC4765Resolver, which looks each name up once
+ * and completes every caller even if one of their Listeners throws.
+ */
+public class RFC4765AddressTest extends RFC4765TestSupport {
+
+	private static void same(String text, Address.Category category, String expected)
+	throws Exception {
+		Address a = new Address(null, text, category, null, null, false);
+		InetAddress ia = InetAddress.getByName(expected);
+		if (! ia.equals(a.getInetAddress()) || a.isHostName())
+			fail(text+" as "+category+": expected "+ia+", got "+a.getInetAddress());
+	}
+
+	private static void text(String actual, String expected) {
+		if (! expected.equals(actual))
+			fail("expected "+expected+", got "+actual);
+	}
+
+	private static void rejected(String text, Address.Category category) {
+		try {
+			new Address(null, text, category, null, null, false);
+			fail(text+" as "+category+": accepted");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+	}
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765AddressTest");
+
+		same("192.0.2.10", Address.Category.IPV4_ADDR, "192.0.2.10");
+		same("0.0.0.0", Address.Category.IPV4_ADDR, "0.0.0.0");
+		same("0xC000020A", Address.Category.IPV4_ADDR_HEX, "192.0.2.10");
+		same("198.51.100.0/24", Address.Category.IPV4_NET, "198.51.100.0");
+		same("198.51.100.0/255.255.255.0", Address.Category.IPV4_NET_MASK, "198.51.100.0");
+		same("2001:db8::1", Address.Category.IPV6_ADDR, "2001:db8::1");
+		same("::", Address.Category.IPV6_ADDR, "::");
+		same("::1", Address.Category.IPV6_ADDR, "::1");
+		same("fe80::", Address.Category.IPV6_ADDR, "fe80::");
+		same("1:2:3:4:5:6:7:8", Address.Category.IPV6_ADDR, "1:2:3:4:5:6:7:8");
+		same("1::8", Address.Category.IPV6_ADDR, "1::8");
+		same("::ffff:192.0.2.1", Address.Category.IPV6_ADDR, "192.0.2.1");
+		same("64:ff9b::192.0.2.1", Address.Category.IPV6_ADDR, "64:ff9b::c000:201");
+		same("0x20010DB8000000000000000000000001", Address.Category.IPV6_ADDR_HEX, "2001:db8::1");
+		same("2001:db8::/32", Address.Category.IPV6_NET, "2001:db8::");
+		same("2001:db8::/ffff:ffff::", Address.Category.IPV6_NET_MASK, "2001:db8::");
+		System.out.println("literals OK");
+
+		// RFC4007 zone IDs, with and without the resolver
+		for (boolean resolveNames : new boolean[] { false, true }) {
+			for (String text : new String[] { "fe80::1%eth0", "fe80::1%1" }) {
+				Address scoped = new Address(null, text, Address.Category.IPV6_ADDR, null, null, resolveNames);
+				InetAddress ia = scoped.getInetAddress();
+				if ((ia == null) || ! (ia instanceof Inet6Address) || scoped.isHostName() || scoped.isIPv6()
+						|| ! Arrays.equals(InetAddress.getByName("fe80::1").getAddress(), ia.getAddress()))
+					fail(text+" (resolveNames "+resolveNames+"): "+ia);
+				text(scoped.getAddress(), text);
+			}
+			Inet6Address one = (Inet6Address) new Address(null, "fe80::1%1", Address.Category.IPV6_ADDR, null, null, resolveNames).getInetAddress();
+			if (one.getScopeId() != 1)
+				fail("fe80::1%1: scope id "+one.getScopeId());
+			Address scopedNet = new Address(null, "fe80::%1/64", Address.Category.IPV6_NET, null, null, resolveNames);
+			text(scopedNet.getAddress(), "fe80::%1");
+			text(scopedNet.getNetmask(), "64");
+		}
+		// an interface this host does not have still parses, unscoped
+		Address remote = new Address(null, "fe80::1%no-such-if9", Address.Category.IPV6_ADDR, null, null, false);
+		if ((remote.getInetAddress() == null) || (((Inet6Address) remote.getInetAddress()).getScopeId() != 0))
+			fail("fe80::1%no-such-if9: "+remote.getInetAddress());
+		System.out.println("zones OK");
+
+		// the numeric forms, and the text and netmask written back from them
+		Address v4 = new Address(null, "198.51.100.0/255.255.255.0", Address.Category.IPV4_NET_MASK, null, null);
+		if (! v4.isIPv4() || v4.isIPv6() || (v4.getIPv4() != 0xc6336400) || (v4.getPrefixLength() != 24))
+			fail("IPv4 numeric form: "+v4);
+		text(v4.getAddress(), "198.51.100.0");
+		text(v4.getNetmask(), "255.255.255.0");
+		Address v6 = new Address(null, "2001:0DB8:0:0:1:0:0:1/64", Address.Category.IPV6_NET, null, null);
+		if (! v6.isIPv6() || (v6.getIPv6High() != 0x20010db800000000L) || (v6.getIPv6Low() != 0x0001000000000001L) || (v6.getPrefixLength() != 64))
+			fail("IPv6 numeric form: "+v6);
+		text(v6.getAddress(), "2001:db8::1:0:0:1");
+		text(v6.getNetmask(), "64");
+		text(new Address(null, "2001:db8::/ffff:ffff:ffff:fff0::", Address.Category.IPV6_NET_MASK, null, null).getNetmask(), "ffff:ffff:ffff:fff0::");
+		text(new Address(null, "10.0.0.0/255.0.255.0", Address.Category.IPV4_NET_MASK, null, null).getNetmask(), "255.0.255.0");
+		text(new Address(null, "0xc000020a", Address.Category.IPV4_ADDR_HEX, null, null).getAddress(), "0xC000020A");
+		text(new Address(null, "0x20010db8000000000000000000000001", Address.Category.IPV6_ADDR_HEX, null, null).getAddress(), "0x20010DB8000000000000000000000001");
+		text(new Address(null, "::ffff:c000:201", Address.Category.IPV6_ADDR, null, null).getAddress(), "::ffff:192.0.2.1");
+		text(new Address(null, "1:0:0:2:0:0:0:3", Address.Category.IPV6_ADDR, null, null).getAddress(), "1:0:0:2::3");
+		text(new Address(null, "::", Address.Category.IPV6_ADDR, null, null).getAddress(), "::");
+		text(new Address(null, "1:0:2:3:4:5:6:7", Address.Category.IPV6_ADDR, null, null).getAddress(), "1:0:2:3:4:5:6:7");
+		// the longest prefixes, which are also the all-ones masks
+		Address host6 = new Address(null, "2001:db8::1/128", Address.Category.IPV6_NET, null, null, false);
+		if (host6.getPrefixLength() != 128)
+			fail("IPv6 /128: prefix length "+host6.getPrefixLength());
+		text(host6.getNetmask(), "128");
+		Address mask6 = new Address(null, "2001:db8::1/ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", Address.Category.IPV6_NET_MASK, null, null, false);
+		if (mask6.getPrefixLength() != 128)
+			fail("IPv6 all-ones mask: prefix length "+mask6.getPrefixLength());
+		text(mask6.getNetmask(), "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+		if (! host6.equals(new Address(null, "2001:db8::1/128", Address.Category.IPV6_NET, null, null, false))
+				|| host6.equals(new Address(null, "2001:db8::1/127", Address.Category.IPV6_NET, null, null, false)))
+			fail("IPv6 /128: equals");
+		Address host4 = new Address(null, "192.0.2.1/255.255.255.255", Address.Category.IPV4_NET_MASK, null, null, false);
+		if (host4.getPrefixLength() != 32)
+			fail("IPv4 all-ones mask: prefix length "+host4.getPrefixLength());
+		text(host4.getNetmask(), "255.255.255.255");
+		// the numeric factories make the same Addresses as the text, and check the netmask against the category
+		if (! Address.fromIPv4("n", Address.Category.IPV4_NET_MASK, 0xc6336400, 24, null, "dmz", null)
+				.equals(new Address("n", "198.51.100.0/255.255.255.0", Address.Category.IPV4_NET_MASK, "dmz", null)))
+			fail("fromIPv4: not equal to the parsed address");
+		if (! Address.fromIPv6(null, Address.Category.IPV6_NET, 0x20010db800000000L, 1L, 128, null, null, null).equals(host6))
+			fail("fromIPv6: not equal to the parsed address");
+		text(Address.fromIPv4(null, Address.Category.IPV4_NET_MASK, 0x0a000000, -1, "255.0.255.0", null, null).getNetmask(), "255.0.255.0");
+		for (int prefix : new int[] { -2, 33 })
+			try {
+				Address.fromIPv4(null, Address.Category.IPV4_NET, 0, prefix, null, null, null);
+				fail("fromIPv4: accepted prefix length "+prefix);
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		try {
+			Address.fromIPv6(null, Address.Category.IPV6_ADDR, 0, 1, 64, null, null, null);
+			fail("fromIPv6: accepted a netmask on an IPV6_ADDR");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		Address unresolved = new Address(null, "sensor.example.com", Address.Category.IPV4_ADDR, null, null, false);
+		if (unresolved.isIPv4() || (unresolved.getIPv4() != 0) || (unresolved.getPrefixLength() != -1))
+			fail("host name numeric form: "+unresolved);
+		System.out.println("numeric forms OK");
+
+		rejected("192.0.2.256", Address.Category.IPV4_ADDR);
+		rejected("192.0.2", Address.Category.IPV4_ADDR);
+		rejected("0xC00002", Address.Category.IPV4_ADDR_HEX);
+		rejected("host.example.com", Address.Category.IPV4_ADDR_HEX);
+		rejected("198.51.100.0/33", Address.Category.IPV4_NET);
+		rejected("198.51.100.0", Address.Category.IPV4_NET);
+		rejected("198.51.100.0/255.255.0", Address.Category.IPV4_NET_MASK);
+		rejected("1:2:3:4:5:6:7:8:9", Address.Category.IPV6_ADDR);
+		rejected("1::2::3", Address.Category.IPV6_ADDR);
+		rejected("12345::", Address.Category.IPV6_ADDR);
+		rejected("2001:db8::/129", Address.Category.IPV6_NET);
+		rejected("not a host!", Address.Category.IPV4_ADDR);
+		rejected("fe80::1%", Address.Category.IPV6_ADDR);
+		rejected("fe80::1%a b", Address.Category.IPV6_ADDR);
+		rejected("192.0.2.1%1", Address.Category.IPV4_ADDR);
+		rejected("fe80::1%1", Address.Category.IPV6_ADDR_HEX);
+		System.out.println("rejection OK");
+
+		Address name = new Address(null, "localhost", Address.Category.IPV4_ADDR, null, null, false);
+		if (! name.isHostName() || (name.getInetAddress() != null) || ! RFC4765Resolver.needsResolving(name))
+			fail("host name: resolved at construction");
+		Address resolved = new Address(null, "localhost", Address.Category.IPV4_ADDR, null, null);
+		if (! resolved.isHostName() || (resolved.getInetAddress() == null))
+			fail("host name: not resolved at construction");
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Address later = new RFC4765Resolver(executor).resolve(name).get();
+		executor.shutdown();
+		if ((later.getInetAddress() == null) || ! "localhost".equals(later.getAddress()))
+			fail("host name: not resolved by RFC4765Resolver");
+		System.out.println("host names OK");
+
+		// one lookup per name, shared by concurrent requests and cached, also when it fails
+		final AtomicInteger lookups = new AtomicInteger();
+		final ExecutorService pool = Executors.newFixedThreadPool(4);
+		final CountDownLatch gate = new CountDownLatch(1);
+		Executor counting = new Executor() {
+			public void execute(final Runnable r) {
+				lookups.incrementAndGet();
+				pool.execute(new Runnable() {
+					public void run() {
+						try {
+							gate.await();
+						}
+						catch (InterruptedException ie) {
+						}
+						r.run();
+					}
+				});
+			}
+		};
+		RFC4765Resolver resolver = new RFC4765Resolver(counting, 16, 60000, 60000);
+		final AtomicInteger heard = new AtomicInteger();
+		RFC4765Resolver.Listener<Address> listener = new RFC4765Resolver.Listener<Address>() {
+			public void done(Future<Address> result) {
+				heard.incrementAndGet();
+			}
+		};
+		ArrayList<Future<Address>> pending = new ArrayList<Future<Address>>();
+		for (int i = 0; i < 1000; i++)
+			pending.add(resolver.resolve(name, listener));
+		Future<InetAddress> unknown = resolver.resolve("no-such-host.invalid");
+		gate.countDown();
+		for (Future<Address> f : pending)
+			if (f.get().getInetAddress() == null)
+				fail("resolver: not resolved");
+		try {
+			unknown.get();
+			fail("resolver: unknown host resolved");
+		}
+		catch (ExecutionException expected) {
+			if (! (expected.getCause() instanceof UnknownHostException))
+				fail("resolver: "+expected.getCause());
+		}
+		try {
+			resolver.resolve("NO-SUCH-HOST.invalid").get(0, TimeUnit.SECONDS);
+			fail("resolver: unknown host resolved");
+		}
+		catch (ExecutionException expected) {
+			// from the cache, at once
+		}
+		Node node = resolver.resolve(new Node(null, null, null, "localhost", (Address[]) null)).get();
+		Node mixed = resolver.resolve(new Node(null, null, null, null,
+				new Address[] { name, new Address(null, "no-such-host.invalid", Address.Category.IPV4_ADDR, null, null, false) })).get();
+		pool.shutdown();
+		if ((node.getAddress().length != 1) || ! node.getAddress()[0].isIPv4() && ! node.getAddress()[0].isIPv6())
+			fail("resolver: node name not resolved");
+		if ((mixed.getAddress()[0].getInetAddress() == null) || ! RFC4765Resolver.needsResolving(mixed.getAddress()[1]))
+			fail("resolver: node addresses");
+		if ((lookups.get() != 2) || (heard.get() != 1000) || (resolver.getMisses() != 2))
+			fail("resolver: "+lookups.get()+" lookups, "+heard.get()+" listeners called, "+resolver.getHits()+" hits");
+		System.out.println("resolver OK: "+resolver.getHits()+" hits, "+resolver.getMisses()+" lookups");
+
+		// a lookup the Executor refuses fails and is not cached
+		final AtomicInteger offered = new AtomicInteger();
+		RFC4765Resolver refusing = new RFC4765Resolver(new Executor() {
+			public void execute(Runnable r) {
+				if (offered.getAndIncrement() == 0)
+					throw new RejectedExecutionException("queue full");
+				r.run();
+			}
+		});
+		try {
+			refusing.resolve(name).get(0, TimeUnit.SECONDS);
+			fail("refused lookup: resolved");
+		}
+		catch (ExecutionException expected) {
+			if (! (expected.getCause() instanceof RejectedExecutionException))
+				fail("refused lookup: "+expected.getCause());
+		}
+		if (refusing.resolve(name).get(0, TimeUnit.SECONDS).getInetAddress() == null)
+			fail("refused lookup: not tried again");
+		if ((offered.get() != 2) || (refusing.getMisses() != 2))
+			fail("refused lookup: "+offered.get()+" lookups offered, "+refusing.getMisses()+" misses");
+		System.out.println("refused lookup OK");
+
+		// a Listener that throws reaches the UncaughtExceptionHandler, and the other callers still complete
+		final AtomicInteger thrown = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final ExecutorService single = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r);
+				thread.setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+					public void uncaughtException(Thread thread, Throwable e) {
+						thrown.incrementAndGet();
+					}
+				});
+				return thread;
+			}
+		});
+		RFC4765Resolver throwing = new RFC4765Resolver(new Executor() {
+			public void execute(final Runnable r) {
+				single.execute(new Runnable() {
+					public void run() {
+						try {
+							start.await();
+						}
+						catch (InterruptedException ie) {
+						}
+						r.run();
+					}
+				});
+			}
+		});
+		final AtomicInteger called = new AtomicInteger();
+		RFC4765Resolver.Listener<Address> bad = new RFC4765Resolver.Listener<Address>() {
+			public void done(Future<Address> result) {
+				called.incrementAndGet();
+				throw new IllegalStateException("listener failed");
+			}
+		};
+		Future<Address> first = throwing.resolve(name, bad);
+		Future<Address> second = throwing.resolve(name, bad);
+		Future<Address> plain = throwing.resolve(name);
+		CompletableFuture<Address> async = throwing.resolveAsync(name);
+		CompletableFuture<Boolean> chained = throwing.resolveAsync(name).thenApply(new Function<Address, Boolean>() {
+			public Boolean apply(Address a) {
+				return a.getInetAddress() != null;
+			}
+		});
+		CompletableFuture<InetAddress> missing = throwing.resolveAsync("no-such-host.invalid");
+		start.countDown();
+		for (Future<Address> f : Arrays.asList(first, second, plain, async))
+			if (f.get(10, TimeUnit.SECONDS).getInetAddress() == null)
+				fail("throwing listener: not resolved");
+		if (! chained.get(10, TimeUnit.SECONDS))
+			fail("throwing listener: chained stage");
+		try {
+			missing.get(10, TimeUnit.SECONDS);
+			fail("resolveAsync: unknown host resolved");
+		}
+		catch (ExecutionException expected) {
+			if (! (expected.getCause() instanceof UnknownHostException))
+				fail("resolveAsync: "+expected.getCause());
+		}
+		single.shutdown();
+		if ((called.get() != 2) || (thrown.get() != 2) || (throwing.getMisses() != 2))
+			fail("throwing listener: "+called.get()+" called, "+thrown.get()+" thrown, "+throwing.getMisses()+" lookups");
+		System.out.println("throwing listener OK");
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.accessories.RFC4765AlertColumns;
+import com.cr_labs.rfc4765.accessories.RFC4765BinaryReader;
+import com.cr_labs.rfc4765.accessories.RFC4765BinaryWriter;
+
+/**
+ * Writes a few thousand alerts and a heartbeat in the binary encoding, reads them back into
+ * RFC4765AlertColumns and checks its counts, histogram, select and toAlert against the same
+ * alerts counted as objects. Then times the column scans.
+ */
+public class RFC4765AlertColumnsTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765AlertColumnsTest");
+
+		IDMEFMessage_Alert base = sampleAlert();
+		Classification[] kinds = new Classification[] { base.getClassification(),
+				new Classification(null, "port scan", null), new Classification(null, "login failure", null) };
+		ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+		RFC4765BinaryWriter cw = new RFC4765BinaryWriter(columnBytes);
+		IDMEFMessage_Alert.Builder ab = new IDMEFMessage_Alert.Builder();
+		int rows = 3000;
+		long hour = 3600000L;
+		for (int i = 0; i < rows; i++) {
+			ab.reset().analyzer(base.getAnalyzer()).classification(kinds[i % 3]).createTime(1300000000000L + i * 60000L);
+			if (i % 4 != 0)
+				ab.assessment(new Assessment(new Impact(Impact.Severity.values()[i % 4], null, null), null, null));
+			if (i % 5 != 0)
+				ab.addSource(new Source(null, null, null, new Node(null, null, null, null,
+						new Address(null, "10.0."+(i % 7)+"."+(i % 250 + 1), Address.Category.IPV4_ADDR, null, null)), null, null, null));
+			cw.writeMessage(ab.build());
+		}
+		cw.writeMessage(sampleHeartbeat());
+		RFC4765AlertColumns columns = new RFC4765AlertColumns(16);
+		ArrayList<IDMEFMessage_Alert> alerts = new ArrayList<IDMEFMessage_Alert>();
+		RFC4765BinaryReader cr = new RFC4765BinaryReader(new ByteArrayInputStream(columnBytes.toByteArray()));
+		for (IDMEFMessage m = cr.next(); m != null; m = cr.next())
+			if (columns.add(m) >= 0)
+				alerts.add((IDMEFMessage_Alert) m);
+		check("rows", Integer.valueOf(rows), Integer.valueOf(columns.size()));
+		check("classifications", Integer.valueOf(3), Integer.valueOf(columns.getClassificationCount()));
+		System.out.println("add OK");
+
+		// the same counts taken from the alerts as objects
+		int inHour = 0, high = 0, inNet = 0;
+		for (IDMEFMessage_Alert a : alerts) {
+			long t = a.getCreateTimeMillis();
+			inHour += ((t >= 1300000000000L + hour) && (t < 1300000000000L + 2 * hour)) ? 1 : 0;
+			high += ((a.getAssessment() != null) && (a.getAssessment().getImpact().getSeverityValue() >= 2)) ? 1 : 0;
+			inNet += ((a.getSource() != null) && a.getSource()[0].getNode().getAddress()[0].getAddress().startsWith("10.0.3.")) ? 1 : 0;
+		}
+		check("count in an hour", Integer.valueOf(inHour), Integer.valueOf(columns.countCreated(1300000000000L + hour, 1300000000000L + 2 * hour)));
+		check("histogram", Integer.valueOf(inHour), Integer.valueOf(columns.histogram(1300000000000L, hour, 24)[1]));
+		check("severity", Integer.valueOf(high), Integer.valueOf(columns.countSeverityAtLeast(Impact.Severity.MEDIUM)));
+		check("network", Integer.valueOf(inNet), Integer.valueOf(columns.countSourcesIn(0x0a000300, 24)));
+		check("by classification", Integer.valueOf(rows / 3), Integer.valueOf(columns.countByClassification()[columns.getClassificationId(kinds[1])]));
+		check("by severity", Integer.valueOf(rows / 4), Integer.valueOf(columns.countBySeverity()[Impact.Severity.values().length]));
+		System.out.println("counts OK");
+
+		int[] found = new int[rows];
+		int n = columns.select(1300000000000L, 1300000000000L + hour, Impact.Severity.HIGH.getValue(), columns.getClassificationId(kinds[0]), found);
+		check("selected", Integer.valueOf(5), Integer.valueOf(n));
+		for (int i = 0; i < n; i++)
+			if ((found[i] % 12 != 3) || (found[i] >= 60))
+				fail("selected row "+found[i]+" is not a HIGH "+kinds[0].getText()+" in the first hour");
+		System.out.println("select OK");
+
+		for (int row : new int[] { 0, 1, 7, rows - 1 })
+			check("row "+row, alerts.get(row), columns.toAlert(row));
+		System.out.println("rows OK");
+
+		int scans = 200;
+		long scanned = System.nanoTime();
+		for (int i = 0; i < scans; i++)
+			n += columns.countCreated(1300000000000L + hour, 1300000000000L + 2 * hour) + columns.countSourcesIn(0x0a000000, 16);
+		long scanNanos = System.nanoTime() - scanned;
+		System.out.println(columns.size()+" rows in "+columns.getColumnBytes()+" bytes off the heap, "
+				+(long) (2.0d * scans * rows * 1.0e9d / scanNanos)+" rows/s scanned ("+n+")");
+	}
+
+}
@@ -0,0 +1,370 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.accessories.RFC4765BinaryAlertView;
+import com.cr_labs.rfc4765.accessories.RFC4765BinaryFormat;
+import com.cr_labs.rfc4765.accessories.RFC4765BinaryReader;
+import com.cr_labs.rfc4765.accessories.RFC4765BinaryWriter;
+import com.cr_labs.rfc4765.accessories.RFC4765Compressor;
+import com.cr_labs.rfc4765.accessories.RFC4765DeflateCompressor;
+
+/**
+ * Writes the sample alert and heartbeat of RFC4765TestSupport in the binary encoding,
+ * reads them back and checks that they write the same XML as the originals, as single messages,
+ * in a batch, with Analyzer handles and compressed, and checks the fields seen through
+ * RFC4765BinaryAlertView. Then compares the size and speed
+ * of the binary and XML forms of a large batch.
+ */
+public class RFC4765BinaryRoundTripTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765BinaryRoundTripTest");
+
+		IDMEFMessage[] samples = new IDMEFMessage[] { sampleAlert(), sampleHeartbeat() };
+		for (boolean useDictionary : new boolean[] { true, false }) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			RFC4765BinaryWriter w = new RFC4765BinaryWriter(bytes, useDictionary);
+			// twice over, so that the second pass is written with dictionary references
+			for (int pass = 0; pass < 2; pass++)
+				for (IDMEFMessage m : samples)
+					w.writeMessage(m);
+			RFC4765BinaryReader r = new RFC4765BinaryReader(new ByteArrayInputStream(bytes.toByteArray()));
+			for (int pass = 0; pass < 2; pass++) {
+				for (IDMEFMessage m : samples) {
+					String expected = toXML(m);
+					String actual = toXML(r.next());
+					if (! expected.equals(actual))
+						fail("ROUND TRIP MISMATCH (dictionary "+useDictionary+"):\n"+expected+"\n"+actual);
+				}
+			}
+			if (r.next() != null)
+				fail("TRAILING DATA (dictionary "+useDictionary+")");
+		}
+		System.out.println("round trip OK");
+
+		// a batch frame between two single-message frames, read by next() and by nextBatch()
+		IDMEFMessageBatch batch = new IDMEFMessageBatch(new IDMEFMessage[] { samples[0], samples[1], samples[0] });
+		ByteArrayOutputStream batchBytes = new ByteArrayOutputStream();
+		RFC4765BinaryWriter bw = new RFC4765BinaryWriter(batchBytes);
+		bw.writeMessage(samples[1]);
+		bw.writeBatch(batch);
+		bw.writeMessage(samples[1]);
+		RFC4765BinaryReader br = new RFC4765BinaryReader(new ByteArrayInputStream(batchBytes.toByteArray()));
+		check("first single", toXML(samples[1]), toXML(br.next()));
+		check("first of batch", toXML(batch.get(0)), toXML(br.next()));
+		IDMEFMessageBatch rest = br.nextBatch();
+		check("rest of batch", batch.size() - 1, rest.size());
+		for (int i = 0; i < rest.size(); i++)
+			check("batch message "+(i + 1), toXML(batch.get(i + 1)), toXML(rest.get(i)));
+		check("last single", 1, br.nextBatch().size());
+		check("end", null, br.nextBatch());
+		check("message count", (long) batch.size() + 2, br.getMessageCount());
+		System.out.println("batch OK");
+
+		// Analyzer handles: heartbeats from one sensor carry its Analyzer once, and share it when read
+		IDMEFMessage heartbeat = samples[1];
+		int heartbeats = 100;
+		long[] sizes = new long[2];
+		for (int handles = 0; handles < 2; handles++) {
+			ByteArrayOutputStream hbBytes = new ByteArrayOutputStream();
+			RFC4765BinaryWriter hw = new RFC4765BinaryWriter(hbBytes, true, handles == 1);
+			for (int i = 0; i < heartbeats; i++)
+				hw.writeMessage(heartbeat);
+			sizes[handles] = hw.getBytesWritten();
+			RFC4765BinaryReader hr = new RFC4765BinaryReader(new ByteArrayInputStream(hbBytes.toByteArray()));
+			IDMEFMessage_Heartbeat first = (IDMEFMessage_Heartbeat) hr.next();
+			IDMEFMessage m;
+			while ((m = hr.next()) != null) {
+				check("heartbeat", toXML(heartbeat), toXML(m));
+				check("shared Analyzer", handles == 1, ((IDMEFMessage_Heartbeat) m).getAnalyzer() == first.getAnalyzer());
+			}
+		}
+		System.out.println("handles OK: "+heartbeats+" heartbeats in "+sizes[0]+" bytes, "+sizes[1]+" with Analyzer handles");
+
+		// the flyweight view of a stream without a dictionary, over a heap, a direct and a little-endian buffer
+		IDMEFMessage_Alert sample = (IDMEFMessage_Alert) samples[0];
+		ByteArrayOutputStream plain = new ByteArrayOutputStream();
+		RFC4765BinaryWriter pw = new RFC4765BinaryWriter(plain, false);
+		for (IDMEFMessage m : samples)
+			pw.writeMessage(m);
+		byte[] encoded = plain.toByteArray();
+		ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length);
+		direct.put(encoded).flip();
+		ByteBuffer little = ByteBuffer.wrap(encoded).order(ByteOrder.LITTLE_ENDIAN);
+		for (ByteBuffer b : new ByteBuffer[] { ByteBuffer.wrap(encoded), direct, little }) {
+			RFC4765BinaryAlertView v = new RFC4765BinaryAlertView();
+			v.setStreamFlags(RFC4765BinaryFormat.readHeader(b));
+			if (! v.next(b) || ! v.isAlert())
+				fail("view: no alert");
+			check("messageID", sample.getMessageID(), v.getMessageID());
+			check("createTime", sample.getCreateTime().getMillis(), v.getCreateTimeMillis());
+			check("analyzerID", sample.getAnalyzer().getAnalyzerID(), v.getAnalyzer().getAnalyzerID());
+			check("original analyzerID", sample.getAnalyzer().getOriginalAnalyzer().getAnalyzerID(),
+					v.getAnalyzer().getOriginalAnalyzer().getAnalyzerID());
+			check("classification", sample.getClassification().getText(), v.getClassification().getText());
+			check("classification equals", true, v.getClassification().textEquals(sample.getClassification().getText()));
+			check("sources", sample.getSource().length, v.getSourceCount());
+			Address a = sample.getSource()[0].getNode().getAddress()[1];
+			check("address", a.getAddress(), v.getSource(0).getNode().getAddress(1).getAddress());
+			check("address equals", true, v.getSource(0).getNode().getAddress(1).addressEquals(a.getAddress()));
+			check("address category", a.getSKCategory(), v.getSource(0).getNode().getAddress(1).getSKCategory());
+			check("IPv4", a.getIPv4(), v.getSource(0).getNode().getAddress(1).getIPv4());
+			check("severity", sample.getAssessment().getImpact().getSeverity(), v.getAssessment().getImpact().getSeverity());
+			check("confidence", sample.getAssessment().getConfidence().getSKRating(), v.getAssessment().getConfidence().getSKRating());
+			check("numeric confidence", sample.getAssessment().getConfidence().getSKNumericRating(), v.getAssessment().getConfidence().getSKNumericRating());
+			if (! v.next(b) || v.isAlert())
+				fail("view: no heartbeat");
+			check("heartbeat interval", ((IDMEFMessage_Heartbeat) samples[1]).getHeartbeatInterval(), v.getHeartbeatInterval());
+			if (v.next(b))
+				fail("view: trailing data");
+		}
+		// Analyzer handles are followed through the view's table of the Analyzers defined
+		ByteArrayOutputStream handled = new ByteArrayOutputStream();
+		RFC4765BinaryWriter hw = new RFC4765BinaryWriter(handled, false, true);
+		for (int pass = 0; pass < 3; pass++)
+			for (IDMEFMessage m : samples)
+				hw.writeMessage(m);
+		ByteBuffer hb = ByteBuffer.wrap(handled.toByteArray());
+		RFC4765BinaryAlertView hv = new RFC4765BinaryAlertView();
+		hv.setStreamFlags(RFC4765BinaryFormat.readHeader(hb));
+		for (int i = 0; hv.next(hb); i++) {
+			Analyzer expected = (i % 2 == 0) ? sample.getAnalyzer() : ((IDMEFMessage_Heartbeat) samples[1]).getAnalyzer();
+			check("handled analyzerID "+i, expected.getAnalyzerID(), hv.getAnalyzer().getAnalyzerID());
+			check("handled alert "+i, i % 2 == 0, hv.isAlert());
+		}
+		// streams the view cannot read are refused up front
+		ByteArrayOutputStream full = new ByteArrayOutputStream();
+		new RFC4765BinaryWriter(full).writeMessage(sample);
+		try {
+			new RFC4765BinaryAlertView().setStreamFlags(RFC4765BinaryFormat.readHeader(ByteBuffer.wrap(full.toByteArray())));
+			fail("view: accepted a stream with a dictionary");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		ByteArrayOutputStream batched = new ByteArrayOutputStream();
+		new RFC4765BinaryWriter(batched, false).writeBatch(new IDMEFMessageBatch(samples));
+		ByteBuffer bb = ByteBuffer.wrap(batched.toByteArray());
+		RFC4765BinaryAlertView bv = new RFC4765BinaryAlertView();
+		bv.setStreamFlags(RFC4765BinaryFormat.readHeader(bb));
+		try {
+			bv.next(bb);
+			fail("view: accepted a batch frame");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		System.out.println("view OK");
+
+		// literal addresses and prefix lengths travel in their numeric forms, host names and odd masks as text
+		Address[] addresses = new Address[] {
+				new Address(null, "2001:db8::1/128", Address.Category.IPV6_NET, null, null, false),
+				new Address(null, "2001:db8::/ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", Address.Category.IPV6_NET_MASK, null, null, false),
+				new Address(null, "10.0.0.0/255.0.255.0", Address.Category.IPV4_NET_MASK, "dmz", "12", false),
+				new Address(null, "192.0.2.1/255.255.255.255", Address.Category.IPV4_NET_MASK, null, null, false),
+				new Address(null, "sensor.example.com/255.255.255.0", Address.Category.IPV4_NET_MASK, null, null, false),
+				new Address(null, "0xC000020A", Address.Category.IPV4_ADDR_HEX, null, null, false),
+				new Address(null, "0x20010DB8000000000000000000000001", Address.Category.IPV6_ADDR_HEX, null, null, false),
+				new Address(null, "::ffff:192.0.2.1", Address.Category.IPV6_ADDR, null, null, false) };
+		IDMEFMessage_Heartbeat addressed = new IDMEFMessage_Heartbeat("hb-a", new Analyzer("a1", null, null, null, null, null, null, null,
+				new Node(null, null, null, null, addresses), null, null), 1300000000000L, IDMEFMessage.NO_TIME, 60, null);
+		ByteArrayOutputStream addressBytes = new ByteArrayOutputStream();
+		new RFC4765BinaryWriter(addressBytes, false).writeMessage(addressed);
+		Address[] readAddresses = ((IDMEFMessage_Heartbeat) new RFC4765BinaryReader(new ByteArrayInputStream(addressBytes.toByteArray())).next())
+				.getAnalyzer().getNode().getAddress();
+		ByteBuffer addressBuffer = ByteBuffer.wrap(addressBytes.toByteArray());
+		RFC4765BinaryFormat.readHeader(addressBuffer);
+		RFC4765BinaryAlertView av = new RFC4765BinaryAlertView();
+		av.next(addressBuffer);
+		for (int i = 0; i < addresses.length; i++) {
+			Address a = addresses[i];
+			RFC4765BinaryAlertView.AddressView view = av.getAnalyzer().getNode().getAddress(i);
+			check("address "+a, a, readAddresses[i]);
+			check("netmask of "+a, a.getNetmask(), readAddresses[i].getNetmask());
+			check("prefix length of "+a, a.getPrefixLength(), readAddresses[i].getPrefixLength());
+			check("view address of "+a, a.getAddress(), view.getAddress());
+			check("view netmask of "+a, a.getNetmask(), view.getNetmask());
+			check("view IPv4 of "+a, a.getIPv4(), view.getIPv4());
+			check("view IPv6 of "+a, a.getIPv6Low(), view.getIPv6Low());
+			check("view prefix length of "+a, a.isHostName() ? -1 : a.getPrefixLength(), view.getPrefixLength());
+		}
+		System.out.println("addresses OK");
+
+		// compression with a dictionary trained on the samples, per message and per batch
+		ArrayList<byte[]> training = new ArrayList<byte[]>();
+		for (int i = 0; i < 20; i++)
+			for (IDMEFMessage m : samples) {
+				ByteArrayOutputStream one = new ByteArrayOutputStream();
+				new RFC4765BinaryWriter(one, false).writeMessage(m);
+				training.add(one.toByteArray());
+			}
+		byte[] dictionary = RFC4765DeflateCompressor.trainDictionary(training, 4096);
+		for (boolean trained : new boolean[] { false, true }) {
+			RFC4765DeflateCompressor compressor = new RFC4765DeflateCompressor(trained ? dictionary : null);
+			ByteArrayOutputStream packed = new ByteArrayOutputStream();
+			RFC4765BinaryWriter cw = new RFC4765BinaryWriter(packed, false, false, compressor);
+			cw.writeMessage(samples[0]);
+			long single = cw.getBytesWritten();
+			cw.writeBatch(batch);
+			RFC4765BinaryReader cr = new RFC4765BinaryReader(new ByteArrayInputStream(packed.toByteArray()), compressor);
+			check("compressed message", toXML(samples[0]), toXML(cr.next()));
+			for (int i = 0; i < batch.size(); i++)
+				check("compressed batch message "+i, toXML(batch.get(i)), toXML(cr.next()));
+			check("compressed end", null, cr.next());
+			System.out.println("compression OK: alert in "+single+" bytes with "+(trained ? "a "+dictionary.length+" byte" : "no")+" dictionary");
+			compressor.end();
+		}
+		try {
+			ByteArrayOutputStream packed = new ByteArrayOutputStream();
+			new RFC4765BinaryWriter(packed, false, false, new RFC4765DeflateCompressor(dictionary)).writeMessage(samples[0]);
+			new RFC4765BinaryReader(new ByteArrayInputStream(packed.toByteArray()), new RFC4765DeflateCompressor(null)).next();
+			fail("compression: read without the dictionary");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+
+		// frames longer than the reader's limit are refused before a buffer is made for them
+		ByteArrayOutputStream large = new ByteArrayOutputStream();
+		new RFC4765BinaryWriter(large).writeMessage(samples[0]);
+		RFC4765BinaryReader limited = new RFC4765BinaryReader(new ByteArrayInputStream(large.toByteArray()));
+		limited.setMaxFrameSize(64);
+		try {
+			limited.next();
+			fail("frame limit: read a frame longer than the limit");
+		}
+		catch (IOException expected) {
+		}
+		limited = new RFC4765BinaryReader(new ByteArrayInputStream(large.toByteArray()));
+		limited.setMaxFrameSize(large.size());
+		check("frame within the limit", toXML(samples[0]), toXML(limited.next()));
+		// and so are compressed frames that expand past it
+		ByteArrayOutputStream packedLarge = new ByteArrayOutputStream();
+		new RFC4765BinaryWriter(packedLarge, false, false, new RFC4765DeflateCompressor(dictionary)).writeMessage(samples[0]);
+		limited = new RFC4765BinaryReader(new ByteArrayInputStream(packedLarge.toByteArray()), new RFC4765DeflateCompressor(dictionary));
+		limited.setMaxFrameSize(100);
+		try {
+			limited.next();
+			fail("frame limit: decompressed a frame past the limit");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		RFC4765DeflateCompressor bomb = new RFC4765DeflateCompressor(null);
+		ByteArrayOutputStream zeros = new ByteArrayOutputStream();
+		bomb.compress(new byte[1 << 20], 0, 1 << 20, zeros);
+		try {
+			bomb.decompress(zeros.toByteArray(), 0, zeros.size(), new ByteArrayOutputStream(), 4096);
+			fail("frame limit: decompressed "+zeros.size()+" bytes of zeros past the limit");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		bomb.end();
+		System.out.println("frame limit OK");
+
+		// a tenth varint byte may only carry bit 63
+		byte[] maxVarint = { -1, -1, -1, -1, -1, -1, -1, -1, -1, 1 };
+		check("largest varint", Long.valueOf(-1L), Long.valueOf(RFC4765BinaryFormat.readVarint(ByteBuffer.wrap(maxVarint))));
+		for (int tenth : new int[] { 2, 0x7f }) {
+			maxVarint[9] = (byte) tenth;
+			try {
+				RFC4765BinaryFormat.readVarint(ByteBuffer.wrap(maxVarint));
+				fail("varint: read a tenth byte of "+tenth);
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		}
+		System.out.println("varints OK");
+
+		// once a frame can't be sent, the writer refuses to write more
+		final RFC4765DeflateCompressor deflate = new RFC4765DeflateCompressor(null);
+		final int[] compressions = { 0 };
+		RFC4765Compressor flaky = new RFC4765Compressor() {
+			public void compress(byte[] in, int offset, int length, ByteArrayOutputStream out) {
+				if (++compressions[0] == 2)
+					throw new IllegalStateException("compressor failed");
+				deflate.compress(in, offset, length, out);
+			}
+			public void decompress(byte[] in, int offset, int length, ByteArrayOutputStream out, int maxLength) {
+				deflate.decompress(in, offset, length, out, maxLength);
+			}
+		};
+		ByteArrayOutputStream failed = new ByteArrayOutputStream();
+		RFC4765BinaryWriter fw = new RFC4765BinaryWriter(failed, true, true, flaky);
+		fw.writeMessage(samples[0]);
+		int sent = failed.size();
+		try {
+			fw.writeMessage(samples[1]);
+			fail("failed frame: compressor failure not thrown");
+		}
+		catch (IllegalStateException expected) {
+		}
+		try {
+			fw.writeMessage(samples[1]);
+			fail("failed frame: wrote after a failed frame");
+		}
+		catch (IOException expected) {
+		}
+		check("failed frame: bytes sent", Integer.valueOf(sent), Integer.valueOf(failed.size()));
+		check("failed frame: messages", Long.valueOf(1), Long.valueOf(fw.getMessageCount()));
+		RFC4765BinaryReader fr = new RFC4765BinaryReader(new ByteArrayInputStream(failed.toByteArray()), deflate);
+		check("failed frame: first message", toXML(samples[0]), toXML(fr.next()));
+		check("failed frame: end", null, fr.next());
+		deflate.end();
+		System.out.println("failed frame OK");
+
+		// size and throughput: one stream carrying many alerts
+		int count = 20000;
+		IDMEFMessage alert = sampleAlert();
+		int xmlBytes = toXML(alert).getBytes("UTF-8").length;
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		RFC4765BinaryWriter w = new RFC4765BinaryWriter(bytes);
+		long started = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			w.writeMessage(alert);
+		long writeNanos = System.nanoTime() - started;
+
+		RFC4765BinaryReader r = new RFC4765BinaryReader(new ByteArrayInputStream(bytes.toByteArray()));
+		started = System.nanoTime();
+		while (r.next() != null)
+			;
+		long readNanos = System.nanoTime() - started;
+
+		System.out.println("alert: "+xmlBytes+" bytes as XML, "+(w.getBytesWritten() / count)+" bytes as binary");
+		System.out.println("wrote "+count+" alerts: "+(long) (count * 1.0e9d / writeNanos)+" alerts/s; read "
+				+r.getMessageCount()+" alerts: "+(long) (r.getMessageCount() * 1.0e9d / readNanos)+" alerts/s");
+	}
+
+}
@@ -0,0 +1,97 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessage_ToolAlert;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+
+/**
+ * Checks that the builders make the same messages and parts as the constructors, that a builder
+ * can be reset and used again, and that build() refuses a message missing a required field.
+ */
+public class RFC4765BuilderTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765BuilderTest");
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		Analyzer analyzer = sampleAnalyzer();
+		check("analyzer", analyzer, new Analyzer.Builder().analyzerID("manager-1").name("relay").manufacturer("C/R").model("m2")
+				.version("1.1").aclass("Manager").ostype("Linux").osversion("2.6.32").node(analyzer.getNode())
+				.process(analyzer.getProcess()).originalAnalyzer(analyzer.getOriginalAnalyzer()).build());
+		Node node = alert.getSource()[0].getNode();
+		check("node", node, new Node.Builder().addAddress(node.getAddress()[0]).addAddress(node.getAddress()[1]).build());
+		Source source = alert.getSource()[0];
+		check("source", source, new Source.Builder().ident("s1").spoofed(Source.SpoofedRank.NO).iface("eth0").node(node)
+				.user(source.getUser()).service(source.getService()).build());
+		Target target = alert.getTarget()[0];
+		Target rebuilt = new Target.Builder().ident("t1").decoy(Target.DecoyRank.UNKNOWN).node(target.getNode())
+				.service(new Service.Builder().portlist("22,80-82,443").build()).file(target.getFile()).build();
+		check("target", target, rebuilt);
+		System.out.println("parts OK");
+
+		IDMEFMessage_Alert.Builder ab = new IDMEFMessage_Alert.Builder();
+		ab.messageID("msg-1").analyzer(analyzer).createTime(alert.getCreateTime()).classification(alert.getClassification())
+				.detectTime(alert.getDetectTime()).analyzerTime(alert.getAnalyzerTime()).addSource(source)
+				.addTarget(rebuilt).assessment(alert.getAssessment()).toolAlert(((IDMEFMessage_ToolAlert) alert).getToolAlert());
+		for (AdditionalData d : alert.getAdditionalData())
+			ab.addAdditionalData(d);
+		IDMEFMessage_Alert built = ab.build();
+		check("alert", alert, built);
+		check("sources", 1, built.getSource().length);
+		check("additional data", 7, built.getAdditionalData().length);
+
+		IDMEFMessage_Alert bare = ab.reset().analyzer(built.getAnalyzer()).createTime(built.getCreateTime())
+				.classification(built.getClassification()).build();
+		check("reset alert kind", IDMEFMessage_Alert.class, bare.getClass());
+		check("reset alert sources", null, bare.getSource());
+		check("reset alert additional data", null, bare.getAdditionalData());
+
+		IDMEFMessage_Heartbeat beat = new IDMEFMessage_Heartbeat.Builder().messageID("hb-1").analyzer(analyzer)
+				.createTime(sampleHeartbeat().getCreateTime()).heartbeatInterval(60).build();
+		check("heartbeat", sampleHeartbeat(), beat);
+		System.out.println("messages OK");
+
+		try {
+			ab.reset().analyzer(built.getAnalyzer()).createTime(built.getCreateTime()).build();
+			fail("built an alert without a classification");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		try {
+			new IDMEFMessage_Heartbeat.Builder().analyzer(analyzer).build();
+			fail("built a heartbeat without a createTime");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		System.out.println("builders OK");
+	}
+
+}
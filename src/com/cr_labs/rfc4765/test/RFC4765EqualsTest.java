@@ -0,0 +1,92 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLReader;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLWriter;
+
+/**
+ * Checks that messages read back equal the originals and have the same fingerprint, that fresh
+ * copies of a message collapse to one in a HashSet, and that different messages and parts differ.
+ */
+public class RFC4765EqualsTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765EqualsTest");
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		IDMEFMessage heartbeat = sampleHeartbeat();
+		IDMEFMessageBatch batch = new IDMEFMessageBatch(new IDMEFMessage[] { alert, heartbeat, alert });
+		StringBuilder xml = new StringBuilder();
+		new RFC4765XMLWriter(xml).writeBatch(batch);
+		IDMEFMessageBatch read = new RFC4765XMLReader(new ByteArrayInputStream(xml.toString().getBytes("UTF-8"))).nextBatch();
+
+		HashSet<IDMEFMessage> distinct = new HashSet<IDMEFMessage>();
+		for (int i = 0; i < batch.size(); i++) {
+			check("message "+i, batch.get(i), read.get(i));
+			check("fingerprint "+i, batch.get(i).getFingerprint(), read.get(i).getFingerprint());
+			distinct.add(read.get(i));
+			distinct.add(fromXML(toXML(batch.get(i))));
+		}
+		check("distinct messages", 2, distinct.size());
+		check("alert equals heartbeat", false, alert.equals(heartbeat));
+		check("analyzer equals its original", false, alert.getAnalyzer().equals(alert.getAnalyzer().getOriginalAnalyzer()));
+		check("fingerprint of a fresh alert", alert.getFingerprint(), sampleAlert().getFingerprint());
+
+		// a Confidence made with a rating and a value equals one made with the value alone
+		Confidence numeric = new Confidence(0.75d);
+		Confidence both = new Confidence(Confidence.Rank.NUMERIC, 0.75d);
+		check("confidence", numeric, both);
+		Assessment assessment = new Assessment(new Impact(Impact.Severity.HIGH, null, null), new Action(Action.Category.X_INFO), both);
+		check("assessment", new Assessment(new Impact(Impact.Severity.HIGH, null, null), new Action(Action.Category.X_INFO), numeric).getFingerprint(),
+				assessment.getFingerprint());
+		check("other rating", false, both.equals(new Confidence(Confidence.Rank.HIGH, 0.75d)));
+		for (double out : new double[] { 1.5d, -1.5d })
+			try {
+				new Confidence(out);
+				fail("a Confidence of "+out);
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		try {
+			new Confidence(Confidence.Rank.NUMERIC, 1.5d);
+			fail("a Confidence of 1.5 with a rating");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		check("NaN confidence", new Confidence(Double.NaN), new Confidence(Double.NaN));
+		check("zero and negative zero", false, new Confidence(0.0d).equals(new Confidence(-0.0d)));
+		System.out.println("equals OK");
+	}
+
+}
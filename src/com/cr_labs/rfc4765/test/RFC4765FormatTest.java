@@ -0,0 +1,61 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.StringWriter;
+
+import com.cr_labs.rfc4765.Formats;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+
+/**
+ * Checks that toString() is the full text form of formatTo(), and that the compact form is one
+ * line with no null fields.
+ */
+public class RFC4765FormatTest extends RFC4765TestSupport {
+
+	private static void contains(String what, CharSequence text, String part) {
+		if (text.toString().indexOf(part) < 0)
+			fail(what+": no \""+part+"\" in\n"+text);
+	}
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765FormatTest");
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		StringWriter full = new StringWriter();
+		alert.formatTo(full, false);
+		check("toString()", full.toString(), alert.toString());
+		contains("full form", full.toString(), "\n\r[Checksum] ");
+
+		StringBuilder compact = new StringBuilder();
+		alert.formatTo(compact, true);
+		check("Formats.toString()", compact.toString(), Formats.toString(alert, true));
+		check("compact form lines", -1, compact.indexOf("\n"));
+		check("compact form nulls", -1, compact.indexOf("=null"));
+		contains("compact form", compact, " address[1]=[Address ident=0 category=IPV6_ADDR address=2001:db8::1]");
+		contains("compact form", compact, "createTime=2011-03-13T02:06:40.123-05:00");
+		check("compact form end", true, compact.toString().endsWith(" version=1.0]"));
+		System.out.println("format OK");
+	}
+
+}
@@ -0,0 +1,83 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayInputStream;
+
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.accessories.RFC4765Interner;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLReader;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLWriter;
+
+/**
+ * Checks that a reader with an RFC4765Interner shares the Analyzers, Nodes and Classifications of
+ * the messages it reads, and that a pool keeps no more entries than its bound.
+ */
+public class RFC4765InternerTest extends RFC4765TestSupport {
+
+	private static void same(String what, Object expected, Object actual) {
+		if (expected != actual)
+			fail(what+": not shared");
+	}
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765InternerTest");
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		IDMEFMessageBatch batch = new IDMEFMessageBatch(new IDMEFMessage[] { alert, sampleHeartbeat(), alert });
+		StringBuilder xml = new StringBuilder();
+		new RFC4765XMLWriter(xml).writeBatch(batch);
+		RFC4765Interner interner = new RFC4765Interner();
+		RFC4765XMLReader r = new RFC4765XMLReader(new ByteArrayInputStream(xml.toString().getBytes("UTF-8")));
+		r.setInterner(interner);
+		IDMEFMessageBatch interned = r.nextBatch();
+		IDMEFMessage_Alert first = (IDMEFMessage_Alert) interned.get(0);
+		IDMEFMessage_Alert third = (IDMEFMessage_Alert) interned.get(2);
+		check("interned alert", alert, first);
+		if (first == third)
+			fail("two alerts read as one instance");
+		same("analyzer", first.getAnalyzer(), third.getAnalyzer());
+		same("heartbeat analyzer", first.getAnalyzer(), ((IDMEFMessage_Heartbeat) interned.get(1)).getAnalyzer());
+		same("classification", first.getClassification(), third.getClassification());
+		same("node", first.getSource()[0].getNode(), third.getSource()[0].getNode());
+		check("analyzers pooled", 2, interner.getAnalyzers().size());
+		check("hits", true, interner.getHits() > 0);
+		System.out.println("sharing OK: "+interner.getHits()+" hits, "+interner.getMisses()+" misses");
+
+		// a pool keeps no more than its bound
+		RFC4765Interner small = new RFC4765Interner(64);
+		for (int i = 0; i < 1000; i++)
+			small.intern(new Address(null, "10.0."+(i / 256)+"."+(i % 256), Address.Category.IPV4_ADDR, null, null));
+		check("addresses pooled at most", true, small.getAddresses().size() <= 64);
+		check("misses", 1000L, small.getMisses());
+		Address recent = new Address(null, "10.0.3.231", Address.Category.IPV4_ADDR, null, null);
+		check("recent address", recent, small.intern(recent));
+		check("hit", 1L, small.getHits());
+		System.out.println("bound OK");
+	}
+
+}
@@ -0,0 +1,116 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.StringReader;
+
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.accessories.RFC4765JSONReader;
+import com.cr_labs.rfc4765.accessories.RFC4765JSONWriter;
+
+/**
+ * Writes the sample alert and heartbeat of RFC4765TestSupport as JSON, with and without
+ * nulls, reads them back and checks that they write the same XML as the originals, and that a
+ * netmask on an address that is not a network is ignored. Then times
+ * writing and reading a large batch.
+ */
+public class RFC4765JSONRoundTripTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765JSONRoundTripTest");
+
+		IDMEFMessage[] samples = new IDMEFMessage[] { sampleAlert(), sampleHeartbeat() };
+		for (boolean omitNulls : new boolean[] { true, false }) {
+			StringBuilder json = new StringBuilder();
+			RFC4765JSONWriter w = new RFC4765JSONWriter(json, omitNulls);
+			for (IDMEFMessage m : samples)
+				w.writeMessage(m);
+			System.out.print(json);
+			RFC4765JSONReader r = new RFC4765JSONReader(new StringReader(json.toString()));
+			for (IDMEFMessage m : samples) {
+				String expected = toXML(m);
+				String actual = toXML(r.next());
+				if (! expected.equals(actual))
+					fail("ROUND TRIP MISMATCH (omitNulls "+omitNulls+"):\n"+expected+"\n"+actual);
+			}
+			if (r.next() != null)
+				fail("TRAILING DATA (omitNulls "+omitNulls+")");
+		}
+		System.out.println("round trip OK");
+
+		// a batch between two single messages: nextBatch() returns each object's messages together
+		IDMEFMessageBatch batch = new IDMEFMessageBatch(new IDMEFMessage[] { samples[0], samples[1], samples[0] });
+		StringBuilder batchJSON = new StringBuilder();
+		RFC4765JSONWriter bw = new RFC4765JSONWriter(batchJSON, true);
+		bw.writeMessage(samples[1]);
+		bw.writeBatch(batch);
+		bw.writeMessage(samples[1]);
+		RFC4765JSONReader br = new RFC4765JSONReader(new StringReader(batchJSON.toString()));
+		int[] sizes = { 1, batch.size(), 1 };
+		for (int size : sizes) {
+			IDMEFMessageBatch read = br.nextBatch();
+			if ((read == null) || (read.size() != size))
+				fail("BATCH MISMATCH:\n"+batchJSON);
+			if (size == batch.size())
+				for (int i = 0; i < size; i++)
+					if (! toXML(batch.get(i)).equals(toXML(read.get(i))))
+						fail("BATCH MISMATCH at "+i+":\n"+toXML(read.get(i)));
+		}
+		if ((br.nextBatch() != null) || (br.getMessageCount() != batch.size() + 2))
+			fail("BATCH TRAILING DATA");
+		System.out.println("batch OK");
+
+		// a netmask only belongs to the net categories; on a plain address it is ignored, as the XML reader does
+		StringBuilder hbJSON = new StringBuilder();
+		new RFC4765JSONWriter(hbJSON, true).writeMessage(samples[1]);
+		String masked = hbJSON.toString().replace("\"address\":\"192.0.2.10\"}", "\"address\":\"192.0.2.10\",\"netmask\":\"255.255.255.0\"}");
+		if (masked.equals(hbJSON.toString()))
+			fail("NETMASK: no address to mask in\n"+hbJSON);
+		IDMEFMessage unmasked = new RFC4765JSONReader(new StringReader(masked)).next();
+		if (! toXML(samples[1]).equals(toXML(unmasked)))
+			fail("NETMASK MISMATCH:\n"+toXML(unmasked));
+		System.out.println("netmask OK");
+
+		// throughput: many alerts, one per line
+		int count = 20000;
+		IDMEFMessage alert = sampleAlert();
+		StringBuilder json = new StringBuilder();
+		RFC4765JSONWriter w = new RFC4765JSONWriter(json, true);
+		long started = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			w.writeMessage(alert);
+		long writeNanos = System.nanoTime() - started;
+
+		RFC4765JSONReader r = new RFC4765JSONReader(new StringReader(json.toString()));
+		started = System.nanoTime();
+		while (r.next() != null)
+			;
+		long readNanos = System.nanoTime() - started;
+
+		System.out.println("alert: "+(json.length() / count)+" chars as JSON");
+		System.out.println("wrote "+count+" alerts: "+(long) (count * 1.0e9d / writeNanos)+" alerts/s; read "
+				+r.getMessageCount()+" alerts: "+(long) (r.getMessageCount() * 1.0e9d / readNanos)+" alerts/s");
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.NtpStamp;
+
+/**
+ * Checks NtpStamp against the example of RFC4765 Section 3.2.7, exact round trips through
+ * milliseconds, nanoseconds, DateTimes and text (including the 2036 era), the rejection of
+ * malformed text, and NTPSTAMP AdditionalData and message times through XML.
+ */
+public class RFC4765NtpStampTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765NtpStampTest");
+
+		long rfcStamp = NtpStamp.parse("0xbc71f4f5.0xef449129");
+		check("RFC example", 952596085935L, NtpStamp.toMillis(rfcStamp));
+		check("RFC example text", "0xbc71f4f5.0xef449129", NtpStamp.toString(rfcStamp));
+		check("upper case", rfcStamp, NtpStamp.parse("0xBC71F4F5.0xEF449129"));
+		check("short fields", 0x0000000180000000L, NtpStamp.parse("0x1.0x80000000"));
+
+		for (long millis : new long[] { 0L, 1300000000123L, -1L, 2085978496000L + 999L, 4000000000000L }) {
+			long stamp = NtpStamp.fromMillis(millis);
+			check("millis "+millis, millis, NtpStamp.toMillis(stamp));
+			check("nanos "+millis, millis * 1000000L + 123456L, NtpStamp.toNanos(NtpStamp.fromNanos(millis * 1000000L + 123456L)));
+			DateTime t = new DateTime(millis, DateTimeZone.UTC);
+			check("DateTime "+millis, t, NtpStamp.toDateTime(NtpStamp.fromDateTime(t)));
+			check("text "+millis, stamp, NtpStamp.parse(NtpStamp.toString(stamp)));
+		}
+		for (String bad : new String[] { "", "0xbc71f4f5", "bc71f4f5.ef449129", "0x.0x1", "0x123456789.0x0", "0xbc71f4f5.0xef44912g", "0x1.0x1 " })
+			try {
+				NtpStamp.parse(bad);
+				fail("parsed "+bad);
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		System.out.println("stamps OK");
+
+		// message times and NTPSTAMP AdditionalData
+		IDMEFMessage_Alert alert = sampleAlert();
+		IDMEFMessage_Alert read = (IDMEFMessage_Alert) fromXML(toXML(alert));
+		check("createTime", NtpStamp.fromMillis(1300000000123L), read.getCreateTimeNtp());
+		check("builder", 952596085935L,
+				new IDMEFMessage_Heartbeat.Builder().analyzer(alert.getAnalyzer()).createTimeNtp(rfcStamp).build().getCreateTimeMillis());
+		AdditionalData stampData = new AdditionalData(AdditionalData.Type.NTPSTAMP, "0xbc71f4f5.0xef449129", "sent");
+		IDMEFMessage_Alert withStamp = new IDMEFMessage_Alert.Builder().analyzer(alert.getAnalyzer()).createTime(alert.getCreateTime())
+				.classification(alert.getClassification()).addAdditionalData(stampData)
+				.addAdditionalData(AdditionalData.ntpStamp(NtpStamp.fromMillis(1300000000123L), "received")).build();
+		check("no detectTime", 0L, withStamp.getDetectTimeNtp());
+		check("NTPSTAMP", rfcStamp, stampData.getNtpStamp());
+		check("NTPSTAMP text", "0xbc71f4f5.0xef449129", stampData.getString());
+		AdditionalData[] readStamps = ((IDMEFMessage_Alert) fromXML(toXML(withStamp))).getAdditionalData();
+		check("NTPSTAMP read back", stampData, readStamps[0]);
+		check("NTPSTAMP of millis read back", NtpStamp.fromMillis(1300000000123L), readStamps[1].getNtpStamp());
+		try {
+			new AdditionalData(AdditionalData.Type.NTPSTAMP, "yesterday", null);
+			fail("an NTPSTAMP of \"yesterday\"");
+		}
+		catch (IllegalArgumentException expected) {
+		}
+		System.out.println("ntp OK");
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.PortSet;
+import com.cr_labs.rfc4765.Service;
+
+/**
+ * Checks PortSet against a TreeSet of the same ports: parsing, membership, union and
+ * intersection, as range lists and as bitmaps, and its use by Service and AdditionalData.
+ * Then times membership tests.
+ */
+public class RFC4765PortSetTest extends RFC4765TestSupport {
+
+	private static void same(String what, TreeSet<Integer> expected, PortSet actual) {
+		if (actual.size() != expected.size())
+			fail(what+": "+expected.size()+" ports expected, got "+actual.size());
+		for (int p = -1; p <= PortSet.MAX_PORT + 1; p++)
+			if (actual.contains(p) != expected.contains(p))
+				fail(what+": contains("+p+") is "+actual.contains(p));
+		int n = 0;
+		for (int p = actual.nextPort(0); p >= 0; p = actual.nextPort(p + 1))
+			if (! expected.contains(p) || (n++ > expected.size()))
+				fail(what+": nextPort visited "+p);
+		if (! actual.equals(new PortSet(actual.toString())) || (actual.hashCode() != new PortSet(actual.toString()).hashCode()))
+			fail(what+": does not survive its portlist text");
+	}
+
+	private static PortSet random(Random random, TreeSet<Integer> ports, int runs) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < runs; i++) {
+			int low = random.nextInt(PortSet.MAX_PORT);
+			int high = Math.min(PortSet.MAX_PORT, low + random.nextInt(4));
+			if (i > 0)
+				sb.append(',');
+			sb.append(low);
+			if (high > low)
+				sb.append(" - ").append(high);
+			for (int p = low; p <= high; p++)
+				ports.add(p);
+		}
+		return new PortSet(sb.toString());
+	}
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765PortSetTest");
+
+		PortSet ps = new PortSet("443, 22,80-82,81-90,91,0");
+		if (! "0,22,80-91,443".equals(ps.toString()) || (ps.getRangeCount() != 4) || (ps.size() != 15))
+			fail("parse: "+ps);
+		for (String bad : new String[] { "80-", "-80", "90-80", "65536", "8o", "1,,2" })
+			try {
+				new PortSet(bad);
+				fail("parse: accepted "+bad);
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		System.out.println("parse OK");
+
+		Random random = new Random(4765);
+		for (int runs : new int[] { 0, 1, 50, 3000, 20000 }) {
+			TreeSet<Integer> a = new TreeSet<Integer>();
+			TreeSet<Integer> b = new TreeSet<Integer>();
+			PortSet pa = random(random, a, runs);
+			PortSet pb = random(random, b, runs / 2 + 1);
+			same(runs+" runs", a, pa);
+			TreeSet<Integer> union = new TreeSet<Integer>(a);
+			union.addAll(b);
+			same(runs+" runs, union", union, pa.union(pb));
+			same(runs+" runs, union the other way", union, pb.union(pa));
+			TreeSet<Integer> common = new TreeSet<Integer>(a);
+			common.retainAll(b);
+			same(runs+" runs, intersection", common, pa.intersection(pb));
+			same(runs+" runs, intersection the other way", common, pb.intersection(pa));
+			int[] ports = new int[a.size()];
+			int n = 0;
+			for (Integer p : a)
+				ports[n++] = p.intValue();
+			if (! pa.equals(new PortSet(ports)))
+				fail(runs+" runs: not equal to the set of its ports");
+		}
+		System.out.println("sets OK");
+
+		Service service = new Service(null, 4, 6, "tcp", null, 0, "135-139,445", "tcp");
+		AdditionalData ad = new AdditionalData(AdditionalData.Type.PORTLIST, new Integer[] { 445, 139, 138 }, "ports");
+		if (! service.containsPort(445) || service.containsPort(443) || ! ad.getPortSet().contains(445)
+				|| ! service.getPortSet().intersection(ad.getPortSet()).equals(new PortSet(138, 139).union(new PortSet(445, 445)))
+				|| (((Integer[]) ad.getData()).length != 3))
+			fail("Service and AdditionalData: "+service+ad);
+		// a Service's portlist is parsed when it is made, so a bad one is refused there
+		if (! "80-82,443".equals(new Service(null, 0, 0, null, null, 0, "443, 80,81-82", null).getPortlist()))
+			fail("Service portlist: not written back in its shortest form");
+		if (! new Service(null, 0, 0, null, null, 0, "80-82", null).equals(new Service.Builder().portSet(new PortSet(80, 82)).build()))
+			fail("Service portlist: text and PortSet differ");
+		for (String bad : new String[] { "80-", "http", "1-70000", "3-1" }) {
+			try {
+				new Service(null, 0, 0, null, null, 0, bad, null);
+				fail("Service portlist: accepted "+bad);
+			}
+			catch (IllegalArgumentException expected) {
+			}
+			try {
+				new Service.Builder().portlist(bad).build();
+				fail("Service.Builder portlist: accepted "+bad);
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		}
+		System.out.println("Service and AdditionalData OK");
+
+		PortSet[] sets = new PortSet[] { new PortSet("1-1024,1433,3306,3389,5432,8080-8090"), random(random, new TreeSet<Integer>(), 5000) };
+		for (PortSet set : sets) {
+			int tests = 10000000;
+			int found = 0;
+			long started = System.nanoTime();
+			for (int i = 0; i < tests; i++)
+				if (set.contains(i & 0xffff))
+					found++;
+			long nanos = System.nanoTime() - started;
+			System.out.println(set.getRangeCount()+" ranges: "+(long) (tests * 1.0e9d / nanos)+" contains()/s ("+found+" found)");
+		}
+	}
+
+}
@@ -0,0 +1,80 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+import java.util.HashSet;
+
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.accessories.RFC4765Interner;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLReader;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLWriter;
+
+/**
+ * Checks that References are equal by value without DNS lookups, that an RFC4765Interner shares
+ * one instance per value, and that the References a reader reads from many alerts are that one instance.
+ */
+public class RFC4765ReferenceTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765ReferenceTest");
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		IDMEFMessageBatch batch = new IDMEFMessageBatch(new IDMEFMessage[] { alert, sampleHeartbeat(), alert });
+		StringBuilder xml = new StringBuilder();
+		new RFC4765XMLWriter(xml).writeBatch(batch);
+		RFC4765Interner interner = new RFC4765Interner();
+		RFC4765XMLReader reader = new RFC4765XMLReader(new ByteArrayInputStream(xml.toString().getBytes("UTF-8")));
+		reader.setInterner(interner);
+		IDMEFMessageBatch read = reader.nextBatch();
+
+		Reference sent = alert.getClassification().getReference()[0];
+		Reference first = ((IDMEFMessage_Alert) read.get(0)).getClassification().getReference()[0];
+		Reference again = ((IDMEFMessage_Alert) read.get(2)).getClassification().getReference()[0];
+		check("reference read back", sent, first);
+		check("hash code", sent.hashCode(), first.hashCode());
+		check("url", sent.getUrl().toExternalForm(), first.getUri().toString());
+		if (first != again)
+			fail("references read from two alerts are not one instance");
+		HashSet<Reference> seen = new HashSet<Reference>();
+		seen.add(sent);
+		check("found in a set", true, seen.contains(first));
+
+		// equal by value, without resolving the host of the url
+		Reference a = new Reference(Reference.Origin.VENDOR_SPECIFIC, "BUG", "1", new URL("http://unresolvable.invalid/bug?id=1"));
+		Reference b = new Reference(Reference.Origin.VENDOR_SPECIFIC, "BUG", "1", new URL("http://unresolvable.invalid/bug?id=1"));
+		Reference c = new Reference(Reference.Origin.VENDOR_SPECIFIC, "BUG", "2", new URL("http://unresolvable.invalid/bug?id=2"));
+		check("equal references", a, b);
+		check("different references", false, a.equals(c));
+		int pooled = interner.getReferences().size();
+		if (interner.intern(a) != interner.intern(b))
+			fail("interning equal references does not give one instance");
+		check("pooled references", pooled + 1, interner.getReferences().size());
+		System.out.println("references OK");
+	}
+
+}
@@ -0,0 +1,84 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.util.Arrays;
+
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.StringList;
+import com.cr_labs.rfc4765.accessories.RFC4765Interner;
+
+/**
+ * Checks that a StringList held as UTF-8 equals the String form it was made from, that an
+ * interner shares one list among Processes, and that the lists keep non-ASCII text through XML.
+ */
+public class RFC4765StringListTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765StringListTest");
+
+		String[] env = new String[] { "LANG=C", "HOME=/var/lib/sn\u00f6rt", "PATH=/usr/sbin:/usr/bin" };
+		StringList plain = new StringList(env);
+		StringList packed = plain.toUtf8();
+		check("packed", true, packed.isUtf8());
+		check("packed equals plain", plain, packed);
+		check("plain equals packed", packed, plain);
+		check("fingerprint", plain.getFingerprint(), packed.getFingerprint());
+		check("array", Arrays.asList(env), Arrays.asList(packed.toArray()));
+		StringBuilder appended = new StringBuilder();
+		for (int i = 0; i < packed.size(); i++)
+			packed.appendTo(appended.append(' '), i);
+		check("appended", " LANG=C HOME=/var/lib/sn\u00f6rt PATH=/usr/sbin:/usr/bin", appended.toString());
+		check("list with a null packed", false, new StringList(new String[] { "a", null }).toUtf8().isUtf8());
+		System.out.println("lists OK");
+
+		RFC4765Interner interner = new RFC4765Interner(RFC4765Interner.DEFAULT_MAX_ENTRIES, true);
+		Process p1 = interner.intern(new Process(null, "snortd", 100, null, new String[] { "-D" }, env.clone()));
+		Process p2 = interner.intern(new Process(null, "snortd", 101, null, new String[] { "-D" }, env.clone()));
+		if (p1.getEnvList() != p2.getEnvList())
+			fail("env lists not shared");
+		if (p1.getArgList() != p2.getArgList())
+			fail("arg lists not shared");
+		check("pooled list packed", true, p1.getEnvList().isUtf8());
+		check("env", Arrays.asList(env), Arrays.asList(p2.getEnv()));
+		check("lists pooled", 2, interner.getStrings().size());
+		RFC4765Interner plainInterner = new RFC4765Interner();
+		Process p3 = plainInterner.intern(new Process(null, "snortd", 102, null, new String[] { "-D" }, null));
+		Process p4 = plainInterner.intern(new Process(null, "snortd", 103, null, new String[] { "-D" }, null));
+		if (p3.getArgList() != p4.getArgList())
+			fail("plain arg lists not shared");
+		p3.getArg()[0] = "-X";
+		check("arg after changing a copy", "-D", p4.getArg()[0]);
+		System.out.println("sharing OK");
+
+		IDMEFMessage_Heartbeat beat = new IDMEFMessage_Heartbeat.Builder()
+				.analyzer(new Analyzer("a1", null, null, null, null, null, null, null, null, p1, null))
+				.createTime(sampleHeartbeat().getCreateTime()).build();
+		String xml = toXML(fromXML(toXML(beat)));
+		check("env through XML", true, xml.contains("HOME=/var/lib/sn\u00f6rt"));
+		System.out.println("strings OK");
+	}
+
+}
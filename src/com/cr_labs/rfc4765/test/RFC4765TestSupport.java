@@ -0,0 +1,156 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayInputStream;
+import java.net.URL;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Analyzer;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Checksum;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.File;
+import com.cr_labs.rfc4765.FileAccess;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.IDMEFMessage_ToolAlert;
+import com.cr_labs.rfc4765.Impact;
+import com.cr_labs.rfc4765.Inode;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.Process;
+import com.cr_labs.rfc4765.Reference;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.Target;
+import com.cr_labs.rfc4765.ToolAlert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLReader;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLWriter;
+
+/**
+ * What the test mains share: check() and fail(), and the sample messages they write and read.
+ * A test extends this class to call them unqualified.
+ */
+public class RFC4765TestSupport {
+
+	/**
+	 * Print what failed and stop the test with exit status 1
+	 */
+	public static void fail(String message) {
+		System.out.println(message);
+		System.exit(1);
+	}
+
+	/**
+	 * fail() unless actual equals expected (both may be null)
+	 */
+	public static void check(String what, Object expected, Object actual) {
+		if ((expected == null) ? (actual != null) : ! expected.equals(actual))
+			fail(what+": expected "+expected+", got "+actual);
+	}
+
+	/**
+	 * @return an analyzer with a node, process and an original analyzer, as a relaying manager would send
+	 */
+	public static Analyzer sampleAnalyzer()
+	throws Exception {
+		Node node = new Node("n1", Node.Category.DNS, "rack 12", "sensor1.example.com",
+				new Address[] { new Address("a1", "192.0.2.10", Address.Category.IPV4_ADDR, null, null) });
+		Process process = new Process("p1", "snortd", 4711, "/usr/sbin/snortd",
+				new String[] { "-c", "/etc/snort.conf" }, new String[] { "LANG=C" });
+		Analyzer original = new Analyzer("sensor-0", "edge", "C/R", "m1", "2.0", "NIDS", "Linux", "2.6.32", null, null, null);
+		return new Analyzer("manager-1", "relay", "C/R", "m2", "1.1", "Manager", "Linux", "2.6.32", node, process, original);
+	}
+
+	/**
+	 * @return a ToolAlert exercising most of the optional parts of the model
+	 */
+	public static IDMEFMessage_Alert sampleAlert()
+	throws Exception {
+		DateTime now = new DateTime(1300000000123L, DateTimeZone.forOffsetHours(-5));
+		Classification classification = new Classification("c1", "Remote buffer overflow <attempt> & \"probe\"",
+				new Reference[] { new Reference(Reference.Origin.CVE, "CVE", "CVE-2011-0001", new URL("http://cve.mitre.org/cgi-bin/cvename.cgi?name=CVE-2011-0001")) });
+		Source source = new Source("s1", Source.SpoofedRank.NO, "eth0",
+				new Node(null, null, null, null, new Address[] {
+						new Address(null, "198.51.100.0/24", Address.Category.IPV4_NET, "dmz", "12"),
+						new Address(null, "2001:db8::1", Address.Category.IPV6_ADDR, null, null) }),
+				new User("u1", User.Category.OS_DEVICE, new UserId("uid1", UserId.Type.CURRENT_USER, "pts/1", "mallory", "1001")),
+				null,
+				new Service("sv1", 4, 6, "tcp", "http", 8080, null, "tcp"));
+		File file = new File("f1", File.Category.CURRENT, File.FSType.UFS, "text/plain", "passwd", "/etc/passwd",
+				null, now, null, 1024, 4096,
+				new FileAccess[] { new FileAccess(new UserId(null, UserId.Type.USER_PRIVS, null, "root", "0"),
+						new FileAccess.Permission[] { FileAccess.Permission.READ, FileAccess.Permission.WRITE }) },
+				null,
+				new Inode(now, 1234, 8, 1, -1, -1),
+				new Checksum[] { new Checksum(Checksum.Algorithm.SHA2_256, "abcdef0123", null) });
+		Target target = new Target("t1", Target.DecoyRank.UNKNOWN, null,
+				new Node("n2", Node.Category.UNKNOWN, null, "victim", (Address[]) null),
+				null, null,
+				new Service(null, 0, 0, null, null, 0, "22,80-82,443", null),
+				file);
+		Assessment assessment = new Assessment(new Impact(Impact.Severity.HIGH, Impact.Completion.FAILED, Impact.Type.ADMIN),
+				new Action(Action.Category.BLOCK_INSTALLED), new Confidence(0.75d));
+		AdditionalData[] additionalData = new AdditionalData[] {
+				new AdditionalData(AdditionalData.Type.INTEGER, Integer.valueOf(42), "count"),
+				new AdditionalData(AdditionalData.Type.STRING, "a < b", "note"),
+				new AdditionalData(AdditionalData.Type.BOOLEAN, Boolean.TRUE, "flag"),
+				new AdditionalData(AdditionalData.Type.PORTLIST, new Integer[] { 21, 22, 23 }, "ports"),
+				new AdditionalData(AdditionalData.Type.BYTE_STRING, new Byte[] { 1, 2, 3, -1 }, "raw"),
+				new AdditionalData(AdditionalData.Type.DATE_TIME, now, "seen"),
+				new AdditionalData(AdditionalData.Type.REAL, Double.valueOf(2.5d), "ratio") };
+		ToolAlert toolAlert = new ToolAlert("BackOrifice", "ping", new String[] { "alert-1", "alert-2" }, new String[] { "sensor-0", "sensor-0" });
+		return new IDMEFMessage_ToolAlert(toolAlert, "msg-1", sampleAnalyzer(), now, classification, now, now,
+				new Source[] { source }, new Target[] { target }, assessment, additionalData);
+	}
+
+	public static IDMEFMessage_Heartbeat sampleHeartbeat()
+	throws Exception {
+		return new IDMEFMessage_Heartbeat("hb-1", sampleAnalyzer(), new DateTime(1300000000000L, DateTimeZone.UTC), null, 60, null);
+	}
+
+	public static String toXML(IDMEFMessage m)
+	throws Exception {
+		StringBuilder sb = new StringBuilder();
+		new RFC4765XMLWriter(sb).writeMessage(m);
+		return sb.toString();
+	}
+
+	public static IDMEFMessage fromXML(String xml)
+	throws Exception {
+		RFC4765XMLReader r = new RFC4765XMLReader(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+		IDMEFMessage m = r.next();
+		if (r.next() != null)
+			throw new IllegalStateException("expected exactly one message");
+		return m;
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.accessories.RFC4765BinaryReader;
+import com.cr_labs.rfc4765.accessories.RFC4765BinaryWriter;
+import com.cr_labs.rfc4765.accessories.RFC4765DataTypes;
+import com.cr_labs.rfc4765.accessories.RFC4765JSONReader;
+import com.cr_labs.rfc4765.accessories.RFC4765JSONWriter;
+
+/**
+ * Checks that message times are held as epoch milliseconds and an offset, that they keep their
+ * offset through XML, JSON and the binary form, and that DATETIME text parses to the same
+ * milliseconds and offset with or without a DateTime.
+ */
+public class RFC4765TimeTest extends RFC4765TestSupport {
+
+	private static void times(String what, IDMEFMessage_Alert expected, IDMEFMessage_Alert actual) {
+		check(what+" createTime", expected.getCreateTimeMillis(), actual.getCreateTimeMillis());
+		check(what+" createTime offset", expected.getCreateTimeOffset(), actual.getCreateTimeOffset());
+		check(what+" detectTime", expected.getDetectTimeMillis(), actual.getDetectTimeMillis());
+		check(what+" analyzerTime", expected.getAnalyzerTimeMillis(), actual.getAnalyzerTimeMillis());
+	}
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765TimeTest");
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		check("createTime millis", 1300000000123L, alert.getCreateTimeMillis());
+		check("createTime offset", -5 * 3600 * 1000, alert.getCreateTimeOffset());
+		check("createTime", new DateTime(1300000000123L, DateTimeZone.forOffsetHours(-5)), alert.getCreateTime());
+
+		IDMEFMessage_Heartbeat heartbeat = sampleHeartbeat();
+		IDMEFMessage_Heartbeat stamped = new IDMEFMessage_Heartbeat("hb-2", heartbeat.getAnalyzer(), 1300000000000L, IDMEFMessage.NO_TIME, 60, null);
+		check("heartbeat createTime", heartbeat.getCreateTime(), stamped.getCreateTime());
+		check("no analyzerTime", null, stamped.getAnalyzerTime());
+		check("no analyzerTime millis", IDMEFMessage.NO_TIME, stamped.getAnalyzerTimeMillis());
+		IDMEFMessage_Alert bare = new IDMEFMessage_Alert.Builder().analyzer(alert.getAnalyzer()).createTime(1300000000000L, 3600000)
+				.classification(alert.getClassification()).build();
+		check("no detectTime", IDMEFMessage.NO_TIME, bare.getDetectTimeMillis());
+		check("builder offset", new DateTime(1300000000000L, DateTimeZone.forOffsetHours(1)), bare.getCreateTime());
+		System.out.println("held OK");
+
+		// through each encoding
+		times("XML", alert, (IDMEFMessage_Alert) fromXML(toXML(alert)));
+		check("XML heartbeat", toXML(stamped), toXML(fromXML(toXML(stamped))));
+		StringBuilder json = new StringBuilder();
+		new RFC4765JSONWriter(json, true).writeMessage(alert);
+		times("JSON", alert, (IDMEFMessage_Alert) new RFC4765JSONReader(new StringReader(json.toString())).next());
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		new RFC4765BinaryWriter(binary).writeMessage(alert);
+		times("binary", alert, (IDMEFMessage_Alert) new RFC4765BinaryReader(new ByteArrayInputStream(binary.toByteArray())).next());
+		System.out.println("encodings OK");
+
+		// DATETIME text, parsed with and without a DateTime
+		String[] texts = new String[] { "2011-03-13T02:06:40.123-05:00", "2011-03-13T07:06:40Z", "2011-03-13T07:06:40.5",
+				" 2000-02-29T23:59:59.999+14:00 ", "1969-12-31T23:59:59.9999-00:30" };
+		for (String text : texts) {
+			DateTime t = RFC4765DataTypes.parseDateTime(text);
+			check(text+" millis", t.getMillis(), RFC4765DataTypes.parseDateTimeMillis(text));
+			check(text+" offset", t.getZone().getOffset(t.getMillis()), RFC4765DataTypes.parseDateTimeOffset(text));
+			String padded = "[\""+text+"\"]";
+			check(text+" in a buffer", t.getMillis(), RFC4765DataTypes.parseDateTimeMillis(padded, 2, padded.length() - 2));
+			check(text+" offset in a buffer", t.getZone().getOffset(t.getMillis()), RFC4765DataTypes.parseDateTimeOffset(padded, 2, padded.length() - 2));
+		}
+		check("RFC example", new DateTime(2000, 3, 9, 10, 1, 25, 934, DateTimeZone.forOffsetHours(-5)).getMillis(),
+				RFC4765DataTypes.parseDateTimeMillis("2000-03-09T10:01:25.93464-05:00"));
+		for (String bad : new String[] { "", "2011-03-13", "2011-03-13 07:06:40Z", "2011-13-13T07:06:40Z", "2011-03-13T07:06:40.Z", "2011-03-13T07:06:40+5" })
+			try {
+				RFC4765DataTypes.parseDateTimeMillis(bad);
+				fail("parsed "+bad);
+			}
+			catch (IllegalArgumentException expected) {
+			}
+		System.out.println("times OK");
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+
+/**
+ * Checks that a User with one UserId equals one made from an array of one, that a User's list
+ * of UserIds is read only, and that Users keep their UserIds through XML.
+ */
+public class RFC4765UserTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765UserTest");
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		User sampleUser = alert.getSource()[0].getUser();
+		UserId root = new UserId(null, UserId.Type.USER_PRIVS, null, "root", "0");
+		User fromArray = new User("u1", User.Category.OS_DEVICE, new UserId[] { sampleUser.getUserid(0) });
+		check("one UserId", sampleUser, fromArray);
+		check("fingerprint", sampleUser.getFingerprint(), fromArray.getFingerprint());
+
+		User two = new User(null, null, new UserId[] { sampleUser.getUserid(0), root });
+		check("count", 2, two.getUseridCount());
+		if (two.getUseridList().get(1) != root)
+			fail("second UserId is not the one given");
+		check("two UserIds equal one", false, two.equals(sampleUser));
+		check("from the list", two, new User(null, null, two.getUseridList().toArray(new UserId[0])));
+		try {
+			two.getUseridList().set(0, root);
+			fail("changed a User's list of UserIds");
+		}
+		catch (UnsupportedOperationException expected) {
+		}
+
+		IDMEFMessage_Alert read = (IDMEFMessage_Alert) fromXML(toXML(alert));
+		check("read back", sampleUser, read.getSource()[0].getUser());
+		check("XML", true, toXML(read).contains("<User ident=\"u1\""));
+		System.out.println("users OK");
+	}
+
+}
@@ -0,0 +1,91 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.util.List;
+
+import org.joda.time.DateTime;
+
+import com.cr_labs.rfc4765.Action;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.Assessment;
+import com.cr_labs.rfc4765.Classification;
+import com.cr_labs.rfc4765.Confidence;
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.Node;
+import com.cr_labs.rfc4765.Service;
+import com.cr_labs.rfc4765.Source;
+import com.cr_labs.rfc4765.User;
+import com.cr_labs.rfc4765.UserId;
+import com.cr_labs.rfc4765.accessories.RFC4765Validator;
+
+/**
+ * Checks that the sample alert and heartbeat of RFC4765TestSupport are valid, that an
+ * alert with several faults has each of them reported, and times validating the sample alert.
+ */
+public class RFC4765ValidatorTest extends RFC4765TestSupport {
+
+	private static void expect(String what, int expected, RFC4765Validator v, IDMEFMessage m) {
+		int found = v.validate(m);
+		List<String> violations = v.getViolations();
+		for (String violation : violations)
+			System.out.println("  "+violation);
+		if (found != expected)
+			fail(what+": expected "+expected+" violations, found "+found);
+	}
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765ValidatorTest");
+
+		RFC4765Validator strict = new RFC4765Validator();
+		RFC4765Validator lenient = new RFC4765Validator(true);
+		expect("sample alert", 0, strict, sampleAlert());
+		expect("sample heartbeat", 0, strict, sampleHeartbeat());
+
+		// a control character, a host name where the RFC wants an IPv4 literal, a null Address, a UserId with neither
+		// name nor number, a port out of range, and two extension values
+		Source source = new Source("s1", null, null,
+				new Node(null, null, null, null, new Address[] { new Address(null, "sensor.example.com", Address.Category.IPV4_ADDR, null, null, false), null }),
+				new User(null, null, new UserId(null, null, null, null, null)),
+				null,
+				new Service(null, 4, 6, "tcp", null, 70000, null, "tcp"));
+		Assessment assessment = new Assessment(null, new Action(Action.Category.X_INFO), new Confidence(-0.5d));
+		IDMEFMessage_Alert faulty = new IDMEFMessage_Alert("msg-2", sampleAnalyzer(), new DateTime(),
+				new Classification(null, "bell \u0007", null), null, null, new Source[] { source }, null, assessment, null);
+		System.out.println("strict:");
+		expect("faulty alert", 7, strict, faulty);
+		System.out.println("allowing extensions:");
+		expect("faulty alert", 5, lenient, faulty);
+		System.out.println("validation OK");
+
+		int count = 200000;
+		IDMEFMessage alert = sampleAlert();
+		long started = System.nanoTime();
+		for (int i = 0; i < count; i++)
+			strict.validate(alert);
+		long nanos = System.nanoTime() - started;
+		System.out.println("validated "+count+" alerts: "+(long) (count * 1.0e9d / nanos)+" alerts/s");
+	}
+
+}
@@ -0,0 +1,81 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import java.io.ByteArrayInputStream;
+
+import com.cr_labs.rfc4765.IDMEFMessage;
+import com.cr_labs.rfc4765.IDMEFMessageBatch;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLReader;
+import com.cr_labs.rfc4765.accessories.RFC4765XMLWriter;
+
+/**
+ * Writes a populated alert and heartbeat as XML, reads them back, writes them again and
+ * checks that the two documents are identical, and does the same for a batch. Then times reading a large batch.
+ */
+public class RFC4765XMLRoundTripTest extends RFC4765TestSupport {
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765XMLRoundTripTest");
+
+		IDMEFMessage[] samples = new IDMEFMessage[] { sampleAlert(), sampleHeartbeat() };
+		for (IDMEFMessage m : samples) {
+			String first = toXML(m);
+			String second = toXML(fromXML(first));
+			System.out.println(first);
+			if (! first.equals(second))
+				fail("ROUND TRIP MISMATCH:\n"+second);
+		}
+		System.out.println("round trip OK");
+
+		// a batch: several messages in one document
+		IDMEFMessageBatch batch = new IDMEFMessageBatch(new IDMEFMessage[] { samples[0], samples[1], samples[0] });
+		StringBuilder batchXML = new StringBuilder();
+		new RFC4765XMLWriter(batchXML).writeBatch(batch);
+		RFC4765XMLReader br = new RFC4765XMLReader(new ByteArrayInputStream(batchXML.toString().getBytes("UTF-8")));
+		IDMEFMessageBatch read = br.nextBatch();
+		if ((read == null) || (read.size() != batch.size()) || (br.nextBatch() != null))
+			fail("BATCH MISMATCH:\n"+batchXML);
+		for (int i = 0; i < batch.size(); i++) {
+			if (! toXML(batch.get(i)).equals(toXML(read.get(i))))
+				fail("BATCH MISMATCH at "+i+":\n"+toXML(read.get(i)));
+		}
+		System.out.println("batch OK");
+
+		// throughput: one document carrying many alerts
+		int count = 20000;
+		String alertXML = toXML(sampleAlert());
+		String body = alertXML.substring(alertXML.indexOf("<Alert"), alertXML.indexOf("</IDMEF-Message>"));
+		StringBuilder doc = new StringBuilder("<IDMEF-Message xmlns=\""+RFC4765XMLWriter.NAMESPACE+"\" version=\"1.0\">");
+		for (int i = 0; i < count; i++)
+			doc.append(body);
+		doc.append("</IDMEF-Message>");
+		RFC4765XMLReader r = new RFC4765XMLReader(new ByteArrayInputStream(doc.toString().getBytes("UTF-8")));
+		while (r.next() != null)
+			;
+		r.close();
+		System.out.println("read "+r.getMessageCount()+" alerts, "+r.getBytesRead()+" bytes: "
+				+(long) r.getMessagesPerSecond()+" alerts/s, "+(long) (r.getBytesPerSecond() / 1048576)+" MB/s");
+	}
+
+}
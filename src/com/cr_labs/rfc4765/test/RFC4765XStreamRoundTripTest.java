@@ -0,0 +1,97 @@
+package com.cr_labs.rfc4765.test;
+
+/*
+Copyright (C) 2007-2011 by Challenge/Response LLC
+Copyright (C) 2011 by Jim Youll, successor copyright holder
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+This program is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+Contact: jim@cr-labs.com
+*/
+
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+
+import com.cr_labs.rfc4765.AdditionalData;
+import com.cr_labs.rfc4765.Address;
+import com.cr_labs.rfc4765.IDMEFMessage_Alert;
+import com.cr_labs.rfc4765.IDMEFMessage_Heartbeat;
+import com.cr_labs.rfc4765.NtpStamp;
+import com.cr_labs.rfc4765.accessories.RFC4765XStreamConfigurator;
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * Checks that alerts, heartbeats, AdditionalData of every type and Addresses with netmasks are
+ * marshalled by an XStream set up with RFC4765XStreamConfigurator, and unmarshalled to objects
+ * equal to the originals.
+ */
+public class RFC4765XStreamRoundTripTest extends RFC4765TestSupport {
+
+	private static void roundTrip(XStream xs, String what, Object o) {
+		String xml = xs.toXML(o);
+		Object back = xs.fromXML(xml);
+		if (! o.equals(back))
+			fail("XSTREAM ROUND TRIP MISMATCH ("+what+"):\n"+o+"\n"+back+"\n"+xml);
+		if (! xml.equals(xs.toXML(back)))
+			fail("XSTREAM REMARSHAL MISMATCH ("+what+"):\n"+xml+"\n"+xs.toXML(back));
+	}
+
+	public static void main(String[] args)
+	throws Exception {
+		System.out.println("in RFC4765XStreamRoundTripTest");
+
+		XStream xs = new XStream();
+		RFC4765XStreamConfigurator.configureXStream(xs);
+
+		IDMEFMessage_Alert alert = sampleAlert();
+		roundTrip(xs, "alert", alert);
+		IDMEFMessage_Heartbeat heartbeat = sampleHeartbeat();
+		roundTrip(xs, "heartbeat", heartbeat);
+		System.out.println("messages OK");
+
+		AdditionalData[] additionalData = new AdditionalData[] {
+				new AdditionalData(true, "flag"),
+				new AdditionalData((byte) -7, "byte"),
+				new AdditionalData('x', "character"),
+				new AdditionalData(AdditionalData.Type.DATE_TIME, new DateTime(1300000000123L, DateTimeZone.forOffsetHours(-5)), "seen"),
+				new AdditionalData(42, "count"),
+				AdditionalData.ntpStamp(NtpStamp.fromMillis(1300000000123L), "sent"),
+				new AdditionalData(AdditionalData.Type.PORTLIST, new Integer[] { 21, 22, 23, 8080 }, "ports"),
+				new AdditionalData(2.5d, "ratio"),
+				new AdditionalData(AdditionalData.Type.STRING, "a < b & c", "note"),
+				new AdditionalData(new byte[] { 0, 1, 2, -1 }, "raw"),
+				new AdditionalData(AdditionalData.Type.XMLTEXT, "<a b=\"c\">d</a>", null) };
+		if (additionalData.length != AdditionalData.Type.values().length)
+			fail("additional data: not every type is covered");
+		for (AdditionalData ad : additionalData)
+			roundTrip(xs, "AdditionalData "+ad.getAdType(), ad);
+		System.out.println("additional data OK");
+
+		Address[] addresses = new Address[] {
+				new Address(null, "192.0.2.0/255.255.255.0", Address.Category.IPV4_NET_MASK, "vlan", "7", false),
+				new Address("a1", "192.0.2.0/24", Address.Category.IPV4_NET, null, null, false),
+				new Address(null, "2001:db8::/32", Address.Category.IPV6_NET, null, null, false),
+				new Address(null, "2001:db8::/ffff:ffff::", Address.Category.IPV6_NET_MASK, null, null, false),
+				new Address(null, "sensor.example.com/255.255.255.0", Address.Category.IPV4_NET_MASK, null, null, false) };
+		for (Address a : addresses) {
+			roundTrip(xs, "Address "+a.getAddress()+"/"+a.getNetmask(), a);
+			Address back = (Address) xs.fromXML(xs.toXML(a));
+			if ((back.getPrefixLength() != a.getPrefixLength()) || ! a.getNetmask().equals(back.getNetmask()))
+				fail("address: netmask of "+a+" read back as "+back.getNetmask());
+		}
+		System.out.println("addresses OK");
+	}
+
+}